@@ -1,30 +1,78 @@
 package moviemanager;
 
+import java.beans.IntrospectionException;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.beans.PropertyDescriptor;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import org.eclipse.core.databinding.observable.ChangeEvent;
-import org.eclipse.core.databinding.observable.IChangeListener;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import org.eclipse.core.databinding.observable.list.IListChangeListener;
 import org.eclipse.core.databinding.observable.list.IObservableList;
+import org.eclipse.core.databinding.observable.list.ListChangeEvent;
+import org.eclipse.core.databinding.observable.list.ListDiffEntry;
 import org.eclipse.core.databinding.observable.list.WritableList;
-import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
-import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
-import org.eclipse.swt.graphics.ImageLoader;
 import org.eclipse.swt.widgets.Display;
 
+import moviemanager.data.AbstractModelObject;
 import moviemanager.data.Movie;
 import moviemanager.data.Performer;
+import moviemanager.index.IdIndex;
+import moviemanager.index.NameIndex;
+import moviemanager.index.TextIndex;
+import moviemanager.persistence.AutosaveScheduler;
+import moviemanager.persistence.DirtyTracker;
+import moviemanager.persistence.ExchangeFormat;
+import moviemanager.persistence.ImageStore;
+import moviemanager.persistence.Journal;
+import moviemanager.persistence.LibraryExporter;
+import moviemanager.persistence.LibraryImporter;
+import moviemanager.persistence.LibraryView;
+import moviemanager.persistence.LoadProgressListener;
+import moviemanager.persistence.MovieRecord;
+import moviemanager.persistence.PerformerRecord;
+import moviemanager.persistence.RenditionStore;
+import moviemanager.persistence.SaveMetrics;
+import moviemanager.persistence.SnapshotFile;
+import moviemanager.query.QueryField;
+import moviemanager.query.QueryLanguage;
+import moviemanager.server.QueryServer;
+import moviemanager.ui.MovieManagerRealm;
+import moviemanager.ui.SplashScreen;
 import moviemanager.ui.dialogs.MovieManagerDialog;
 import moviemanager.util.MovieManagerUIUtil;
 import moviemanager.util.MovieManagerUtil;
@@ -45,50 +93,667 @@ public class MovieManager {
 	/** The performer database. **/
 	private List<Performer> performers;
 
+	/** Index of the movie database by UUID and IMDB ID. **/
+	private final IdIndex<Movie> movieIndex = new IdIndex<Movie>();
+	/** Index of the performer database by UUID and IMDB ID. **/
+	private final IdIndex<Performer> performerIndex = new IdIndex<Performer>();
+	/** Index of the performer database by full name and alternate names. **/
+	private final NameIndex<Performer> performerNameIndex = new NameIndex<Performer>();
+	/**
+	 * Full-text index of the titles, alternative titles and filming locations of the movies, weighted in this order. Built on the first search. The descriptions are not indexed, so that they stay in the mapped
+	 * snapshot until they are displayed.
+	 **/
+	private final TextIndex<Movie> movieTextIndex = new TextIndex<Movie>(4, 2, 1);
+	/** Full-text index of the full names and alternate names of the performers, weighted in this order. Built on the first search. **/
+	private final TextIndex<Performer> performerTextIndex = new TextIndex<Performer>(2, 1);
+	/** Flag to indicate whether the full-text indices have been built and are kept up to date. **/
+	private volatile boolean textIndexed = false;
+	/** Query language for the movie database. The fields whose names are properties of a movie are indexed and kept up to date with every modification. **/
+	private final QueryLanguage<Movie> movieQueries = new QueryLanguage<Movie>(new QueryField<Movie>("title", QueryField.Type.TEXT, m -> getTitles(m)), Arrays.asList(
+			new QueryField<Movie>("performer", QueryField.Type.TEXT, m -> getPerformerNames(m), "actor"), new QueryField<Movie>("rating", QueryField.Type.NUMBER, Movie::getRating, true),
+			new QueryField<Movie>("overallRating", QueryField.Type.NUMBER, Movie::getOverallRating, true, "overall"), new QueryField<Movie>("runtime", QueryField.Type.NUMBER, Movie::getRuntime),
+			new QueryField<Movie>("releaseDate", QueryField.Type.DATE, Movie::getReleaseDate, true, "released"), new QueryField<Movie>("watchDate", QueryField.Type.DATE, Movie::getWatchDate, true, "watched"),
+			new QueryField<Movie>("returnDate", QueryField.Type.DATE, Movie::getReturnDate, true, "lent"), new QueryField<Movie>("country", QueryField.Type.KEYWORD, Movie::getCountry, true),
+			new QueryField<Movie>("language", QueryField.Type.KEYWORD, Movie::getLanguage, true), new QueryField<Movie>("description", QueryField.Type.TEXT, m -> peekDescription(m)),
+			new QueryField<Movie>("filmingLocations", QueryField.Type.TEXT, Movie::getFilmingLocations, "location")));
+	/** Query language for the performer database. **/
+	private final QueryLanguage<Performer> performerQueries = new QueryLanguage<Performer>(new QueryField<Performer>("name", QueryField.Type.TEXT, p -> getNames(p)), Arrays.asList(
+			new QueryField<Performer>("movie", QueryField.Type.TEXT, p -> getMovieTitles(p)), new QueryField<Performer>("rating", QueryField.Type.NUMBER, Performer::getRating),
+			new QueryField<Performer>("country", QueryField.Type.KEYWORD, Performer::getCountry), new QueryField<Performer>("dateOfBirth", QueryField.Type.DATE, Performer::getDateOfBirth, "born"),
+			new QueryField<Performer>("biography", QueryField.Type.TEXT, p -> peekBiography(p))));
+
 	/** The current date. **/
 	private Date currentDate = new Date();
 
-	/** Flag to indicate whether the movie manager's data has been modified. **/
-	private boolean isDirty;
+	/** Keeps track of the movies and performers that have been modified since the data was last saved. **/
+	private final DirtyTracker dirtyTracker = new DirtyTracker();
+	/** Change listeners of the movies and performers in the databases. **/
+	private final Map<AbstractModelObject, EntityChangeListener> entityListeners = new IdentityHashMap<AbstractModelObject, EntityChangeListener>();
+
+	/** Generation of the snapshot file the data has been loaded from or last written to, or -1 if there is none. Modifications are appended to it. Only accessed by the snapshot writer, once the data has been loaded. **/
+	private int snapshotGeneration = -1;
+	/** Length of the valid part of the snapshot file or -1 if there is no valid snapshot. Only accessed by the snapshot writer, once the data has been loaded. **/
+	private long snapshotLength = -1;
+	/** Length of the snapshot file without any delta segments. **/
+	private long snapshotBaseLength = -1;
+	/** Generation of the snapshot file the texts that have not been accessed yet are loaded from, or -1 if the data has not been loaded from a mapped snapshot. **/
+	private volatile int mappedGeneration = -1;
+	/** Mapped base sections of that snapshot file. They are referenced by the loaders of the texts, so the reference is cleared once no loader is left. **/
+	private volatile WeakReference<ByteBuffer> mapping;
+	/** Flag to indicate whether the snapshot has to be rewritten completely on the next save, e.g. because the data has been loaded from the legacy format. **/
+	private volatile boolean snapshotRewriteNeeded = true;
+	/** Flag to indicate whether a snapshot write has failed since the last complete rewrite. Journals are kept until the snapshot has been rewritten successfully. **/
+	private boolean snapshotWriteFailed = false;
+	/** Writes the snapshot in the background. Writes are executed in the order in which the data has been captured. **/
+	private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Snapshot Writer");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	/** Result of the most recently scheduled snapshot write or journal append. **/
+	private Future<?> pendingWrite;
+	/** Result of the most recent journal append that has been handed to the snapshot writer or null. Later records are appended by the snapshot writer as well until it has finished, to keep their order. **/
+	private Future<?> pendingJournalWrite;
+	/** Statistics about the snapshot writes. **/
+	private final SaveMetrics saveMetrics = new SaveMetrics();
+	/** Saves the data automatically after it has been modified. Null if autosaving is disabled. **/
+	private AutosaveScheduler autosave;
+	/** The embedded query server or null if it has not been started. **/
+	private QueryServer queryServer;
+	/** The most recently published view of the databases or null if no view has been requested yet. **/
+	private volatile LibraryView libraryView;
+	/** Movies and performers that have been added or modified since the view was published. **/
+	private final Set<AbstractModelObject> viewChanges = Collections.newSetFromMap(new IdentityHashMap<AbstractModelObject, Boolean>());
+	/** UUIDs of the movies that have been removed or whose UUID has changed since the view was published. **/
+	private final Set<UUID> viewRemovedMovies = new HashSet<UUID>();
+	/** UUIDs of the performers that have been removed or whose UUID has changed since the view was published. **/
+	private final Set<UUID> viewRemovedPerformers = new HashSet<UUID>();
+	/** Flag to indicate whether publishing the view has been scheduled on the UI thread. **/
+	private boolean viewPublicationScheduled = false;
+
+	/** Flag to indicate whether the snapshot is memory-mapped instead of being read onto the heap when loading the data. Can be disabled with -Dmoviemanager.mapSnapshot=false. **/
+	private static final boolean MAP_SNAPSHOT = Boolean.parseBoolean(System.getProperty("moviemanager.mapSnapshot", "true"));
+	/** Port of the embedded query server on the loopback interface, 0 to choose a free port or -1 if the query server should not be started. **/
+	private static final int QUERY_SERVER_PORT = Integer.getInteger("moviemanager.queryServerPort", -1);
+	/** Number of movies or performers that are inserted into the databases at once while loading the snapshot. **/
+	private static final int LOAD_BATCH_SIZE = 256;
+	/** Maximum boost of the search score of a movie or performer with the highest rating. **/
+	private static final double RATING_BOOST = 0.5;
+	/** Boost of the search score of a movie whose description contains the search string. **/
+	private static final double DESCRIPTION_BOOST = 0.25;
+
+	/** Size of the journal in bytes above which it is folded into the snapshot in the background if the data is saved automatically. **/
+	private static final long JOURNAL_COMPACTION_THRESHOLD = 1024 * 1024;
+	/** Journal the modifications are appended to as soon as they happen. Null if the journal has not been opened yet. **/
+	private Journal journal;
+	/** Generation of the current journal. It is incremented whenever the journal is folded into the snapshot. **/
+	private int journalGeneration = 0;
+	/** Number of operations that currently suspend journaling, e.g. loading or importing the data. **/
+	private int journalSuspensions = 0;
+	/** Number of removals through {@link #removeMovie(Movie)}, {@link #removePerformer(Performer)} or {@link #removeMovies(Collection)} in progress. Only these removals are journaled, since the lists of movies and performers may also be cleared in memory, e.g. before the data is loaded again. **/
+	private int removals = 0;
+
+	/**
+	 * Appends a single record to the journal.
+	 *
+	 */
+	private interface JournalAction {
+		void writeTo(Journal j) throws IOException;
+	}
+
+	/**
+	 * Marks a single movie or performer as modified whenever one of its properties or lists changes.
+	 *
+	 */
+	private class EntityChangeListener implements PropertyChangeListener, IListChangeListener<Object> {
+		private final AbstractModelObject entity;
+
+		private EntityChangeListener(AbstractModelObject entity) {
+			this.entity = entity;
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent evt) {
+			final String name = evt.getPropertyName();
+			final Object newValue = evt.getNewValue();
+			if(name.equals("image")) {
+				final UUID id = entity.getId();
+				final String imageHash = entity.getImageHash();
+				journalImage(entity, j -> j.propertyChanged(id, "imageHash", imageHash));
+				dirtyTracker.imageChanged(entity);
+				entityChanged();
+				return;
+			}
+			if(name.equals("id")) {
+				if(entity instanceof Movie) {
+					movieIndex.idChanged((Movie) entity, (UUID) evt.getOldValue());
+				} else {
+					performerIndex.idChanged((Performer) entity, (UUID) evt.getOldValue());
+				}
+				viewRemoved(entity, (UUID) evt.getOldValue());
+			} else if(name.equals("imdbID")) {
+				if(entity instanceof Movie) {
+					movieIndex.imdbIDChanged((Movie) entity, (String) evt.getOldValue());
+				} else {
+					performerIndex.imdbIDChanged((Performer) entity, (String) evt.getOldValue());
+				}
+			} else if(entity instanceof Performer && (name.equals("firstName") || name.equals("lastName") || name.equals("alternateNames"))) {
+				indexPerformerNames((Performer) entity);
+				indexText(entity);
+			} else if(entity instanceof Movie && (name.equals("title") || name.equals("alternativeTitles") || name.equals("filmingLocations"))) {
+				indexText(entity);
+			} else if(entity instanceof Movie) {
+				for(QueryField<Movie> field : movieQueries.getFields()) {
+					if(field.getName().equals(name)) {
+						field.updateIndex((Movie) entity);
+					}
+				}
+			}
+			// Move the listener if one of the entity's lists is replaced
+			if(evt.getOldValue() instanceof IObservableList && evt.getOldValue() != newValue) {
+				((IObservableList<?>) evt.getOldValue()).removeListChangeListener(this);
+				if(newValue instanceof IObservableList) {
+					((IObservableList<?>) newValue).addListChangeListener(this);
+				}
+			}
+			if(newValue instanceof IObservableList) {
+				// Links are journaled by the list change listener of the movie's list of performers
+				if(!name.equals("performers") && !name.equals("movies")) {
+					journalList(name, (IObservableList<?>) newValue);
+				}
+			} else if(!name.equals("id")) {
+				final UUID id = entity.getId();
+				journal(j -> j.propertyChanged(id, name, newValue));
+			}
+			entityChanged();
+		}
+
+		@Override
+		public void handleListChange(ListChangeEvent<? extends Object> event) {
+			IObservableList<?> list = event.getObservableList();
+			if(entity instanceof Movie && list == ((Movie) entity).getPerformers()) {
+				for(ListDiffEntry<?> entry : event.diff.getDifferences()) {
+					final UUID movieId = entity.getId();
+					final UUID performerId = ((Performer) entry.getElement()).getId();
+					final boolean linked = entry.isAddition();
+					journal(j -> j.linkChanged(movieId, performerId, linked));
+				}
+			} else if(!(entity instanceof Performer && list == ((Performer) entity).getMovies())) {
+				for(Map.Entry<String, IObservableList<?>> e : getLists().entrySet()) {
+					if(e.getValue() == list) {
+						journalList(e.getKey(), list);
+					}
+				}
+				if(entity instanceof Performer && list == ((Performer) entity).getAlternateNames()) {
+					indexPerformerNames((Performer) entity);
+				}
+				indexText(entity);
+			}
+			entityChanged();
+		}
+
+		/**
+		 * Journals the complete contents of a list of strings.
+		 */
+		private void journalList(final String name, IObservableList<?> list) {
+			final List<String> values = new ArrayList<String>(list.size());
+			for(Object value : list) {
+				values.add(String.class.cast(value));
+			}
+			final UUID id = entity.getId();
+			journal(j -> j.listChanged(id, name, values));
+		}
+
+		private void entityChanged() {
+			if(entity instanceof Movie) {
+				dirtyTracker.movieChanged((Movie) entity);
+			} else {
+				dirtyTracker.performerChanged((Performer) entity);
+			}
+			viewChanged(entity);
+		}
+
+		private Map<String, IObservableList<?>> getLists() {
+			Map<String, IObservableList<?>> lists = new LinkedHashMap<String, IObservableList<?>>();
+			if(entity instanceof Movie) {
+				Movie m = (Movie) entity;
+				lists.put("alternativeTitles", m.getAlternativeTitles());
+				lists.put("filmingLocations", m.getFilmingLocations());
+				lists.put("performers", m.getPerformers());
+			} else {
+				Performer p = (Performer) entity;
+				lists.put("alternateNames", p.getAlternateNames());
+				lists.put("movies", p.getMovies());
+			}
+			return lists;
+		}
+
+		private void attach() {
+			entity.addPropertyChangeListener(this);
+			for(IObservableList<?> list : getLists().values()) {
+				list.addListChangeListener(this);
+			}
+		}
+
+		private void detach() {
+			entity.removePropertyChangeListener(this);
+			for(IObservableList<?> list : getLists().values()) {
+				list.removeListChangeListener(this);
+			}
+		}
+	}
 
 	/**
 	 * Creates a new instance of the movie manager class.
+	 * 
+	 * @param listener
+	 *            the listener that is notified about the progress of loading the data or null
 	 */
-	private MovieManager() {
+	private MovieManager(LoadProgressListener listener) {
 		this.movies = new WritableList<Movie>(MovieManagerUIUtil.getDefaultRealm());
 		this.performers = new WritableList<Performer>(MovieManagerUIUtil.getDefaultRealm());
 
-		boolean loadResult = loadData();
-
-		// Add change listeners to the list of movies/performers as well as to each individual movie/performer that mark the movie manager's data as dirty when they are triggered
-		this.isDirty = false;
-		((IObservableList<Movie>) movies).addChangeListener(new IChangeListener() {
+		// Add change listeners to the list of movies/performers that track the modifications of each individual movie/performer
+		((IObservableList<Movie>) movies).addListChangeListener(new IListChangeListener<Movie>() {
 			@Override
-			public void handleChange(ChangeEvent arg0) {
-				isDirty = true;
+			public void handleListChange(ListChangeEvent<? extends Movie> event) {
+				for(ListDiffEntry<? extends Movie> entry : event.diff.getDifferences()) {
+					final Movie m = entry.getElement();
+					if(entry.isAddition()) {
+						movieIndex.add(m);
+						indexText(m);
+						for(QueryField<Movie> field : movieQueries.getFields()) {
+							field.updateIndex(m);
+						}
+						trackEntity(m);
+						dirtyTracker.movieChanged(m);
+						viewChanged(m);
+						final MovieRecord r = MovieRecord.of(m);
+						journalImage(m, j -> j.movieAdded(r));
+					} else {
+						movieIndex.remove(m);
+						if(textIndexed) {
+							movieTextIndex.remove(m);
+						}
+						for(QueryField<Movie> field : movieQueries.getFields()) {
+							field.removeFromIndex(m);
+						}
+						untrackEntity(m);
+						dirtyTracker.movieRemoved(m);
+						viewRemoved(m, m.getId());
+						if(removals > 0) {
+							final UUID id = m.getId();
+							journal(j -> j.movieRemoved(id));
+						}
+					}
+				}
 			}
 		});
-		for(Movie m : movies) {
-			m.addPropertyChangeListener(new PropertyChangeListener() {
-				@Override
-				public void propertyChange(PropertyChangeEvent evt) {
-					isDirty = true;
+		((IObservableList<Performer>) performers).addListChangeListener(new IListChangeListener<Performer>() {
+			@Override
+			public void handleListChange(ListChangeEvent<? extends Performer> event) {
+				for(ListDiffEntry<? extends Performer> entry : event.diff.getDifferences()) {
+					final Performer p = entry.getElement();
+					if(entry.isAddition()) {
+						performerIndex.add(p);
+						indexPerformerNames(p);
+						indexText(p);
+						trackEntity(p);
+						dirtyTracker.performerChanged(p);
+						viewChanged(p);
+						final PerformerRecord r = PerformerRecord.of(p);
+						journalImage(p, j -> j.performerAdded(r));
+					} else {
+						performerIndex.remove(p);
+						performerNameIndex.remove(p);
+						if(textIndexed) {
+							performerTextIndex.remove(p);
+						}
+						untrackEntity(p);
+						dirtyTracker.performerRemoved(p);
+						viewRemoved(p, p.getId());
+						if(removals > 0) {
+							final UUID id = p.getId();
+							journal(j -> j.performerRemoved(id));
+						}
+					}
 				}
-			});
-		}
-		((IObservableList<Performer>) performers).addChangeListener(new IChangeListener() {
+			}
+		});
+
+		dirtyTracker.setChangeListener(new Runnable() {
 			@Override
-			public void handleChange(ChangeEvent arg0) {
-				isDirty = true;
+			public void run() {
+				if(autosave != null) {
+					autosave.changed();
+				}
 			}
 		});
-		for(Performer p : performers) {
-			p.addPropertyChangeListener(new PropertyChangeListener() {
-				@Override
-				public void propertyChange(PropertyChangeEvent evt) {
-					isDirty = true;
+
+		boolean loadResult = loadData(listener);
+	}
+
+	/**
+	 * Starts tracking the modifications of the given movie or performer, which has just been added to its database.
+	 * 
+	 * @param o
+	 *            the movie or performer
+	 */
+	private void trackEntity(AbstractModelObject o) {
+		if(!entityListeners.containsKey(o)) {
+			EntityChangeListener listener = new EntityChangeListener(o);
+			listener.attach();
+			entityListeners.put(o, listener);
+		}
+		// An image that was set before the movie/performer was added has not been saved yet
+		if(!o.isImageLoadedOnDemand() && o.getImageHash() != null) {
+			dirtyTracker.imageChanged(o);
+		}
+	}
+
+	/**
+	 * Stops tracking the modifications of the given movie or performer, which has just been removed from its database.
+	 * 
+	 * @param o
+	 *            the movie or performer
+	 */
+	private void untrackEntity(AbstractModelObject o) {
+		EntityChangeListener listener = entityListeners.remove(o);
+		if(listener != null) {
+			listener.detach();
+		}
+	}
+
+	/**
+	 * Indexes the given performer under its full name and its alternate names, replacing the names it was previously indexed under.
+	 * 
+	 * @param p
+	 *            the performer
+	 */
+	private void indexPerformerNames(Performer p) {
+		performerNameIndex.put(p, getNames(p));
+	}
+
+	/**
+	 * Indexes the texts of the given movie or performer in the full-text index, replacing the texts it was previously indexed under. Does nothing until the full-text indices have been built.
+	 * 
+	 * @param o
+	 *            the movie or performer
+	 */
+	private void indexText(AbstractModelObject o) {
+		if(!textIndexed) {
+			return;
+		}
+		if(o instanceof Movie) {
+			Movie m = (Movie) o;
+			movieTextIndex.put(m, Arrays.asList(Collections.singletonList(m.getTitle()), m.getAlternativeTitles(), m.getFilmingLocations()));
+		} else {
+			Performer p = (Performer) o;
+			performerTextIndex.put(p, Arrays.asList(Collections.singletonList(p.getFirstName() + " " + p.getLastName()), p.getAlternateNames()));
+		}
+	}
+
+	private static List<String> getTitles(Movie m) {
+		List<String> titles = new ArrayList<String>(m.getAlternativeTitles().size() + 1);
+		titles.add(m.getTitle());
+		titles.addAll(m.getAlternativeTitles());
+		return titles;
+	}
+
+	private static List<String> getPerformerNames(Movie m) {
+		List<String> names = new ArrayList<String>();
+		for(Performer p : m.getPerformers()) {
+			names.addAll(getNames(p));
+		}
+		return names;
+	}
+
+	private static List<String> getNames(Performer p) {
+		List<String> names = new ArrayList<String>(p.getAlternateNames().size() + 1);
+		names.add(p.getFirstName() + " " + p.getLastName());
+		names.addAll(p.getAlternateNames());
+		return names;
+	}
+
+	/**
+	 * Gets the description of the given movie without loading it into the movie, so that searches and queries do not keep the descriptions of all movies in memory. A damaged description does not match
+	 * anything, but it is left in the movie, so accessing it still reports the damage.
+	 */
+	private static String peekDescription(Movie m) {
+		Supplier<String> loader = m.getDescriptionLoader();
+		return loader != null ? peek(loader) : m.getDescription();
+	}
+
+	/**
+	 * Gets the biography of the given performer without loading it into the performer, like {@link #peekDescription(Movie)}.
+	 */
+	private static String peekBiography(Performer p) {
+		Supplier<String> loader = p.getBiographyLoader();
+		return loader != null ? peek(loader) : p.getBiography();
+	}
+
+	private static String peek(Supplier<String> loader) {
+		try {
+			return loader.get();
+		} catch(UncheckedIOException e) {
+			return "";
+		}
+	}
+
+	private static List<String> getMovieTitles(Performer p) {
+		List<String> titles = new ArrayList<String>();
+		for(Movie m : p.getMovies()) {
+			titles.addAll(getTitles(m));
+		}
+		return titles;
+	}
+
+	/**
+	 * Builds the full-text indices from the current movies and performers, unless they have been built before. From then on, they are kept up to date with every modification. Has to be called on the thread of
+	 * the realm; afterwards, searches may also run on other threads.
+	 */
+	public void buildSearchIndices() {
+		if(!textIndexed) {
+			textIndexed = true;
+			for(Movie m : movies) {
+				indexText(m);
+			}
+			for(Performer p : performers) {
+				indexText(p);
+			}
+		}
+	}
+
+	/**
+	 * Makes sure that the full-text indices have been built, building them if this is the thread of the realm.
+	 */
+	private void checkSearchIndices() {
+		if(!textIndexed) {
+			if(!MovieManagerUIUtil.getDefaultRealm().isCurrent()) {
+				throw new IllegalStateException("The search indices have to be built on the thread of the realm before searching on other threads");
+			}
+			buildSearchIndices();
+		}
+	}
+
+	/**
+	 * Appends a record to the journal, unless journaling is currently suspended. If the data is saved automatically, the journal is folded into the snapshot in the background once it has grown too large.
+	 * Otherwise, the journal keeps growing until the data is saved, since modifications that have been folded into the snapshot could no longer be discarded.
+	 * 
+	 * @param action
+	 *            writes the record. It must not access the movies or performers, since it may run on the snapshot writer
+	 */
+	private void journal(JournalAction action) {
+		journal(action, false);
+	}
+
+	/**
+	 * Appends a record to the journal like {@link #journal(JournalAction)}. If the record is deferred, it is appended by the snapshot writer after all writes that have been scheduled before.
+	 * 
+	 * @param action
+	 *            writes the record. It must not access the movies or performers, since it may run on the snapshot writer
+	 * @param deferred
+	 *            whether the record has to be appended by the snapshot writer, e.g. because it refers to an image that is stored there first
+	 */
+	private void journal(final JournalAction action, boolean deferred) {
+		if(journalSuspensions > 0) {
+			return;
+		}
+		try {
+			if(journal == null) {
+				File mainDir = new File(MovieManagerUtil.getPathToMovieManagerDirectory());
+				if(!mainDir.exists()) {
+					mainDir.mkdir();
 				}
-			});
+				File journalFile = getJournalFile(journalGeneration);
+				journal = new Journal(journalFile, journalFile.length());
+			}
+			if(deferred || (pendingJournalWrite != null && !pendingJournalWrite.isDone())) {
+				final Journal j = journal;
+				pendingJournalWrite = snapshotWriter.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							action.writeTo(j);
+						} catch(IOException e) {
+							e.printStackTrace();
+						}
+					}
+				});
+				pendingWrite = pendingJournalWrite;
+				return;
+			}
+			action.writeTo(journal);
+			if(autosave != null && journal.size() > JOURNAL_COMPACTION_THRESHOLD && (pendingWrite == null || pendingWrite.isDone())) {
+				compact();
+			}
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Closes the current journal, if it is open.
+	 */
+	private void closeJournal() {
+		closeJournal(journal);
+		journal = null;
+	}
+
+	/**
+	 * Closes the given journal.
+	 * 
+	 * @param j
+	 *            the journal or null
+	 */
+	private static void closeJournal(Journal j) {
+		if(j != null) {
+			try {
+				j.close();
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Gets the journal file of the given generation.
+	 * 
+	 * @param generation
+	 *            the generation
+	 * @return the journal file
+	 */
+	private File getJournalFile(int generation) {
+		return new File(MovieManagerUtil.getPathToMovieManagerDirectory() + "journal_" + generation + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+	}
+
+	/**
+	 * Gets the generations of all existing journal files in ascending order.
+	 * 
+	 * @return the generations
+	 */
+	private List<Integer> getJournalGenerations() {
+		List<Integer> generations = new ArrayList<Integer>();
+		File[] files = new File(MovieManagerUtil.getPathToMovieManagerDirectory()).listFiles();
+		if(files != null) {
+			for(File f : files) {
+				String name = f.getName();
+				if(name.startsWith("journal_") && name.endsWith(MovieManagerUtil.MOVIEMANAGER_FILE_EXT)) {
+					try {
+						generations.add(Integer.parseInt(name.substring("journal_".length(), name.length() - MovieManagerUtil.MOVIEMANAGER_FILE_EXT.length())));
+					} catch(NumberFormatException e) {
+						// Not a journal file
+					}
+				}
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * Gets the snapshot file of the given generation. Generation 0 is the snapshot file written before snapshots had generations.
+	 * 
+	 * @param generation
+	 *            the generation
+	 * @return the snapshot file
+	 */
+	private File getSnapshotFile(int generation) {
+		String suffix = generation == 0 ? "" : "_" + generation;
+		return new File(MovieManagerUtil.getPathToMovieManagerDirectory() + MovieManagerUtil.MOVIEMANAGER_LIBRARY_FILE + suffix + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+	}
+
+	/**
+	 * Gets the generations of all existing snapshot files in ascending order.
+	 * 
+	 * @return the generations
+	 */
+	private List<Integer> getSnapshotGenerations() {
+		List<Integer> generations = new ArrayList<Integer>();
+		String prefix = MovieManagerUtil.MOVIEMANAGER_LIBRARY_FILE + "_";
+		File[] files = new File(MovieManagerUtil.getPathToMovieManagerDirectory()).listFiles();
+		if(files != null) {
+			for(File f : files) {
+				String name = f.getName();
+				if(name.equals(MovieManagerUtil.MOVIEMANAGER_LIBRARY_FILE + MovieManagerUtil.MOVIEMANAGER_FILE_EXT)) {
+					generations.add(0);
+				} else if(name.startsWith(prefix) && name.endsWith(MovieManagerUtil.MOVIEMANAGER_FILE_EXT)) {
+					try {
+						generations.add(Integer.parseInt(name.substring(prefix.length(), name.length() - MovieManagerUtil.MOVIEMANAGER_FILE_EXT.length())));
+					} catch(NumberFormatException e) {
+						// Not a snapshot file
+					}
+				}
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * Deletes the snapshot files that have been superseded by the given generation, except for the one the data has been loaded from or last written to, which is kept in case the given generation turns out
+	 * to be unreadable. The mapped snapshot file is kept as well as long as the loaders of the texts refer to it, since a mapped file cannot be deleted on all platforms. It is deleted by a later write once
+	 * they are gone. Temporary files left behind by interrupted writes are deleted as well.
+	 * 
+	 * @param generation
+	 *            the generation of the snapshot file that has just been written
+	 */
+	private void deleteObsoleteSnapshots(int generation) {
+		for(int g : getSnapshotGenerations()) {
+			if(g < generation && g != snapshotGeneration && !(g == mappedGeneration && mapping.get() != null)) {
+				getSnapshotFile(g).delete();
+			}
+		}
+		File[] files = new File(MovieManagerUtil.getPathToMovieManagerDirectory()).listFiles();
+		if(files != null) {
+			for(File f : files) {
+				if(f.getName().startsWith(MovieManagerUtil.MOVIEMANAGER_LIBRARY_FILE) && f.getName().endsWith(".tmp")) {
+					f.delete();
+				}
+			}
 		}
 	}
 
@@ -98,8 +763,19 @@ public class MovieManager {
 	 * @return the instance
 	 */
 	public static MovieManager getInstance() {
+		return getInstance(null);
+	}
+
+	/**
+	 * Gets the instance of the movie manager class. If the instance has to be created, the given listener is notified about the progress of loading the data.
+	 * 
+	 * @param listener
+	 *            the listener that is notified about the progress of loading the data or null
+	 * @return the instance
+	 */
+	public static MovieManager getInstance(LoadProgressListener listener) {
 		if(instance == null) {
-			instance = new MovieManager();
+			instance = new MovieManager(listener);
 		}
 		return instance;
 	}
@@ -120,9 +796,26 @@ public class MovieManager {
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		MovieManager manager = MovieManager.getInstance();
+		SplashScreen splash = new SplashScreen(Display.getDefault());
+		splash.open();
+		MovieManager manager;
+		try {
+			manager = MovieManager.getInstance(splash);
+		} finally {
+			splash.close();
+		}
+		manager.startAutosave(AutosaveScheduler.DEFAULT_DEBOUNCE_MILLIS, AutosaveScheduler.DEFAULT_MAX_LATENCY_MILLIS);
+		if(QUERY_SERVER_PORT >= 0) {
+			try {
+				manager.startQueryServer(QUERY_SERVER_PORT);
+				System.out.println("Query server listening on port " + manager.queryServer.getPort());
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
 		dialog = new MovieManagerDialog(Display.getDefault().getActiveShell());
 		int managerDialogResult = dialog.open();
+		manager.close();
 	}
 
 	/**
@@ -171,15 +864,9 @@ public class MovieManager {
 		if(m == null) {
 			throw new IllegalArgumentException("The movie must not be null");
 		}
-		if(!movies.contains(m)) {
+		if(!movieIndex.contains(m)) {
 			movies.add(m);
 		}
-		m.addPropertyChangeListener(new PropertyChangeListener() {
-			@Override
-			public void propertyChange(PropertyChangeEvent evt) {
-				isDirty = true;
-			}
-		});
 	}
 
 	/**
@@ -192,21 +879,26 @@ public class MovieManager {
 		if(m == null) {
 			throw new IllegalArgumentException("The movie must not be null");
 		}
-		if(movies.contains(m)) {
-			List<Performer> toRemove = new ArrayList<Performer>();
-			// Remove the movie from all performers
-			for(Performer p : performers) {
-				p.unlinkMovie(m);
+		if(movieIndex.contains(m)) {
+			removals++;
+			try {
+				List<Performer> toRemove = new ArrayList<Performer>();
+				// Remove the movie from all performers
+				for(Performer p : performers) {
+					p.unlinkMovie(m);
 
-				if(p.getMovies().isEmpty()) {
-					toRemove.add(p);
+					if(p.getMovies().isEmpty()) {
+						toRemove.add(p);
+					}
 				}
-			}
-			// Remove the movie from the database
-			movies.remove(m);
+				// Remove the movie from the database
+				movies.remove(m);
 
-			// Remove all performers that have no movies from the database
-			performers.removeAll(toRemove);
+				// Remove all performers that have no movies from the database
+				performers.removeAll(toRemove);
+			} finally {
+				removals--;
+			}
 		}
 	}
 
@@ -225,18 +917,12 @@ public class MovieManager {
 		if(p.getMovies().isEmpty()) {
 			throw new IllegalArgumentException("The performer must be linked to at least one movie");
 		}
-		if(!performers.contains(p)) {
+		if(!performerIndex.contains(p)) {
 			performers.add(p);
 			if(performers.size() == 1 && updateUI) {
 				dialog.updatePerfomerDetailView();
 			}
 		}
-		p.addPropertyChangeListener(new PropertyChangeListener() {
-			@Override
-			public void propertyChange(PropertyChangeEvent evt) {
-				isDirty = true;
-			}
-		});
 	}
 
 	/**
@@ -249,46 +935,738 @@ public class MovieManager {
 		if(p == null) {
 			throw new IllegalArgumentException("The performer must not be null");
 		}
-		if(performers.contains(p)) {
-			// Remove the performer from all movies
-			for(Movie m : movies) {
-				m.getPerformers().remove(p);
+		if(performerIndex.contains(p)) {
+			removals++;
+			try {
+				// Remove the performer from all movies
+				for(Movie m : movies) {
+					m.getPerformers().remove(p);
+				}
+				// Remove the performer from the database
+				performers.remove(p);
+			} finally {
+				removals--;
 			}
-			// Remove the performer from the database
-			performers.remove(p);
 		}
 	}
 
 	/**
-	 * Gets the performer with the given name, if he exists in the performer database. If the database contains multiple performers with the given name, the first performer with the given name is returned.
+	 * Adds the given movies to the movie database in a single modification, so that listeners of the list of movies are notified only once. Movies that are already in the database or that occur more than once are
+	 * added only once.
 	 * 
-	 * @param fullName
-	 *            the full name of the performer, i.e. the first and last name, separated by a whitespace
-	 * @return the performer with the given name or null if no such performer exists
+	 * @param toAdd
+	 *            the movies
 	 */
-	public Performer getPerformer(String fullName) {
-		for(Performer p : performers) {
-			String pFullName = p.getFirstName() + " " + p.getLastName();
-			if(pFullName.equals(fullName)) {
-				return p;
+	public void addMovies(Collection<? extends Movie> toAdd) {
+		if(toAdd == null) {
+			throw new IllegalArgumentException("The movies must not be null");
+		}
+		final List<Movie> added = new ArrayList<Movie>(toAdd.size());
+		Set<Movie> seen = Collections.newSetFromMap(new IdentityHashMap<Movie, Boolean>());
+		for(Movie m : toAdd) {
+			if(m == null) {
+				throw new IllegalArgumentException("The movie must not be null");
+			}
+			if(!movieIndex.contains(m) && seen.add(m)) {
+				added.add(m);
 			}
 		}
-		return null;
+		if(!added.isEmpty()) {
+			runBatch(new Runnable() {
+				@Override
+				public void run() {
+					movies.addAll(added);
+				}
+			});
+		}
 	}
 
 	/**
-	 * Gets the current time.
+	 * Removes the given movies from the movie database in a single modification, so that listeners of the list of movies are notified only once. As with {@link #removeMovie(Movie)}, the movies are unlinked from all
+	 * performers and performers that are no longer linked to any movie are removed as well.
 	 * 
-	 * @return the current time
-	 */
-	public Date getCurrentDate() {
-		return currentDate;
-	}
-
-	/**
-	 * Saves the data into the directory <i>.moviemanager</i> in the current user's home folder.
+	 * @param toRemove
+	 *            the movies
 	 */
-	public void saveData() {
+	public void removeMovies(Collection<? extends Movie> toRemove) {
+		if(toRemove == null) {
+			throw new IllegalArgumentException("The movies must not be null");
+		}
+		final Set<Movie> removed = Collections.newSetFromMap(new IdentityHashMap<Movie, Boolean>());
+		for(Movie m : toRemove) {
+			if(m == null) {
+				throw new IllegalArgumentException("The movie must not be null");
+			}
+			if(movieIndex.contains(m)) {
+				removed.add(m);
+			}
+		}
+		if(removed.isEmpty()) {
+			return;
+		}
+		removals++;
+		try {
+			runBatch(new Runnable() {
+				@Override
+				public void run() {
+					// Unlink the movies from all performers in a single pass over the performers
+					Set<Performer> remainingPerformers = Collections.newSetFromMap(new IdentityHashMap<Performer, Boolean>());
+					for(Performer p : performers) {
+						for(Movie m : new ArrayList<Movie>(p.getMovies())) {
+							if(removed.contains(m)) {
+								p.unlinkMovie(m);
+							}
+						}
+						if(!p.getMovies().isEmpty()) {
+							remainingPerformers.add(p);
+						}
+					}
+					Set<Movie> remainingMovies = Collections.newSetFromMap(new IdentityHashMap<Movie, Boolean>());
+					for(Movie m : movies) {
+						if(!removed.contains(m)) {
+							remainingMovies.add(m);
+						}
+					}
+					// Remove the movies and all performers that have no movies from the database
+					movies.retainAll(remainingMovies);
+					if(remainingPerformers.size() < performers.size()) {
+						performers.retainAll(remainingPerformers);
+					}
+				}
+			});
+		} finally {
+			removals--;
+		}
+	}
+
+	/**
+	 * Adds the given performers to the performer database in a single modification, so that listeners of the list of performers are notified only once. Performers that are already in the database or that occur
+	 * more than once are added only once.
+	 * 
+	 * @param toAdd
+	 *            the performers
+	 * @param updateUI
+	 *            whether an update to the movie manager dialog should be performed after adding the performers
+	 */
+	public void addPerformers(Collection<? extends Performer> toAdd, boolean updateUI) {
+		if(toAdd == null) {
+			throw new IllegalArgumentException("The performers must not be null");
+		}
+		final List<Performer> added = new ArrayList<Performer>(toAdd.size());
+		Set<Performer> seen = Collections.newSetFromMap(new IdentityHashMap<Performer, Boolean>());
+		for(Performer p : toAdd) {
+			if(p == null) {
+				throw new IllegalArgumentException("The performer must not be null");
+			}
+			if(p.getMovies().isEmpty()) {
+				throw new IllegalArgumentException("The performer must be linked to at least one movie");
+			}
+			if(!performerIndex.contains(p) && seen.add(p)) {
+				added.add(p);
+			}
+		}
+		if(added.isEmpty()) {
+			return;
+		}
+		final boolean wasEmpty = performers.isEmpty();
+		runBatch(new Runnable() {
+			@Override
+			public void run() {
+				performers.addAll(added);
+			}
+		});
+		if(wasEmpty && updateUI) {
+			dialog.updatePerfomerDetailView();
+		}
+	}
+
+	/**
+	 * Runs the given modifications of the movie and performer databases as a single batch: listeners that schedule work for every modification, such as the automatic save, are notified only once after the batch has
+	 * finished. Batches may be nested, in which case the notification is sent once the outermost batch has finished. Has to be called on the thread of the realm.
+	 * 
+	 * @param modifications
+	 *            the modifications
+	 */
+	public void runBatch(Runnable modifications) {
+		if(modifications == null) {
+			throw new IllegalArgumentException("The modifications must not be null");
+		}
+		dirtyTracker.beginBatch();
+		try {
+			modifications.run();
+		} finally {
+			dirtyTracker.endBatch();
+		}
+	}
+
+	/**
+	 * Gets the movie with the given UUID from the movie database.
+	 * 
+	 * @param id
+	 *            the UUID
+	 * @return the movie with the given UUID or null if no such movie exists
+	 */
+	public Movie getMovieById(UUID id) {
+		return movieIndex.get(id);
+	}
+
+	/**
+	 * Gets the performer with the given UUID from the performer database.
+	 * 
+	 * @param id
+	 *            the UUID
+	 * @return the performer with the given UUID or null if no such performer exists
+	 */
+	public Performer getPerformerById(UUID id) {
+		return performerIndex.get(id);
+	}
+
+	/**
+	 * Gets the movie with the given IMDB ID from the movie database. If the database contains multiple movies with the given IMDB ID, the one that has been added first is returned.
+	 * 
+	 * @param imdbID
+	 *            the IMDB ID
+	 * @return the movie with the given IMDB ID or null if no such movie exists
+	 */
+	public Movie getMovieByImdbID(String imdbID) {
+		return movieIndex.getByImdbID(imdbID);
+	}
+
+	/**
+	 * Gets the performer with the given IMDB ID from the performer database. If the database contains multiple performers with the given IMDB ID, the one that has been added first is returned.
+	 * 
+	 * @param imdbID
+	 *            the IMDB ID
+	 * @return the performer with the given IMDB ID or null if no such performer exists
+	 */
+	public Performer getPerformerByImdbID(String imdbID) {
+		return performerIndex.getByImdbID(imdbID);
+	}
+
+	/**
+	 * Gets all performers of the performer database that have an IMDB ID.
+	 * 
+	 * @return the performers with an IMDB ID
+	 */
+	public List<Performer> getPerformersWithImdbID() {
+		return performerIndex.getAllWithImdbID();
+	}
+
+	/**
+	 * Gets the performer with the given name, if he exists in the performer database. The name is compared with the full name and the alternate names of each performer, ignoring case, accents and differences in
+	 * whitespace. If the database contains multiple performers with the given name, the first performer with the given name is returned.
+	 * 
+	 * @param fullName
+	 *            the full name of the performer, i.e. the first and last name, separated by a whitespace, or one of his alternate names
+	 * @return the performer with the given name or null if no such performer exists
+	 */
+	public Performer getPerformer(String fullName) {
+		return performerNameIndex.get(fullName);
+	}
+
+	/**
+	 * Gets all movies whose title, alternative titles or filming locations match the given string.
+	 * 
+	 * @param query
+	 *            the string to search for
+	 * @return the movies, best match first, or an empty list if the string is empty
+	 * @see #searchMovies(String, int)
+	 */
+	public List<Movie> searchMovies(String query) {
+		return searchMovies(query, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the movies whose title, alternative titles or filming locations match the given string best, ignoring case, accents and differences in whitespace. Words of the string may also match with typos.
+	 * Matches in the title rank above matches in the alternative titles, which rank above matches in the filming locations. Movies whose description contains the string and movies with a higher overall rating
+	 * are ranked higher. The search is answered by a full-text index, which is built on the first search and kept up to date afterwards; descriptions are only read for the movies it finds. May be called on any
+	 * thread once the index has been built by {@link #buildSearchIndices()}. A search on another thread stops with a {@link java.util.concurrent.CancellationException} if the thread is interrupted.
+	 * 
+	 * @param query
+	 *            the string to search for
+	 * @param limit
+	 *            the maximum number of movies to return
+	 * @return the movies, best match first, or an empty list if the string is empty
+	 */
+	public List<Movie> searchMovies(String query, int limit) {
+		checkSearchIndices();
+		final String q = query == null ? "" : NameIndex.normalize(query);
+		return movieTextIndex.search(query, limit, new ToDoubleFunction<Movie>() {
+			@Override
+			public double applyAsDouble(Movie m) {
+				String description = peekDescription(m);
+				boolean inDescription = !q.isEmpty() && description != null && NameIndex.normalize(description).contains(q);
+				return RATING_BOOST * m.getOverallRating() / 100 + (inDescription ? DESCRIPTION_BOOST : 0);
+			}
+		});
+	}
+
+	/**
+	 * Gets all performers whose full name or alternate names match the given string.
+	 * 
+	 * @param query
+	 *            the string to search for
+	 * @return the performers, best match first, or an empty list if the string is empty
+	 * @see #searchPerformers(String, int)
+	 */
+	public List<Performer> searchPerformers(String query) {
+		return searchPerformers(query, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the performers whose full name or alternate names match the given string best, ignoring case, accents and differences in whitespace. Words of the string may also match with typos. Matches in the full
+	 * name rank above matches in the alternate names, and performers with a higher rating are ranked higher. The search is answered by a full-text index, which is built on the first search and kept up to date
+	 * afterwards. May be called on any thread once the index has been built by {@link #buildSearchIndices()}. A search on another thread stops with a {@link java.util.concurrent.CancellationException} if the
+	 * thread is interrupted.
+	 * 
+	 * @param query
+	 *            the string to search for
+	 * @param limit
+	 *            the maximum number of performers to return
+	 * @return the performers, best match first, or an empty list if the string is empty
+	 */
+	public List<Performer> searchPerformers(String query, int limit) {
+		checkSearchIndices();
+		return performerTextIndex.search(query, limit, p -> RATING_BOOST * p.getRating() / 100);
+	}
+
+	/**
+	 * Gets the movies that match the given query, e.g. <code>rating&gt;=70 lent:no country:usa</code>. Plain words are searched for in the titles and alternative titles. Comparisons with the ratings, dates,
+	 * country or language of the movies are answered by sorted indices. Has to be called on the thread of the realm.
+	 * 
+	 * @param query
+	 *            the query, as described in {@link QueryLanguage}. The fields are <code>title</code>, <code>performer</code>, <code>rating</code>, <code>overallRating</code>, <code>runtime</code>,
+	 *            <code>releaseDate</code>, <code>watchDate</code>, <code>returnDate</code>, <code>country</code>, <code>language</code>, <code>description</code> and <code>filmingLocations</code>
+	 * @return the movies that match the query
+	 * @throws moviemanager.query.QuerySyntaxException
+	 *             if the query is malformed
+	 */
+	public List<Movie> queryMovies(String query) {
+		return movieQueries.execute(movieQueries.parse(query), movies);
+	}
+
+	/**
+	 * Gets the performers that match the given query, e.g. <code>born&gt;=1970 movie:"star wars"</code>. Plain words are searched for in the full names and alternate names. Has to be called on the thread of the
+	 * realm.
+	 * 
+	 * @param query
+	 *            the query, as described in {@link QueryLanguage}. The fields are <code>name</code>, <code>movie</code>, <code>rating</code>, <code>country</code>, <code>dateOfBirth</code> and
+	 *            <code>biography</code>
+	 * @return the performers that match the query
+	 * @throws moviemanager.query.QuerySyntaxException
+	 *             if the query is malformed
+	 */
+	public List<Performer> queryPerformers(String query) {
+		return performerQueries.execute(performerQueries.parse(query), performers);
+	}
+
+	/**
+	 * Gets the first movies in the order of one of their indexed properties, i.e. <code>rating</code>, <code>overallRating</code>, <code>releaseDate</code>, <code>watchDate</code>, <code>returnDate</code>,
+	 * <code>country</code> or <code>language</code>. The movies are read from the sorted index of the property, which takes logarithmic time plus the number of movies looked at. Movies without a value are not
+	 * included.
+	 * 
+	 * @param property
+	 *            the name of the property
+	 * @param descending
+	 *            whether the movies are sorted in descending order, e.g. most recently watched first
+	 * @param filter
+	 *            the filter the movies have to pass or null to accept all movies
+	 * @param limit
+	 *            the maximum number of movies to return
+	 * @return the movies
+	 */
+	public List<Movie> getMoviesSortedBy(String property, boolean descending, Predicate<? super Movie> filter, int limit) {
+		for(QueryField<Movie> field : movieQueries.getFields()) {
+			if(field.getName().equals(property) && field.getIndex() != null) {
+				return field.getIndex().getRange(null, false, null, false, descending, filter, limit);
+			}
+		}
+		throw new IllegalArgumentException("The property " + property + " is not indexed");
+	}
+
+	/**
+	 * Gets the current time.
+	 * 
+	 * @return the current time
+	 */
+	public Date getCurrentDate() {
+		return currentDate;
+	}
+
+	/**
+	 * <p>
+	 * Saves the data into the directory <i>.moviemanager</i> in the current user's home folder. The movie and performer databases are stored in a single snapshot file, while the images are stored in a
+	 * content-addressed image store. Files of the legacy format, which stored each movie and performer in several individual files, are removed after the snapshot has been written.
+	 * </p>
+	 * <p>
+	 * Only the movies and performers that have been added, modified or removed since the last save are written. They are appended to the snapshot as a delta segment, which is folded into a new snapshot once the
+	 * delta segments have grown larger than the snapshot itself. Images are only written if they are not in the image store yet, and images that are no longer referenced are removed from it afterwards. Once the
+	 * snapshot has been written, the journal is no longer needed and is deleted.
+	 * </p>
+	 * <p>
+	 * A new snapshot is written as a new generation, which only appears under its final name once it is complete. The previous generation is kept until the next one has been written, so the data can still be
+	 * loaded from it if the new snapshot file turns out to be damaged.
+	 * </p>
+	 */
+	public void saveData() {
+		try {
+			compact().get();
+		} catch(InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes all movies and performers into a new snapshot generation, which folds the delta segments of the current snapshot and drops images that are no longer referenced. Blocks until the snapshot has been
+	 * written.
+	 */
+	public void rewriteSnapshot() {
+		snapshotRewriteNeeded = true;
+		saveData();
+	}
+
+	/**
+	 * Discards the journaled modifications that have not been saved yet, so they are not replayed the next time the data is loaded. The movie and performer databases in memory are not reverted. Unless the
+	 * data is saved automatically, the journal is only folded into the snapshot by an explicit save or an import, so all modifications since then are discarded.
+	 */
+	public void discardChanges() {
+		waitForPendingWrite();
+		closeJournal();
+		for(int generation : getJournalGenerations()) {
+			getJournalFile(generation).delete();
+		}
+		dirtyTracker.clear();
+	}
+
+	/**
+	 * Starts saving the data automatically once it has been modified. Bursts of modifications are coalesced into a single save, which is triggered once no modification has happened for the given debounce
+	 * delay, but no later than the given maximum latency after the first unsaved modification. The data is captured on the UI thread and written in the background. Must be called on the UI thread.
+	 * 
+	 * @param debounceMillis
+	 *            the delay in milliseconds after the last modification
+	 * @param maxLatencyMillis
+	 *            the maximum delay in milliseconds after the first unsaved modification
+	 */
+	public void startAutosave(long debounceMillis, long maxLatencyMillis) {
+		stopAutosave();
+		if(Display.getCurrent() == null) {
+			throw new IllegalStateException("Autosaving has to be started on the UI thread");
+		}
+		autosave = new AutosaveScheduler(new Runnable() {
+			@Override
+			public void run() {
+				// An import saves its records once it has finished
+				if(isDirty() && journalSuspensions == 0) {
+					compact();
+				}
+			}
+		}, getRealmExecutor(), debounceMillis, maxLatencyMillis);
+		if(isDirty()) {
+			autosave.changed();
+		}
+	}
+
+	/**
+	 * Gets an executor that queues tasks on the realm of the databases, which runs them in batches on the UI thread. Tasks are not run anymore once the display has been disposed.
+	 * 
+	 * @return the executor
+	 */
+	private static Executor getRealmExecutor() {
+		final MovieManagerRealm realm = MovieManagerUIUtil.getDefaultRealm();
+		return new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				realm.asyncExec(command);
+			}
+		};
+	}
+
+	/**
+	 * Stops saving the data automatically. Modifications that have not been saved yet remain unsaved.
+	 */
+	public void stopAutosave() {
+		if(autosave != null) {
+			autosave.stop();
+			autosave = null;
+		}
+	}
+
+	/**
+	 * Checks whether the data is saved automatically.
+	 * 
+	 * @return true if autosaving has been started, false otherwise
+	 */
+	public boolean isAutosaveEnabled() {
+		return autosave != null;
+	}
+
+	/**
+	 * Starts the embedded query server, which answers read-only queries about the movies and performers on the loopback interface. The server answers from the published view of the databases, so requests never
+	 * access the databases themselves. Has to be called on the thread of the realm.
+	 * 
+	 * @param port
+	 *            the port or 0 to choose a free port
+	 * @return the started server
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 * @see #publishLibraryView()
+	 */
+	public QueryServer startQueryServer(int port) throws IOException {
+		stopQueryServer();
+		publishLibraryView();
+		queryServer = new QueryServer(this::getLibraryView, port, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+		queryServer.start();
+		return queryServer;
+	}
+
+	/**
+	 * Stops the embedded query server if it has been started.
+	 */
+	public void stopQueryServer() {
+		if(queryServer != null) {
+			queryServer.stop(0);
+			queryServer = null;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Publishes a view of the current state of the databases and returns it. Has to be called on the thread of the realm.
+	 * </p>
+	 * <p>
+	 * The first call captures all movies and performers. Afterwards, the modifications are tracked and a new view is published by the realm after each batch of modifications, i.e. once the events that caused
+	 * them have been processed. The new view only replaces the records of the modified movies and performers and shares everything else with the previous one. Without a UI thread, e.g. in the command-line mode,
+	 * the view is published once the pending runnables of the realm are run, or by this method.
+	 * </p>
+	 * 
+	 * @return the view
+	 */
+	public LibraryView publishLibraryView() {
+		LibraryView view = libraryView;
+		if(view == null) {
+			view = LibraryView.capture(movies, performers);
+		} else {
+			for(UUID id : viewRemovedMovies) {
+				view = view.withoutMovie(id);
+			}
+			for(UUID id : viewRemovedPerformers) {
+				view = view.withoutPerformer(id);
+			}
+			for(AbstractModelObject o : viewChanges) {
+				// Movies and performers that have been removed after they were modified are not contained anymore
+				if(o instanceof Movie && movieIndex.get(o.getId()) == o) {
+					view = view.withMovie(MovieRecord.of((Movie) o));
+				} else if(o instanceof Performer && performerIndex.get(o.getId()) == o) {
+					view = view.withPerformer(PerformerRecord.of((Performer) o));
+				}
+			}
+		}
+		viewRemovedMovies.clear();
+		viewRemovedPerformers.clear();
+		viewChanges.clear();
+		libraryView = view;
+		return view;
+	}
+
+	/**
+	 * Gets the most recently published view of the databases. May be called on any thread.
+	 * 
+	 * @return the view or null if no view has been published yet
+	 * @see #publishLibraryView()
+	 */
+	public LibraryView getLibraryView() {
+		return libraryView;
+	}
+
+	/**
+	 * Records that the given movie or performer has been added or modified since the view was published, and schedules publishing a new view.
+	 */
+	private void viewChanged(AbstractModelObject o) {
+		if(libraryView != null) {
+			viewChanges.add(o);
+			scheduleViewPublication();
+		}
+	}
+
+	/**
+	 * Records that the movie or performer with the given UUID has been removed from the view, since it has been removed from its database or its UUID has changed.
+	 */
+	private void viewRemoved(AbstractModelObject o, UUID id) {
+		if(libraryView != null) {
+			(o instanceof Movie ? viewRemovedMovies : viewRemovedPerformers).add(id);
+			scheduleViewPublication();
+		}
+	}
+
+	private void scheduleViewPublication() {
+		if(!viewPublicationScheduled) {
+			viewPublicationScheduled = true;
+			MovieManagerUIUtil.getDefaultRealm().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					viewPublicationScheduled = false;
+					publishLibraryView();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Gets the statistics about the saves, i.e. their durations and the number of bytes written.
+	 * 
+	 * @return the save metrics
+	 */
+	public SaveMetrics getSaveMetrics() {
+		return saveMetrics;
+	}
+
+	/**
+	 * Stops autosaving and the query server, waits for pending snapshot writes and closes the journal. Should be called before the application terminates.
+	 */
+	public void close() {
+		stopAutosave();
+		stopQueryServer();
+		waitForPendingWrite();
+		closeJournal();
+	}
+
+	/**
+	 * Waits until the most recently scheduled snapshot write or journal append has finished. The writes are executed in order, so all earlier ones have finished as well.
+	 */
+	private void waitForPendingWrite() {
+		if(pendingWrite != null) {
+			try {
+				pendingWrite.get();
+			} catch(InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Appends a record that refers to the image of the given movie or performer by its hash. If the image has been set explicitly, the snapshot writer stores it in the image store before it appends the
+	 * record, so that a journaled hash never refers to an image that is missing after a crash. Since the image is stored after the snapshot writes that have been scheduled before, they cannot remove it as
+	 * unreferenced either. The thumbnail is only stored as a rendition when the journal is compacted, because it can be created from the image again.
+	 * 
+	 * @param o
+	 *            the movie or performer
+	 * @param action
+	 *            writes the record
+	 */
+	private void journalImage(AbstractModelObject o, final JournalAction action) {
+		final String hash = o.getImageHash();
+		if(journalSuspensions > 0 || hash == null || o.isImageLoadedOnDemand()) {
+			journal(action);
+			return;
+		}
+		final ImageData data;
+		try {
+			data = o.getImage().getImageData();
+		} catch(SWTException e) {
+			e.printStackTrace();
+			journal(action);
+			return;
+		}
+		final ImageStore imageStore = new ImageStore(new File(MovieManagerUtil.getPathToMovieManagerDirectory() + "images", ImageStore.DIRECTORY_NAME));
+		journal(j -> {
+			try {
+				imageStore.store(hash, data);
+			} catch(IOException e) {
+				// The image is stored again when the journal is compacted
+				e.printStackTrace();
+			}
+			action.writeTo(j);
+		}, true);
+	}
+
+	/**
+	 * Folds the journal into the snapshot. The modified movies and performers as well as the replaced images are captured on the calling thread and a new journal is started. The snapshot is written in the
+	 * background afterwards, and the old journal is deleted once it has been written.
+	 * 
+	 * @return the result of the snapshot write
+	 */
+	private Future<?> compact() {
+		final boolean rewrite = snapshotRewriteNeeded;
+		final List<MovieRecord> movieRecords = new ArrayList<MovieRecord>();
+		for(Movie m : rewrite ? movies : dirtyTracker.getChangedMovies()) {
+			movieRecords.add(MovieRecord.of(m));
+		}
+		final List<PerformerRecord> performerRecords = new ArrayList<PerformerRecord>();
+		for(Performer p : rewrite ? performers : dirtyTracker.getChangedPerformers()) {
+			performerRecords.add(PerformerRecord.of(p));
+		}
+		final List<UUID> removedMovies = new ArrayList<UUID>(dirtyTracker.getRemovedMovies());
+		final List<UUID> removedPerformers = new ArrayList<UUID>(dirtyTracker.getRemovedPerformers());
+
+		// Capture the replaced images and their thumbnails by their hash. Images that are loaded on demand are in the image store already
+		final Map<String, ImageData[]> images = new LinkedHashMap<String, ImageData[]>();
+		for(AbstractModelObject o : dirtyTracker.getChangedImages()) {
+			try {
+				String hash = o.getImageHash();
+				if(hash != null && !o.isImageLoadedOnDemand() && !images.containsKey(hash)) {
+					images.put(hash, new ImageData[] { o.getImage().getImageData(), o.getThumbnailImage().getImageData() });
+				}
+			} catch(SWTException e) {
+				e.printStackTrace();
+			}
+		}
+		// If images may have become unreferenced, capture the referenced ones so that the others can be removed from the image store
+		Set<String> referencedImages = null;
+		if(rewrite || !dirtyTracker.getChangedImages().isEmpty() || !removedMovies.isEmpty() || !removedPerformers.isEmpty()) {
+			referencedImages = new HashSet<String>();
+			for(Movie m : movies) {
+				if(m.getImageHash() != null) {
+					referencedImages.add(m.getImageHash());
+				}
+			}
+			for(Performer p : performers) {
+				if(p.getImageHash() != null) {
+					referencedImages.add(p.getImageHash());
+				}
+			}
+		}
+		final Set<String> retainedImages = referencedImages;
+
+		// Modifications from now on go into a new journal. The old one is closed by the snapshot writer, after the records that are still queued for it have been appended
+		final Journal obsoleteJournal = journal;
+		journal = null;
+		final int obsoleteGeneration = journalGeneration;
+		journalGeneration++;
+		dirtyTracker.clear();
+
+		pendingWrite = snapshotWriter.submit(new Runnable() {
+			@Override
+			public void run() {
+				closeJournal(obsoleteJournal);
+				writeSnapshot(rewrite, movieRecords, performerRecords, removedMovies, removedPerformers, images, retainedImages, obsoleteGeneration);
+			}
+		});
+		return pendingWrite;
+	}
+
+	/**
+	 * Writes the captured data into the snapshot. Runs on the snapshot writer thread.
+	 * 
+	 * @param rewrite
+	 *            whether the snapshot has to be rewritten completely. If so, the records comprise the complete databases
+	 * @param movieRecords
+	 *            the records of the added or modified movies
+	 * @param performerRecords
+	 *            the records of the added or modified performers
+	 * @param removedMovies
+	 *            the UUIDs of the removed movies
+	 * @param removedPerformers
+	 *            the UUIDs of the removed performers
+	 * @param images
+	 *            the replaced images and their thumbnails by their hash
+	 * @param referencedImages
+	 *            the hashes of all images that are still referenced or null if no image has become unreferenced
+	 * @param obsoleteGeneration
+	 *            the generation of the last journal whose modifications are contained in the captured data
+	 */
+	private void writeSnapshot(boolean rewrite, List<MovieRecord> movieRecords, List<PerformerRecord> performerRecords, List<UUID> removedMovies, List<UUID> removedPerformers, Map<String, ImageData[]> images, Set<String> referencedImages, int obsoleteGeneration) {
+		long start = System.nanoTime();
+		long bytesWritten = 0;
 		try {
 			String path = MovieManagerUtil.getPathToMovieManagerDirectory();
 			// Create the required folder structure if necessary
@@ -297,329 +1675,783 @@ public class MovieManager {
 			if(!mainDir.exists()) {
 				System.out.println("Creating moviemanager directory...");
 				mainDir.mkdir();
-
+			}
+			if(!imagesDir.exists()) {
 				imagesDir.mkdir();
 			}
 
-			// Delete all old images before saving the new ones
-			if(imagesDir.exists()) {
-				for(File f : imagesDir.listFiles()) {
-					f.delete();
-				}
-			}
+			if(rewrite) {
+				// Save all movies and performers into a snapshot file of a new generation. It only appears under its final name once it has been written completely
+				List<Integer> generations = getSnapshotGenerations();
+				int generation = generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1;
+				long length = SnapshotFile.write(getSnapshotFile(generation), movieRecords, performerRecords);
+				deleteObsoleteSnapshots(generation);
+				snapshotGeneration = generation;
+				snapshotLength = length;
+				snapshotBaseLength = snapshotLength;
+				bytesWritten += snapshotLength;
+				snapshotWriteFailed = false;
+
+				// The snapshot supersedes the files of the legacy format
+				deleteLegacyData(mainDir);
+			} else if(snapshotGeneration < 0 || snapshotLength < 0 || !getSnapshotFile(snapshotGeneration).exists()) {
+				throw new IOException("No snapshot to append the modifications to");
+			} else if(!movieRecords.isEmpty() || !performerRecords.isEmpty() || !removedMovies.isEmpty() || !removedPerformers.isEmpty()) {
+				// Only append the modified movies and performers to the existing snapshot
+				long position = snapshotLength;
+				snapshotLength = SnapshotFile.append(getSnapshotFile(snapshotGeneration), position, movieRecords, performerRecords, removedMovies, removedPerformers);
+				bytesWritten += snapshotLength - position;
+			}
+			snapshotRewriteNeeded = snapshotLength - snapshotBaseLength > snapshotBaseLength;
+
+			// Images that are in the image store already are neither encoded nor written again. The images are stored in the size of the poster, so only their thumbnails are stored as renditions
+			ImageStore imageStore = new ImageStore(new File(imagesDir, ImageStore.DIRECTORY_NAME));
+			RenditionStore renditions = new RenditionStore(new File(imagesDir, RenditionStore.DIRECTORY_NAME));
+			for(Map.Entry<String, ImageData[]> e : images.entrySet()) {
+				if(imageStore.store(e.getKey(), e.getValue()[0])) {
+					bytesWritten += imageStore.getFile(e.getKey()).length();
+				}
+				if(renditions.store(e.getKey(), e.getValue()[1])) {
+					bytesWritten += renditions.getFile(e.getKey(), e.getValue()[1].width, e.getValue()[1].height).length();
+				}
+			}
+
+			// The journals are not needed anymore once their modifications are contained in the snapshot
+			if(!snapshotWriteFailed) {
+				for(int generation : getJournalGenerations()) {
+					if(generation <= obsoleteGeneration) {
+						getJournalFile(generation).delete();
+					}
+				}
+			}
+
+			// Remove the images that are no longer referenced by the saved data
+			if(referencedImages != null) {
+				imageStore.retainAll(referencedImages);
+				renditions.retainAll(referencedImages);
+			}
+
+			saveMetrics.recordSave(System.nanoTime() - start, bytesWritten);
+			System.out.println("Saved data to " + path);
+		} catch(IOException | UncheckedIOException | SWTException e) {
+			// The modifications captured for this write are lost for the snapshot, so it has to be rewritten completely. The journals are kept, e.g. if a text of the mapped snapshot is damaged
+			snapshotWriteFailed = true;
+			snapshotRewriteNeeded = true;
+			saveMetrics.recordFailure();
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the image file of the given movie or performer in the legacy format, which stored the image of each movie and performer in an individual file.
+	 * 
+	 * @param o
+	 *            the movie or performer
+	 * @return the image file
+	 */
+	private File getLegacyImageFile(AbstractModelObject o) {
+		String prefix = o instanceof Movie ? "movie_" : "performer_";
+		return new File(MovieManagerUtil.getPathToMovieManagerDirectory() + "images" + File.separator + prefix + o.getId().toString() + ".png");
+	}
+
+	/**
+	 * Adds the image file of the given movie or performer in the legacy format to the image store. Thread-safe, since it does not access the movie or performer except for its UUID.
+	 * 
+	 * @param o
+	 *            the movie or performer
+	 * @return the hash of the image or null if the movie or performer has no image file
+	 */
+	private String importLegacyImage(AbstractModelObject o) {
+		File imageFile = getLegacyImageFile(o);
+		if(!imageFile.isFile()) {
+			return null;
+		}
+		try {
+			return new ImageStore(new File(imageFile.getParentFile(), ImageStore.DIRECTORY_NAME)).importFile(imageFile);
+		} catch(IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
 
-			// First, save the UUIDs of all movies and performers
-			{
-				FileOutputStream fileStream = new FileOutputStream(path + "movie_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-				ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
+	/**
+	 * Loads the data from the folder <i>.moviemanager</i> in the current user's home folder, if it exists. If the folder does not contain a snapshot file yet, the data is loaded from the files of the legacy
+	 * format. It will be migrated to the snapshot format the next time the data is saved. Modifications that have been journaled but not saved, e.g. because the application has crashed, are replayed afterwards.
+	 * 
+	 * @return true if the loading was successful, false otherwise
+	 */
+	public boolean loadData() {
+		return loadData(null);
+	}
 
-				List<String> ids = new ArrayList<String>();
-				for(Movie m : movies) {
-					ids.add(m.getId().toString());
+	/**
+	 * Loads the data like {@link #loadData()} and notifies the given listener about the progress.
+	 * 
+	 * @param listener
+	 *            the listener that is notified about the progress or null
+	 * @return true if the loading was successful, false otherwise
+	 */
+	public boolean loadData(LoadProgressListener listener) {
+		String path = MovieManagerUtil.getPathToMovieManagerDirectory();
+		File mainDir = new File(path);
+		if(!mainDir.exists()) {
+			return false;
+		} else {
+			waitForPendingWrite();
+			journalSuspensions++;
+			try {
+				List<Integer> generations = getSnapshotGenerations();
+				if(!generations.isEmpty()) {
+					loadSnapshot(generations, listener);
+				} else {
+					reportProgress(listener, "Migrating library", 0, 1);
+					loadLegacyData(path);
+					snapshotGeneration = -1;
+					snapshotLength = -1;
+					snapshotRewriteNeeded = true;
 				}
+				// The loaded data corresponds to the saved data
+				dirtyTracker.clear();
 
-				objectStream.writeObject(ids);
+				// Replay the modifications that have not been saved yet
+				reportProgress(listener, "Replaying unsaved changes", 0, 1);
+				replayJournals();
+				reportProgress(listener, "Replaying unsaved changes", 1, 1);
 
-				objectStream.close();
-				fileStream.close();
+				System.out.println("Loaded data from " + path);
+			} catch(IOException | ClassNotFoundException e) {
+				e.printStackTrace();
+			} finally {
+				journalSuspensions--;
 			}
-			{
-				FileOutputStream fileStream = new FileOutputStream(path + "performer_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-				ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
+			return true;
+		}
+	}
 
-				List<String> ids = new ArrayList<String>();
-				for(Performer p : performers) {
-					ids.add(p.getId().toString());
+	/**
+	 * <p>
+	 * Loads the movies and performers from the most recent of the given snapshot generations that can be read. If a snapshot file is damaged, e.g. because the disk has failed, the previous generation is
+	 * loaded instead and the snapshot is rewritten on the next save.
+	 * </p>
+	 * <p>
+	 * The records are decoded by a pool of worker threads. Only the insertion into the databases happens on the calling thread, since it requires the UI realm. The entities are inserted in batches, so that
+	 * the listeners of the databases are notified once per batch. The snapshot is memory-mapped, so the descriptions and biographies are not decoded until they are displayed, just like the images are not
+	 * loaded until they are displayed.
+	 * </p>
+	 * 
+	 * @param generations
+	 *            the generations of the existing snapshot files in ascending order
+	 * @param listener
+	 *            the listener that is notified about the progress or null
+	 * @throws IOException
+	 *             if none of the snapshot files can be read
+	 */
+	private void loadSnapshot(List<Integer> generations, LoadProgressListener listener) throws IOException {
+		ExecutorService loader = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Loader");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			reportProgress(listener, "Reading library", 0, 1);
+			SnapshotFile.Contents contents = null;
+			for(int i = generations.size() - 1; i >= 0 && contents == null; i--) {
+				File snapshot = getSnapshotFile(generations.get(i));
+				try {
+					contents = MAP_SNAPSHOT ? SnapshotFile.map(snapshot, loader) : SnapshotFile.read(snapshot, loader);
+					snapshotGeneration = generations.get(i);
+				} catch(IOException e) {
+					System.err.println("Cannot read snapshot " + snapshot + ", falling back to the previous generation");
+					e.printStackTrace();
 				}
-
-				objectStream.writeObject(ids);
-
-				objectStream.close();
-				fileStream.close();
 			}
-
-			// Then, save each movie and performer individually under its UUID
-			ImageLoader loader = new ImageLoader();
-			for(Movie m : movies) {
-				{
-					FileOutputStream fileStream = new FileOutputStream(path + "movie_" + m.getId().toString() + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-					ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
-
-					objectStream.writeObject(m);
-
-					objectStream.close();
-					fileStream.close();
+			if(contents == null) {
+				// Keep the most recent snapshot file when the data is saved, so it is not lost if it can be repaired
+				snapshotGeneration = generations.get(generations.size() - 1);
+				snapshotRewriteNeeded = true;
+				throw new IOException("None of the snapshot files can be read");
+			}
+			snapshotLength = contents.getLength();
+			snapshotBaseLength = contents.getBaseLength();
+			if(contents.getMapping() != null) {
+				mapping = new WeakReference<ByteBuffer>(contents.getMapping());
+				mappedGeneration = snapshotGeneration;
+			} else {
+				mappedGeneration = -1;
+			}
+			// Snapshots of older versions are rewritten in the current format, since delta segments are appended in the format of the snapshot. So is a snapshot that has been loaded instead of an unreadable one
+			snapshotRewriteNeeded = snapshotLength - snapshotBaseLength > snapshotBaseLength || contents.getVersion() < SnapshotFile.VERSION || snapshotGeneration != generations.get(generations.size() - 1);
+
+			// Snapshots of older versions refer to the image files of the legacy format. These are added to the image store in the background while the movies and performers are created
+			boolean migrateImages = contents.getVersion() < SnapshotFile.VERSION_IMAGE_HASHES;
+
+			// Create the movies and performers
+			int total = contents.getMovies().size();
+			List<Movie> createdMovies = new ArrayList<Movie>(total);
+			for(MovieRecord r : contents.getMovies()) {
+				Movie m = new Movie();
+				r.applyTo(m);
+				createdMovies.add(m);
+			}
+			List<Future<String>> movieImages = migrateImages ? importLegacyImages(loader, createdMovies) : null;
+			List<Movie> movieBatch = new ArrayList<Movie>(LOAD_BATCH_SIZE);
+			for(int i = 0; i < total; i++) {
+				Movie m = createdMovies.get(i);
+				m.setImageHash(migrateImages ? getResult(movieImages.get(i)) : contents.getMovies().get(i).getImageHash());
+				movieBatch.add(m);
+				if(movieBatch.size() == LOAD_BATCH_SIZE || i == total - 1) {
+					movies.addAll(movieBatch);
+					movieBatch.clear();
+					reportProgress(listener, "Loading movies", i + 1, total);
 				}
-				{
-					FileOutputStream fileStream = new FileOutputStream(path + "movie_" + m.getId().toString() + "_alternativeTitles" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-					ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
-
-					objectStream.writeObject(new ArrayList<String>(m.getAlternativeTitles()));
-
-					objectStream.close();
-					fileStream.close();
+			}
+			total = contents.getPerformers().size();
+			List<Performer> createdPerformers = new ArrayList<Performer>(total);
+			for(PerformerRecord r : contents.getPerformers()) {
+				Performer p = new Performer();
+				r.applyTo(p);
+				createdPerformers.add(p);
+			}
+			List<Future<String>> performerImages = migrateImages ? importLegacyImages(loader, createdPerformers) : null;
+			List<Performer> performerBatch = new ArrayList<Performer>(LOAD_BATCH_SIZE);
+			for(int i = 0; i < total; i++) {
+				Performer p = createdPerformers.get(i);
+				p.setImageHash(migrateImages ? getResult(performerImages.get(i)) : contents.getPerformers().get(i).getImageHash());
+				performerBatch.add(p);
+				if(performerBatch.size() == LOAD_BATCH_SIZE || i == total - 1) {
+					performers.addAll(performerBatch);
+					performerBatch.clear();
+					reportProgress(listener, "Loading performers", i + 1, total);
 				}
-				{
-					FileOutputStream fileStream = new FileOutputStream(path + "movie_" + m.getId().toString() + "_performers" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-					ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
+			}
 
-					List<String> ids = new ArrayList<String>();
-					for(Performer p : m.getPerformers()) {
-						ids.add(p.getId().toString());
+			// Associate the movies with their respective performers and vice-versa
+			reportProgress(listener, "Linking movies and performers", 0, 1);
+			for(MovieRecord r : contents.getMovies()) {
+				Movie m = movieIndex.get(r.getId());
+				for(UUID id : r.getPerformerIds()) {
+					Performer p = performerIndex.get(id);
+					if(p != null) {
+						m.linkPerformer(p);
+					}
+				}
+			}
+			for(PerformerRecord r : contents.getPerformers()) {
+				Performer p = performerIndex.get(r.getId());
+				for(UUID id : r.getMovieIds()) {
+					Movie m = movieIndex.get(id);
+					if(m != null) {
+						p.linkMovie(m);
 					}
+				}
+			}
+			reportProgress(listener, "Linking movies and performers", 1, 1);
+		} finally {
+			loader.shutdownNow();
+		}
+	}
 
-					objectStream.writeObject(ids);
+	/**
+	 * Notifies the given listener about the progress of loading the data.
+	 * 
+	 * @param listener
+	 *            the listener or null
+	 * @param task
+	 *            a short description of the current task
+	 * @param worked
+	 *            the amount of work of the current task that has been done
+	 * @param total
+	 *            the total amount of work of the current task
+	 */
+	private static void reportProgress(LoadProgressListener listener, String task, int worked, int total) {
+		if(listener != null) {
+			listener.loadProgress(task, worked, total);
+		}
+	}
 
-					objectStream.close();
-					fileStream.close();
+	/**
+	 * Adds the image files of the given movies or performers in the legacy format to the image store on the given executor.
+	 * 
+	 * @param executor
+	 *            the executor
+	 * @param objects
+	 *            the movies or performers
+	 * @return the hashes of the images, in the order of the movies or performers
+	 */
+	private List<Future<String>> importLegacyImages(ExecutorService executor, List<? extends AbstractModelObject> objects) {
+		List<Future<String>> hashes = new ArrayList<Future<String>>(objects.size());
+		for(final AbstractModelObject o : objects) {
+			hashes.add(executor.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					return importLegacyImage(o);
 				}
-				{
-					FileOutputStream fileStream = new FileOutputStream(path + "movie_" + m.getId().toString() + "_filmingLocations" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-					ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
+			}));
+		}
+		return hashes;
+	}
+
+	/**
+	 * Waits for the given result of a worker thread.
+	 * 
+	 * @param result
+	 *            the result
+	 * @return the value of the result or null if the worker thread has failed
+	 */
+	private static <T> T getResult(Future<T> result) {
+		try {
+			return result.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) {
+			e.getCause().printStackTrace();
+		}
+		return null;
+	}
 
-					objectStream.writeObject(new ArrayList<String>(m.getFilmingLocations()));
+	/**
+	 * Replays all existing journals in the order of their generations and opens the most recent one for appending further modifications.
+	 * 
+	 * @throws IOException
+	 *             if a journal cannot be read
+	 */
+	private void replayJournals() throws IOException {
+		List<Integer> generations = getJournalGenerations();
+		if(generations.isEmpty()) {
+			return;
+		}
 
-					objectStream.close();
-					fileStream.close();
+		Journal.Handler handler = new Journal.Handler() {
+			@Override
+			public void movieAdded(MovieRecord r) {
+				Movie m = movieIndex.get(r.getId());
+				if(m == null) {
+					m = new Movie();
+					r.applyTo(m);
+					m.setImageHash(r.getImageHash());
+					movies.add(m);
+				} else {
+					r.applyTo(m);
 				}
-				if(!m.getImage().equals(MovieManagerUIUtil.getUnknownImage())) {
-					loader.data = new ImageData[] { m.getImage().getImageData() };
-					loader.save(path + "images" + File.separator + "movie_" + m.getId().toString() + ".png", SWT.IMAGE_PNG);
+				for(UUID id : r.getPerformerIds()) {
+					Performer p = performerIndex.get(id);
+					if(p != null) {
+						m.linkPerformer(p);
+					}
 				}
 			}
-			for(Performer p : performers) {
-				{
-					FileOutputStream fileStream = new FileOutputStream(path + "performer_" + p.getId().toString() + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-					ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
-
-					objectStream.writeObject(p);
 
-					objectStream.close();
-					fileStream.close();
+			@Override
+			public void movieRemoved(UUID id) {
+				Movie m = movieIndex.get(id);
+				if(m != null) {
+					removeMovie(m);
 				}
-				{
-					FileOutputStream fileStream = new FileOutputStream(path + "performer_" + p.getId().toString() + "_alternateNames" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-					ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
+			}
 
-					objectStream.writeObject(new ArrayList<String>(p.getAlternateNames()));
+			@Override
+			public void performerAdded(PerformerRecord r) {
+				Performer p = performerIndex.get(r.getId());
+				if(p == null) {
+					p = new Performer();
+					r.applyTo(p);
+					p.setImageHash(r.getImageHash());
+					performers.add(p);
+				} else {
+					r.applyTo(p);
+				}
+				for(UUID id : r.getMovieIds()) {
+					Movie m = movieIndex.get(id);
+					if(m != null) {
+						p.linkMovie(m);
+					}
+				}
+			}
 
-					objectStream.close();
-					fileStream.close();
+			@Override
+			public void performerRemoved(UUID id) {
+				Performer p = performerIndex.get(id);
+				if(p != null) {
+					removePerformer(p);
 				}
-				{
-					FileOutputStream fileStream = new FileOutputStream(path + "performer_" + p.getId().toString() + "_movies" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-					ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
+			}
 
-					List<String> ids = new ArrayList<String>();
-					for(Movie m : p.getMovies()) {
-						ids.add(m.getId().toString());
+			@Override
+			public void propertyChanged(UUID id, String property, Object value) {
+				AbstractModelObject o = movieIndex.get(id) != null ? movieIndex.get(id) : performerIndex.get(id);
+				if(o != null && property.equals("imageHash")) {
+					// Setting the hash fires no property change, so the record has to be marked as modified explicitly for the next compaction
+					o.setImageHash((String) value);
+					if(o instanceof Movie) {
+						dirtyTracker.movieChanged((Movie) o);
+					} else {
+						dirtyTracker.performerChanged((Performer) o);
 					}
+				} else if(o != null) {
+					try {
+						new PropertyDescriptor(property, o.getClass()).getWriteMethod().invoke(o, value);
+					} catch(IntrospectionException | ReflectiveOperationException | IllegalArgumentException e) {
+						e.printStackTrace();
+					}
+				}
+			}
 
-					objectStream.writeObject(ids);
-
-					objectStream.close();
-					fileStream.close();
+			@Override
+			public void listChanged(UUID id, String property, List<String> values) {
+				Movie m = movieIndex.get(id);
+				Performer p = performerIndex.get(id);
+				List<String> list = null;
+				switch(property) {
+				case "alternativeTitles":
+					list = m != null ? m.getAlternativeTitles() : null;
+					break;
+				case "filmingLocations":
+					list = m != null ? m.getFilmingLocations() : null;
+					break;
+				case "alternateNames":
+					list = p != null ? p.getAlternateNames() : null;
+					break;
+				default:
+					// Lists unknown to this version are skipped
+					break;
 				}
-				if(!p.getImage().equals(MovieManagerUIUtil.getUnknownImage())) {
-					loader.data = new ImageData[] { p.getImage().getImageData() };
-					loader.save(path + "images" + File.separator + "performer_" + p.getId().toString() + ".png", SWT.IMAGE_PNG);
+				if(list != null) {
+					list.clear();
+					list.addAll(values);
 				}
+			}
 
+			@Override
+			public void linkChanged(UUID movieId, UUID performerId, boolean linked) {
+				Movie m = movieIndex.get(movieId);
+				Performer p = performerIndex.get(performerId);
+				if(m != null && p != null) {
+					if(linked) {
+						m.linkPerformer(p);
+					} else {
+						m.unlinkPerformer(p);
+					}
+				}
 			}
+		};
 
-			this.isDirty = false;
-			System.out.println("Saved data to " + path);
-		} catch(IOException | SWTException e) {
-			e.printStackTrace();
+		long length = 0;
+		for(int generation : generations) {
+			length = Journal.replay(getJournalFile(generation), handler);
 		}
+
+		// Continue appending to the most recent journal
+		closeJournal();
+		journalGeneration = generations.get(generations.size() - 1);
+		journal = new Journal(getJournalFile(journalGeneration), length);
 	}
 
 	/**
-	 * Loads the data from the folder <i>.moviemanager</i> in the current user's home folder, if it exists.
+	 * Deletes the files of the legacy format from the given movie manager directory. The images of the legacy format have been added to the image store when the data was loaded.
 	 * 
-	 * @return true if the loading was successful, false otherwise
+	 * @param mainDir
+	 *            the movie manager directory
 	 */
-	public boolean loadData() {
-		String path = MovieManagerUtil.getPathToMovieManagerDirectory();
-		File mainDir = new File(path);
-		if(!mainDir.exists()) {
-			return false;
-		} else {
-			try {
-				List<String> movie_IDs = new ArrayList<String>();
-				List<String> performer_IDs = new ArrayList<String>();
-				// Load the movie and performer IDs
-				{
-					if(MovieManagerUtil.fileExists(path + "movie_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT)) {
-						FileInputStream fileStream = new FileInputStream(path + "movie_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
-
-						movie_IDs = (List<String>) objectStream.readObject();
-
-						objectStream.close();
-						fileStream.close();
-					}
+	private void deleteLegacyData(File mainDir) {
+		for(File f : mainDir.listFiles()) {
+			String name = f.getName();
+			if(f.isFile() && name.endsWith(MovieManagerUtil.MOVIEMANAGER_FILE_EXT) && (name.startsWith("movie_") || name.startsWith("performer_"))) {
+				f.delete();
+			}
+		}
+		File[] imageFiles = new File(mainDir, "images").listFiles();
+		if(imageFiles != null) {
+			for(File f : imageFiles) {
+				String name = f.getName();
+				if(f.isFile() && name.endsWith(".png") && (name.startsWith("movie_") || name.startsWith("performer_"))) {
+					f.delete();
 				}
-				{
-					if(MovieManagerUtil.fileExists(path + "performer_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT)) {
-						FileInputStream fileStream = new FileInputStream(path + "performer_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+			}
+		}
+	}
 
-						performer_IDs = (List<String>) objectStream.readObject();
+	/**
+	 * Loads the data from the files of the legacy format, which stores each movie and performer in several individual files.
+	 * 
+	 * @param path
+	 *            the path to the movie manager directory
+	 * @throws IOException
+	 *             if a file cannot be read
+	 * @throws ClassNotFoundException
+	 *             if a file does not contain the expected objects
+	 */
+	private void loadLegacyData(String path) throws IOException, ClassNotFoundException {
+		List<String> movie_IDs = new ArrayList<String>();
+		List<String> performer_IDs = new ArrayList<String>();
+		// Load the movie and performer IDs
+		{
+			if(MovieManagerUtil.fileExists(path + "movie_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT)) {
+				FileInputStream fileStream = new FileInputStream(path + "movie_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						objectStream.close();
-						fileStream.close();
-					}
-				}
+				movie_IDs = (List<String>) objectStream.readObject();
 
-				// Load the movies and performers
-				for(String id : movie_IDs) {
-					Movie m = null;
-					{
-						FileInputStream fileStream = new FileInputStream(path + "movie_" + id + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+				objectStream.close();
+				fileStream.close();
+			}
+		}
+		{
+			if(MovieManagerUtil.fileExists(path + "performer_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT)) {
+				FileInputStream fileStream = new FileInputStream(path + "performer_IDs" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						m = (Movie) objectStream.readObject();
+				performer_IDs = (List<String>) objectStream.readObject();
 
-						m.setAlternativeTitles(new WritableList<String>(MovieManagerUIUtil.getDefaultRealm()));
-						m.setFilmingLocations(new WritableList<String>(MovieManagerUIUtil.getDefaultRealm()));
-						m.setPerformers(new WritableList<Performer>(MovieManagerUIUtil.getDefaultRealm()));
+				objectStream.close();
+				fileStream.close();
+			}
+		}
 
-						m.setImage(MovieManagerUIUtil.getUnknownImage());
+		// Load the movies and performers
+		for(String id : movie_IDs) {
+			Movie m = null;
+			{
+				FileInputStream fileStream = new FileInputStream(path + "movie_" + id + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						m.addMoviePropertyChangeListener();
+				m = (Movie) objectStream.readObject();
 
-						objectStream.close();
-						fileStream.close();
-					}
-					{
-						FileInputStream fileStream = new FileInputStream(path + "movie_" + m.getId().toString() + "_alternativeTitles" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+				m.setAlternativeTitles(new WritableList<String>(MovieManagerUIUtil.getDefaultRealm()));
+				m.setFilmingLocations(new WritableList<String>(MovieManagerUIUtil.getDefaultRealm()));
+				m.setPerformers(new WritableList<Performer>(MovieManagerUIUtil.getDefaultRealm()));
 
-						m.getAlternativeTitles().addAll((List<String>) objectStream.readObject());
+				m.addMoviePropertyChangeListener();
 
-						objectStream.close();
-						fileStream.close();
-					}
-					{
-						FileInputStream fileStream = new FileInputStream(path + "movie_" + m.getId().toString() + "_filmingLocations" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+				objectStream.close();
+				fileStream.close();
+			}
+			{
+				FileInputStream fileStream = new FileInputStream(path + "movie_" + m.getId().toString() + "_alternativeTitles" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						m.getFilmingLocations().addAll((List<String>) objectStream.readObject());
+				m.getAlternativeTitles().addAll((List<String>) objectStream.readObject());
 
-						objectStream.close();
-						fileStream.close();
-					}
-					String imageDir = path + "images" + File.separator + "movie_" + m.getId().toString() + ".png";
-					File imageDirF = new File(imageDir);
-					if(imageDirF.exists()) {
-						m.setImage(new Image(Display.getDefault(), imageDir));
-					}
+				objectStream.close();
+				fileStream.close();
+			}
+			{
+				FileInputStream fileStream = new FileInputStream(path + "movie_" + m.getId().toString() + "_filmingLocations" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-					movies.add(m);
-				}
-				for(String id : performer_IDs) {
-					Performer p = null;
-					{
-						FileInputStream fileStream = new FileInputStream(path + "performer_" + id + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+				m.getFilmingLocations().addAll((List<String>) objectStream.readObject());
 
-						p = (Performer) objectStream.readObject();
+				objectStream.close();
+				fileStream.close();
+			}
+			m.setImageHash(importLegacyImage(m));
 
-						p.setAlternateNames(new WritableList<String>(MovieManagerUIUtil.getDefaultRealm()));
-						p.setMovies(new WritableList<Movie>(MovieManagerUIUtil.getDefaultRealm()));
+			movies.add(m);
+		}
+		for(String id : performer_IDs) {
+			Performer p = null;
+			{
+				FileInputStream fileStream = new FileInputStream(path + "performer_" + id + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						p.setImage(MovieManagerUIUtil.getUnknownImage());
+				p = (Performer) objectStream.readObject();
 
-						p.addPerformerPropertyChangeListener();
+				p.setAlternateNames(new WritableList<String>(MovieManagerUIUtil.getDefaultRealm()));
+				p.setMovies(new WritableList<Movie>(MovieManagerUIUtil.getDefaultRealm()));
 
-						objectStream.close();
-						fileStream.close();
-					}
-					{
-						FileInputStream fileStream = new FileInputStream(path + "performer_" + p.getId().toString() + "_alternateNames" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+				p.addPerformerPropertyChangeListener();
 
-						p.getAlternateNames().addAll((List<String>) objectStream.readObject());
+				objectStream.close();
+				fileStream.close();
+			}
+			{
+				FileInputStream fileStream = new FileInputStream(path + "performer_" + p.getId().toString() + "_alternateNames" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						objectStream.close();
-						fileStream.close();
-					}
-					String imageDir = path + "images" + File.separator + "performer_" + p.getId().toString() + ".png";
-					File imageDirF = new File(imageDir);
-					if(imageDirF.exists()) {
-						p.setImage(new Image(Display.getDefault(), imageDir));
-					}
+				p.getAlternateNames().addAll((List<String>) objectStream.readObject());
 
-					performers.add(p);
-				}
+				objectStream.close();
+				fileStream.close();
+			}
+			p.setImageHash(importLegacyImage(p));
 
-				// Associate the movies with their respective performers and vice-versa
-				for(Movie m : movies) {
-					{
-						FileInputStream fileStream = new FileInputStream(path + "movie_" + m.getId().toString() + "_performers" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+			performers.add(p);
+		}
 
-						for(String id : (List<String>) objectStream.readObject()) {
-							m.linkPerformer(getPerformerById(id));
-						}
+		// Associate the movies with their respective performers and vice-versa
+		for(Movie m : movies) {
+			{
+				FileInputStream fileStream = new FileInputStream(path + "movie_" + m.getId().toString() + "_performers" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						objectStream.close();
-						fileStream.close();
-					}
+				for(String id : (List<String>) objectStream.readObject()) {
+					m.linkPerformer(getPerformerById(UUID.fromString(id)));
 				}
-				for(Performer p : performers) {
-					{
-						FileInputStream fileStream = new FileInputStream(path + "performer_" + p.getId().toString() + "_movies" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
-						ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						for(String id : (List<String>) objectStream.readObject()) {
-							p.linkMovie(getMovieById(id));
-						}
+				objectStream.close();
+				fileStream.close();
+			}
+		}
+		for(Performer p : performers) {
+			{
+				FileInputStream fileStream = new FileInputStream(path + "performer_" + p.getId().toString() + "_movies" + MovieManagerUtil.MOVIEMANAGER_FILE_EXT);
+				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
 
-						objectStream.close();
-						fileStream.close();
-					}
+				for(String id : (List<String>) objectStream.readObject()) {
+					p.linkMovie(getMovieById(UUID.fromString(id)));
 				}
 
-				System.out.println("Loaded data from " + path);
-			} catch(IOException | ClassNotFoundException e) {
-				e.printStackTrace();
+				objectStream.close();
+				fileStream.close();
 			}
-			return true;
 		}
 	}
 
 	/**
-	 * Gets the movie with the given UUID from the movie database.
+	 * Exports the movie and performer databases into the given file, which is encoded in UTF-8. If a view of the databases has been published, e.g. for the query server, the records are written from an updated
+	 * view, which shares the records of unmodified movies and performers with the previous one. Otherwise, the records are written while the databases are iterated, so the export needs constant memory. Must be
+	 * called on the UI thread.
 	 * 
-	 * @param id
-	 *            the UUID
-	 * @return the movie with the given UUID or null if no such movie exists.
+	 * @param file
+	 *            the file
+	 * @param format
+	 *            the format of the file
+	 * @return the number of exported movies and performers
+	 * @throws IOException
+	 *             if the file cannot be written
 	 */
-	private Movie getMovieById(String id) {
-		for(Movie m : movies) {
-			if(m.getId().toString().equals(id)) {
-				return m;
-			}
+	public int exportLibrary(File file, ExchangeFormat format) throws IOException {
+		// Capturing a first view would copy the whole library, while updating a published one only copies the modified records
+		LibraryView view = libraryView != null ? publishLibraryView() : null;
+		try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			LibraryExporter exporter = new LibraryExporter(out, format);
+			return view != null ? exporter.export(view) : exporter.export(movies, performers);
 		}
-		return null;
 	}
 
 	/**
-	 * Gets the performer with the given UUID from the performer database.
+	 * Imports movies and performers from the given file, which is encoded in UTF-8. The file is parsed on a background thread, and the records are added to the databases in batches on the UI thread. Movies and
+	 * performers that already exist are updated. The modifications are not journaled while the import is running, and the databases are saved once after the last batch. Must be called on the UI thread.
 	 * 
-	 * @param id
-	 *            the UUID
-	 * @return the performer with the given UUID or null if no such performer exists
+	 * @param file
+	 *            the file
+	 * @param format
+	 *            the format of the file
+	 * @return the result of the import
 	 */
-	private Performer getPerformerById(String id) {
-		for(Performer p : performers) {
-			if(p.getId().toString().equals(id)) {
-				return p;
+	public Future<LibraryImporter.Result> importLibrary(File file, ExchangeFormat format) {
+		if(Display.getCurrent() == null) {
+			throw new IllegalStateException("Importing has to be started on the UI thread");
+		}
+		return createImporter(getRealmExecutor()).start(file, format);
+	}
+
+	/**
+	 * Creates an importer that adds or updates the imported movies and performers in the databases. The batches are applied by the given executor, which has to run them on the thread of the realm of the
+	 * databases. Journaling and the automatic save are suspended while the importer runs, since every imported record would otherwise be journaled in full and the journal would be compacted repeatedly. The
+	 * databases are saved once the import has finished instead, also if it has failed or has been cancelled.
+	 * 
+	 * @param realmExecutor
+	 *            the executor of the realm, e.g. one that runs the batches directly if the importer is used on the thread of the realm
+	 * @return the importer
+	 */
+	public LibraryImporter createImporter(Executor realmExecutor) {
+		return new LibraryImporter(new LibraryImporter.Handler() {
+			@Override
+			public void importStarted() {
+				waitForPendingWrite();
+				journalSuspensions++;
+			}
+
+			@Override
+			public int importBatch(List<MovieRecord> movies, List<PerformerRecord> performers) {
+				return importRecords(movies, performers);
+			}
+
+			@Override
+			public void importFinished() {
+				journalSuspensions--;
+				if(isDirty()) {
+					compact();
+				}
+			}
+		}, realmExecutor, LibraryImporter.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Adds or updates the movies and performers of the given records and links them to each other. The links are resolved through the UUID indices, so a link is restored by whichever of the two records is
+	 * imported last.
+	 * 
+	 * @param movieRecords
+	 *            the movie records
+	 * @param performerRecords
+	 *            the performer records
+	 * @return the number of performers that have been skipped, since none of their movies exists
+	 */
+	private int importRecords(final List<MovieRecord> movieRecords, final List<PerformerRecord> performerRecords) {
+		final int[] skipped = new int[1];
+		runBatch(new Runnable() {
+			@Override
+			public void run() {
+				skipped[0] = importRecordsInBatch(movieRecords, performerRecords);
+			}
+		});
+		return skipped[0];
+	}
+
+	private int importRecordsInBatch(List<MovieRecord> movieRecords, List<PerformerRecord> performerRecords) {
+		// New movies and performers are added at once after all records of their kind have been applied
+		Map<UUID, Movie> newMovies = new LinkedHashMap<UUID, Movie>();
+		for(MovieRecord r : movieRecords) {
+			Movie m = movieIndex.get(r.getId());
+			if(m == null) {
+				m = newMovies.get(r.getId());
+			}
+			if(m == null) {
+				m = new Movie();
+				r.applyTo(m);
+				newMovies.put(r.getId(), m);
+			} else {
+				r.applyTo(m);
+			}
+			for(UUID id : r.getPerformerIds()) {
+				Performer p = performerIndex.get(id);
+				if(p != null) {
+					m.linkPerformer(p);
+				}
 			}
 		}
-		return null;
+		addMovies(newMovies.values());
+		int skipped = 0;
+		Map<UUID, Performer> newPerformers = new LinkedHashMap<UUID, Performer>();
+		for(PerformerRecord r : performerRecords) {
+			Performer p = performerIndex.get(r.getId());
+			if(p == null) {
+				p = newPerformers.get(r.getId());
+			}
+			boolean exists = p != null;
+			if(!exists) {
+				p = new Performer();
+			}
+			r.applyTo(p);
+			for(UUID id : r.getMovieIds()) {
+				Movie m = movieIndex.get(id);
+				if(m != null) {
+					p.linkMovie(m);
+				}
+			}
+			if(!exists) {
+				if(p.getMovies().isEmpty()) {
+					skipped++;
+				} else {
+					newPerformers.put(r.getId(), p);
+				}
+			}
+		}
+		addPerformers(newPerformers.values(), dialog != null);
+		return skipped;
 	}
 
 	/**
@@ -628,6 +2460,6 @@ public class MovieManager {
 	 * @return true if the movie manager's data has been modifed, false otherwise
 	 */
 	public boolean isDirty() {
-		return isDirty;
+		return dirtyTracker.isDirty();
 	}
 }
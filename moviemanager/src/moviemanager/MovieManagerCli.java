@@ -0,0 +1,341 @@
+package moviemanager;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.w3c.dom.NamedNodeMap;
+
+import moviemanager.data.Movie;
+import moviemanager.data.Performer;
+import moviemanager.persistence.ExchangeFormat;
+import moviemanager.persistence.LibraryImporter;
+import moviemanager.server.QueryServer;
+import moviemanager.util.MovieManagerUIUtil;
+import moviemanager.util.MovieManagerUtil;
+import moviemanager.util.MovieManagerUtil.BadConnectionException;
+import moviemanager.util.MovieManagerUtil.MovieManagerException;
+import moviemanager.util.OMDBAPIFetcher;
+
+/**
+ * <p>
+ * Command-line entry point that runs the Movie Manager without a display. The data is loaded, transformed by the stages given as arguments and saved, and the time taken by each stage is printed.
+ * </p>
+ * <p>
+ * Images are only decoded when they are displayed, so no stage needs a display. All stages run on the main thread, which owns the realm of the databases, and the runnables queued on the realm are run in
+ * between the stages.
+ * </p>
+ *
+ */
+public class MovieManagerCli {
+
+	/** Exit code if all stages have succeeded. **/
+	public static final int EXIT_SUCCESS = 0;
+	/** Exit code if a stage has failed. **/
+	public static final int EXIT_FAILURE = 1;
+	/** Exit code if the arguments are invalid. **/
+	public static final int EXIT_USAGE = 2;
+
+	/** Runs the batches of an import directly on the main thread. **/
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/**
+	 * A stage of the pipeline.
+	 *
+	 */
+	private interface Stage {
+		/**
+		 * Runs the stage.
+		 *
+		 * @param manager
+		 *            the movie manager
+		 * @return a short summary of the result, which is printed next to the timing
+		 * @throws Exception
+		 *             if the stage fails
+		 */
+		String run(MovieManager manager) throws Exception;
+	}
+
+	/** Stream the timings and summaries are printed to. **/
+	private final PrintStream out;
+	/** Names of the stages in the order they are run. **/
+	private final List<String> names = new ArrayList<String>();
+	/** The stages in the order they are run. **/
+	private final List<Stage> stages = new ArrayList<Stage>();
+
+	private MovieManagerCli(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Runs the stages given as arguments on the data of the Movie Manager, e.g. <code>import library.csv refresh-imdb save</code>.
+	 *
+	 * @param args
+	 *            the stages and their arguments
+	 */
+	public static void main(String[] args) {
+		System.exit(run(args, System.out));
+	}
+
+	/**
+	 * Parses the given stages and runs them after loading the data. Stops at the first stage that fails.
+	 *
+	 * @param args
+	 *            the stages and their arguments
+	 * @param out
+	 *            the stream the timings are printed to
+	 * @return the exit code
+	 */
+	public static int run(String[] args, PrintStream out) {
+		MovieManagerCli cli = new MovieManagerCli(out);
+		try {
+			cli.parse(args);
+		} catch(IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printUsage(System.err);
+			return EXIT_USAGE;
+		}
+		return cli.runStages();
+	}
+
+	private void parse(String[] args) {
+		if(args.length == 0) {
+			throw new IllegalArgumentException("No stage given");
+		}
+		for(int i = 0; i < args.length; i++) {
+			String name = args[i];
+			switch(name) {
+			case "import":
+				final File importFile = getFile(args, ++i, name);
+				final ExchangeFormat importFormat = ExchangeFormat.forFile(importFile);
+				add(name, new Stage() {
+					@Override
+					public String run(MovieManager manager) throws IOException {
+						return importLibrary(manager, importFile, importFormat);
+					}
+				});
+				break;
+			case "export":
+				final File exportFile = getFile(args, ++i, name);
+				final ExchangeFormat exportFormat = ExchangeFormat.forFile(exportFile);
+				add(name, new Stage() {
+					@Override
+					public String run(MovieManager manager) throws IOException {
+						return manager.exportLibrary(exportFile, exportFormat) + " records";
+					}
+				});
+				break;
+			case "refresh-imdb":
+				add(name, new Stage() {
+					@Override
+					public String run(MovieManager manager) {
+						return refreshFromIMDb(manager);
+					}
+				});
+				break;
+			case "stats":
+				add(name, new Stage() {
+					@Override
+					public String run(MovieManager manager) {
+						return getStatistics(manager);
+					}
+				});
+				break;
+			case "serve":
+				final int port = getPort(args, ++i, name);
+				add(name, new Stage() {
+					@Override
+					public String run(MovieManager manager) throws IOException {
+						return serve(manager, port);
+					}
+				});
+				break;
+			case "save":
+				add(name, new Stage() {
+					@Override
+					public String run(MovieManager manager) {
+						manager.saveData();
+						return manager.getSaveMetrics().getLastBytesWritten() + " bytes";
+					}
+				});
+				break;
+			case "compact":
+				add(name, new Stage() {
+					@Override
+					public String run(MovieManager manager) {
+						manager.rewriteSnapshot();
+						return manager.getSaveMetrics().getLastBytesWritten() + " bytes";
+					}
+				});
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown stage " + name);
+			}
+		}
+	}
+
+	private void add(String name, Stage stage) {
+		names.add(name);
+		stages.add(stage);
+	}
+
+	private int runStages() {
+		long start = System.nanoTime();
+		MovieManager manager = MovieManager.getInstance();
+		printTiming("load", start, manager.getMovies().size() + " movies, " + manager.getPerformers().size() + " performers");
+		try {
+			for(int i = 0; i < stages.size(); i++) {
+				start = System.nanoTime();
+				String summary;
+				try {
+					summary = stages.get(i).run(manager);
+				} catch(Exception e) {
+					System.err.println("Stage " + names.get(i) + " failed: " + e.getMessage());
+					e.printStackTrace();
+					return EXIT_FAILURE;
+				}
+				printTiming(names.get(i), start, summary);
+				// Without a display, the runnables queued on the realm by a stage are run in between the stages
+				MovieManagerUIUtil.getDefaultRealm().runPending();
+			}
+			if(manager.isDirty()) {
+				// The modifications are journaled, so they are not lost, but they are only folded into the snapshot by the next save
+				out.println("Modifications have not been saved, add the save stage to write them into the snapshot");
+			}
+			return EXIT_SUCCESS;
+		} finally {
+			start = System.nanoTime();
+			manager.close();
+			printTiming("close", start, null);
+		}
+	}
+
+	private void printTiming(String name, long startNanos, String summary) {
+		long millis = (System.nanoTime() - startNanos) / 1000000;
+		out.println(String.format("%-14s %8d ms%s", name, millis, summary == null ? "" : "   " + summary));
+	}
+
+	private static String importLibrary(MovieManager manager, File file, ExchangeFormat format) throws IOException {
+		LibraryImporter.Result result;
+		try(Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			result = manager.createImporter(DIRECT_EXECUTOR).importFrom(in, format);
+		}
+		return result.getMovieCount() + " movies, " + result.getPerformerCount() + " performers, " + result.getSkippedCount() + " skipped";
+	}
+
+	/**
+	 * Updates all movies that have an IMDb ID with the details provided by the OMDb API and links their actors, creating performers that do not exist yet. Movies whose details cannot be fetched are skipped.
+	 */
+	private static String refreshFromIMDb(MovieManager manager) {
+		OMDBAPIFetcher fetcher = new OMDBAPIFetcher();
+		int updated = 0;
+		int failed = 0;
+		// Iterate over a copy, since movies may be linked while iterating
+		for(Movie m : new ArrayList<Movie>(manager.getMovies())) {
+			if(m.getImdbID() == null || m.getImdbID().isEmpty()) {
+				continue;
+			}
+			NamedNodeMap details;
+			try {
+				details = fetcher.FetchMovieDetailsByID(m.getImdbID());
+			} catch(BadConnectionException | MovieManagerException e) {
+				details = null;
+			}
+			if(details == null) {
+				failed++;
+				continue;
+			}
+			for(String actor : MovieManagerUtil.applyOMDbData(m, details)) {
+				Performer p = manager.getPerformer(actor);
+				if(p == null) {
+					p = new Performer();
+					p.setFirstName(actor.substring(0, actor.lastIndexOf(' ') + 1).trim());
+					p.setLastName(actor.substring(actor.lastIndexOf(' ') + 1));
+					p.linkMovie(m);
+					manager.addPerformer(p, false);
+				} else {
+					p.linkMovie(m);
+				}
+			}
+			updated++;
+		}
+		return updated + " updated, " + failed + " failed";
+	}
+
+	private static String getStatistics(MovieManager manager) {
+		int lent = 0;
+		int watched = 0;
+		long ratingSum = 0;
+		for(Movie m : manager.getMovies()) {
+			if(m.getReturnDate() != null) {
+				lent++;
+			}
+			if(m.getWatchDate() != null) {
+				watched++;
+			}
+			ratingSum += m.getRating();
+		}
+		int count = manager.getMovies().size();
+		return String.format("%d movies (%d watched, %d lent), %d performers, average rating %.1f", count, watched, lent, manager.getPerformers().size(), count == 0 ? 0.0 : (double) ratingSum / count);
+	}
+
+	/**
+	 * Answers queries until standard input is closed. No stage modifies the data meanwhile, so the view the server answers from stays up to date.
+	 */
+	private String serve(MovieManager manager, int port) throws IOException {
+		QueryServer server = manager.startQueryServer(port);
+		out.println("Query server listening on port " + server.getPort() + ", close standard input to stop");
+		try {
+			while(System.in.read() != -1) {
+				// Wait for the end of the input
+			}
+		} finally {
+			manager.stopQueryServer();
+		}
+		return "port " + server.getPort();
+	}
+
+	private static int getPort(String[] args, int index, String stage) {
+		if(index >= args.length) {
+			throw new IllegalArgumentException("The stage " + stage + " needs a port");
+		}
+		try {
+			return Integer.parseInt(args[index]);
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid port " + args[index]);
+		}
+	}
+
+	private static File getFile(String[] args, int index, String stage) {
+		if(index >= args.length) {
+			throw new IllegalArgumentException("The stage " + stage + " needs a file");
+		}
+		return new File(args[index]);
+	}
+
+	private static void printUsage(PrintStream out) {
+		out.println("Usage: MovieManagerCli <stage> [<stage> ...]");
+		out.println("Stages are run in the given order after the data has been loaded:");
+		out.println("  import <file>   imports movies and performers from a .jsonl or .csv file");
+		out.println("  export <file>   exports all movies and performers into a .jsonl or .csv file");
+		out.println("  refresh-imdb    updates all movies with an IMDb ID from the OMDb API");
+		out.println("  stats           prints statistics about the library");
+		out.println("  serve <port>    answers queries on the loopback interface until standard input is closed");
+		out.println("  save            saves the modifications into the snapshot");
+		out.println("  compact         rewrites the snapshot as a new generation");
+		out.println("The data is read from the Movie Manager directory in the home directory, which can be changed with -Duser.home=<dir>.");
+	}
+}
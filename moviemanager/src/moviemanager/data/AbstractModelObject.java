@@ -7,6 +7,8 @@ import java.util.UUID;
 
 import org.eclipse.swt.graphics.Image;
 
+import moviemanager.persistence.ImageStore;
+import moviemanager.util.ImageCache;
 import moviemanager.util.MovieManagerUIUtil;
 
 /**
@@ -20,12 +22,15 @@ public abstract class AbstractModelObject implements Serializable {
 	/** Internal identifier of the object. Used for persistence. **/
 	protected UUID id;
 
-	/** Full size image of the object. **/
+	/** Full size image of the object that has been set explicitly. Null if the object has the default image or its image is loaded on demand. **/
 	protected transient Image image;
 
-	/** Thumbnail-sized version of the object's image. **/
+	/** Thumbnail-sized version of the object's explicitly set image. **/
 	protected transient Image thumbnailImage;
 
+	/** Hash of the object's image in the image store or null if the object has the default image. If no image has been set explicitly, the image is loaded on demand from the image store. **/
+	protected transient String imageHash;
+
 	/** IMDB ID. **/
 	protected String imdbID;
 
@@ -66,12 +71,23 @@ public abstract class AbstractModelObject implements Serializable {
 	}
 
 	/**
-	 * Gets the image.
+	 * Gets the image. If the image is loaded on demand, it is loaded into the {@link ImageCache} the first time it is requested. Note that such an image is disposed when it is evicted from the cache, so widgets
+	 * that keep displaying it have to hold it through an {@link moviemanager.util.ImageHolder}.
 	 * 
 	 * @return the image
 	 */
 	public Image getImage() {
-		return image;
+		if(image != null) {
+			return image;
+		}
+		if(imageHash != null) {
+			Image cached = ImageCache.getInstance().getImage(id, imageHash);
+			if(cached != null) {
+				return cached;
+			}
+			// The image is missing from the image store or cannot be decoded. The hash is kept, so the image is neither dropped from the saved data nor removed from the image store
+		}
+		return MovieManagerUIUtil.getUnknownImage();
 	}
 
 	/**
@@ -82,33 +98,89 @@ public abstract class AbstractModelObject implements Serializable {
 	 */
 	public void setImage(Image image) {
 		Image oldValue = this.image;
+		Image oldThumbnailValue = this.thumbnailImage;
 		// If the new image is not the default image, we need to resize it first. This will create a new instance of the new image, so the image instance given as the argument needs to be disposed
-		if(image != MovieManagerUIUtil.getUnknownImage()) {
+		if(image != null && image != MovieManagerUIUtil.getUnknownImage()) {
 			this.image = MovieManagerUIUtil.resize(image, MovieManagerUIUtil.FULL_IMAGE_WIDTH, MovieManagerUIUtil.FULL_IMAGE_HEIGHT);
 			image.dispose();
+			this.thumbnailImage = MovieManagerUIUtil.resize(this.image, MovieManagerUIUtil.THUMBNAIL_IMAGE_WIDTH, MovieManagerUIUtil.THUMBNAIL_IMAGE_HEIGHT);
 		} else {
-			this.image = image;
+			this.image = null;
+			this.thumbnailImage = null;
+		}
+		// The image is no longer loaded on demand. The hash of the new image is calculated when it is needed
+		if(isImageLoadedOnDemand()) {
+			ImageCache.getInstance().remove(id);
 		}
-		firePropertyChange("image", oldValue, this.image);
-		// Dispose the old image if it was not the default image
-		if(oldValue != null && oldValue != MovieManagerUIUtil.getUnknownImage()) {
+		imageHash = null;
+		firePropertyChange("image", oldValue, getImage());
+		// Dispose the old images, which have been set explicitly
+		if(oldValue != null) {
 			oldValue.dispose();
 		}
-		// Dispose the old thumbnail image if it was not a thumbnail of the default image
-		if(this.thumbnailImage != null && this.thumbnailImage != MovieManagerUIUtil.getUnknownImageThumbnail()) {
-			this.thumbnailImage.dispose();
+		if(oldThumbnailValue != null) {
+			oldThumbnailValue.dispose();
 		}
-		// Create a new thumbnail image
-		this.thumbnailImage = MovieManagerUIUtil.resize(this.image, MovieManagerUIUtil.THUMBNAIL_IMAGE_WIDTH, MovieManagerUIUtil.THUMBNAIL_IMAGE_HEIGHT);
 	}
 
 	/**
-	 * Gets the thumbnail image.
+	 * Gets the thumbnail image. If the image is loaded on demand, the thumbnail is created and put into the {@link ImageCache} the first time it is requested. Like the full-sized image, it has to be held by the widgets that keep displaying it.
 	 * 
 	 * @return the thumbnail image
 	 */
 	public Image getThumbnailImage() {
-		return thumbnailImage;
+		if(thumbnailImage != null) {
+			return thumbnailImage;
+		}
+		if(imageHash != null) {
+			Image cached = ImageCache.getInstance().getThumbnailImage(id, imageHash);
+			if(cached != null) {
+				return cached;
+			}
+		}
+		return MovieManagerUIUtil.getUnknownImageThumbnail();
+	}
+
+	/**
+	 * Gets the hash of the image in the image store. If the image has been set explicitly, the hash is calculated from its pixels the first time it is requested.
+	 * 
+	 * @return the hash of the image or null if the object has the default image
+	 */
+	public String getImageHash() {
+		if(imageHash == null && image != null) {
+			imageHash = ImageStore.hash(image.getImageData());
+		}
+		return imageHash;
+	}
+
+	/**
+	 * Sets the hash of the image in the image store, replacing any explicitly set image. The image is not loaded until it is requested. Used when loading the databases, so no property change is fired.
+	 * 
+	 * @param imageHash
+	 *            the hash of the image or null for the default image
+	 */
+	public void setImageHash(String imageHash) {
+		if(this.image != null) {
+			this.image.dispose();
+			this.image = null;
+		}
+		if(this.thumbnailImage != null) {
+			this.thumbnailImage.dispose();
+			this.thumbnailImage = null;
+		}
+		if(this.imageHash != null) {
+			ImageCache.getInstance().remove(id);
+		}
+		this.imageHash = imageHash;
+	}
+
+	/**
+	 * Checks whether the image is loaded on demand from the image store, i.e. it has not been set explicitly.
+	 * 
+	 * @return true if the image is loaded on demand, false if it has been set explicitly or the object has the default image
+	 */
+	public boolean isImageLoadedOnDemand() {
+		return image == null && imageHash != null;
 	}
 
 	/**
@@ -5,6 +5,7 @@ import java.beans.PropertyChangeListener;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import org.eclipse.core.databinding.observable.list.IObservableList;
 import org.eclipse.core.databinding.observable.list.WritableList;
@@ -24,6 +25,8 @@ public class Movie extends AbstractModelObject implements Serializable {
 	private String title;
 	/** Description. **/
 	private String description;
+	/** Loads the description when it is accessed for the first time or null if it has been loaded already. **/
+	private transient Supplier<String> descriptionLoader;
 	/** Production country. **/
 	private String country;
 	/** Language. **/
@@ -90,9 +93,6 @@ public class Movie extends AbstractModelObject implements Serializable {
 		this.filmingLocations = new WritableList<String>(MovieManagerUIUtil.getDefaultRealm());
 		this.performers = new WritableList<Performer>(MovieManagerUIUtil.getDefaultRealm());
 
-		this.image = MovieManagerUIUtil.getUnknownImage();
-		this.thumbnailImage = MovieManagerUIUtil.getUnknownImageThumbnail();
-
 		this.id = UUID.randomUUID();
 		this.imdbID = "";
 		addMoviePropertyChangeListener();
@@ -109,15 +109,39 @@ public class Movie extends AbstractModelObject implements Serializable {
 	}
 
 	public String getDescription() {
+		if(descriptionLoader != null) {
+			description = descriptionLoader.get();
+			descriptionLoader = null;
+		}
 		return description;
 	}
 
 	public void setDescription(String description) {
-		String oldValue = this.description;
+		String oldValue = getDescription();
 		this.description = description;
 		firePropertyChange("description", oldValue, description);
 	}
 
+	/**
+	 * Lets the description be loaded by the given loader when it is accessed for the first time, replacing the current description. Used when loading the databases, so no property change is fired.
+	 * 
+	 * @param descriptionLoader
+	 *            the loader
+	 */
+	public void setDescriptionLoader(Supplier<String> descriptionLoader) {
+		this.description = null;
+		this.descriptionLoader = descriptionLoader;
+	}
+
+	/**
+	 * Gets the loader of the description, so that the description can be passed on without being loaded.
+	 * 
+	 * @return the loader or null if the description has been loaded already
+	 */
+	public Supplier<String> getDescriptionLoader() {
+		return descriptionLoader;
+	}
+
 	public String getCountry() {
 		return country;
 	}
@@ -5,6 +5,7 @@ import java.beans.PropertyChangeListener;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import org.eclipse.core.databinding.observable.list.IObservableList;
 import org.eclipse.core.databinding.observable.list.WritableList;
@@ -26,6 +27,8 @@ public class Performer extends AbstractModelObject implements Serializable {
 	private String lastName;
 	/** Biography. **/
 	private String biography;
+	/** Loads the biography when it is accessed for the first time or null if it has been loaded already. **/
+	private transient Supplier<String> biographyLoader;
 	/** Alternate names. **/
 	private transient IObservableList<String> alternateNames;
 	/** Country of origin. **/
@@ -70,9 +73,6 @@ public class Performer extends AbstractModelObject implements Serializable {
 		this.rating = 0;
 		this.movies = new WritableList<Movie>(MovieManagerUIUtil.getDefaultRealm());
 
-		this.image = MovieManagerUIUtil.getUnknownImage();
-		this.thumbnailImage = MovieManagerUIUtil.getUnknownImageThumbnail();
-
 		this.id = UUID.randomUUID();
 		this.imdbID = "";
 		addPerformerPropertyChangeListener();
@@ -99,15 +99,39 @@ public class Performer extends AbstractModelObject implements Serializable {
 	}
 
 	public String getBiography() {
+		if(biographyLoader != null) {
+			biography = biographyLoader.get();
+			biographyLoader = null;
+		}
 		return biography;
 	}
 
 	public void setBiography(String biography) {
-		String oldValue = this.biography;
+		String oldValue = getBiography();
 		this.biography = biography;
 		firePropertyChange("biography", oldValue, biography);
 	}
 
+	/**
+	 * Lets the biography be loaded by the given loader when it is accessed for the first time, replacing the current biography. Used when loading the databases, so no property change is fired.
+	 * 
+	 * @param biographyLoader
+	 *            the loader
+	 */
+	public void setBiographyLoader(Supplier<String> biographyLoader) {
+		this.biography = null;
+		this.biographyLoader = biographyLoader;
+	}
+
+	/**
+	 * Gets the loader of the biography, so that the biography can be passed on without being loaded.
+	 * 
+	 * @return the loader or null if the biography has been loaded already
+	 */
+	public Supplier<String> getBiographyLoader() {
+		return biographyLoader;
+	}
+
 	public IObservableList<String> getAlternateNames() {
 		return alternateNames;
 	}
@@ -0,0 +1,190 @@
+package moviemanager.index;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Sorted secondary index of objects by the value of one of their fields. Objects whose value is null are not indexed. The objects with values in a given range are found in logarithmic time plus the number of
+ * objects found. The index does not observe the objects itself; it has to be notified whenever the value of an object changes.
+ *
+ * @param <T>
+ *            the type of the indexed objects
+ * @param <K>
+ *            the type of the values
+ */
+public class FieldIndex<T, K extends Comparable<? super K>> {
+
+	/** Indexed objects by value, in the order they have been indexed under this value. **/
+	private final NavigableMap<K, Set<T>> byValue = new TreeMap<K, Set<T>>();
+	/** Value of each indexed object, so it can be removed when the value changes. **/
+	private final Map<T, K> values = new IdentityHashMap<T, K>();
+
+	/**
+	 * Adds the given object to the index under the given value, replacing the value it was previously indexed under.
+	 *
+	 * @param o
+	 *            the object
+	 * @param value
+	 *            the value. If null, the object is removed from the index
+	 */
+	public synchronized void put(T o, K value) {
+		remove(o);
+		if(value != null) {
+			Set<T> set = byValue.get(value);
+			if(set == null) {
+				set = new LinkedHashSet<T>();
+				byValue.put(value, set);
+			}
+			set.add(o);
+			values.put(o, value);
+		}
+	}
+
+	/**
+	 * Removes the given object from the index.
+	 *
+	 * @param o
+	 *            the object
+	 */
+	public synchronized void remove(T o) {
+		K value = values.remove(o);
+		if(value != null) {
+			Set<T> set = byValue.get(value);
+			set.remove(o);
+			if(set.isEmpty()) {
+				byValue.remove(value);
+			}
+		}
+	}
+
+	/**
+	 * Gets the value the given object is indexed under.
+	 *
+	 * @param o
+	 *            the object
+	 * @return the value or null if the object is not indexed
+	 */
+	public synchronized K get(T o) {
+		return values.get(o);
+	}
+
+	/**
+	 * Gets the objects with values in the given range, in ascending order of their values.
+	 *
+	 * @param from
+	 *            the lower bound or null if the range is not bounded below
+	 * @param fromInclusive
+	 *            whether the lower bound is part of the range
+	 * @param to
+	 *            the upper bound or null if the range is not bounded above
+	 * @param toInclusive
+	 *            whether the upper bound is part of the range
+	 * @return the objects
+	 */
+	public List<T> getRange(K from, boolean fromInclusive, K to, boolean toInclusive) {
+		return getRange(from, fromInclusive, to, toInclusive, false, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the first objects with values in the given range that are accepted by the given filter, in ascending or descending order of their values. Objects with the same value are returned in the order they
+	 * have been indexed. The traversal stops once the limit has been reached, so getting the first k objects takes logarithmic time plus the number of objects looked at.
+	 *
+	 * @param from
+	 *            the lower bound or null if the range is not bounded below
+	 * @param fromInclusive
+	 *            whether the lower bound is part of the range
+	 * @param to
+	 *            the upper bound or null if the range is not bounded above
+	 * @param toInclusive
+	 *            whether the upper bound is part of the range
+	 * @param descending
+	 *            whether the objects are returned in descending order of their values
+	 * @param filter
+	 *            the filter or null to accept all objects
+	 * @param limit
+	 *            the maximum number of objects to return
+	 * @return the objects
+	 */
+	public synchronized List<T> getRange(K from, boolean fromInclusive, K to, boolean toInclusive, boolean descending, Predicate<? super T> filter, int limit) {
+		List<T> result = new ArrayList<T>();
+		NavigableMap<K, Set<T>> map = subMap(from, fromInclusive, to, toInclusive);
+		for(Set<T> set : (descending ? map.descendingMap() : map).values()) {
+			for(T o : set) {
+				if(result.size() >= limit) {
+					return result;
+				}
+				if(filter == null || filter.test(o)) {
+					result.add(o);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the objects with values in the given range, but stops counting once the given limit has been reached. Thus, the cost of counting does not exceed the cost of getting the objects.
+	 *
+	 * @param from
+	 *            the lower bound or null if the range is not bounded below
+	 * @param fromInclusive
+	 *            whether the lower bound is part of the range
+	 * @param to
+	 *            the upper bound or null if the range is not bounded above
+	 * @param toInclusive
+	 *            whether the upper bound is part of the range
+	 * @param limit
+	 *            the maximum count
+	 * @return the number of objects or the limit, whichever is smaller
+	 */
+	public synchronized int count(K from, boolean fromInclusive, K to, boolean toInclusive, int limit) {
+		if(from == null && to == null) {
+			return Math.min(values.size(), limit);
+		}
+		int count = 0;
+		for(Set<T> set : subMap(from, fromInclusive, to, toInclusive).values()) {
+			count += set.size();
+			if(count >= limit) {
+				return limit;
+			}
+		}
+		return count;
+	}
+
+	private NavigableMap<K, Set<T>> subMap(K from, boolean fromInclusive, K to, boolean toInclusive) {
+		if(from != null && to != null && from.compareTo(to) > 0) {
+			return new TreeMap<K, Set<T>>();
+		}
+		NavigableMap<K, Set<T>> map = byValue;
+		if(from != null) {
+			map = map.tailMap(from, fromInclusive);
+		}
+		if(to != null) {
+			map = map.headMap(to, toInclusive);
+		}
+		return map;
+	}
+
+	/**
+	 * Returns the number of indexed objects.
+	 *
+	 * @return the number of objects
+	 */
+	public synchronized int size() {
+		return values.size();
+	}
+
+	/**
+	 * Removes all objects from the index.
+	 */
+	public synchronized void clear() {
+		byValue.clear();
+		values.clear();
+	}
+}
@@ -0,0 +1,175 @@
+package moviemanager.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import moviemanager.data.AbstractModelObject;
+
+/**
+ * Hash index of movies or performers by their internal identifier and by their IMDB ID. The index does not observe the objects itself; it has to be notified of all additions, removals and identifier changes.
+ *
+ * @param <T>
+ *            the type of the indexed objects
+ */
+public class IdIndex<T extends AbstractModelObject> {
+
+	/** Indexed objects by internal identifier. **/
+	private final Map<UUID, T> byId = new HashMap<UUID, T>();
+	/** Indexed objects by IMDB ID. Objects without an IMDB ID are not contained. **/
+	private final Map<String, Set<T>> byImdbID = new HashMap<String, Set<T>>();
+	/** Sequence number of each indexed object, which reflects the order the objects have been added in. **/
+	private final Map<T, Long> sequence = new IdentityHashMap<T, Long>();
+	/** Sequence number of the next added object. **/
+	private long nextSequence = 0;
+
+	/**
+	 * Adds the given object to the index.
+	 *
+	 * @param o
+	 *            the object
+	 */
+	public void add(T o) {
+		if(!sequence.containsKey(o)) {
+			sequence.put(o, nextSequence++);
+		}
+		if(o.getId() != null) {
+			byId.put(o.getId(), o);
+		}
+		addImdbID(o, o.getImdbID());
+	}
+
+	/**
+	 * Removes the given object from the index.
+	 *
+	 * @param o
+	 *            the object
+	 */
+	public void remove(T o) {
+		if(contains(o)) {
+			byId.remove(o.getId());
+		}
+		sequence.remove(o);
+		removeImdbID(o, o.getImdbID());
+	}
+
+	/**
+	 * Updates the index after the internal identifier of the given object has changed.
+	 *
+	 * @param o
+	 *            the object
+	 * @param oldId
+	 *            the previous internal identifier
+	 */
+	public void idChanged(T o, UUID oldId) {
+		if(oldId != null && byId.get(oldId) == o) {
+			byId.remove(oldId);
+		}
+		if(o.getId() != null) {
+			byId.put(o.getId(), o);
+		}
+	}
+
+	/**
+	 * Updates the index after the IMDB ID of the given object has changed.
+	 *
+	 * @param o
+	 *            the object
+	 * @param oldImdbID
+	 *            the previous IMDB ID
+	 */
+	public void imdbIDChanged(T o, String oldImdbID) {
+		removeImdbID(o, oldImdbID);
+		addImdbID(o, o.getImdbID());
+	}
+
+	/**
+	 * Returns whether the given object is contained in the index.
+	 *
+	 * @param o
+	 *            the object
+	 * @return true if the object is contained, false otherwise
+	 */
+	public boolean contains(T o) {
+		return o.getId() != null && byId.get(o.getId()) == o;
+	}
+
+	/**
+	 * Gets the object with the given internal identifier.
+	 *
+	 * @param id
+	 *            the internal identifier
+	 * @return the object or null if no such object exists
+	 */
+	public T get(UUID id) {
+		return byId.get(id);
+	}
+
+	/**
+	 * Gets the object with the given IMDB ID. If there are multiple objects with the given IMDB ID, the one that has been indexed first is returned.
+	 *
+	 * @param imdbID
+	 *            the IMDB ID
+	 * @return the object or null if no such object exists
+	 */
+	public T getByImdbID(String imdbID) {
+		Set<T> set = byImdbID.get(imdbID);
+		return set == null ? null : set.iterator().next();
+	}
+
+	/**
+	 * Gets all objects that have an IMDB ID, in the order they have been added to the index. As objects are added in the order of their database, this is the order of the database.
+	 *
+	 * @return the objects
+	 */
+	public List<T> getAllWithImdbID() {
+		List<T> list = new ArrayList<T>();
+		for(Set<T> set : byImdbID.values()) {
+			list.addAll(set);
+		}
+		Collections.sort(list, new Comparator<T>() {
+			@Override
+			public int compare(T o1, T o2) {
+				return Long.compare(sequence.get(o1), sequence.get(o2));
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * Removes all objects from the index.
+	 */
+	public void clear() {
+		byId.clear();
+		byImdbID.clear();
+		sequence.clear();
+	}
+
+	private void addImdbID(T o, String imdbID) {
+		if(imdbID != null && !imdbID.isEmpty()) {
+			Set<T> set = byImdbID.get(imdbID);
+			if(set == null) {
+				set = new LinkedHashSet<T>();
+				byImdbID.put(imdbID, set);
+			}
+			set.add(o);
+		}
+	}
+
+	private void removeImdbID(T o, String imdbID) {
+		Set<T> set = byImdbID.get(imdbID);
+		if(set != null) {
+			set.remove(o);
+			if(set.isEmpty()) {
+				byImdbID.remove(imdbID);
+			}
+		}
+	}
+}
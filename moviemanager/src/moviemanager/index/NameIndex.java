@@ -0,0 +1,129 @@
+package moviemanager.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Index of objects by any number of names. Names are normalized before they are indexed or looked up, i.e. they are compared ignoring case, accents and differences in whitespace. The index does not observe the
+ * objects itself; it has to be notified whenever the names of an object change.
+ *
+ * @param <T>
+ *            the type of the indexed objects
+ */
+public class NameIndex<T> {
+
+	/** Matches combining marks, which remain of accented characters after decomposition. **/
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+	/** Matches sequences of whitespace. **/
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	/** Indexed objects by normalized name. **/
+	private final Map<String, Set<T>> byName = new HashMap<String, Set<T>>();
+	/** Normalized names of each indexed object, so they can be removed when the names change. **/
+	private final Map<T, Set<String>> names = new IdentityHashMap<T, Set<String>>();
+
+	/**
+	 * Normalizes the given name by removing accents, converting it to lower case and collapsing whitespace.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the normalized name
+	 */
+	public static String normalize(String name) {
+		String s = Normalizer.normalize(name, Normalizer.Form.NFD);
+		s = COMBINING_MARKS.matcher(s).replaceAll("");
+		s = WHITESPACE.matcher(s.trim()).replaceAll(" ");
+		return s.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Adds the given object to the index under the given names, replacing the names it was previously indexed under.
+	 *
+	 * @param o
+	 *            the object
+	 * @param objectNames
+	 *            the names of the object. Null and empty names are ignored
+	 */
+	public void put(T o, Collection<String> objectNames) {
+		remove(o);
+		Set<String> normalized = new LinkedHashSet<String>();
+		for(String name : objectNames) {
+			if(name != null) {
+				String key = normalize(name);
+				if(!key.isEmpty()) {
+					normalized.add(key);
+				}
+			}
+		}
+		for(String key : normalized) {
+			Set<T> set = byName.get(key);
+			if(set == null) {
+				set = new LinkedHashSet<T>();
+				byName.put(key, set);
+			}
+			set.add(o);
+		}
+		names.put(o, normalized);
+	}
+
+	/**
+	 * Removes the given object from the index.
+	 *
+	 * @param o
+	 *            the object
+	 */
+	public void remove(T o) {
+		Set<String> keys = names.remove(o);
+		if(keys != null) {
+			for(String key : keys) {
+				Set<T> set = byName.get(key);
+				set.remove(o);
+				if(set.isEmpty()) {
+					byName.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the object with the given name. If there are multiple objects with the given name, the one that has been indexed under this name first is returned.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the object or null if no such object exists
+	 */
+	public T get(String name) {
+		Set<T> set = name == null ? null : byName.get(normalize(name));
+		return set == null ? null : set.iterator().next();
+	}
+
+	/**
+	 * Gets all objects with the given name.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the objects, in the order they have been indexed under this name
+	 */
+	public List<T> getAll(String name) {
+		Set<T> set = name == null ? null : byName.get(normalize(name));
+		return set == null ? Collections.<T> emptyList() : new ArrayList<T>(set);
+	}
+
+	/**
+	 * Removes all objects from the index.
+	 */
+	public void clear() {
+		byName.clear();
+		names.clear();
+	}
+}
@@ -0,0 +1,446 @@
+package moviemanager.index;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Immutable hash map that shares its structure with the map it has been derived from. The entries are stored in a hash array mapped trie: each level of the trie consumes five bits of the hash of a key, and a
+ * node only holds slots for the bits that are in use. Adding or removing an entry copies the nodes on the path to the entry only, i.e. at most seven nodes of at most 32 slots, and shares all other nodes with the
+ * original map.
+ * </p>
+ * <p>
+ * Since a map cannot be modified once it has been created, it may be read by any number of threads without synchronization once it has been published safely.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ */
+public final class PersistentHashMap<K, V> {
+
+	/** Number of bits of the hash consumed by each level of the trie. **/
+	private static final int BITS = 5;
+	/** Mask of the bits of the hash consumed by a level. **/
+	private static final int MASK = (1 << BITS) - 1;
+
+	/** The empty map. **/
+	private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<Object, Object>(null, 0);
+
+	/** Root node or null if the map is empty. **/
+	private final Node root;
+	/** Number of entries. **/
+	private final int size;
+
+	private PersistentHashMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Gets the empty map.
+	 *
+	 * @return the empty map
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentHashMap<K, V> empty() {
+		return (PersistentHashMap<K, V>) EMPTY;
+	}
+
+	/**
+	 * Gets the value of the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value or null if the map does not contain the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if(root == null || key == null) {
+			return null;
+		}
+		return (V) root.get(key, hash(key), 0);
+	}
+
+	/**
+	 * Checks whether the map contains the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return true if the map contains the key, false otherwise
+	 */
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Creates a map that contains the entries of this map and the given entry, which replaces the entry with the same key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return the new map or this map if it already maps the key to the value
+	 */
+	public PersistentHashMap<K, V> plus(K key, V value) {
+		if(key == null || value == null) {
+			throw new IllegalArgumentException("The key and the value must not be null");
+		}
+		int hash = hash(key);
+		boolean[] added = new boolean[1];
+		Node newRoot = root == null ? new BitmapNode(0, new Object[0]).plus(key, hash, value, 0, added) : root.plus(key, hash, value, 0, added);
+		return newRoot == root ? this : new PersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * Creates a map that contains the entries of this map except for the entry with the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the new map or this map if it does not contain the key
+	 */
+	public PersistentHashMap<K, V> minus(Object key) {
+		if(root == null || key == null) {
+			return this;
+		}
+		Node newRoot = root.minus(key, hash(key), 0);
+		if(newRoot == root) {
+			return this;
+		}
+		return newRoot == null ? PersistentHashMap.<K, V> empty() : new PersistentHashMap<K, V>(newRoot, size - 1);
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the values of the map. They are iterated in an order that depends on the hashes of their keys only.
+	 *
+	 * @return an unmodifiable collection of the values
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator<V>(root);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		// Spread the upper bits, which are consumed by the deepest levels only
+		return h ^ (h >>> 16);
+	}
+
+	private static int bit(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	/**
+	 * An entry of the map.
+	 *
+	 */
+	private static final class Entry {
+		private final Object key;
+		private final Object value;
+		private final int hash;
+
+		private Entry(Object key, Object value, int hash) {
+			this.key = key;
+			this.value = value;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * A node of the trie. Its slots contain entries and child nodes.
+	 *
+	 */
+	private static abstract class Node {
+		abstract Object get(Object key, int hash, int shift);
+
+		abstract Node plus(Object key, int hash, Object value, int shift, boolean[] added);
+
+		/**
+		 * @return the new node, this node if the key is not contained or null if the node has become empty
+		 */
+		abstract Node minus(Object key, int hash, int shift);
+
+		abstract Object[] getSlots();
+	}
+
+	/**
+	 * Node that holds a slot for each of the five bits of the hashes at its level that are in use.
+	 *
+	 */
+	private static final class BitmapNode extends Node {
+		/** Bits of the hashes at the level of the node that are in use. **/
+		private final int bitmap;
+		/** Entries and child nodes in the order of their bits. **/
+		private final Object[] slots;
+
+		private BitmapNode(int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if((bitmap & bit) == 0) {
+				return null;
+			}
+			Object slot = slots[index(bit)];
+			if(slot instanceof Node) {
+				return ((Node) slot).get(key, hash, shift + BITS);
+			}
+			Entry e = (Entry) slot;
+			return e.hash == hash && e.key.equals(key) ? e.value : null;
+		}
+
+		@Override
+		Node plus(Object key, int hash, Object value, int shift, boolean[] added) {
+			int bit = bit(hash, shift);
+			int index = index(bit);
+			if((bitmap & bit) == 0) {
+				Object[] newSlots = new Object[slots.length + 1];
+				System.arraycopy(slots, 0, newSlots, 0, index);
+				newSlots[index] = new Entry(key, value, hash);
+				System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+				added[0] = true;
+				return new BitmapNode(bitmap | bit, newSlots);
+			}
+			Object slot = slots[index];
+			Object newSlot;
+			if(slot instanceof Node) {
+				newSlot = ((Node) slot).plus(key, hash, value, shift + BITS, added);
+			} else {
+				Entry e = (Entry) slot;
+				if(e.hash == hash && e.key.equals(key)) {
+					newSlot = e.value == value ? e : new Entry(key, value, hash);
+				} else {
+					added[0] = true;
+					newSlot = merge(e, new Entry(key, value, hash), shift + BITS);
+				}
+			}
+			if(newSlot == slot) {
+				return this;
+			}
+			Object[] newSlots = slots.clone();
+			newSlots[index] = newSlot;
+			return new BitmapNode(bitmap, newSlots);
+		}
+
+		@Override
+		Node minus(Object key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if((bitmap & bit) == 0) {
+				return this;
+			}
+			int index = index(bit);
+			Object slot = slots[index];
+			if(slot instanceof Node) {
+				Node child = (Node) slot;
+				Node newChild = child.minus(key, hash, shift + BITS);
+				if(newChild == child) {
+					return this;
+				}
+				if(newChild != null) {
+					Object[] newSlots = slots.clone();
+					newSlots[index] = newChild;
+					return new BitmapNode(bitmap, newSlots);
+				}
+			} else {
+				Entry e = (Entry) slot;
+				if(e.hash != hash || !e.key.equals(key)) {
+					return this;
+				}
+			}
+			if(slots.length == 1) {
+				return null;
+			}
+			Object[] newSlots = new Object[slots.length - 1];
+			System.arraycopy(slots, 0, newSlots, 0, index);
+			System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+			return new BitmapNode(bitmap & ~bit, newSlots);
+		}
+
+		@Override
+		Object[] getSlots() {
+			return slots;
+		}
+
+		/**
+		 * Creates a node at the given level that contains two entries with different keys.
+		 */
+		private static Node merge(Entry e1, Entry e2, int shift) {
+			if(e1.hash == e2.hash) {
+				return new CollisionNode(e1.hash, new Object[] { e1, e2 });
+			}
+			int bit1 = bit(e1.hash, shift);
+			int bit2 = bit(e2.hash, shift);
+			if(bit1 == bit2) {
+				return new BitmapNode(bit1, new Object[] { merge(e1, e2, shift + BITS) });
+			}
+			// Compare the bits unsigned, since the bit of the last slot is the sign bit
+			return new BitmapNode(bit1 | bit2, Integer.compareUnsigned(bit1, bit2) < 0 ? new Object[] { e1, e2 } : new Object[] { e2, e1 });
+		}
+	}
+
+	/**
+	 * Node that holds the entries of different keys with the same hash.
+	 *
+	 */
+	private static final class CollisionNode extends Node {
+		/** The hash of all keys. **/
+		private final int hash;
+		/** The entries. **/
+		private final Object[] entries;
+
+		private CollisionNode(int hash, Object[] entries) {
+			this.hash = hash;
+			this.entries = entries;
+		}
+
+		private int indexOf(Object key) {
+			for(int i = 0; i < entries.length; i++) {
+				if(((Entry) entries[i]).key.equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift) {
+			if(hash != this.hash) {
+				return null;
+			}
+			int index = indexOf(key);
+			return index < 0 ? null : ((Entry) entries[index]).value;
+		}
+
+		@Override
+		Node plus(Object key, int hash, Object value, int shift, boolean[] added) {
+			if(hash != this.hash) {
+				// Push this node down to the level at which the hashes differ
+				return new BitmapNode(bit(this.hash, shift), new Object[] { this }).plus(key, hash, value, shift, added);
+			}
+			int index = indexOf(key);
+			if(index >= 0) {
+				if(((Entry) entries[index]).value == value) {
+					return this;
+				}
+				Object[] newEntries = entries.clone();
+				newEntries[index] = new Entry(key, value, hash);
+				return new CollisionNode(hash, newEntries);
+			}
+			Object[] newEntries = new Object[entries.length + 1];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			newEntries[entries.length] = new Entry(key, value, hash);
+			added[0] = true;
+			return new CollisionNode(hash, newEntries);
+		}
+
+		@Override
+		Node minus(Object key, int hash, int shift) {
+			int index = hash == this.hash ? indexOf(key) : -1;
+			if(index < 0) {
+				return this;
+			}
+			if(entries.length == 1) {
+				return null;
+			}
+			Object[] newEntries = new Object[entries.length - 1];
+			System.arraycopy(entries, 0, newEntries, 0, index);
+			System.arraycopy(entries, index + 1, newEntries, index, entries.length - index - 1);
+			return new CollisionNode(hash, newEntries);
+		}
+
+		@Override
+		Object[] getSlots() {
+			return entries;
+		}
+	}
+
+	/**
+	 * Iterates over the values of a trie depth first.
+	 *
+	 */
+	private static final class ValueIterator<V> implements Iterator<V> {
+		/** Slots of the nodes on the path to the current entry. Seven levels suffice for 32 bit hashes, and collision nodes add one more. **/
+		private final Object[][] stack = new Object[9][];
+		/** Index of the next slot of each node on the path. **/
+		private final int[] positions = new int[9];
+		/** Depth of the current node or -1 if all values have been iterated. **/
+		private int depth = -1;
+		/** The next entry or null if all values have been iterated. **/
+		private Entry next;
+
+		private ValueIterator(Node root) {
+			if(root != null) {
+				depth = 0;
+				stack[0] = root.getSlots();
+				advance();
+			}
+		}
+
+		private void advance() {
+			next = null;
+			while(depth >= 0) {
+				if(positions[depth] == stack[depth].length) {
+					depth--;
+					continue;
+				}
+				Object slot = stack[depth][positions[depth]++];
+				if(slot instanceof Node) {
+					depth++;
+					stack[depth] = ((Node) slot).getSlots();
+					positions[depth] = 0;
+				} else {
+					next = (Entry) slot;
+					return;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if(next == null) {
+				throw new NoSuchElementException();
+			}
+			V value = (V) next.value;
+			advance();
+			return value;
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package moviemanager.index;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Immutable sorted set that shares its structure with the set it has been derived from. The elements are stored in an AVL tree whose nodes know the size of their subtree, so the position of an element and the
+ * element at a position are found in logarithmic time. Adding or removing an element copies the nodes on the path to the element only and shares all other nodes with the original set.
+ * </p>
+ * <p>
+ * Since a set cannot be modified once it has been created, it may be read by any number of threads without synchronization once it has been published safely.
+ * </p>
+ *
+ * @param <E>
+ *            the type of the elements
+ */
+public final class PersistentSortedSet<E> {
+
+	/** Orders the elements. Elements that compare equal are considered to be the same element. **/
+	private final Comparator<? super E> comparator;
+	/** Root node or null if the set is empty. **/
+	private final Node<E> root;
+
+	private PersistentSortedSet(Comparator<? super E> comparator, Node<E> root) {
+		this.comparator = comparator;
+		this.root = root;
+	}
+
+	/**
+	 * Gets the empty set with the given order.
+	 *
+	 * @param comparator
+	 *            orders the elements
+	 * @return the empty set
+	 */
+	public static <E> PersistentSortedSet<E> empty(Comparator<? super E> comparator) {
+		if(comparator == null) {
+			throw new IllegalArgumentException("The comparator must not be null");
+		}
+		return new PersistentSortedSet<E>(comparator, null);
+	}
+
+	/**
+	 * Creates a set that contains the elements of this set and the given element, which replaces an element that compares equal.
+	 *
+	 * @param element
+	 *            the element
+	 * @return the new set
+	 */
+	public PersistentSortedSet<E> plus(E element) {
+		if(element == null) {
+			throw new IllegalArgumentException("The element must not be null");
+		}
+		return new PersistentSortedSet<E>(comparator, plus(root, element));
+	}
+
+	/**
+	 * Creates a set that contains the elements of this set except for the element that compares equal to the given one.
+	 *
+	 * @param element
+	 *            the element
+	 * @return the new set or this set if it does not contain the element
+	 */
+	public PersistentSortedSet<E> minus(E element) {
+		if(element == null) {
+			return this;
+		}
+		Node<E> newRoot = minus(root, element);
+		return newRoot == root ? this : new PersistentSortedSet<E>(comparator, newRoot);
+	}
+
+	/**
+	 * Gets the number of elements.
+	 *
+	 * @return the number of elements
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Gets the number of elements that are less than the given element, i.e. the position the element has or would have in the set.
+	 *
+	 * @param element
+	 *            the element, which does not need to be contained
+	 * @return the number of smaller elements
+	 */
+	public int rank(E element) {
+		int rank = 0;
+		Node<E> node = root;
+		while(node != null) {
+			if(comparator.compare(element, node.element) <= 0) {
+				node = node.left;
+			} else {
+				rank += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return rank;
+	}
+
+	/**
+	 * Gets the element at the given position.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the element
+	 * @throws IndexOutOfBoundsException
+	 *             if the position is negative or not less than the size
+	 */
+	public E get(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node<E> node = root;
+		while(true) {
+			int leftSize = size(node.left);
+			if(index < leftSize) {
+				node = node.left;
+			} else if(index == leftSize) {
+				return node.element;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the elements in ascending order, starting at the given position.
+	 *
+	 * @param index
+	 *            the position of the first element
+	 * @return the iterator
+	 */
+	public Iterator<E> iterator(int index) {
+		return new ElementIterator<E>(root, index);
+	}
+
+	private Node<E> plus(Node<E> node, E element) {
+		if(node == null) {
+			return new Node<E>(element, null, null);
+		}
+		int c = comparator.compare(element, node.element);
+		if(c == 0) {
+			return new Node<E>(element, node.left, node.right);
+		}
+		return c < 0 ? balance(node.element, plus(node.left, element), node.right) : balance(node.element, node.left, plus(node.right, element));
+	}
+
+	private Node<E> minus(Node<E> node, E element) {
+		if(node == null) {
+			return null;
+		}
+		int c = comparator.compare(element, node.element);
+		if(c < 0) {
+			Node<E> left = minus(node.left, element);
+			return left == node.left ? node : balance(node.element, left, node.right);
+		}
+		if(c > 0) {
+			Node<E> right = minus(node.right, element);
+			return right == node.right ? node : balance(node.element, node.left, right);
+		}
+		if(node.left == null) {
+			return node.right;
+		}
+		if(node.right == null) {
+			return node.left;
+		}
+		// Replace the element by its successor
+		Node<E> successor = node.right;
+		while(successor.left != null) {
+			successor = successor.left;
+		}
+		return balance(successor.element, node.left, minus(node.right, successor.element));
+	}
+
+	private static <E> int size(Node<E> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static <E> int height(Node<E> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Creates a node whose subtrees differ in height by at most one, given subtrees that differ by at most two.
+	 */
+	private static <E> Node<E> balance(E element, Node<E> left, Node<E> right) {
+		int difference = height(left) - height(right);
+		if(difference > 1) {
+			if(height(left.left) < height(left.right)) {
+				Node<E> pivot = left.right;
+				return new Node<E>(pivot.element, new Node<E>(left.element, left.left, pivot.left), new Node<E>(element, pivot.right, right));
+			}
+			return new Node<E>(left.element, left.left, new Node<E>(element, left.right, right));
+		}
+		if(difference < -1) {
+			if(height(right.right) < height(right.left)) {
+				Node<E> pivot = right.left;
+				return new Node<E>(pivot.element, new Node<E>(element, left, pivot.left), new Node<E>(right.element, pivot.right, right.right));
+			}
+			return new Node<E>(right.element, new Node<E>(element, left, right.left), right.right);
+		}
+		return new Node<E>(element, left, right);
+	}
+
+	/**
+	 * A node of the tree.
+	 *
+	 */
+	private static final class Node<E> {
+		private final E element;
+		private final Node<E> left;
+		private final Node<E> right;
+		/** Height of the subtree. **/
+		private final int height;
+		/** Number of elements of the subtree. **/
+		private final int size;
+
+		private Node(E element, Node<E> left, Node<E> right) {
+			this.element = element;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+
+	/**
+	 * Iterates over the elements of a tree in order.
+	 *
+	 */
+	private static final class ElementIterator<E> implements Iterator<E> {
+		/** Nodes whose element and right subtree have not been iterated yet. An AVL tree of 2^31 elements is less than 46 levels high. Generic arrays cannot be created, but the array only ever holds nodes of this tree. **/
+		@SuppressWarnings("unchecked")
+		private final Node<E>[] stack = (Node<E>[]) new Node<?>[48];
+		/** Number of nodes on the stack. **/
+		private int depth;
+
+		private ElementIterator(Node<E> root, int index) {
+			// Descend to the element at the given position, keeping the nodes whose element follows it
+			Node<E> node = root;
+			while(node != null) {
+				int leftSize = size(node.left);
+				if(index <= leftSize) {
+					stack[depth++] = node;
+					node = node.left;
+				} else {
+					index -= leftSize + 1;
+					node = node.right;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return depth > 0;
+		}
+
+		@Override
+		public E next() {
+			if(depth == 0) {
+				throw new NoSuchElementException();
+			}
+			Node<E> node = stack[--depth];
+			for(Node<E> n = node.right; n != null; n = n.left) {
+				stack[depth++] = n;
+			}
+			return node.element;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package moviemanager.index;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Runs searches on a background thread, so that typing a search string is never blocked by the search itself. A search is started once no other search has been submitted for the debounce delay. Submitting a
+ * search cancels the previous one: if it has not started yet, it is dropped, and if it is running, its thread is interrupted and its result is discarded.
+ * </p>
+ * <p>
+ * The result of the latest search is handed to the given result executor, e.g. one that runs it on the UI thread, and delivered to the callback of the search in a single call.
+ * </p>
+ *
+ * @param <R>
+ *            the type of the search results
+ */
+public class SearchScheduler<R> {
+
+	/** Default delay in milliseconds after the last submitted search before it is started. **/
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+
+	/** Executes the callbacks, usually on the UI thread. **/
+	private final Executor resultExecutor;
+	/** Delay in nanoseconds after the last submitted search. **/
+	private final long debounceNanos;
+	/** Thread that runs the searches. **/
+	private final ScheduledExecutorService searcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Search");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/** The scheduled or running search or null if there is none. **/
+	private ScheduledFuture<?> pendingSearch;
+	/** Number of the latest submitted search. Results of earlier searches are discarded. **/
+	private long generation = 0;
+	/** Flag to indicate whether the scheduler has been stopped. **/
+	private boolean stopped = false;
+
+	/**
+	 * Creates a new search scheduler.
+	 *
+	 * @param resultExecutor
+	 *            the executor that runs the callbacks
+	 * @param debounceMillis
+	 *            the delay in milliseconds after the last submitted search before it is started
+	 */
+	public SearchScheduler(Executor resultExecutor, long debounceMillis) {
+		if(resultExecutor == null) {
+			throw new IllegalArgumentException("The result executor must not be null");
+		}
+		if(debounceMillis < 0) {
+			throw new IllegalArgumentException("The debounce delay must not be negative");
+		}
+		this.resultExecutor = resultExecutor;
+		this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+	}
+
+	/**
+	 * Submits a search, cancelling the previous one. May be called on any thread.
+	 *
+	 * @param search
+	 *            the search. Should stop with a {@link CancellationException} once its thread is interrupted
+	 * @param callback
+	 *            receives the result of the search, unless it has been cancelled meanwhile
+	 */
+	public synchronized void submit(final Callable<? extends R> search, final Consumer<? super R> callback) {
+		if(search == null || callback == null) {
+			throw new IllegalArgumentException("The search and the callback must not be null");
+		}
+		if(stopped) {
+			return;
+		}
+		cancel();
+		final long searchGeneration = generation;
+		pendingSearch = searcher.schedule(new Runnable() {
+			@Override
+			public void run() {
+				execute(searchGeneration, search, callback);
+			}
+		}, debounceNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Runs a search and hands its result to the result executor. Runs on the search thread.
+	 */
+	private void execute(final long searchGeneration, Callable<? extends R> search, final Consumer<? super R> callback) {
+		if(!isCurrent(searchGeneration)) {
+			return;
+		}
+		final R result;
+		try {
+			result = search.call();
+		} catch(CancellationException e) {
+			return;
+		} catch(Exception e) {
+			if(isCurrent(searchGeneration)) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		if(!isCurrent(searchGeneration)) {
+			return;
+		}
+		resultExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// Check again, since another search may have been submitted while the result was on its way
+				if(isCurrent(searchGeneration)) {
+					callback.accept(result);
+				}
+			}
+		});
+	}
+
+	private synchronized boolean isCurrent(long searchGeneration) {
+		return !stopped && generation == searchGeneration;
+	}
+
+	/**
+	 * Cancels the current search, so that its callback is not called. May be called on any thread.
+	 */
+	public synchronized void cancel() {
+		generation++;
+		if(pendingSearch != null) {
+			pendingSearch.cancel(true);
+			pendingSearch = null;
+		}
+	}
+
+	/**
+	 * Stops the scheduler. The current search is cancelled and later searches are ignored.
+	 */
+	public synchronized void stop() {
+		cancel();
+		stopped = true;
+		searcher.shutdownNow();
+	}
+
+	public long getDebounceMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(debounceNanos);
+	}
+}
@@ -0,0 +1,548 @@
+package moviemanager.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Inverted index for finding objects whose texts contain a given string. Texts are normalized like in the {@link NameIndex}, i.e. they are compared ignoring case, accents and differences in whitespace.
+ * </p>
+ * <p>
+ * Each object is indexed under all n-grams of up to {@link #GRAM_LENGTH} characters of its texts. A search intersects the posting lists of the n-grams of the search string, starting with the shortest one, and
+ * verifies the remaining candidates against their texts, so its cost depends on the number of candidates rather than on the number of indexed objects. The index does not observe the objects itself; it has to be
+ * notified whenever the texts of an object change.
+ * </p>
+ * <p>
+ * The index is thread-safe, so it may be searched in the background while it is updated on the UI thread. Searches stop with a {@link CancellationException} once their thread is interrupted.
+ * </p>
+ * <p>
+ * The texts of an object are grouped into fields, each of which has a weight. A ranked search additionally matches the words of the search string with typos: the words of all texts form a vocabulary, in which
+ * similar words are found through their common bigrams and then verified by their edit distance. The matches are scored by the weight of the field they occur in, and only the best ones are kept.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the indexed objects
+ */
+public class TextIndex<T> {
+
+	/** Maximum length of the indexed n-grams. **/
+	public static final int GRAM_LENGTH = 3;
+	/** Minimum length of a word of the search string to be matched with a typo. **/
+	public static final int MIN_FUZZY_LENGTH = 4;
+	/** Minimum length of a word of the search string to be matched with two typos. **/
+	public static final int MIN_TWO_TYPOS_LENGTH = 8;
+	/** Factor applied to the score of matches with typos, so that they are ranked below exact matches in the same field. **/
+	private static final double FUZZY_FACTOR = 0.5;
+	/** Matches the characters between words. **/
+	private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/**
+	 * A match of a ranked search.
+	 */
+	private static class Hit<T> {
+		private final T object;
+		private final double score;
+		/** Position of the match among all matches, to keep the order of matches with equal scores. **/
+		private final int position;
+
+		private Hit(T object, double score, int position) {
+			this.object = object;
+			this.score = score;
+			this.position = position;
+		}
+	}
+
+	/** Orders matches from the worst to the best one. **/
+	private static final Comparator<Hit<?>> WORST_FIRST = new Comparator<Hit<?>>() {
+		@Override
+		public int compare(Hit<?> h1, Hit<?> h2) {
+			int result = Double.compare(h1.score, h2.score);
+			return result != 0 ? result : Integer.compare(h2.position, h1.position);
+		}
+	};
+
+	/** Weight of each field. **/
+	private final double[] fieldWeights;
+	/** Indexed objects by n-gram, in the order they have been indexed. **/
+	private final Map<String, Set<T>> postings = new HashMap<String, Set<T>>();
+	/** Normalized texts of each indexed object by field, used to verify and score the candidates of a search. **/
+	private final Map<T, List<List<String>>> texts = new IdentityHashMap<T, List<List<String>>>();
+	/** Indexed objects by word, in the order they have been indexed. **/
+	private final Map<String, Set<T>> byWord = new HashMap<String, Set<T>>();
+	/** Words of the vocabulary by bigram, used to find words that are similar to a word of the search string. **/
+	private final Map<String, Set<String>> wordsByGram = new HashMap<String, Set<String>>();
+
+	/**
+	 * Creates a new index with a single field.
+	 */
+	public TextIndex() {
+		this(1.0);
+	}
+
+	/**
+	 * Creates a new index with the given fields.
+	 *
+	 * @param fieldWeights
+	 *            the weight of each field. Matches in a field with a higher weight are ranked higher
+	 */
+	public TextIndex(double... fieldWeights) {
+		if(fieldWeights.length == 0) {
+			throw new IllegalArgumentException("The index must have at least one field");
+		}
+		this.fieldWeights = fieldWeights.clone();
+	}
+
+	/**
+	 * Adds the given object to the index under the given texts of its first field, replacing the texts it was previously indexed under.
+	 *
+	 * @param o
+	 *            the object
+	 * @param objectTexts
+	 *            the texts of the object. Null and empty texts are ignored
+	 */
+	public void put(T o, Collection<String> objectTexts) {
+		put(o, Collections.singletonList(objectTexts));
+	}
+
+	/**
+	 * Adds the given object to the index under the given texts, replacing the texts it was previously indexed under.
+	 *
+	 * @param o
+	 *            the object
+	 * @param fieldTexts
+	 *            the texts of the object for each field, in the order of the field weights. Null and empty texts are ignored
+	 */
+	public synchronized void put(T o, List<? extends Collection<String>> fieldTexts) {
+		if(fieldTexts.size() > fieldWeights.length) {
+			throw new IllegalArgumentException("The index has only " + fieldWeights.length + " fields");
+		}
+		remove(o);
+		List<List<String>> normalized = new ArrayList<List<String>>(fieldTexts.size());
+		for(Collection<String> field : fieldTexts) {
+			List<String> normalizedField = new ArrayList<String>(field.size());
+			for(String text : field) {
+				if(text != null) {
+					String s = NameIndex.normalize(text);
+					if(!s.isEmpty()) {
+						normalizedField.add(s);
+					}
+				}
+			}
+			normalized.add(normalizedField);
+		}
+		for(String gram : getGrams(flatten(normalized))) {
+			Set<T> set = postings.get(gram);
+			if(set == null) {
+				set = new LinkedHashSet<T>();
+				postings.put(gram, set);
+			}
+			set.add(o);
+		}
+		for(String word : getWords(flatten(normalized))) {
+			Set<T> set = byWord.get(word);
+			if(set == null) {
+				set = new LinkedHashSet<T>();
+				byWord.put(word, set);
+				for(String gram : getBigrams(word)) {
+					Set<String> words = wordsByGram.get(gram);
+					if(words == null) {
+						words = new LinkedHashSet<String>();
+						wordsByGram.put(gram, words);
+					}
+					words.add(word);
+				}
+			}
+			set.add(o);
+		}
+		texts.put(o, normalized);
+	}
+
+	/**
+	 * Removes the given object from the index.
+	 *
+	 * @param o
+	 *            the object
+	 */
+	public synchronized void remove(T o) {
+		List<List<String>> normalized = texts.remove(o);
+		if(normalized != null) {
+			for(String gram : getGrams(flatten(normalized))) {
+				Set<T> set = postings.get(gram);
+				set.remove(o);
+				if(set.isEmpty()) {
+					postings.remove(gram);
+				}
+			}
+			for(String word : getWords(flatten(normalized))) {
+				Set<T> set = byWord.get(word);
+				set.remove(o);
+				if(set.isEmpty()) {
+					byWord.remove(word);
+					for(String gram : getBigrams(word)) {
+						Set<String> words = wordsByGram.get(gram);
+						words.remove(word);
+						if(words.isEmpty()) {
+							wordsByGram.remove(gram);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets all objects that have a text which contains the given string.
+	 *
+	 * @param query
+	 *            the string to search for
+	 * @return the objects, in the order they have been indexed. Empty if the normalized string is empty
+	 */
+	public synchronized List<T> search(String query) {
+		String q = query == null ? "" : NameIndex.normalize(query);
+		if(q.isEmpty()) {
+			return Collections.emptyList();
+		}
+		// Find the posting lists of all n-grams of the query, starting with the shortest one
+		List<Set<T>> sets = new ArrayList<Set<T>>();
+		for(String gram : getGrams(Collections.singletonList(q))) {
+			if(gram.length() == Math.min(q.length(), GRAM_LENGTH)) {
+				Set<T> set = postings.get(gram);
+				if(set == null) {
+					return Collections.emptyList();
+				}
+				sets.add(set);
+			}
+		}
+		Set<T> shortest = sets.get(0);
+		for(Set<T> set : sets) {
+			if(set.size() < shortest.size()) {
+				shortest = set;
+			}
+		}
+
+		List<T> result = new ArrayList<T>();
+		for(T o : shortest) {
+			checkCancelled();
+			if(containsAll(sets, o) && (q.length() <= GRAM_LENGTH || matches(o, q))) {
+				result.add(o);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Gets the objects that match the given string best. An object matches if one of its texts contains the string, or if each word of the string occurs in its texts with at most one typo, or two typos for words
+	 * of at least {@link #MIN_TWO_TYPOS_LENGTH} characters. Words shorter than {@link #MIN_FUZZY_LENGTH} characters have to match exactly.
+	 * </p>
+	 * <p>
+	 * Each match is scored by the weight of the field it occurs in. Texts that are equal to the string or start with it score higher than texts that only contain it, which in turn score higher than matches with
+	 * typos. The score is then multiplied by one plus the given boost of the object.
+	 * </p>
+	 *
+	 * @param query
+	 *            the string to search for
+	 * @param limit
+	 *            the maximum number of objects to return
+	 * @param boost
+	 *            the boost of each object, usually a value between 0 and 1, or null to rank the objects by their texts only
+	 * @return the objects, best match first. Empty if the normalized string is empty
+	 */
+	public synchronized List<T> search(String query, int limit, ToDoubleFunction<? super T> boost) {
+		if(limit < 0) {
+			throw new IllegalArgumentException("The limit must not be negative");
+		}
+		String q = query == null ? "" : NameIndex.normalize(query);
+		if(q.isEmpty() || limit == 0) {
+			return Collections.emptyList();
+		}
+		Map<T, Double> scores = new LinkedHashMap<T, Double>();
+		for(T o : search(q)) {
+			checkCancelled();
+			scores.put(o, getSubstringScore(o, q));
+		}
+		List<String> words = getWords(Collections.singletonList(q));
+		for(T o : getFuzzyCandidates(words)) {
+			checkCancelled();
+			if(!scores.containsKey(o)) {
+				double score = getFuzzyScore(o, words);
+				if(score > 0) {
+					scores.put(o, score * FUZZY_FACTOR);
+				}
+			}
+		}
+
+		// Keep the best matches in a bounded heap, whose head is the worst of them
+		PriorityQueue<Hit<T>> heap = new PriorityQueue<Hit<T>>(Math.min(limit, scores.size()) + 1, WORST_FIRST);
+		int position = 0;
+		for(Map.Entry<T, Double> e : scores.entrySet()) {
+			checkCancelled();
+			double score = e.getValue() * (1 + (boost == null ? 0 : boost.applyAsDouble(e.getKey())));
+			heap.add(new Hit<T>(e.getKey(), score, position++));
+			if(heap.size() > limit) {
+				heap.poll();
+			}
+		}
+		List<T> result = new ArrayList<T>(heap.size());
+		while(!heap.isEmpty()) {
+			result.add(heap.poll().object);
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	private double getSubstringScore(T o, String q) {
+		double score = 0;
+		List<List<String>> fields = texts.get(o);
+		for(int i = 0; i < fields.size(); i++) {
+			for(String text : fields.get(i)) {
+				if(text.contains(q)) {
+					score = Math.max(score, fieldWeights[i] * (text.equals(q) ? 2 : text.startsWith(q) ? 1.5 : 1));
+				}
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Gets the objects that contain each of the given words or a word that is similar to it.
+	 */
+	private Set<T> getFuzzyCandidates(List<String> words) {
+		Set<T> candidates = null;
+		for(String word : words) {
+			Set<T> matches = new LinkedHashSet<T>();
+			for(String similar : getSimilarWords(word)) {
+				matches.addAll(byWord.get(similar));
+			}
+			if(candidates == null) {
+				candidates = matches;
+			} else {
+				candidates.retainAll(matches);
+			}
+			if(candidates.isEmpty()) {
+				break;
+			}
+		}
+		return candidates == null ? Collections.<T> emptySet() : candidates;
+	}
+
+	/**
+	 * Gets the words of the vocabulary that are equal to the given word or within its maximum edit distance. Since a single edit changes at most three bigrams, a similar word has to share all but three bigrams per
+	 * edit with the given word, so only the words that share enough bigrams are compared.
+	 */
+	private List<String> getSimilarWords(String word) {
+		List<String> similar = new ArrayList<String>();
+		int maxDistance = getMaxDistance(word);
+		if(maxDistance == 0) {
+			if(byWord.containsKey(word)) {
+				similar.add(word);
+			}
+			return similar;
+		}
+		Set<String> grams = getBigrams(word);
+		Map<String, Integer> sharedGrams = new HashMap<String, Integer>();
+		for(String gram : grams) {
+			Set<String> words = wordsByGram.get(gram);
+			if(words != null) {
+				for(String w : words) {
+					Integer count = sharedGrams.get(w);
+					sharedGrams.put(w, count == null ? 1 : count + 1);
+				}
+			}
+		}
+		int minSharedGrams = grams.size() - 3 * maxDistance;
+		for(Map.Entry<String, Integer> e : sharedGrams.entrySet()) {
+			if(e.getValue() >= minSharedGrams && getDistance(word, e.getKey(), maxDistance) <= maxDistance) {
+				similar.add(e.getKey());
+			}
+		}
+		return similar;
+	}
+
+	/**
+	 * Scores the given candidate by the best match of each word in any of its fields.
+	 *
+	 * @return the average score of the words or 0 if one of the words does not match
+	 */
+	private double getFuzzyScore(T o, List<String> words) {
+		List<List<String>> fields = texts.get(o);
+		double total = 0;
+		for(String word : words) {
+			int maxDistance = getMaxDistance(word);
+			double best = 0;
+			for(int i = 0; i < fields.size(); i++) {
+				for(String w : getWords(fields.get(i))) {
+					int distance = getDistance(word, w, maxDistance);
+					if(distance <= maxDistance) {
+						best = Math.max(best, fieldWeights[i] * (1 - distance / (word.length() + 1.0)));
+					}
+				}
+			}
+			if(best == 0) {
+				return 0;
+			}
+			total += best;
+		}
+		return total / words.size();
+	}
+
+	private static int getMaxDistance(String word) {
+		return word.length() < MIN_FUZZY_LENGTH ? 0 : word.length() < MIN_TWO_TYPOS_LENGTH ? 1 : 2;
+	}
+
+	/**
+	 * Calculates the edit distance of the given words, i.e. the minimum number of inserted, removed or replaced characters and swapped adjacent characters that turns one word into the other.
+	 *
+	 * @return the edit distance or <code>maxDistance + 1</code> if it exceeds the given maximum
+	 */
+	static int getDistance(String s, String t, int maxDistance) {
+		if(Math.abs(s.length() - t.length()) > maxDistance) {
+			return maxDistance + 1;
+		}
+		int[] beforePrevious = new int[t.length() + 1];
+		int[] previous = new int[t.length() + 1];
+		int[] current = new int[t.length() + 1];
+		for(int j = 0; j <= t.length(); j++) {
+			previous[j] = j;
+		}
+		for(int i = 1; i <= s.length(); i++) {
+			current[0] = i;
+			int rowMinimum = i;
+			for(int j = 1; j <= t.length(); j++) {
+				int cost = s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+				if(i > 1 && j > 1 && s.charAt(i - 1) == t.charAt(j - 2) && s.charAt(i - 2) == t.charAt(j - 1)) {
+					current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+				}
+				rowMinimum = Math.min(rowMinimum, current[j]);
+			}
+			// A swap looks back two rows, so stop only once two consecutive rows exceed the maximum
+			if(rowMinimum > maxDistance && i > 1 && getMinimum(previous) > maxDistance) {
+				return maxDistance + 1;
+			}
+			int[] tmp = beforePrevious;
+			beforePrevious = previous;
+			previous = current;
+			current = tmp;
+		}
+		return Math.min(previous[t.length()], maxDistance + 1);
+	}
+
+	private static int getMinimum(int[] row) {
+		int minimum = Integer.MAX_VALUE;
+		for(int value : row) {
+			minimum = Math.min(minimum, value);
+		}
+		return minimum;
+	}
+
+	/**
+	 * Stops the search if its thread has been interrupted.
+	 */
+	private static void checkCancelled() {
+		if(Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("The search has been cancelled");
+		}
+	}
+
+	private static <T> boolean containsAll(List<Set<T>> sets, T o) {
+		for(Set<T> set : sets) {
+			if(!set.contains(o)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean matches(T o, String q) {
+		for(List<String> field : texts.get(o)) {
+			for(String text : field) {
+				if(text.contains(q)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static List<String> flatten(List<List<String>> fields) {
+		List<String> all = new ArrayList<String>();
+		for(List<String> field : fields) {
+			all.addAll(field);
+		}
+		return all;
+	}
+
+	/**
+	 * Gets the distinct n-grams of up to {@link #GRAM_LENGTH} characters of the given texts.
+	 */
+	private static Set<String> getGrams(List<String> texts) {
+		Set<String> grams = new LinkedHashSet<String>();
+		for(String text : texts) {
+			for(int i = 0; i < text.length(); i++) {
+				for(int n = 1; n <= GRAM_LENGTH && i + n <= text.length(); n++) {
+					grams.add(text.substring(i, i + n));
+				}
+			}
+		}
+		return grams;
+	}
+
+	/**
+	 * Gets the distinct bigrams of the given word.
+	 */
+	private static Set<String> getBigrams(String word) {
+		Set<String> grams = new LinkedHashSet<String>();
+		for(int i = 0; i + 2 <= word.length(); i++) {
+			grams.add(word.substring(i, i + 2));
+		}
+		return grams;
+	}
+
+	/**
+	 * Gets the distinct words of the given texts.
+	 */
+	private static List<String> getWords(List<String> texts) {
+		Set<String> words = new LinkedHashSet<String>();
+		for(String text : texts) {
+			for(String word : WORD_SEPARATORS.split(text)) {
+				if(!word.isEmpty()) {
+					words.add(word);
+				}
+			}
+		}
+		return new ArrayList<String>(words);
+	}
+
+	/**
+	 * Returns the number of indexed objects.
+	 *
+	 * @return the number of objects
+	 */
+	public synchronized int size() {
+		return texts.size();
+	}
+
+	/**
+	 * Removes all objects from the index.
+	 */
+	public synchronized void clear() {
+		postings.clear();
+		texts.clear();
+		byWord.clear();
+		wordsByGram.clear();
+	}
+}
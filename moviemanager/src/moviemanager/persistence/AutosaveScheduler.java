@@ -0,0 +1,140 @@
+package moviemanager.persistence;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Schedules saves after the data has been modified. Bursts of modifications are coalesced: a save is triggered once no modification has happened for the debounce delay, but no later than the maximum latency
+ * after the first unsaved modification, even if the modifications continue.
+ * </p>
+ * <p>
+ * The save task is handed to the given realm executor, so it can capture the data on the realm thread. It is expected to do the actual writing in the background.
+ * </p>
+ *
+ */
+public class AutosaveScheduler {
+
+	/** Default delay in milliseconds after the last modification before the data is saved. **/
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 2000;
+	/** Default maximum delay in milliseconds after the first unsaved modification before the data is saved. **/
+	public static final long DEFAULT_MAX_LATENCY_MILLIS = 30000;
+
+	/** Task that saves the data. **/
+	private final Runnable saveTask;
+	/** Executes the save task on the realm thread. **/
+	private final Executor realmExecutor;
+	/** Delay in nanoseconds after the last modification. **/
+	private final long debounceNanos;
+	/** Maximum delay in nanoseconds after the first unsaved modification. **/
+	private final long maxLatencyNanos;
+	/** Timer thread that triggers the saves. **/
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Autosave");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/** The scheduled save or null if there are no unsaved modifications. **/
+	private ScheduledFuture<?> pendingSave;
+	/** Time of the first unsaved modification as returned by {@link System#nanoTime()}. Only valid if a save is pending. **/
+	private long firstChangeTime;
+	/** Flag to indicate whether the scheduler has been stopped. **/
+	private boolean stopped = false;
+
+	/**
+	 * Creates a new autosave scheduler.
+	 * 
+	 * @param saveTask
+	 *            the task that saves the data
+	 * @param realmExecutor
+	 *            the executor that runs the save task on the realm thread
+	 * @param debounceMillis
+	 *            the delay in milliseconds after the last modification
+	 * @param maxLatencyMillis
+	 *            the maximum delay in milliseconds after the first unsaved modification. Must not be smaller than the debounce delay
+	 */
+	public AutosaveScheduler(Runnable saveTask, Executor realmExecutor, long debounceMillis, long maxLatencyMillis) {
+		if(saveTask == null || realmExecutor == null) {
+			throw new IllegalArgumentException("The save task and the realm executor must not be null");
+		}
+		if(debounceMillis < 0 || maxLatencyMillis < debounceMillis) {
+			throw new IllegalArgumentException("The maximum latency must not be smaller than the debounce delay");
+		}
+		this.saveTask = saveTask;
+		this.realmExecutor = realmExecutor;
+		this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+		this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+	}
+
+	/**
+	 * Notifies the scheduler that the data has been modified. Postpones the pending save by the debounce delay, unless this would exceed the maximum latency. May be called on any thread.
+	 */
+	public synchronized void changed() {
+		if(stopped) {
+			return;
+		}
+		long now = System.nanoTime();
+		if(pendingSave == null) {
+			firstChangeTime = now;
+		} else {
+			pendingSave.cancel(false);
+		}
+		long delay = Math.max(0, Math.min(debounceNanos, firstChangeTime + maxLatencyNanos - now));
+		pendingSave = timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				fire();
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Hands the save task to the realm executor. Runs on the timer thread.
+	 */
+	private void fire() {
+		synchronized(this) {
+			if(stopped) {
+				return;
+			}
+			pendingSave = null;
+		}
+		realmExecutor.execute(saveTask);
+	}
+
+	/**
+	 * Checks whether a save has been scheduled but not triggered yet.
+	 * 
+	 * @return true if a save is pending, false otherwise
+	 */
+	public synchronized boolean isPending() {
+		return pendingSave != null;
+	}
+
+	/**
+	 * Stops the scheduler. A pending save is cancelled, so the data should be saved explicitly afterwards if necessary.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		if(pendingSave != null) {
+			pendingSave.cancel(false);
+			pendingSave = null;
+		}
+		timer.shutdownNow();
+	}
+
+	public long getDebounceMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(debounceNanos);
+	}
+
+	public long getMaxLatencyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+	}
+}
@@ -0,0 +1,164 @@
+package moviemanager.persistence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads records written as comma-separated values by {@link CsvWriter}. The columns are identified by the header row, so they may appear in any order, and unknown columns are ignored. Empty rows are skipped.
+ *
+ */
+class CsvReader implements ExchangeFormat.RecordReader {
+
+	/** Marks that no character has been pushed back. **/
+	private static final int NO_CHARACTER = -2;
+
+	/** The underlying reader. **/
+	private final Reader in;
+	/** Names of the columns. **/
+	private final List<String> columns;
+	/** Values of the fields of the current row. **/
+	private final List<String> values = new ArrayList<String>();
+	/** Indices of the fields of the current row that have been quoted. **/
+	private final BitSet quoted = new BitSet();
+	/** Character that has been read ahead or NO_CHARACTER. **/
+	private int pushedBack = NO_CHARACTER;
+	/** Number of the line the next character is read from. **/
+	private int line = 1;
+	/** Number of the line the current row starts in. **/
+	private int lineNumber = 0;
+
+	CsvReader(Reader in) throws IOException {
+		this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+		this.columns = readRow() ? new ArrayList<String>(values) : new ArrayList<String>();
+	}
+
+	@Override
+	public Map<String, Object> read() throws IOException {
+		do {
+			if(!readRow()) {
+				return null;
+			}
+		} while(values.size() == 1 && values.get(0).isEmpty() && !quoted.get(0));
+
+		Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		for(int i = 0; i < Math.min(columns.size(), values.size()); i++) {
+			String name = columns.get(i);
+			String value = values.get(i);
+			if(value.isEmpty() && !quoted.get(i)) {
+				fields.put(name, null);
+			} else if(ExchangeFormat.LIST_FIELDS.contains(name)) {
+				fields.put(name, splitList(value));
+			} else {
+				fields.put(name, value);
+			}
+		}
+		return fields;
+	}
+
+	@Override
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Reads the fields of the next row into {@link #values}.
+	 *
+	 * @return true if a row has been read, false if the end of the input has been reached
+	 * @throws IOException
+	 *             if the row cannot be read or is invalid
+	 */
+	private boolean readRow() throws IOException {
+		values.clear();
+		quoted.clear();
+		int c = next();
+		if(c == -1) {
+			return false;
+		}
+		lineNumber = line;
+		StringBuilder field = new StringBuilder();
+		boolean fieldQuoted = false;
+		while(true) {
+			if(c == '"' && field.length() == 0 && !fieldQuoted) {
+				// Quoted fields may contain commas, line breaks and quotes, which are doubled
+				fieldQuoted = true;
+				while(true) {
+					c = next();
+					if(c == -1) {
+						throw new IOException("Unterminated quoted field in line " + lineNumber);
+					}
+					if(c == '"') {
+						c = next();
+						if(c != '"') {
+							break;
+						}
+					}
+					field.append((char) c);
+				}
+			} else if(c == ',') {
+				addField(field, fieldQuoted);
+				field.setLength(0);
+				fieldQuoted = false;
+				c = next();
+			} else if(c == '\r' || c == '\n' || c == -1) {
+				addField(field, fieldQuoted);
+				if(c == '\r') {
+					c = next();
+					if(c != '\n') {
+						pushedBack = c;
+					}
+				}
+				return true;
+			} else if(fieldQuoted) {
+				throw new IOException("Unexpected character after quoted field in line " + line);
+			} else {
+				field.append((char) c);
+				c = next();
+			}
+		}
+	}
+
+	private void addField(StringBuilder field, boolean fieldQuoted) {
+		quoted.set(values.size(), fieldQuoted);
+		values.add(field.toString());
+	}
+
+	private int next() throws IOException {
+		if(pushedBack != NO_CHARACTER) {
+			int c = pushedBack;
+			pushedBack = NO_CHARACTER;
+			return c;
+		}
+		int c = in.read();
+		if(c == '\n') {
+			line++;
+		}
+		return c;
+	}
+
+	private static List<String> splitList(String value) {
+		List<String> list = new ArrayList<String>();
+		if(value.isEmpty()) {
+			return list;
+		}
+		StringBuilder element = new StringBuilder();
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if(c == '\\' && i + 1 < value.length()) {
+				element.append(value.charAt(++i));
+			} else if(c == '|') {
+				list.add(element.toString());
+				element.setLength(0);
+			} else {
+				element.append(c);
+			}
+		}
+		list.add(element.toString());
+		return list;
+	}
+}
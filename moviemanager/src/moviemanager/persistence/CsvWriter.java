@@ -0,0 +1,73 @@
+package moviemanager.persistence;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes records as comma-separated values. The first row contains the names of all {@link ExchangeFormat#FIELDS}, and each following row contains a record. Fields are quoted if necessary, so they may contain
+ * commas, quotes and line breaks. An empty unquoted field stands for null, whereas an empty string is written as <code>""</code>. The elements of list fields are separated by '|', and '|' and '\' within an
+ * element are escaped by a preceding '\'.
+ *
+ */
+class CsvWriter implements ExchangeFormat.RecordWriter {
+
+	/** Line terminator of each row. **/
+	private static final String LINE_TERMINATOR = "\r\n";
+
+	/** The underlying writer. **/
+	private final Writer out;
+
+	CsvWriter(Writer out) throws IOException {
+		this.out = out;
+		boolean first = true;
+		for(String name : ExchangeFormat.FIELDS) {
+			if(!first) {
+				out.write(',');
+			}
+			first = false;
+			out.write(name);
+		}
+		out.write(LINE_TERMINATOR);
+	}
+
+	@Override
+	public void write(Map<String, Object> fields) throws IOException {
+		boolean first = true;
+		for(String name : ExchangeFormat.FIELDS) {
+			if(!first) {
+				out.write(',');
+			}
+			first = false;
+			Object value = fields.get(name);
+			if(value instanceof List) {
+				writeField(joinList((List<?>) value));
+			} else if(value != null) {
+				writeField(value.toString());
+			}
+		}
+		out.write(LINE_TERMINATOR);
+	}
+
+	private void writeField(String s) throws IOException {
+		if(!s.isEmpty() && s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+			out.write(s);
+			return;
+		}
+		out.write('"');
+		out.write(s.replace("\"", "\"\""));
+		out.write('"');
+	}
+
+	private static String joinList(List<?> list) {
+		StringBuilder s = new StringBuilder();
+		for(int i = 0; i < list.size(); i++) {
+			if(i > 0) {
+				s.append('|');
+			}
+			s.append(String.valueOf(list.get(i)).replace("\\", "\\\\").replace("|", "\\|"));
+		}
+		return s.toString();
+	}
+}
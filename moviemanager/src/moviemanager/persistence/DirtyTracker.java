@@ -0,0 +1,186 @@
+package moviemanager.persistence;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import moviemanager.data.AbstractModelObject;
+import moviemanager.data.Movie;
+import moviemanager.data.Performer;
+
+/**
+ * Keeps track of the movies and performers that have been added, modified or removed since the data was last saved, so that only those need to be written on the next save. Images are tracked separately, since
+ * they only need to be written if they have actually been replaced.
+ *
+ */
+public class DirtyTracker {
+
+	/** Movies that have been added or modified, by UUID. **/
+	private final Map<UUID, Movie> changedMovies = new LinkedHashMap<UUID, Movie>();
+	/** Performers that have been added or modified, by UUID. **/
+	private final Map<UUID, Performer> changedPerformers = new LinkedHashMap<UUID, Performer>();
+	/** UUIDs of removed movies. **/
+	private final Set<UUID> removedMovies = new LinkedHashSet<UUID>();
+	/** UUIDs of removed performers. **/
+	private final Set<UUID> removedPerformers = new LinkedHashSet<UUID>();
+	/** Movies and performers whose image has been replaced. **/
+	private final Set<AbstractModelObject> changedImages = new LinkedHashSet<AbstractModelObject>();
+	/** Notified whenever a change is tracked. May be null. **/
+	private Runnable changeListener;
+	/** Number of batches that are currently open. **/
+	private int batchDepth = 0;
+	/** Flag to indicate whether a change has been tracked during the open batches. **/
+	private boolean changedDuringBatch = false;
+
+	/**
+	 * Sets the listener that is notified whenever a change is tracked, e.g. to schedule a save.
+	 * 
+	 * @param changeListener
+	 *            the listener or null
+	 */
+	public void setChangeListener(Runnable changeListener) {
+		this.changeListener = changeListener;
+	}
+
+	private void fireChanged() {
+		if(batchDepth > 0) {
+			changedDuringBatch = true;
+		} else if(changeListener != null) {
+			changeListener.run();
+		}
+	}
+
+	/**
+	 * Opens a batch. Until the outermost batch is closed, the change listener is not notified about the tracked changes. Batches may be nested.
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Closes a batch. Once the outermost batch is closed, the change listener is notified once if any changes have been tracked during the batch.
+	 */
+	public void endBatch() {
+		if(batchDepth == 0) {
+			throw new IllegalStateException("No batch has been opened");
+		}
+		batchDepth--;
+		if(batchDepth == 0 && changedDuringBatch) {
+			changedDuringBatch = false;
+			fireChanged();
+		}
+	}
+
+	/**
+	 * Marks the given movie as added or modified.
+	 *
+	 * @param m
+	 *            the movie
+	 */
+	public void movieChanged(Movie m) {
+		removedMovies.remove(m.getId());
+		changedMovies.put(m.getId(), m);
+		fireChanged();
+	}
+
+	/**
+	 * Marks the given movie as removed.
+	 *
+	 * @param m
+	 *            the movie
+	 */
+	public void movieRemoved(Movie m) {
+		changedMovies.remove(m.getId());
+		changedImages.remove(m);
+		removedMovies.add(m.getId());
+		fireChanged();
+	}
+
+	/**
+	 * Marks the given performer as added or modified.
+	 *
+	 * @param p
+	 *            the performer
+	 */
+	public void performerChanged(Performer p) {
+		removedPerformers.remove(p.getId());
+		changedPerformers.put(p.getId(), p);
+		fireChanged();
+	}
+
+	/**
+	 * Marks the given performer as removed.
+	 *
+	 * @param p
+	 *            the performer
+	 */
+	public void performerRemoved(Performer p) {
+		changedPerformers.remove(p.getId());
+		changedImages.remove(p);
+		removedPerformers.add(p.getId());
+		fireChanged();
+	}
+
+	/**
+	 * Marks the image of the given movie or performer as replaced.
+	 *
+	 * @param o
+	 *            the movie or performer
+	 */
+	public void imageChanged(AbstractModelObject o) {
+		changedImages.add(o);
+		fireChanged();
+	}
+
+	/**
+	 * Returns whether any changes have been tracked since the last call to {@link #clear()}.
+	 *
+	 * @return true if there are unsaved changes, false otherwise
+	 */
+	public boolean isDirty() {
+		return !changedMovies.isEmpty() || !changedPerformers.isEmpty() || !removedMovies.isEmpty() || !removedPerformers.isEmpty() || !changedImages.isEmpty();
+	}
+
+	/**
+	 * Returns the number of movies and performers that have been added, modified or removed.
+	 *
+	 * @return the number of changed entities
+	 */
+	public int getChangeCount() {
+		return changedMovies.size() + changedPerformers.size() + removedMovies.size() + removedPerformers.size();
+	}
+
+	public Set<Movie> getChangedMovies() {
+		return Collections.unmodifiableSet(new LinkedHashSet<Movie>(changedMovies.values()));
+	}
+
+	public Set<Performer> getChangedPerformers() {
+		return Collections.unmodifiableSet(new LinkedHashSet<Performer>(changedPerformers.values()));
+	}
+
+	public Set<UUID> getRemovedMovies() {
+		return Collections.unmodifiableSet(removedMovies);
+	}
+
+	public Set<UUID> getRemovedPerformers() {
+		return Collections.unmodifiableSet(removedPerformers);
+	}
+
+	public Set<AbstractModelObject> getChangedImages() {
+		return Collections.unmodifiableSet(changedImages);
+	}
+
+	/**
+	 * Forgets all tracked changes. Should be called after the data has been saved or loaded.
+	 */
+	public void clear() {
+		changedMovies.clear();
+		changedPerformers.clear();
+		removedMovies.clear();
+		removedPerformers.clear();
+		changedImages.clear();
+	}
+}
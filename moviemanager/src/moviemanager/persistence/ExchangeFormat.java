@@ -0,0 +1,178 @@
+package moviemanager.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Text formats for exchanging the movie and performer databases with other systems. Both formats store one movie or performer per record, so that a library of any size can be written and read as a stream.
+ * </p>
+ * <p>
+ * A record consists of named fields. The field {@link #FIELD_TYPE} tells whether it is a movie or a performer, and movies and performers refer to each other by their UUIDs in the fields
+ * {@link #FIELD_PERFORMERS} and {@link #FIELD_MOVIES}. Dates are stored as milliseconds since the epoch. Images are not exchanged, since they refer to the local image store.
+ * </p>
+ *
+ */
+public enum ExchangeFormat {
+
+	/** One JSON object per line. **/
+	JSON_LINES(".jsonl") {
+		@Override
+		RecordWriter newWriter(Writer out) throws IOException {
+			return new JsonLinesWriter(out);
+		}
+
+		@Override
+		RecordReader newReader(Reader in) throws IOException {
+			return new JsonLinesReader(in);
+		}
+	},
+
+	/** Comma-separated values with a header row, as described by RFC 4180. The elements of list fields are separated by '|'. **/
+	CSV(".csv") {
+		@Override
+		RecordWriter newWriter(Writer out) throws IOException {
+			return new CsvWriter(out);
+		}
+
+		@Override
+		RecordReader newReader(Reader in) throws IOException {
+			return new CsvReader(in);
+		}
+	};
+
+	/** Type of the record, i.e. {@link #TYPE_MOVIE} or {@link #TYPE_PERFORMER}. **/
+	public static final String FIELD_TYPE = "type";
+	public static final String FIELD_ID = "id";
+	public static final String FIELD_IMDB_ID = "imdbID";
+	public static final String FIELD_TITLE = "title";
+	public static final String FIELD_FIRST_NAME = "firstName";
+	public static final String FIELD_LAST_NAME = "lastName";
+	public static final String FIELD_DESCRIPTION = "description";
+	public static final String FIELD_BIOGRAPHY = "biography";
+	public static final String FIELD_COUNTRY = "country";
+	public static final String FIELD_LANGUAGE = "language";
+	public static final String FIELD_RELEASE_DATE = "releaseDate";
+	public static final String FIELD_WATCH_DATE = "watchDate";
+	public static final String FIELD_RETURN_DATE = "returnDate";
+	public static final String FIELD_DATE_OF_BIRTH = "dateOfBirth";
+	public static final String FIELD_RUNTIME = "runtime";
+	public static final String FIELD_RATING = "rating";
+	public static final String FIELD_OVERALL_RATING = "overallRating";
+	public static final String FIELD_ALTERNATIVE_TITLES = "alternativeTitles";
+	public static final String FIELD_FILMING_LOCATIONS = "filmingLocations";
+	public static final String FIELD_ALTERNATE_NAMES = "alternateNames";
+	/** UUIDs of the performers of a movie. **/
+	public static final String FIELD_PERFORMERS = "performers";
+	/** UUIDs of the movies of a performer. **/
+	public static final String FIELD_MOVIES = "movies";
+
+	/** Value of {@link #FIELD_TYPE} for movies. **/
+	public static final String TYPE_MOVIE = "movie";
+	/** Value of {@link #FIELD_TYPE} for performers. **/
+	public static final String TYPE_PERFORMER = "performer";
+
+	/** All fields in the order they are written, e.g. as the columns of the CSV format. **/
+	static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(FIELD_TYPE, FIELD_ID, FIELD_IMDB_ID, FIELD_TITLE, FIELD_FIRST_NAME, FIELD_LAST_NAME, FIELD_DESCRIPTION, FIELD_BIOGRAPHY,
+			FIELD_COUNTRY, FIELD_LANGUAGE, FIELD_RELEASE_DATE, FIELD_WATCH_DATE, FIELD_RETURN_DATE, FIELD_DATE_OF_BIRTH, FIELD_RUNTIME, FIELD_RATING, FIELD_OVERALL_RATING, FIELD_ALTERNATIVE_TITLES,
+			FIELD_FILMING_LOCATIONS, FIELD_ALTERNATE_NAMES, FIELD_PERFORMERS, FIELD_MOVIES));
+	/** Fields whose values are lists of strings. **/
+	static final Set<String> LIST_FIELDS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(FIELD_ALTERNATIVE_TITLES, FIELD_FILMING_LOCATIONS, FIELD_ALTERNATE_NAMES, FIELD_PERFORMERS, FIELD_MOVIES)));
+
+	/** Extension of files in this format. **/
+	private final String fileExtension;
+
+	private ExchangeFormat(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	/**
+	 * Gets the format of the given file by its extension.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the format of the file
+	 * @throws IllegalArgumentException
+	 *             if the extension of the file does not belong to any format
+	 */
+	public static ExchangeFormat forFile(File file) {
+		for(ExchangeFormat format : values()) {
+			if(file.getName().toLowerCase().endsWith(format.fileExtension)) {
+				return format;
+			}
+		}
+		throw new IllegalArgumentException("Unknown exchange format: " + file);
+	}
+
+	/**
+	 * Creates a writer for records in this format.
+	 *
+	 * @param out
+	 *            the underlying writer, which should be buffered
+	 * @return the record writer
+	 * @throws IOException
+	 *             if a header cannot be written
+	 */
+	abstract RecordWriter newWriter(Writer out) throws IOException;
+
+	/**
+	 * Creates a reader for records in this format.
+	 *
+	 * @param in
+	 *            the underlying reader, which should be buffered
+	 * @return the record reader
+	 * @throws IOException
+	 *             if a header cannot be read
+	 */
+	abstract RecordReader newReader(Reader in) throws IOException;
+
+	/**
+	 * Writes records one by one.
+	 *
+	 */
+	interface RecordWriter {
+		/**
+		 * Writes a record.
+		 *
+		 * @param fields
+		 *            the fields of the record. Their values are either null, strings, numbers or lists of strings
+		 * @throws IOException
+		 *             if the record cannot be written
+		 */
+		void write(Map<String, Object> fields) throws IOException;
+	}
+
+	/**
+	 * Reads records one by one.
+	 *
+	 */
+	interface RecordReader {
+		/**
+		 * Reads the next record.
+		 *
+		 * @return the fields of the record or null if the end of the input has been reached. Their values are either null, strings, numbers or lists of strings
+		 * @throws IOException
+		 *             if the record cannot be read or is invalid
+		 */
+		Map<String, Object> read() throws IOException;
+
+		/**
+		 * Gets the number of the line the last record has been read from, e.g. for error messages.
+		 *
+		 * @return the line number, starting with 1
+		 */
+		int getLineNumber();
+	}
+}
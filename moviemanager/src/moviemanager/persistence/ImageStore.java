@@ -0,0 +1,229 @@
+package moviemanager.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * <p>
+ * Content-addressed store of the images of movies and performers. Every image is stored as a PNG file named after a hash of its pixels, and movies and performers refer to their image by this hash. Identical
+ * images are therefore stored only once, and an image that is already in the store is never encoded or written again.
+ * </p>
+ * <p>
+ * Images that are no longer referenced are removed by {@link #retainAll(Set)}.
+ * </p>
+ *
+ */
+public class ImageStore {
+
+	/** Name of the folder containing the stored images within the images folder. **/
+	public static final String DIRECTORY_NAME = "blobs";
+
+	/** Digits of the hexadecimal representation of hashes. **/
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/** The folder containing the stored images. **/
+	private final File directory;
+
+	/**
+	 * Creates a new image store in the given folder. The folder is created when the first image is stored.
+	 * 
+	 * @param directory
+	 *            the folder containing the stored images
+	 */
+	public ImageStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Calculates the hash identifying the given image. The hash covers the dimensions, the color model and the pixels of the image, but not the way it has been encoded.
+	 * 
+	 * @param data
+	 *            the image
+	 * @return the hash as a hexadecimal string
+	 */
+	public static String hash(ImageData data) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch(NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+		ByteBuffer header = ByteBuffer.allocate(24);
+		header.putInt(data.width).putInt(data.height).putInt(data.depth).putInt(data.bytesPerLine).putInt(data.transparentPixel).putInt(data.alpha);
+		digest.update(header.array());
+
+		PaletteData palette = data.palette;
+		ByteBuffer colors;
+		if(palette.isDirect) {
+			colors = ByteBuffer.allocate(12);
+			colors.putInt(palette.redMask).putInt(palette.greenMask).putInt(palette.blueMask);
+		} else {
+			RGB[] rgbs = palette.getRGBs();
+			colors = ByteBuffer.allocate(3 * rgbs.length);
+			for(RGB rgb : rgbs) {
+				colors.put((byte) rgb.red).put((byte) rgb.green).put((byte) rgb.blue);
+			}
+		}
+		digest.update(colors.array());
+
+		digest.update(data.data);
+		if(data.alphaData != null) {
+			digest.update(data.alphaData);
+		}
+		if(data.maskData != null) {
+			digest.update(data.maskData);
+		}
+		return toHex(digest.digest());
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++) {
+			hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Gets the file of the image with the given hash.
+	 * 
+	 * @param hash
+	 *            the hash of the image
+	 * @return the image file
+	 */
+	public File getFile(String hash) {
+		return new File(directory, hash + ".png");
+	}
+
+	/**
+	 * Checks whether the image with the given hash has been stored.
+	 * 
+	 * @param hash
+	 *            the hash of the image
+	 * @return true if the image has been stored, false otherwise
+	 */
+	public boolean contains(String hash) {
+		return getFile(hash).isFile();
+	}
+
+	/**
+	 * Loads the image with the given hash.
+	 * 
+	 * @param hash
+	 *            the hash of the image
+	 * @return the image or null if it has not been stored or cannot be decoded
+	 */
+	public ImageData load(String hash) {
+		File file = getFile(hash);
+		if(!file.isFile()) {
+			return null;
+		}
+		try {
+			return new ImageData(file.getPath());
+		} catch(SWTException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given image under the given hash, unless it has already been stored.
+	 * 
+	 * @param hash
+	 *            the hash of the image, as calculated by {@link #hash(ImageData)}
+	 * @param data
+	 *            the image
+	 * @return true if the image has been written, false if it had already been stored
+	 * @throws IOException
+	 *             if the image cannot be written
+	 */
+	public boolean store(String hash, ImageData data) throws IOException {
+		if(contains(hash)) {
+			return false;
+		}
+		write(directory, getFile(hash), RenditionStore.encode(data));
+		return true;
+	}
+
+	/**
+	 * Adds the given image file to the store without encoding it again, e.g. when migrating the images of the legacy format.
+	 * 
+	 * @param file
+	 *            the image file
+	 * @return the hash of the image
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid image
+	 */
+	public String importFile(File file) throws IOException {
+		byte[] content = Files.readAllBytes(file.toPath());
+		String hash;
+		try {
+			hash = hash(new ImageData(file.getPath()));
+		} catch(SWTException e) {
+			throw new IOException("Invalid image " + file, e);
+		}
+		if(!contains(hash)) {
+			write(directory, getFile(hash), content);
+		}
+		return hash;
+	}
+
+	/**
+	 * Deletes all stored images except the ones with the given hashes.
+	 * 
+	 * @param hashes
+	 *            the hashes of the images that are still referenced
+	 * @return the number of deleted images
+	 */
+	public int retainAll(Set<String> hashes) {
+		int deleted = 0;
+		File[] files = directory.listFiles();
+		if(files != null) {
+			for(File f : files) {
+				String name = f.getName();
+				if(f.isFile() && name.endsWith(".png") && !hashes.contains(name.substring(0, name.length() - 4)) && f.delete()) {
+					deleted++;
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Writes the given content to the given file in the given folder. The content is written to a temporary file first, so the file is always complete.
+	 * 
+	 * @param directory
+	 *            the folder
+	 * @param file
+	 *            the file
+	 * @param content
+	 *            the content
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	static void write(File directory, File file, byte[] content) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			Files.write(tempFile.toPath(), content);
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			tempFile.delete();
+		}
+	}
+}
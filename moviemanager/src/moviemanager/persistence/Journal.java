@@ -0,0 +1,467 @@
+package moviemanager.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * Append-only journal of the modifications of the movie and performer databases. Every modification is appended as a small length-prefixed record followed by its CRC32 checksum as soon as it happens, so that
+ * no modification is lost if the application terminates before the data is saved. The records are handed to the operating system but not forced to the disk, since that would make every modification wait
+ * for the disk. A crash of the operating system or a power failure may therefore lose the most recent records, but never the data that has been saved into the snapshot.
+ * </p>
+ * <p>
+ * Replaying the journal on top of the snapshot it was started on restores the state of the databases. All records are idempotent, i.e. replaying them on a snapshot that already contains some of the modifications
+ * yields the same state. An incomplete or damaged record at the end of the journal, e.g. caused by a crash during an append, is ignored together with everything after it.
+ * </p>
+ *
+ */
+public class Journal implements Closeable {
+
+	/** Record type of an added movie in the fixed-width layout written before {@link RecordCodec} was introduced. **/
+	private static final byte LEGACY_ADD_MOVIE = 1;
+	/** Record type of a removed movie. **/
+	private static final byte REMOVE_MOVIE = 2;
+	/** Record type of an added performer in the fixed-width layout written before {@link RecordCodec} was introduced. **/
+	private static final byte LEGACY_ADD_PERFORMER = 3;
+	/** Record type of a removed performer. **/
+	private static final byte REMOVE_PERFORMER = 4;
+	/** Record type of a modified property. **/
+	private static final byte SET_PROPERTY = 5;
+	/** Record type of a modified list of strings. **/
+	private static final byte SET_LIST = 6;
+	/** Record type of a movie that has been linked to a performer. **/
+	private static final byte LINK = 7;
+	/** Record type of a movie that has been unlinked from a performer. **/
+	private static final byte UNLINK = 8;
+	/** Record type of an added movie, encoded by {@link RecordCodec}. **/
+	private static final byte ADD_MOVIE = 9;
+	/** Record type of an added performer, encoded by {@link RecordCodec}. **/
+	private static final byte ADD_PERFORMER = 10;
+
+	/** Value tag of null values. **/
+	private static final byte VALUE_NULL = 0;
+	/** Value tag of strings. **/
+	private static final byte VALUE_STRING = 1;
+	/** Value tag of integers. **/
+	private static final byte VALUE_INT = 2;
+	/** Value tag of dates. **/
+	private static final byte VALUE_DATE = 3;
+
+	/** Codec of the movie and performer records. Strings are written inline, since journal records are replayed one by one. **/
+	private static final RecordCodec CODEC = new RecordCodec();
+
+	/**
+	 * Receives the modifications while a journal is replayed.
+	 *
+	 */
+	public interface Handler {
+		/**
+		 * Called for an added movie. If a movie with the same UUID already exists, it should be updated instead.
+		 *
+		 * @param m
+		 *            the record of the movie, including the UUIDs of its performers at the time it was added
+		 */
+		void movieAdded(MovieRecord m);
+
+		/**
+		 * Called for a removed movie.
+		 *
+		 * @param id
+		 *            the UUID of the movie
+		 */
+		void movieRemoved(UUID id);
+
+		/**
+		 * Called for an added performer. If a performer with the same UUID already exists, it should be updated instead.
+		 *
+		 * @param p
+		 *            the record of the performer, including the UUIDs of its movies at the time it was added
+		 */
+		void performerAdded(PerformerRecord p);
+
+		/**
+		 * Called for a removed performer.
+		 *
+		 * @param id
+		 *            the UUID of the performer
+		 */
+		void performerRemoved(UUID id);
+
+		/**
+		 * Called for a modified property of a movie or performer.
+		 *
+		 * @param id
+		 *            the UUID of the movie or performer
+		 * @param property
+		 *            the name of the property
+		 * @param value
+		 *            the new value. Either null, a string, an integer or a date
+		 */
+		void propertyChanged(UUID id, String property, Object value);
+
+		/**
+		 * Called for a modified list of strings of a movie or performer.
+		 *
+		 * @param id
+		 *            the UUID of the movie or performer
+		 * @param property
+		 *            the name of the list property
+		 * @param values
+		 *            the new contents of the list
+		 */
+		void listChanged(UUID id, String property, List<String> values);
+
+		/**
+		 * Called for a movie that has been linked to or unlinked from a performer.
+		 *
+		 * @param movieId
+		 *            the UUID of the movie
+		 * @param performerId
+		 *            the UUID of the performer
+		 * @param linked
+		 *            true if the movie has been linked, false if it has been unlinked
+		 */
+		void linkChanged(UUID movieId, UUID performerId, boolean linked);
+	}
+
+	/** The journal file. **/
+	private final File file;
+	/** Channel the records are appended to. **/
+	private final FileChannel channel;
+	/** Buffer used to assemble a single record. **/
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	/** Output stream writing into the record buffer. **/
+	private final DataOutputStream out = new DataOutputStream(buffer);
+
+	/**
+	 * Opens the given journal file for appending. The file is created if it does not exist yet. Anything after the given position, e.g. an incomplete record, is discarded.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param position
+	 *            the length of the valid part of the file, as returned by {@link #replay(File, Handler)}
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public Journal(File file, long position) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		channel.truncate(position);
+		channel.position(position);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the current size of the journal.
+	 *
+	 * @return the size in bytes
+	 * @throws IOException
+	 *             if the size cannot be determined
+	 */
+	public long size() throws IOException {
+		return channel.position();
+	}
+
+	public void movieAdded(MovieRecord m) throws IOException {
+		begin(ADD_MOVIE);
+		CODEC.writeMovie(out, m);
+		end();
+	}
+
+	public void movieRemoved(UUID id) throws IOException {
+		begin(REMOVE_MOVIE);
+		writeUUID(out, id);
+		end();
+	}
+
+	public void performerAdded(PerformerRecord p) throws IOException {
+		begin(ADD_PERFORMER);
+		CODEC.writePerformer(out, p);
+		end();
+	}
+
+	public void performerRemoved(UUID id) throws IOException {
+		begin(REMOVE_PERFORMER);
+		writeUUID(out, id);
+		end();
+	}
+
+	/**
+	 * Appends a modified property of a movie or performer.
+	 *
+	 * @param id
+	 *            the UUID of the movie or performer
+	 * @param property
+	 *            the name of the property
+	 * @param value
+	 *            the new value. Must be either null, a string, an integer or a date
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public void propertyChanged(UUID id, String property, Object value) throws IOException {
+		begin(SET_PROPERTY);
+		writeUUID(out, id);
+		writeString(out, property);
+		if(value == null) {
+			out.writeByte(VALUE_NULL);
+		} else if(value instanceof String) {
+			out.writeByte(VALUE_STRING);
+			writeString(out, (String) value);
+		} else if(value instanceof Integer) {
+			out.writeByte(VALUE_INT);
+			out.writeInt((Integer) value);
+		} else if(value instanceof Date) {
+			out.writeByte(VALUE_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else {
+			throw new IllegalArgumentException("Unsupported property value: " + value);
+		}
+		end();
+	}
+
+	public void listChanged(UUID id, String property, List<String> values) throws IOException {
+		begin(SET_LIST);
+		writeUUID(out, id);
+		writeString(out, property);
+		writeStrings(out, values);
+		end();
+	}
+
+	public void linkChanged(UUID movieId, UUID performerId, boolean linked) throws IOException {
+		begin(linked ? LINK : UNLINK);
+		writeUUID(out, movieId);
+		writeUUID(out, performerId);
+		end();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void begin(byte type) throws IOException {
+		buffer.reset();
+		out.writeInt(0);
+		out.writeByte(type);
+	}
+
+	private void end() throws IOException {
+		out.writeInt(0);
+		byte[] bytes = buffer.toByteArray();
+		ByteBuffer record = ByteBuffer.wrap(bytes);
+		record.putInt(0, bytes.length - 8);
+		record.putInt(bytes.length - 4, checksum(bytes, 4, bytes.length - 8));
+		while(record.hasRemaining()) {
+			channel.write(record);
+		}
+	}
+
+	/**
+	 * Replays the given journal file.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param handler
+	 *            the handler receiving the modifications
+	 * @return the length of the valid part of the file in bytes
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static long replay(File file, Handler handler) throws IOException {
+		long position = 0;
+		long fileLength = file.length();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while(fileLength - position >= 8) {
+				int length = in.readInt();
+				if(length <= 0 || length > fileLength - position - 8) {
+					// Incomplete record
+					break;
+				}
+				byte[] bytes = new byte[length];
+				in.readFully(bytes);
+				if(in.readInt() != checksum(bytes, 0, length)) {
+					// Damaged record, e.g. because it has not been written to the disk completely before a crash
+					break;
+				}
+				position += 4 + length + 4;
+
+				DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+				byte type = record.readByte();
+				switch(type) {
+				case ADD_MOVIE:
+					handler.movieAdded(CODEC.readMovie(ByteBuffer.wrap(bytes, 1, length - 1)));
+					break;
+				case LEGACY_ADD_MOVIE:
+					handler.movieAdded(readLegacyMovie(record));
+					break;
+				case REMOVE_MOVIE:
+					handler.movieRemoved(readUUID(record));
+					break;
+				case ADD_PERFORMER:
+					handler.performerAdded(CODEC.readPerformer(ByteBuffer.wrap(bytes, 1, length - 1)));
+					break;
+				case LEGACY_ADD_PERFORMER:
+					handler.performerAdded(readLegacyPerformer(record));
+					break;
+				case REMOVE_PERFORMER:
+					handler.performerRemoved(readUUID(record));
+					break;
+				case SET_PROPERTY: {
+					UUID id = readUUID(record);
+					String property = readString(record);
+					Object value;
+					byte tag = record.readByte();
+					switch(tag) {
+					case VALUE_NULL:
+						value = null;
+						break;
+					case VALUE_STRING:
+						value = readString(record);
+						break;
+					case VALUE_INT:
+						value = record.readInt();
+						break;
+					case VALUE_DATE:
+						value = new Date(record.readLong());
+						break;
+					default:
+						throw new IOException("Invalid value tag " + tag + " in journal " + file);
+					}
+					handler.propertyChanged(id, property, value);
+					break;
+				}
+				case SET_LIST:
+					handler.listChanged(readUUID(record), readString(record), readStrings(record));
+					break;
+				case LINK:
+					handler.linkChanged(readUUID(record), readUUID(record), true);
+					break;
+				case UNLINK:
+					handler.linkChanged(readUUID(record), readUUID(record), false);
+					break;
+				default:
+					throw new IOException("Invalid record type " + type + " in journal " + file);
+				}
+			}
+		} catch(EOFException e) {
+			// Incomplete record; everything up to the last complete record has been replayed
+		}
+		return position;
+	}
+
+	private static int checksum(byte[] bytes, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, length);
+		return (int) crc.getValue();
+	}
+
+	private static MovieRecord readLegacyMovie(DataInputStream in) throws IOException {
+		UUID id = readUUID(in);
+		String imdbID = readString(in);
+		String title = readString(in);
+		String description = readString(in);
+		String country = readString(in);
+		String language = readString(in);
+		long releaseDate = in.readLong();
+		long watchDate = in.readLong();
+		long returnDate = in.readLong();
+		int runtime = in.readInt();
+		int rating = in.readInt();
+		int overallRating = in.readInt();
+		List<String> alternativeTitles = readStrings(in);
+		List<String> filmingLocations = readStrings(in);
+		List<UUID> performerIds = readUUIDs(in);
+		// Records of older versions end before the image hash
+		String imageHash = in.available() > 0 ? readString(in) : null;
+		return new MovieRecord(id, imdbID, title, description, country, language, releaseDate, watchDate, returnDate, runtime, rating, overallRating, alternativeTitles, filmingLocations, performerIds, imageHash);
+	}
+
+	private static PerformerRecord readLegacyPerformer(DataInputStream in) throws IOException {
+		UUID id = readUUID(in);
+		String imdbID = readString(in);
+		String firstName = readString(in);
+		String lastName = readString(in);
+		String biography = readString(in);
+		String country = readString(in);
+		long dateOfBirth = in.readLong();
+		int rating = in.readInt();
+		List<String> alternateNames = readStrings(in);
+		List<UUID> movieIds = readUUIDs(in);
+		String imageHash = in.available() > 0 ? readString(in) : null;
+		return new PerformerRecord(id, imdbID, firstName, lastName, biography, country, dateOfBirth, rating, alternateNames, movieIds, imageHash);
+	}
+
+	private static void writeUUID(DataOutputStream out, UUID id) throws IOException {
+		out.writeLong(id.getMostSignificantBits());
+		out.writeLong(id.getLeastSignificantBits());
+	}
+
+	private static UUID readUUID(DataInputStream in) throws IOException {
+		return new UUID(in.readLong(), in.readLong());
+	}
+
+	private static List<UUID> readUUIDs(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<UUID> ids = new ArrayList<UUID>(size);
+		for(int i = 0; i < size; i++) {
+			ids.add(readUUID(in));
+		}
+		return ids;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> list) throws IOException {
+		out.writeInt(list.size());
+		for(String s : list) {
+			writeString(out, s);
+		}
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<String> list = new ArrayList<String>(size);
+		for(int i = 0; i < size; i++) {
+			list.add(readString(in));
+		}
+		return list;
+	}
+}
@@ -0,0 +1,198 @@
+package moviemanager.persistence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads records written as JSON Lines. Each non-empty line has to contain a JSON object whose values are null, booleans, strings, numbers or arrays of these. Nested objects are not supported, since records
+ * are flat.
+ *
+ */
+class JsonLinesReader implements ExchangeFormat.RecordReader {
+
+	/** The underlying reader. **/
+	private final BufferedReader in;
+	/** The line that is currently parsed. **/
+	private String line;
+	/** Position of the next character of the current line. **/
+	private int position;
+	/** Number of the current line. **/
+	private int lineNumber = 0;
+
+	JsonLinesReader(Reader in) {
+		this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+	}
+
+	@Override
+	public Map<String, Object> read() throws IOException {
+		do {
+			line = in.readLine();
+			if(line == null) {
+				return null;
+			}
+			lineNumber++;
+		} while(line.trim().isEmpty());
+		position = 0;
+
+		Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		expect('{');
+		if(peek() == '}') {
+			position++;
+		} else {
+			do {
+				String name = readString();
+				expect(':');
+				fields.put(name, readValue());
+			} while(consume(','));
+			expect('}');
+		}
+		if(peek() != -1) {
+			throw error("Unexpected characters after the object");
+		}
+		return fields;
+	}
+
+	@Override
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	private Object readValue() throws IOException {
+		int c = peek();
+		if(c == '"') {
+			return readString();
+		} else if(c == '[') {
+			position++;
+			List<Object> list = new ArrayList<Object>();
+			if(peek() == ']') {
+				position++;
+				return list;
+			}
+			do {
+				list.add(readValue());
+			} while(consume(','));
+			expect(']');
+			return list;
+		} else if(c == '-' || (c >= '0' && c <= '9')) {
+			return readNumber();
+		} else if(line.startsWith("null", position)) {
+			position += 4;
+			return null;
+		} else if(line.startsWith("true", position)) {
+			position += 4;
+			return Boolean.TRUE;
+		} else if(line.startsWith("false", position)) {
+			position += 5;
+			return Boolean.FALSE;
+		}
+		throw error("Unsupported value");
+	}
+
+	private Number readNumber() throws IOException {
+		int start = position;
+		while(position < line.length() && "+-0123456789.eE".indexOf(line.charAt(position)) >= 0) {
+			position++;
+		}
+		String number = line.substring(start, position);
+		try {
+			if(number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+				return Double.valueOf(number);
+			}
+			return Long.valueOf(number);
+		} catch(NumberFormatException e) {
+			throw error("Invalid number " + number);
+		}
+	}
+
+	private String readString() throws IOException {
+		expect('"');
+		StringBuilder s = new StringBuilder();
+		while(true) {
+			if(position >= line.length()) {
+				throw error("Unterminated string");
+			}
+			char c = line.charAt(position++);
+			if(c == '"') {
+				return s.toString();
+			}
+			if(c != '\\') {
+				s.append(c);
+				continue;
+			}
+			if(position >= line.length()) {
+				throw error("Unterminated string");
+			}
+			char escaped = line.charAt(position++);
+			switch(escaped) {
+			case '"':
+			case '\\':
+			case '/':
+				s.append(escaped);
+				break;
+			case 'b':
+				s.append('\b');
+				break;
+			case 'f':
+				s.append('\f');
+				break;
+			case 'n':
+				s.append('\n');
+				break;
+			case 'r':
+				s.append('\r');
+				break;
+			case 't':
+				s.append('\t');
+				break;
+			case 'u':
+				if(position + 4 > line.length()) {
+					throw error("Invalid unicode escape");
+				}
+				try {
+					s.append((char) Integer.parseInt(line.substring(position, position + 4), 16));
+				} catch(NumberFormatException e) {
+					throw error("Invalid unicode escape");
+				}
+				position += 4;
+				break;
+			default:
+				throw error("Invalid escape character " + escaped);
+			}
+		}
+	}
+
+	/**
+	 * Skips whitespace and returns the next character without consuming it.
+	 *
+	 * @return the next character or -1 at the end of the line
+	 */
+	private int peek() {
+		while(position < line.length() && Character.isWhitespace(line.charAt(position))) {
+			position++;
+		}
+		return position < line.length() ? line.charAt(position) : -1;
+	}
+
+	private boolean consume(char c) {
+		if(peek() == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(char c) throws IOException {
+		if(!consume(c)) {
+			throw error("Expected '" + c + "'");
+		}
+	}
+
+	private IOException error(String message) {
+		return new IOException("Invalid JSON in line " + lineNumber + " at column " + (position + 1) + ": " + message);
+	}
+}
@@ -0,0 +1,90 @@
+package moviemanager.persistence;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes records as JSON Lines, i.e. each record as a JSON object on a line of its own. Line breaks within strings are escaped, so a record never spans several lines.
+ *
+ */
+class JsonLinesWriter implements ExchangeFormat.RecordWriter {
+
+	/** The underlying writer. **/
+	private final Writer out;
+
+	JsonLinesWriter(Writer out) {
+		this.out = out;
+	}
+
+	@Override
+	public void write(Map<String, Object> fields) throws IOException {
+		out.write('{');
+		boolean first = true;
+		for(Map.Entry<String, Object> field : fields.entrySet()) {
+			if(!first) {
+				out.write(',');
+			}
+			first = false;
+			writeString(field.getKey());
+			out.write(':');
+			writeValue(field.getValue());
+		}
+		out.write('}');
+		out.write('\n');
+	}
+
+	private void writeValue(Object value) throws IOException {
+		if(value == null) {
+			out.write("null");
+		} else if(value instanceof Number) {
+			out.write(value.toString());
+		} else if(value instanceof List) {
+			out.write('[');
+			boolean first = true;
+			for(Object element : (List<?>) value) {
+				if(!first) {
+					out.write(',');
+				}
+				first = false;
+				writeValue(element);
+			}
+			out.write(']');
+		} else {
+			writeString(value.toString());
+		}
+	}
+
+	private void writeString(String s) throws IOException {
+		out.write('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+				break;
+			}
+		}
+		out.write('"');
+	}
+}
@@ -0,0 +1,148 @@
+package moviemanager.persistence;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import moviemanager.data.Movie;
+import moviemanager.data.Performer;
+
+/**
+ * Exports the movie and performer databases in an {@link ExchangeFormat}. The records are written one by one while the databases are iterated, so the memory needed does not depend on the size of the library.
+ * All movies are written before the performers, so that the links of the performers can be resolved as soon as they are imported.
+ *
+ */
+public class LibraryExporter {
+
+	/** The record writer. **/
+	private final ExchangeFormat.RecordWriter writer;
+	/** The fields of the current record. Reused for every record. **/
+	private final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+
+	/**
+	 * Creates a new exporter.
+	 *
+	 * @param out
+	 *            the writer the records are written to, which should be buffered
+	 * @param format
+	 *            the format
+	 * @throws IOException
+	 *             if a header cannot be written
+	 */
+	public LibraryExporter(Writer out, ExchangeFormat format) throws IOException {
+		if(out == null) {
+			throw new IllegalArgumentException("The writer must not be null");
+		}
+		if(format == null) {
+			throw new IllegalArgumentException("The format must not be null");
+		}
+		this.writer = format.newWriter(out);
+	}
+
+	/**
+	 * Writes the given movies and performers. The record of each movie and performer is created just before it is written, so only one of them is held at a time. Has to be called on the thread of the realm of the
+	 * databases.
+	 *
+	 * @param movies
+	 *            the movies
+	 * @param performers
+	 *            the performers
+	 * @return the number of written records
+	 * @throws IOException
+	 *             if a record cannot be written
+	 */
+	public int export(List<Movie> movies, List<Performer> performers) throws IOException {
+		int count = 0;
+		for(Movie m : movies) {
+			writeMovie(MovieRecord.of(m));
+			count++;
+		}
+		for(Performer p : performers) {
+			writePerformer(PerformerRecord.of(p));
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the movies and performers of the given view. May be called on any thread, since the view is immutable.
+	 *
+	 * @param view
+	 *            the view of the databases
+	 * @return the number of written records
+	 * @throws IOException
+	 *             if a record cannot be written
+	 */
+	public int export(LibraryView view) throws IOException {
+		int count = 0;
+		for(MovieRecord m : view.getMovies()) {
+			writeMovie(m);
+			count++;
+		}
+		for(PerformerRecord p : view.getPerformers()) {
+			writePerformer(p);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a single movie.
+	 *
+	 * @param m
+	 *            the record of the movie
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public void writeMovie(MovieRecord m) throws IOException {
+		fields.clear();
+		fields.put(ExchangeFormat.FIELD_TYPE, ExchangeFormat.TYPE_MOVIE);
+		fields.put(ExchangeFormat.FIELD_ID, m.getId().toString());
+		fields.put(ExchangeFormat.FIELD_IMDB_ID, m.getImdbID());
+		fields.put(ExchangeFormat.FIELD_TITLE, m.getTitle());
+		// A description that is loaded on demand is decoded for this record only
+		fields.put(ExchangeFormat.FIELD_DESCRIPTION, m.getDescription());
+		fields.put(ExchangeFormat.FIELD_COUNTRY, m.getCountry());
+		fields.put(ExchangeFormat.FIELD_LANGUAGE, m.getLanguage());
+		fields.put(ExchangeFormat.FIELD_RELEASE_DATE, toDateValue(m.getReleaseDate()));
+		fields.put(ExchangeFormat.FIELD_WATCH_DATE, toDateValue(m.getWatchDate()));
+		fields.put(ExchangeFormat.FIELD_RETURN_DATE, toDateValue(m.getReturnDate()));
+		fields.put(ExchangeFormat.FIELD_RUNTIME, m.getRuntime());
+		fields.put(ExchangeFormat.FIELD_RATING, m.getRating());
+		fields.put(ExchangeFormat.FIELD_OVERALL_RATING, m.getOverallRating());
+		fields.put(ExchangeFormat.FIELD_ALTERNATIVE_TITLES, m.getAlternativeTitles());
+		fields.put(ExchangeFormat.FIELD_FILMING_LOCATIONS, m.getFilmingLocations());
+		fields.put(ExchangeFormat.FIELD_PERFORMERS, m.getPerformerIds());
+		writer.write(fields);
+	}
+
+	/**
+	 * Writes a single performer.
+	 *
+	 * @param p
+	 *            the record of the performer
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public void writePerformer(PerformerRecord p) throws IOException {
+		fields.clear();
+		fields.put(ExchangeFormat.FIELD_TYPE, ExchangeFormat.TYPE_PERFORMER);
+		fields.put(ExchangeFormat.FIELD_ID, p.getId().toString());
+		fields.put(ExchangeFormat.FIELD_IMDB_ID, p.getImdbID());
+		fields.put(ExchangeFormat.FIELD_FIRST_NAME, p.getFirstName());
+		fields.put(ExchangeFormat.FIELD_LAST_NAME, p.getLastName());
+		fields.put(ExchangeFormat.FIELD_BIOGRAPHY, p.getBiography());
+		fields.put(ExchangeFormat.FIELD_COUNTRY, p.getCountry());
+		fields.put(ExchangeFormat.FIELD_DATE_OF_BIRTH, toDateValue(p.getDateOfBirth()));
+		fields.put(ExchangeFormat.FIELD_RATING, p.getRating());
+		fields.put(ExchangeFormat.FIELD_ALTERNATE_NAMES, p.getAlternateNames());
+		fields.put(ExchangeFormat.FIELD_MOVIES, p.getMovieIds());
+		writer.write(fields);
+	}
+
+	private static Long toDateValue(long millis) {
+		return millis == MovieRecord.NO_DATE ? null : millis;
+	}
+}
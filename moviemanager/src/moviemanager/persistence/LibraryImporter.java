@@ -0,0 +1,354 @@
+package moviemanager.persistence;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * Imports movies and performers in an {@link ExchangeFormat}. The records are parsed off the UI thread and handed to a {@link Handler} in batches on the executor of the realm of the databases. The next batch is
+ * parsed while the previous one is applied, and parsing waits for the previous batch to be applied, so that at most two batches are held in memory regardless of the size of the input.
+ * </p>
+ * <p>
+ * Movies and performers refer to each other by their UUIDs, which the handler should resolve through the UUID indices of the databases. A link can be resolved by whichever of the two records is imported last, so
+ * the order of the records only matters for performers, which cannot be added before at least one of their movies.
+ * </p>
+ *
+ */
+public class LibraryImporter {
+
+	/** Default number of records handed to the handler at once. **/
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/**
+	 * Applies the imported records to the databases.
+	 *
+	 */
+	public interface Handler {
+		/**
+		 * Called on the executor of the realm before the first batch, e.g. to suspend work that would otherwise be done for each modification.
+		 */
+		void importStarted();
+
+		/**
+		 * Called on the executor of the realm for each batch of imported records. Records whose UUID already exists in the databases should update the existing movie or performer.
+		 *
+		 * @param movies
+		 *            the movie records of the batch
+		 * @param performers
+		 *            the performer records of the batch
+		 * @return the number of records that have been skipped, e.g. performers without any movie
+		 */
+		int importBatch(List<MovieRecord> movies, List<PerformerRecord> performers);
+
+		/**
+		 * Called on the executor of the realm after the last batch, also if the import has failed or has been cancelled.
+		 */
+		void importFinished();
+	}
+
+	/**
+	 * The result of an import.
+	 *
+	 */
+	public static class Result {
+		private final int movieCount;
+		private final int performerCount;
+		private final int skippedCount;
+
+		public Result(int movieCount, int performerCount, int skippedCount) {
+			this.movieCount = movieCount;
+			this.performerCount = performerCount;
+			this.skippedCount = skippedCount;
+		}
+
+		/**
+		 * Gets the number of movie records that have been read.
+		 *
+		 * @return the number of movies
+		 */
+		public int getMovieCount() {
+			return movieCount;
+		}
+
+		/**
+		 * Gets the number of performer records that have been read.
+		 *
+		 * @return the number of performers
+		 */
+		public int getPerformerCount() {
+			return performerCount;
+		}
+
+		/**
+		 * Gets the number of records that have been skipped by the handler.
+		 *
+		 * @return the number of skipped records
+		 */
+		public int getSkippedCount() {
+			return skippedCount;
+		}
+	}
+
+	/** Applies the records. **/
+	private final Handler handler;
+	/** Executor of the realm of the databases. **/
+	private final Executor realmExecutor;
+	/** Number of records per batch. **/
+	private final int batchSize;
+
+	/**
+	 * Creates a new importer.
+	 *
+	 * @param handler
+	 *            the handler applying the records
+	 * @param realmExecutor
+	 *            the executor running tasks on the thread of the realm of the databases, e.g. <code>Display.asyncExec()</code>
+	 * @param batchSize
+	 *            the number of records handed to the handler at once
+	 */
+	public LibraryImporter(Handler handler, Executor realmExecutor, int batchSize) {
+		if(handler == null) {
+			throw new IllegalArgumentException("The handler must not be null");
+		}
+		if(realmExecutor == null) {
+			throw new IllegalArgumentException("The executor must not be null");
+		}
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("The batch size must be positive");
+		}
+		this.handler = handler;
+		this.realmExecutor = realmExecutor;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Imports the given file on a background thread.
+	 *
+	 * @param file
+	 *            the file, encoded in UTF-8
+	 * @param format
+	 *            the format of the file
+	 * @return the result of the import. Cancelling it stops the import after the current batch
+	 */
+	public Future<Result> start(final File file, final ExchangeFormat format) {
+		ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Library importer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			return executor.submit(new Callable<Result>() {
+				@Override
+				public Result call() throws IOException {
+					try(Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+						return importFrom(in, format);
+					}
+				}
+			});
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Imports the records from the given reader on the calling thread, which must not be the thread of the realm if the executor of the realm runs tasks asynchronously.
+	 *
+	 * @param in
+	 *            the reader, which should be buffered
+	 * @param format
+	 *            the format
+	 * @return the result of the import
+	 * @throws IOException
+	 *             if the input cannot be read or contains an invalid record
+	 */
+	public Result importFrom(Reader in, ExchangeFormat format) throws IOException {
+		ExchangeFormat.RecordReader reader = format.newReader(in);
+		List<MovieRecord> movies = new ArrayList<MovieRecord>(batchSize);
+		List<PerformerRecord> performers = new ArrayList<PerformerRecord>(batchSize);
+		FutureTask<Integer> pending = null;
+		int movieCount = 0;
+		int performerCount = 0;
+		int skippedCount = 0;
+		waitFor(submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				handler.importStarted();
+				return 0;
+			}
+		}));
+		boolean completed = false;
+		try {
+			Map<String, Object> fields;
+			while((fields = reader.read()) != null) {
+				try {
+					Object type = fields.get(ExchangeFormat.FIELD_TYPE);
+					if(ExchangeFormat.TYPE_MOVIE.equals(type)) {
+						movies.add(toMovie(fields));
+						movieCount++;
+					} else if(ExchangeFormat.TYPE_PERFORMER.equals(type)) {
+						performers.add(toPerformer(fields));
+						performerCount++;
+					} else {
+						throw new IOException("Unknown record type " + type);
+					}
+				} catch(IOException | IllegalArgumentException e) {
+					throw new IOException("Invalid record in line " + reader.getLineNumber() + ": " + e.getMessage(), e);
+				}
+				if(movies.size() + performers.size() == batchSize) {
+					skippedCount += waitFor(pending);
+					pending = submit(movies, performers);
+					movies = new ArrayList<MovieRecord>(batchSize);
+					performers = new ArrayList<PerformerRecord>(batchSize);
+				}
+			}
+			skippedCount += waitFor(pending);
+			if(!movies.isEmpty() || !performers.isEmpty()) {
+				skippedCount += waitFor(submit(movies, performers));
+			}
+			completed = true;
+		} finally {
+			FutureTask<Integer> finished = submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					handler.importFinished();
+					return 0;
+				}
+			});
+			// If the import has failed, the executor of the realm still runs the task after the pending batch, but waiting for it could hide the failure
+			if(completed) {
+				waitFor(finished);
+			}
+		}
+		return new Result(movieCount, performerCount, skippedCount);
+	}
+
+	private FutureTask<Integer> submit(final List<MovieRecord> movies, final List<PerformerRecord> performers) {
+		return submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return handler.importBatch(movies, performers);
+			}
+		});
+	}
+
+	private FutureTask<Integer> submit(Callable<Integer> callable) {
+		FutureTask<Integer> task = new FutureTask<Integer>(callable);
+		realmExecutor.execute(task);
+		return task;
+	}
+
+	private static int waitFor(FutureTask<Integer> task) throws IOException {
+		if(task == null) {
+			return 0;
+		}
+		try {
+			return task.get();
+		} catch(InterruptedException e) {
+			task.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The import has been cancelled");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("Cannot import the records", e.getCause());
+		}
+	}
+
+	private static MovieRecord toMovie(Map<String, Object> fields) throws IOException {
+		return new MovieRecord(getId(fields), getString(fields, ExchangeFormat.FIELD_IMDB_ID), getString(fields, ExchangeFormat.FIELD_TITLE), getString(fields, ExchangeFormat.FIELD_DESCRIPTION),
+				getString(fields, ExchangeFormat.FIELD_COUNTRY), getString(fields, ExchangeFormat.FIELD_LANGUAGE), getDate(fields, ExchangeFormat.FIELD_RELEASE_DATE), getDate(fields, ExchangeFormat.FIELD_WATCH_DATE),
+				getDate(fields, ExchangeFormat.FIELD_RETURN_DATE), (int) getLong(fields, ExchangeFormat.FIELD_RUNTIME, 0), (int) getLong(fields, ExchangeFormat.FIELD_RATING, 0),
+				(int) getLong(fields, ExchangeFormat.FIELD_OVERALL_RATING, 0), getList(fields, ExchangeFormat.FIELD_ALTERNATIVE_TITLES), getList(fields, ExchangeFormat.FIELD_FILMING_LOCATIONS),
+				getIds(fields, ExchangeFormat.FIELD_PERFORMERS));
+	}
+
+	private static PerformerRecord toPerformer(Map<String, Object> fields) throws IOException {
+		return new PerformerRecord(getId(fields), getString(fields, ExchangeFormat.FIELD_IMDB_ID), getString(fields, ExchangeFormat.FIELD_FIRST_NAME), getString(fields, ExchangeFormat.FIELD_LAST_NAME),
+				getString(fields, ExchangeFormat.FIELD_BIOGRAPHY), getString(fields, ExchangeFormat.FIELD_COUNTRY), getDate(fields, ExchangeFormat.FIELD_DATE_OF_BIRTH),
+				(int) getLong(fields, ExchangeFormat.FIELD_RATING, 0), getList(fields, ExchangeFormat.FIELD_ALTERNATE_NAMES), getIds(fields, ExchangeFormat.FIELD_MOVIES));
+	}
+
+	/**
+	 * Gets the UUID of a record. Records of other systems may lack a UUID, so they are given a new one.
+	 */
+	private static UUID getId(Map<String, Object> fields) {
+		Object id = fields.get(ExchangeFormat.FIELD_ID);
+		return id == null ? UUID.randomUUID() : UUID.fromString(id.toString());
+	}
+
+	/**
+	 * Gets a string field. Missing strings are imported as empty strings, since the model does not expect null values.
+	 */
+	private static String getString(Map<String, Object> fields, String name) {
+		Object value = fields.get(name);
+		return value == null ? "" : value.toString();
+	}
+
+	private static long getLong(Map<String, Object> fields, String name, long defaultValue) throws IOException {
+		Object value = fields.get(name);
+		if(value == null) {
+			return defaultValue;
+		}
+		if(value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		try {
+			return Long.parseLong(value.toString().trim());
+		} catch(NumberFormatException e) {
+			throw new IOException("Invalid number " + value + " in field " + name);
+		}
+	}
+
+	private static long getDate(Map<String, Object> fields, String name) throws IOException {
+		return getLong(fields, name, MovieRecord.NO_DATE);
+	}
+
+	private static List<String> getList(Map<String, Object> fields, String name) throws IOException {
+		Object value = fields.get(name);
+		if(value == null) {
+			return Collections.emptyList();
+		}
+		if(!(value instanceof List)) {
+			throw new IOException("Field " + name + " is not a list");
+		}
+		List<String> list = new ArrayList<String>(((List<?>) value).size());
+		for(Object element : (List<?>) value) {
+			if(element != null) {
+				list.add(element.toString());
+			}
+		}
+		return list;
+	}
+
+	private static List<UUID> getIds(Map<String, Object> fields, String name) throws IOException {
+		List<String> strings = getList(fields, name);
+		List<UUID> ids = new ArrayList<UUID>(strings.size());
+		for(String s : strings) {
+			ids.add(UUID.fromString(s));
+		}
+		return ids;
+	}
+}
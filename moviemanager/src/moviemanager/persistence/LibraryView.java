@@ -0,0 +1,455 @@
+package moviemanager.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import moviemanager.data.Movie;
+import moviemanager.data.Performer;
+import moviemanager.index.PersistentHashMap;
+import moviemanager.index.PersistentSortedSet;
+
+/**
+ * <p>
+ * Immutable view of the movie and performer databases at a point in time, including the links between them, which the records store as UUIDs. A view is created on the thread of the realm of the databases and may
+ * be read on any thread afterwards without locking, e.g. by a background export or by the query server.
+ * </p>
+ * <p>
+ * Views share their structure: a view that is derived from another one by adding, replacing or removing a record copies the few nodes of the {@link PersistentHashMap}s on the path to the record only. Publishing
+ * a new view after a batch of modifications therefore takes time proportional to the number of modified records rather than to the size of the library. The same holds for the {@link PersistentSortedSet}s that
+ * order the records by title or name and by rating, from which searches are paged.
+ * </p>
+ *
+ */
+public final class LibraryView {
+
+	/** Identifier that is less than all others, used to find the first record with a given key. **/
+	private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+	/** Orders entries by their lower case title or name. **/
+	private static final Comparator<Entry<?>> BY_TEXT = new Comparator<Entry<?>>() {
+		@Override
+		public int compare(Entry<?> e1, Entry<?> e2) {
+			int c = e1.text.compareTo(e2.text);
+			return c != 0 ? c : e1.id.compareTo(e2.id);
+		}
+	};
+	/** Orders entries by their rating. **/
+	private static final Comparator<Entry<?>> BY_RATING = new Comparator<Entry<?>>() {
+		@Override
+		public int compare(Entry<?> e1, Entry<?> e2) {
+			int c = Integer.compare(e1.rating, e2.rating);
+			return c != 0 ? c : e1.id.compareTo(e2.id);
+		}
+	};
+
+	/** View of an empty library. **/
+	public static final LibraryView EMPTY = new LibraryView(PersistentHashMap.<UUID, MovieRecord> empty(), PersistentHashMap.<UUID, PerformerRecord> empty(), PersistentHashMap.<String, List<UUID>> empty(),
+			PersistentHashMap.<String, List<UUID>> empty(), PersistentSortedSet.<Entry<MovieRecord>> empty(BY_TEXT), PersistentSortedSet.<Entry<MovieRecord>> empty(BY_RATING),
+			PersistentSortedSet.<Entry<PerformerRecord>> empty(BY_TEXT), PersistentSortedSet.<Entry<PerformerRecord>> empty(BY_RATING));
+
+	/** Movies by internal identifier. **/
+	private final PersistentHashMap<UUID, MovieRecord> movies;
+	/** Performers by internal identifier. **/
+	private final PersistentHashMap<UUID, PerformerRecord> performers;
+	/** Internal identifiers of the movies by IMDB ID. Movies without an IMDB ID are not contained. **/
+	private final PersistentHashMap<String, List<UUID>> movieIdsByImdbID;
+	/** Internal identifiers of the performers by IMDB ID. Performers without an IMDB ID are not contained. **/
+	private final PersistentHashMap<String, List<UUID>> performerIdsByImdbID;
+	/** Movies ordered by title. **/
+	private final PersistentSortedSet<Entry<MovieRecord>> moviesByTitle;
+	/** Movies ordered by rating. **/
+	private final PersistentSortedSet<Entry<MovieRecord>> moviesByRating;
+	/** Performers ordered by name. **/
+	private final PersistentSortedSet<Entry<PerformerRecord>> performersByName;
+	/** Performers ordered by rating. **/
+	private final PersistentSortedSet<Entry<PerformerRecord>> performersByRating;
+
+	private LibraryView(PersistentHashMap<UUID, MovieRecord> movies, PersistentHashMap<UUID, PerformerRecord> performers, PersistentHashMap<String, List<UUID>> movieIdsByImdbID,
+			PersistentHashMap<String, List<UUID>> performerIdsByImdbID, PersistentSortedSet<Entry<MovieRecord>> moviesByTitle, PersistentSortedSet<Entry<MovieRecord>> moviesByRating,
+			PersistentSortedSet<Entry<PerformerRecord>> performersByName, PersistentSortedSet<Entry<PerformerRecord>> performersByRating) {
+		this.movies = movies;
+		this.performers = performers;
+		this.movieIdsByImdbID = movieIdsByImdbID;
+		this.performerIdsByImdbID = performerIdsByImdbID;
+		this.moviesByTitle = moviesByTitle;
+		this.moviesByRating = moviesByRating;
+		this.performersByName = performersByName;
+		this.performersByRating = performersByRating;
+	}
+
+	/**
+	 * Entry of the sorted indexes, which holds the lower case texts a search is matched against, so that they are not converted for each search.
+	 *
+	 * @param <R>
+	 *            the type of the record
+	 */
+	private static final class Entry<R> {
+		private final UUID id;
+		/** The lower case title or name. **/
+		private final String text;
+		/** The lower case alternative titles or names. **/
+		private final String[] alternativeTexts;
+		private final int rating;
+		/** The record or null if the entry is used to find a position in an index. **/
+		private final R record;
+
+		private Entry(UUID id, String text, List<String> alternativeTexts, int rating, R record) {
+			this.id = id;
+			this.text = toLowerCase(text);
+			this.alternativeTexts = new String[alternativeTexts.size()];
+			for(int i = 0; i < this.alternativeTexts.length; i++) {
+				this.alternativeTexts[i] = toLowerCase(alternativeTexts.get(i));
+			}
+			this.rating = rating;
+			this.record = record;
+		}
+
+		private static Entry<MovieRecord> of(MovieRecord m) {
+			return new Entry<MovieRecord>(m.getId(), m.getTitle(), m.getAlternativeTitles(), m.getRating(), m);
+		}
+
+		private static Entry<PerformerRecord> of(PerformerRecord p) {
+			return new Entry<PerformerRecord>(p.getId(), p.getFirstName() + " " + p.getLastName(), p.getAlternateNames(), p.getRating(), p);
+		}
+
+		/**
+		 * Creates an entry that precedes all entries with the given rating in {@link LibraryView#BY_RATING}.
+		 */
+		private static <R> Entry<R> firstWithRating(int rating) {
+			return new Entry<R>(MIN_ID, "", Collections.<String> emptyList(), rating, null);
+		}
+
+		private boolean contains(String lowerCaseText) {
+			if(text.contains(lowerCaseText)) {
+				return true;
+			}
+			for(String s : alternativeTexts) {
+				if(s.contains(lowerCaseText)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a view of the given records.
+	 *
+	 * @param movies
+	 *            the movie records
+	 * @param performers
+	 *            the performer records
+	 * @return the view
+	 */
+	public static LibraryView of(Collection<MovieRecord> movies, Collection<PerformerRecord> performers) {
+		LibraryView view = EMPTY;
+		for(MovieRecord m : movies) {
+			view = view.withMovie(m);
+		}
+		for(PerformerRecord p : performers) {
+			view = view.withPerformer(p);
+		}
+		return view;
+	}
+
+	/**
+	 * Captures the current state of the given databases. Has to be called on the thread of their realm.
+	 *
+	 * @param movies
+	 *            the movie database
+	 * @param performers
+	 *            the performer database
+	 * @return the view
+	 */
+	public static LibraryView capture(List<Movie> movies, List<Performer> performers) {
+		List<MovieRecord> movieRecords = new ArrayList<MovieRecord>(movies.size());
+		for(Movie m : movies) {
+			movieRecords.add(MovieRecord.of(m));
+		}
+		List<PerformerRecord> performerRecords = new ArrayList<PerformerRecord>(performers.size());
+		for(Performer p : performers) {
+			performerRecords.add(PerformerRecord.of(p));
+		}
+		return of(movieRecords, performerRecords);
+	}
+
+	/**
+	 * Creates a view that contains the given movie instead of the movie with the same UUID.
+	 *
+	 * @param m
+	 *            the record of the movie
+	 * @return the new view
+	 */
+	public LibraryView withMovie(MovieRecord m) {
+		MovieRecord old = movies.get(m.getId());
+		PersistentHashMap<String, List<UUID>> byImdbID = movieIdsByImdbID;
+		if(old == null || !equal(old.getImdbID(), m.getImdbID())) {
+			byImdbID = addImdbID(removeImdbID(byImdbID, old == null ? null : old.getImdbID(), m.getId()), m.getImdbID(), m.getId());
+		}
+		Entry<MovieRecord> entry = Entry.of(m);
+		PersistentSortedSet<Entry<MovieRecord>> byTitle = moviesByTitle;
+		PersistentSortedSet<Entry<MovieRecord>> byRating = moviesByRating;
+		if(old != null) {
+			Entry<MovieRecord> oldEntry = Entry.of(old);
+			byTitle = byTitle.minus(oldEntry);
+			byRating = byRating.minus(oldEntry);
+		}
+		return new LibraryView(movies.plus(m.getId(), m), performers, byImdbID, performerIdsByImdbID, byTitle.plus(entry), byRating.plus(entry), performersByName, performersByRating);
+	}
+
+	/**
+	 * Creates a view that does not contain the movie with the given UUID.
+	 *
+	 * @param id
+	 *            the UUID of the movie
+	 * @return the new view or this view if it does not contain the movie
+	 */
+	public LibraryView withoutMovie(UUID id) {
+		MovieRecord old = movies.get(id);
+		if(old == null) {
+			return this;
+		}
+		Entry<MovieRecord> oldEntry = Entry.of(old);
+		return new LibraryView(movies.minus(id), performers, removeImdbID(movieIdsByImdbID, old.getImdbID(), id), performerIdsByImdbID, moviesByTitle.minus(oldEntry), moviesByRating.minus(oldEntry),
+				performersByName, performersByRating);
+	}
+
+	/**
+	 * Creates a view that contains the given performer instead of the performer with the same UUID.
+	 *
+	 * @param p
+	 *            the record of the performer
+	 * @return the new view
+	 */
+	public LibraryView withPerformer(PerformerRecord p) {
+		PerformerRecord old = performers.get(p.getId());
+		PersistentHashMap<String, List<UUID>> byImdbID = performerIdsByImdbID;
+		if(old == null || !equal(old.getImdbID(), p.getImdbID())) {
+			byImdbID = addImdbID(removeImdbID(byImdbID, old == null ? null : old.getImdbID(), p.getId()), p.getImdbID(), p.getId());
+		}
+		Entry<PerformerRecord> entry = Entry.of(p);
+		PersistentSortedSet<Entry<PerformerRecord>> byName = performersByName;
+		PersistentSortedSet<Entry<PerformerRecord>> byRating = performersByRating;
+		if(old != null) {
+			Entry<PerformerRecord> oldEntry = Entry.of(old);
+			byName = byName.minus(oldEntry);
+			byRating = byRating.minus(oldEntry);
+		}
+		return new LibraryView(movies, performers.plus(p.getId(), p), movieIdsByImdbID, byImdbID, moviesByTitle, moviesByRating, byName.plus(entry), byRating.plus(entry));
+	}
+
+	/**
+	 * Creates a view that does not contain the performer with the given UUID.
+	 *
+	 * @param id
+	 *            the UUID of the performer
+	 * @return the new view or this view if it does not contain the performer
+	 */
+	public LibraryView withoutPerformer(UUID id) {
+		PerformerRecord old = performers.get(id);
+		if(old == null) {
+			return this;
+		}
+		Entry<PerformerRecord> oldEntry = Entry.of(old);
+		return new LibraryView(movies, performers.minus(id), movieIdsByImdbID, removeImdbID(performerIdsByImdbID, old.getImdbID(), id), moviesByTitle, moviesByRating, performersByName.minus(oldEntry),
+				performersByRating.minus(oldEntry));
+	}
+
+	private static PersistentHashMap<String, List<UUID>> addImdbID(PersistentHashMap<String, List<UUID>> index, String imdbID, UUID id) {
+		if(imdbID == null || imdbID.isEmpty()) {
+			return index;
+		}
+		List<UUID> ids = index.get(imdbID);
+		if(ids == null) {
+			return index.plus(imdbID, Collections.singletonList(id));
+		}
+		List<UUID> newIds = new ArrayList<UUID>(ids.size() + 1);
+		newIds.addAll(ids);
+		newIds.add(id);
+		return index.plus(imdbID, Collections.unmodifiableList(newIds));
+	}
+
+	private static PersistentHashMap<String, List<UUID>> removeImdbID(PersistentHashMap<String, List<UUID>> index, String imdbID, UUID id) {
+		List<UUID> ids = imdbID == null ? null : index.get(imdbID);
+		if(ids == null || !ids.contains(id)) {
+			return index;
+		}
+		if(ids.size() == 1) {
+			return index.minus(imdbID);
+		}
+		List<UUID> newIds = new ArrayList<UUID>(ids);
+		newIds.remove(id);
+		return index.plus(imdbID, Collections.unmodifiableList(newIds));
+	}
+
+	private static boolean equal(String s1, String s2) {
+		return s1 == null ? s2 == null : s1.equals(s2);
+	}
+
+	private static String toLowerCase(String s) {
+		return s == null ? "" : s.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Gets the movies. They are iterated in the same order each time, but not in the order of the movie database.
+	 *
+	 * @return an unmodifiable collection of the movies
+	 */
+	public Collection<MovieRecord> getMovies() {
+		return movies.values();
+	}
+
+	/**
+	 * Gets the performers. They are iterated in the same order each time, but not in the order of the performer database.
+	 *
+	 * @return an unmodifiable collection of the performers
+	 */
+	public Collection<PerformerRecord> getPerformers() {
+		return performers.values();
+	}
+
+	/**
+	 * Searches the movies whose title or alternative titles contain the given text, ignoring case, and whose rating is within the given range. The matches are ordered by rating if the range is restricted and by
+	 * title otherwise, so each search finds them in the same order. Only the requested page of the matches is collected: a search without text and filter takes logarithmic time plus the size of the page, and
+	 * other searches only examine the movies within the rating range.
+	 *
+	 * @param text
+	 *            the text or null to match all titles
+	 * @param minRating
+	 *            the minimum rating
+	 * @param maxRating
+	 *            the maximum rating
+	 * @param filter
+	 *            further condition the movies have to meet or null
+	 * @param offset
+	 *            the number of matches to skip
+	 * @param limit
+	 *            the maximum number of matches to collect
+	 * @param page
+	 *            the list the requested matches are added to
+	 * @return the number of all matches
+	 */
+	public int selectMovies(String text, int minRating, int maxRating, Predicate<? super MovieRecord> filter, int offset, int limit, List<MovieRecord> page) {
+		return select(moviesByTitle, moviesByRating, text, minRating, maxRating, filter, offset, limit, page);
+	}
+
+	/**
+	 * Searches the performers whose name or alternate names contain the given text, ignoring case, and whose rating is within the given range. The matches are ordered like those of
+	 * {@link #selectMovies(String, int, int, Predicate, int, int, List)}.
+	 *
+	 * @param text
+	 *            the text or null to match all names
+	 * @param minRating
+	 *            the minimum rating
+	 * @param maxRating
+	 *            the maximum rating
+	 * @param filter
+	 *            further condition the performers have to meet or null
+	 * @param offset
+	 *            the number of matches to skip
+	 * @param limit
+	 *            the maximum number of matches to collect
+	 * @param page
+	 *            the list the requested matches are added to
+	 * @return the number of all matches
+	 */
+	public int selectPerformers(String text, int minRating, int maxRating, Predicate<? super PerformerRecord> filter, int offset, int limit, List<PerformerRecord> page) {
+		return select(performersByName, performersByRating, text, minRating, maxRating, filter, offset, limit, page);
+	}
+
+	private static <R> int select(PersistentSortedSet<Entry<R>> byText, PersistentSortedSet<Entry<R>> byRating, String text, int minRating, int maxRating, Predicate<? super R> filter, int offset, int limit,
+			List<R> page) {
+		if(minRating > maxRating) {
+			return 0;
+		}
+		String lowerCaseText = text == null || text.isEmpty() ? null : text.toLowerCase(Locale.ROOT);
+		// The candidates are either all entries in the order of their texts or the entries within the rating range
+		PersistentSortedSet<Entry<R>> index;
+		int start;
+		int count;
+		if(minRating == Integer.MIN_VALUE && maxRating == Integer.MAX_VALUE) {
+			index = byText;
+			start = 0;
+			count = byText.size();
+		} else {
+			index = byRating;
+			start = byRating.rank(Entry.<R> firstWithRating(minRating));
+			int end = maxRating == Integer.MAX_VALUE ? byRating.size() : byRating.rank(Entry.<R> firstWithRating(maxRating + 1));
+			count = end - start;
+		}
+		if(lowerCaseText == null && filter == null) {
+			// All candidates match, so only the page is visited
+			if(offset < count) {
+				Iterator<Entry<R>> entries = index.iterator(start + offset);
+				for(int i = Math.min(limit, count - offset); i > 0; i--) {
+					page.add(entries.next().record);
+				}
+			}
+			return count;
+		}
+		int total = 0;
+		Iterator<Entry<R>> entries = index.iterator(start);
+		for(int i = 0; i < count; i++) {
+			Entry<R> e = entries.next();
+			if((lowerCaseText == null || e.contains(lowerCaseText)) && (filter == null || filter.test(e.record))) {
+				if(total >= offset && page.size() < limit) {
+					page.add(e.record);
+				}
+				total++;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the movie with the given internal identifier.
+	 *
+	 * @param id
+	 *            the internal identifier
+	 * @return the movie or null if there is none
+	 */
+	public MovieRecord getMovie(UUID id) {
+		return movies.get(id);
+	}
+
+	/**
+	 * Gets the movie with the given IMDB ID. If several movies share the IMDB ID, the one that has been added first is returned.
+	 *
+	 * @param imdbID
+	 *            the IMDB ID
+	 * @return the movie or null if there is none
+	 */
+	public MovieRecord getMovieByImdbID(String imdbID) {
+		List<UUID> ids = movieIdsByImdbID.get(imdbID);
+		return ids == null ? null : movies.get(ids.get(0));
+	}
+
+	/**
+	 * Gets the performer with the given internal identifier.
+	 *
+	 * @param id
+	 *            the internal identifier
+	 * @return the performer or null if there is none
+	 */
+	public PerformerRecord getPerformer(UUID id) {
+		return performers.get(id);
+	}
+
+	/**
+	 * Gets the performer with the given IMDB ID. If several performers share the IMDB ID, the one that has been added first is returned.
+	 *
+	 * @param imdbID
+	 *            the IMDB ID
+	 * @return the performer or null if there is none
+	 */
+	public PerformerRecord getPerformerByImdbID(String imdbID) {
+		List<UUID> ids = performerIdsByImdbID.get(imdbID);
+		return ids == null ? null : performers.get(ids.get(0));
+	}
+}
@@ -0,0 +1,20 @@
+package moviemanager.persistence;
+
+/**
+ * Receives progress updates while the movie and performer databases are loaded.
+ *
+ */
+public interface LoadProgressListener {
+
+	/**
+	 * Called whenever the loading has progressed. Called on the thread that loads the data, i.e. the UI thread.
+	 *
+	 * @param task
+	 *            a short description of the current task
+	 * @param worked
+	 *            the amount of work of the current task that has been done
+	 * @param total
+	 *            the total amount of work of the current task
+	 */
+	void loadProgress(String task, int worked, int total);
+}
@@ -0,0 +1,235 @@
+package moviemanager.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import moviemanager.data.Movie;
+import moviemanager.data.Performer;
+
+/**
+ * Immutable copy of the persistent state of a movie. Records decouple the file formats of the Movie Manager application from the observable model classes.
+ *
+ */
+public final class MovieRecord {
+
+	/** Value used to encode dates that are not set. **/
+	public static final long NO_DATE = Long.MIN_VALUE;
+
+	/** Internal identifier. **/
+	private final UUID id;
+	/** IMDB ID. **/
+	private final String imdbID;
+	/** Title. **/
+	private final String title;
+	/** Description or null if it is loaded on demand. **/
+	private final String description;
+	/** Loads the description when it is accessed or null if the description is set. **/
+	private final Supplier<String> descriptionLoader;
+	/** Production country. **/
+	private final String country;
+	/** Language. **/
+	private final String language;
+	/** Release date in milliseconds since the epoch or NO_DATE. **/
+	private final long releaseDate;
+	/** Watch date in milliseconds since the epoch or NO_DATE. **/
+	private final long watchDate;
+	/** Return date in milliseconds since the epoch or NO_DATE. **/
+	private final long returnDate;
+	/** Runtime in minutes. **/
+	private final int runtime;
+	/** Rating. **/
+	private final int rating;
+	/** Overall rating. **/
+	private final int overallRating;
+	/** Alternative titles. **/
+	private final List<String> alternativeTitles;
+	/** Filming locations. **/
+	private final List<String> filmingLocations;
+	/** UUIDs of the linked performers. **/
+	private final List<UUID> performerIds;
+	/** Hash of the image in the image store or null if the movie has the default image. **/
+	private final String imageHash;
+
+	/**
+	 * Creates a new record with the given values and the default image.
+	 */
+	public MovieRecord(UUID id, String imdbID, String title, String description, String country, String language, long releaseDate, long watchDate, long returnDate, int runtime, int rating, int overallRating, List<String> alternativeTitles, List<String> filmingLocations, List<UUID> performerIds) {
+		this(id, imdbID, title, description, country, language, releaseDate, watchDate, returnDate, runtime, rating, overallRating, alternativeTitles, filmingLocations, performerIds, null);
+	}
+
+	/**
+	 * Creates a new record with the given values.
+	 */
+	public MovieRecord(UUID id, String imdbID, String title, String description, String country, String language, long releaseDate, long watchDate, long returnDate, int runtime, int rating, int overallRating, List<String> alternativeTitles, List<String> filmingLocations, List<UUID> performerIds, String imageHash) {
+		this(id, imdbID, title, description, null, country, language, releaseDate, watchDate, returnDate, runtime, rating, overallRating, alternativeTitles, filmingLocations, performerIds, imageHash);
+	}
+
+	/**
+	 * Creates a new record with the given values, whose description is loaded by the given loader when it is accessed unless the loader is null.
+	 */
+	MovieRecord(UUID id, String imdbID, String title, String description, Supplier<String> descriptionLoader, String country, String language, long releaseDate, long watchDate, long returnDate, int runtime, int rating, int overallRating, List<String> alternativeTitles, List<String> filmingLocations, List<UUID> performerIds, String imageHash) {
+		if(id == null) {
+			throw new IllegalArgumentException("The id must not be null");
+		}
+		this.id = id;
+		this.imdbID = imdbID;
+		this.title = title;
+		this.description = description;
+		this.descriptionLoader = descriptionLoader;
+		this.country = country;
+		this.language = language;
+		this.releaseDate = releaseDate;
+		this.watchDate = watchDate;
+		this.returnDate = returnDate;
+		this.runtime = runtime;
+		this.rating = rating;
+		this.overallRating = overallRating;
+		this.alternativeTitles = Collections.unmodifiableList(new ArrayList<String>(alternativeTitles));
+		this.filmingLocations = Collections.unmodifiableList(new ArrayList<String>(filmingLocations));
+		this.performerIds = Collections.unmodifiableList(new ArrayList<UUID>(performerIds));
+		this.imageHash = imageHash;
+	}
+
+	/**
+	 * Captures the current state of the given movie. A description that has not been loaded yet is not loaded either, but passed on to the record.
+	 *
+	 * @param m
+	 *            the movie
+	 * @return the record
+	 */
+	public static MovieRecord of(Movie m) {
+		List<UUID> performerIds = new ArrayList<UUID>(m.getPerformers().size());
+		for(Performer p : m.getPerformers()) {
+			performerIds.add(p.getId());
+		}
+		Supplier<String> descriptionLoader = m.getDescriptionLoader();
+		String description = descriptionLoader == null ? m.getDescription() : null;
+		return new MovieRecord(m.getId(), m.getImdbID(), m.getTitle(), description, descriptionLoader, m.getCountry(), m.getLanguage(), toMillis(m.getReleaseDate()), toMillis(m.getWatchDate()), toMillis(m.getReturnDate()), m.getRuntime(), m.getRating(), m.getOverallRating(), m.getAlternativeTitles(), m.getFilmingLocations(), performerIds, m.getImageHash());
+	}
+
+	/**
+	 * Copies the values of this record into the given movie. Links to performers are not restored, since they need to be resolved against the performer database. Neither is the image, since it is loaded on demand.
+	 * A description that is loaded on demand is not loaded by the movie either until it is accessed.
+	 *
+	 * @param m
+	 *            the movie
+	 */
+	public void applyTo(Movie m) {
+		m.setId(id);
+		m.setImdbID(imdbID);
+		m.setTitle(title);
+		if(descriptionLoader != null) {
+			m.setDescriptionLoader(descriptionLoader);
+		} else {
+			m.setDescription(description);
+		}
+		m.setCountry(country);
+		m.setLanguage(language);
+		m.setReleaseDate(toDate(releaseDate));
+		m.setWatchDate(toDate(watchDate));
+		m.setReturnDate(toDate(returnDate));
+		m.setRuntime(runtime);
+		// The rating has to be set before the overall rating, since changing the rating recalculates the overall rating
+		m.setRating(rating);
+		m.setOverallRating(overallRating);
+		m.getAlternativeTitles().clear();
+		m.getAlternativeTitles().addAll(alternativeTitles);
+		m.getFilmingLocations().clear();
+		m.getFilmingLocations().addAll(filmingLocations);
+	}
+
+	/**
+	 * Converts the given date to milliseconds since the epoch.
+	 *
+	 * @param d
+	 *            the date. May be null
+	 * @return the milliseconds since the epoch or NO_DATE if the date is null
+	 */
+	public static long toMillis(Date d) {
+		return d == null ? NO_DATE : d.getTime();
+	}
+
+	/**
+	 * Converts the given milliseconds since the epoch to a date.
+	 *
+	 * @param millis
+	 *            the milliseconds since the epoch or NO_DATE
+	 * @return the date or null if no date is set
+	 */
+	public static Date toDate(long millis) {
+		return millis == NO_DATE ? null : new Date(millis);
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public String getImdbID() {
+		return imdbID;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * Gets the description, loading it if it is loaded on demand.
+	 * 
+	 * @return the description
+	 */
+	public String getDescription() {
+		return descriptionLoader != null ? descriptionLoader.get() : description;
+	}
+
+	public String getCountry() {
+		return country;
+	}
+
+	public String getLanguage() {
+		return language;
+	}
+
+	public long getReleaseDate() {
+		return releaseDate;
+	}
+
+	public long getWatchDate() {
+		return watchDate;
+	}
+
+	public long getReturnDate() {
+		return returnDate;
+	}
+
+	public int getRuntime() {
+		return runtime;
+	}
+
+	public int getRating() {
+		return rating;
+	}
+
+	public int getOverallRating() {
+		return overallRating;
+	}
+
+	public List<String> getAlternativeTitles() {
+		return alternativeTitles;
+	}
+
+	public List<String> getFilmingLocations() {
+		return filmingLocations;
+	}
+
+	public List<UUID> getPerformerIds() {
+		return performerIds;
+	}
+
+	public String getImageHash() {
+		return imageHash;
+	}
+}
@@ -0,0 +1,167 @@
+package moviemanager.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import moviemanager.data.Movie;
+import moviemanager.data.Performer;
+
+/**
+ * Immutable copy of the persistent state of a performer.
+ *
+ */
+public final class PerformerRecord {
+
+	/** Internal identifier. **/
+	private final UUID id;
+	/** IMDB ID. **/
+	private final String imdbID;
+	/** First name. **/
+	private final String firstName;
+	/** Last name. **/
+	private final String lastName;
+	/** Biography or null if it is loaded on demand. **/
+	private final String biography;
+	/** Loads the biography when it is accessed or null if the biography is set. **/
+	private final Supplier<String> biographyLoader;
+	/** Country of origin. **/
+	private final String country;
+	/** Date of birth in milliseconds since the epoch or MovieRecord.NO_DATE. **/
+	private final long dateOfBirth;
+	/** Rating. **/
+	private final int rating;
+	/** Alternate names. **/
+	private final List<String> alternateNames;
+	/** UUIDs of the linked movies. **/
+	private final List<UUID> movieIds;
+	/** Hash of the image in the image store or null if the performer has the default image. **/
+	private final String imageHash;
+
+	/**
+	 * Creates a new record with the given values and the default image.
+	 */
+	public PerformerRecord(UUID id, String imdbID, String firstName, String lastName, String biography, String country, long dateOfBirth, int rating, List<String> alternateNames, List<UUID> movieIds) {
+		this(id, imdbID, firstName, lastName, biography, country, dateOfBirth, rating, alternateNames, movieIds, null);
+	}
+
+	/**
+	 * Creates a new record with the given values.
+	 */
+	public PerformerRecord(UUID id, String imdbID, String firstName, String lastName, String biography, String country, long dateOfBirth, int rating, List<String> alternateNames, List<UUID> movieIds, String imageHash) {
+		this(id, imdbID, firstName, lastName, biography, null, country, dateOfBirth, rating, alternateNames, movieIds, imageHash);
+	}
+
+	/**
+	 * Creates a new record with the given values, whose biography is loaded by the given loader when it is accessed unless the loader is null.
+	 */
+	PerformerRecord(UUID id, String imdbID, String firstName, String lastName, String biography, Supplier<String> biographyLoader, String country, long dateOfBirth, int rating, List<String> alternateNames, List<UUID> movieIds, String imageHash) {
+		if(id == null) {
+			throw new IllegalArgumentException("The id must not be null");
+		}
+		this.id = id;
+		this.imdbID = imdbID;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.biography = biography;
+		this.biographyLoader = biographyLoader;
+		this.country = country;
+		this.dateOfBirth = dateOfBirth;
+		this.rating = rating;
+		this.alternateNames = Collections.unmodifiableList(new ArrayList<String>(alternateNames));
+		this.movieIds = Collections.unmodifiableList(new ArrayList<UUID>(movieIds));
+		this.imageHash = imageHash;
+	}
+
+	/**
+	 * Captures the current state of the given performer. A biography that has not been loaded yet is not loaded either, but passed on to the record.
+	 *
+	 * @param p
+	 *            the performer
+	 * @return the record
+	 */
+	public static PerformerRecord of(Performer p) {
+		List<UUID> movieIds = new ArrayList<UUID>(p.getMovies().size());
+		for(Movie m : p.getMovies()) {
+			movieIds.add(m.getId());
+		}
+		Supplier<String> biographyLoader = p.getBiographyLoader();
+		String biography = biographyLoader == null ? p.getBiography() : null;
+		return new PerformerRecord(p.getId(), p.getImdbID(), p.getFirstName(), p.getLastName(), biography, biographyLoader, p.getCountry(), MovieRecord.toMillis(p.getDateOfBirth()), p.getRating(), p.getAlternateNames(), movieIds, p.getImageHash());
+	}
+
+	/**
+	 * Copies the values of this record into the given performer. Links to movies are not restored, since they need to be resolved against the movie database. Neither is the image, since it is loaded on demand.
+	 * A biography that is loaded on demand is not loaded by the performer either until it is accessed.
+	 *
+	 * @param p
+	 *            the performer
+	 */
+	public void applyTo(Performer p) {
+		p.setId(id);
+		p.setImdbID(imdbID);
+		p.setFirstName(firstName);
+		p.setLastName(lastName);
+		if(biographyLoader != null) {
+			p.setBiographyLoader(biographyLoader);
+		} else {
+			p.setBiography(biography);
+		}
+		p.setCountry(country);
+		p.setDateOfBirth(MovieRecord.toDate(dateOfBirth));
+		p.setRating(rating);
+		p.getAlternateNames().clear();
+		p.getAlternateNames().addAll(alternateNames);
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public String getImdbID() {
+		return imdbID;
+	}
+
+	public String getFirstName() {
+		return firstName;
+	}
+
+	public String getLastName() {
+		return lastName;
+	}
+
+	/**
+	 * Gets the biography, loading it if it is loaded on demand.
+	 * 
+	 * @return the biography
+	 */
+	public String getBiography() {
+		return biographyLoader != null ? biographyLoader.get() : biography;
+	}
+
+	public String getCountry() {
+		return country;
+	}
+
+	public long getDateOfBirth() {
+		return dateOfBirth;
+	}
+
+	public int getRating() {
+		return rating;
+	}
+
+	public List<String> getAlternateNames() {
+		return alternateNames;
+	}
+
+	public List<UUID> getMovieIds() {
+		return movieIds;
+	}
+
+	public String getImageHash() {
+		return imageHash;
+	}
+}
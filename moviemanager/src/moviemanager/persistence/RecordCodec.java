@@ -0,0 +1,341 @@
+package moviemanager.persistence;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Encodes and decodes movie and performer records in an explicit binary layout, which is shared by the snapshot and the journal. UUIDs are written as two longs and dates as milliseconds since the epoch. Integers,
+ * lengths and counts are written as variable-length integers, so that small values, which are by far the most common ones, take up a single byte. Strings are written as length-prefixed UTF-8 by default.
+ * Subclasses may write them differently, e.g. as references into a string table.
+ * </p>
+ * <p>
+ * Every record starts with the version of its layout. Fields are only ever appended to the layout, and the containers of the records store their length. So a record of an earlier version is decoded with default
+ * values for the fields it lacks, and the fields appended by a later version are skipped.
+ * </p>
+ *
+ */
+class RecordCodec {
+
+	/** Version of the record layout written by this codec. It has to be incremented whenever fields are appended. **/
+	static final int VERSION = 1;
+
+	/** Maximum number of bytes of a variable-length integer. **/
+	private static final int MAX_VARINT_LENGTH = 5;
+
+	/**
+	 * Encodes the given movie record.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param m
+	 *            the movie record
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	void writeMovie(DataOutputStream out, MovieRecord m) throws IOException {
+		writeVarInt(out, VERSION);
+		writeUUID(out, m.getId());
+		writeString(out, m.getImdbID());
+		writeString(out, m.getTitle());
+		writeString(out, m.getDescription());
+		writeString(out, m.getCountry());
+		writeString(out, m.getLanguage());
+		out.writeLong(m.getReleaseDate());
+		out.writeLong(m.getWatchDate());
+		out.writeLong(m.getReturnDate());
+		writeSignedVarInt(out, m.getRuntime());
+		writeSignedVarInt(out, m.getRating());
+		writeSignedVarInt(out, m.getOverallRating());
+		writeStrings(out, m.getAlternativeTitles());
+		writeStrings(out, m.getFilmingLocations());
+		writeUUIDs(out, m.getPerformerIds());
+		writeString(out, m.getImageHash());
+	}
+
+	/**
+	 * Decodes a movie record.
+	 *
+	 * @param in
+	 *            the buffer containing exactly the record
+	 * @return the movie record
+	 * @throws IOException
+	 *             if the record is invalid
+	 */
+	MovieRecord readMovie(ByteBuffer in) throws IOException {
+		try {
+			readVersion(in);
+			UUID id = readUUID(in);
+			String imdbID = readString(in);
+			String title = readString(in);
+			// Descriptions are the largest strings, so they may be decoded once they are accessed
+			Supplier<String> descriptionLoader = readTextLoader(in);
+			String description = descriptionLoader == null ? readString(in) : null;
+			String country = readString(in);
+			String language = readString(in);
+			long releaseDate = in.getLong();
+			long watchDate = in.getLong();
+			long returnDate = in.getLong();
+			int runtime = readSignedVarInt(in);
+			int rating = readSignedVarInt(in);
+			int overallRating = readSignedVarInt(in);
+			List<String> alternativeTitles = readStrings(in);
+			List<String> filmingLocations = readStrings(in);
+			List<UUID> performerIds = readUUIDs(in);
+			String imageHash = readString(in);
+			return new MovieRecord(id, imdbID, title, description, descriptionLoader, country, language, releaseDate, watchDate, returnDate, runtime, rating, overallRating, alternativeTitles, filmingLocations, performerIds, imageHash);
+		} catch(BufferUnderflowException e) {
+			throw new IOException("Truncated movie record", e);
+		}
+	}
+
+	/**
+	 * Encodes the given performer record.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param p
+	 *            the performer record
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	void writePerformer(DataOutputStream out, PerformerRecord p) throws IOException {
+		writeVarInt(out, VERSION);
+		writeUUID(out, p.getId());
+		writeString(out, p.getImdbID());
+		writeString(out, p.getFirstName());
+		writeString(out, p.getLastName());
+		writeString(out, p.getBiography());
+		writeString(out, p.getCountry());
+		out.writeLong(p.getDateOfBirth());
+		writeSignedVarInt(out, p.getRating());
+		writeStrings(out, p.getAlternateNames());
+		writeUUIDs(out, p.getMovieIds());
+		writeString(out, p.getImageHash());
+	}
+
+	/**
+	 * Decodes a performer record.
+	 *
+	 * @param in
+	 *            the buffer containing exactly the record
+	 * @return the performer record
+	 * @throws IOException
+	 *             if the record is invalid
+	 */
+	PerformerRecord readPerformer(ByteBuffer in) throws IOException {
+		try {
+			readVersion(in);
+			UUID id = readUUID(in);
+			String imdbID = readString(in);
+			String firstName = readString(in);
+			String lastName = readString(in);
+			Supplier<String> biographyLoader = readTextLoader(in);
+			String biography = biographyLoader == null ? readString(in) : null;
+			String country = readString(in);
+			long dateOfBirth = in.getLong();
+			int rating = readSignedVarInt(in);
+			List<String> alternateNames = readStrings(in);
+			List<UUID> movieIds = readUUIDs(in);
+			String imageHash = readString(in);
+			return new PerformerRecord(id, imdbID, firstName, lastName, biography, biographyLoader, country, dateOfBirth, rating, alternateNames, movieIds, imageHash);
+		} catch(BufferUnderflowException e) {
+			throw new IOException("Truncated performer record", e);
+		}
+	}
+
+	/**
+	 * Reads the version of the layout of a record. Fields appended in later versions have to be read depending on it.
+	 *
+	 * @param in
+	 *            the buffer
+	 * @return the version
+	 * @throws IOException
+	 *             if the version is invalid
+	 */
+	private static int readVersion(ByteBuffer in) throws IOException {
+		int version = readVarInt(in);
+		if(version < 1) {
+			throw new IOException("Invalid record version " + version);
+		}
+		return version;
+	}
+
+	/**
+	 * Writes a string, which may be null.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param s
+	 *            the string or null
+	 * @throws IOException
+	 *             if the string cannot be written
+	 */
+	protected void writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			writeVarInt(out, 0);
+		} else {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+	 *
+	 * @param in
+	 *            the buffer
+	 * @return the string or null
+	 * @throws IOException
+	 *             if the string is invalid
+	 */
+	protected String readString(ByteBuffer in) throws IOException {
+		int length = readVarInt(in) - 1;
+		if(length < 0) {
+			return null;
+		}
+		if(length > in.remaining()) {
+			throw new IOException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a long text, e.g. a description, if it can be decoded once it is accessed instead of right away. Otherwise nothing is read, and the text is read by {@link #readString(ByteBuffer)} afterwards.
+	 *
+	 * @param in
+	 *            the buffer
+	 * @return the loader decoding the text or null if the text has to be read right away
+	 * @throws IOException
+	 *             if the text is invalid
+	 */
+	protected Supplier<String> readTextLoader(ByteBuffer in) throws IOException {
+		return null;
+	}
+
+	private void writeStrings(DataOutputStream out, List<String> list) throws IOException {
+		writeVarInt(out, list.size());
+		for(String s : list) {
+			writeString(out, s);
+		}
+	}
+
+	private List<String> readStrings(ByteBuffer in) throws IOException {
+		int size = readCount(in);
+		List<String> list = new ArrayList<String>(size);
+		for(int i = 0; i < size; i++) {
+			list.add(readString(in));
+		}
+		return list;
+	}
+
+	static void writeUUID(DataOutputStream out, UUID id) throws IOException {
+		out.writeLong(id.getMostSignificantBits());
+		out.writeLong(id.getLeastSignificantBits());
+	}
+
+	static UUID readUUID(ByteBuffer in) {
+		return new UUID(in.getLong(), in.getLong());
+	}
+
+	static void writeUUIDs(DataOutputStream out, List<UUID> ids) throws IOException {
+		writeVarInt(out, ids.size());
+		for(UUID id : ids) {
+			writeUUID(out, id);
+		}
+	}
+
+	static List<UUID> readUUIDs(ByteBuffer in) throws IOException {
+		int size = readCount(in);
+		List<UUID> ids = new ArrayList<UUID>(size);
+		for(int i = 0; i < size; i++) {
+			ids.add(readUUID(in));
+		}
+		return ids;
+	}
+
+	/**
+	 * Writes a non-negative integer in seven-bit groups, least significant group first. The highest bit of each byte indicates whether another byte follows.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param value
+	 *            the value, interpreted as an unsigned integer
+	 * @throws IOException
+	 *             if the value cannot be written
+	 */
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Reads a non-negative integer written by {@link #writeVarInt(DataOutputStream, int)}.
+	 *
+	 * @param in
+	 *            the buffer
+	 * @return the value
+	 * @throws IOException
+	 *             if the value is longer than an integer
+	 */
+	static int readVarInt(ByteBuffer in) throws IOException {
+		int value = 0;
+		for(int i = 0; i < MAX_VARINT_LENGTH; i++) {
+			byte b = in.get();
+			value |= (b & 0x7F) << (7 * i);
+			if(b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid variable-length integer");
+	}
+
+	/**
+	 * Writes an integer that may be negative. The value is zigzag-encoded first, so that integers with a small absolute value take up few bytes.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             if the value cannot be written
+	 */
+	static void writeSignedVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	static int readSignedVarInt(ByteBuffer in) throws IOException {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads the number of elements of a list. Each element takes up at least one byte, so a damaged count must not cause a huge allocation.
+	 *
+	 * @param in
+	 *            the buffer
+	 * @return the number of elements
+	 * @throws IOException
+	 *             if the count is invalid
+	 */
+	private static int readCount(ByteBuffer in) throws IOException {
+		int count = readVarInt(in);
+		if(count < 0 || count > in.remaining()) {
+			throw new IOException("Invalid element count " + count);
+		}
+		return count;
+	}
+}
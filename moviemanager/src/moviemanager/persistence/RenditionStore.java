@@ -0,0 +1,133 @@
+package moviemanager.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+
+/**
+ * Stores pre-rendered versions of images, e.g. the thumbnails of the posters, so that they do not have to be scaled again every time the posters are loaded. The renditions are keyed by the hash of the
+ * source image in the {@link ImageStore} and their size, so a rendition is only rendered again if the source image actually changes.
+ *
+ */
+public class RenditionStore {
+
+	/** Name of the folder containing the renditions within the images folder. **/
+	public static final String DIRECTORY_NAME = "renditions";
+
+	/** The folder containing the renditions. **/
+	private final File directory;
+
+	/**
+	 * Creates a new rendition store in the given folder. The folder is created when the first rendition is stored.
+	 * 
+	 * @param directory
+	 *            the folder containing the renditions
+	 */
+	public RenditionStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Encodes the given image as PNG.
+	 * 
+	 * @param data
+	 *            the image
+	 * @return the content of the PNG file
+	 */
+	public static byte[] encode(ImageData data) {
+		ImageLoader loader = new ImageLoader();
+		loader.data = new ImageData[] { data };
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		loader.save(out, SWT.IMAGE_PNG);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Gets the file of the rendition of the given size of the source image with the given hash.
+	 * 
+	 * @param hash
+	 *            the hash of the source image
+	 * @param width
+	 *            the width of the rendition
+	 * @param height
+	 *            the height of the rendition
+	 * @return the rendition file
+	 */
+	public File getFile(String hash, int width, int height) {
+		return new File(directory, hash + "_" + width + "x" + height + ".png");
+	}
+
+	/**
+	 * Loads the rendition of the given size of the source image with the given hash.
+	 * 
+	 * @param hash
+	 *            the hash of the source image
+	 * @param width
+	 *            the width of the rendition
+	 * @param height
+	 *            the height of the rendition
+	 * @return the rendition or null if it has not been stored yet
+	 */
+	public ImageData load(String hash, int width, int height) {
+		File file = getFile(hash, width, height);
+		if(!file.isFile()) {
+			return null;
+		}
+		try {
+			ImageData data = new ImageData(file.getPath());
+			return data.width == width && data.height == height ? data : null;
+		} catch(SWTException e) {
+			// A damaged rendition is simply rendered again
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given rendition of the source image with the given hash, unless it has already been stored.
+	 * 
+	 * @param hash
+	 *            the hash of the source image
+	 * @param data
+	 *            the rendition
+	 * @return true if the rendition has been written, false if it had already been stored
+	 * @throws IOException
+	 *             if the rendition cannot be written
+	 */
+	public boolean store(String hash, ImageData data) throws IOException {
+		File file = getFile(hash, data.width, data.height);
+		if(file.isFile()) {
+			return false;
+		}
+		ImageStore.write(directory, file, encode(data));
+		return true;
+	}
+
+	/**
+	 * Deletes all renditions except the ones of the source images with the given hashes.
+	 * 
+	 * @param hashes
+	 *            the hashes of the source images that are still referenced
+	 * @return the number of deleted renditions
+	 */
+	public int retainAll(Set<String> hashes) {
+		int deleted = 0;
+		File[] files = directory.listFiles();
+		if(files != null) {
+			for(File f : files) {
+				String name = f.getName();
+				int separator = name.indexOf('_');
+				if(f.isFile() && name.endsWith(".png") && (separator < 0 || !hashes.contains(name.substring(0, separator))) && f.delete()) {
+					deleted++;
+				}
+			}
+		}
+		return deleted;
+	}
+}
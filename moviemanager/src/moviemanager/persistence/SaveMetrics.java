@@ -0,0 +1,98 @@
+package moviemanager.persistence;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects statistics about the saves of the movie and performer databases, i.e. how long they took and how many bytes they have written. Thread-safe, since saves are recorded by the snapshot writer while
+ * the statistics are read by the UI.
+ *
+ */
+public class SaveMetrics {
+
+	/** Number of successful saves. **/
+	private long saveCount = 0;
+	/** Number of failed saves. **/
+	private long failureCount = 0;
+	/** Duration of the last successful save in nanoseconds. **/
+	private long lastDuration = 0;
+	/** Total duration of all successful saves in nanoseconds. **/
+	private long totalDuration = 0;
+	/** Longest duration of a successful save in nanoseconds. **/
+	private long maxDuration = 0;
+	/** Number of bytes written by the last successful save. **/
+	private long lastBytesWritten = 0;
+	/** Total number of bytes written by all successful saves. **/
+	private long totalBytesWritten = 0;
+
+	/**
+	 * Records a successful save.
+	 * 
+	 * @param durationNanos
+	 *            the duration of the save in nanoseconds
+	 * @param bytesWritten
+	 *            the number of bytes written
+	 */
+	public synchronized void recordSave(long durationNanos, long bytesWritten) {
+		saveCount++;
+		lastDuration = durationNanos;
+		totalDuration += durationNanos;
+		maxDuration = Math.max(maxDuration, durationNanos);
+		lastBytesWritten = bytesWritten;
+		totalBytesWritten += bytesWritten;
+	}
+
+	/**
+	 * Records a failed save.
+	 */
+	public synchronized void recordFailure() {
+		failureCount++;
+	}
+
+	public synchronized long getSaveCount() {
+		return saveCount;
+	}
+
+	public synchronized long getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * Gets the duration of the last successful save.
+	 * 
+	 * @return the duration in milliseconds
+	 */
+	public synchronized long getLastDurationMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastDuration);
+	}
+
+	/**
+	 * Gets the average duration of all successful saves.
+	 * 
+	 * @return the duration in milliseconds or 0 if nothing has been saved yet
+	 */
+	public synchronized long getAverageDurationMillis() {
+		return saveCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalDuration / saveCount);
+	}
+
+	/**
+	 * Gets the longest duration of a successful save.
+	 * 
+	 * @return the duration in milliseconds
+	 */
+	public synchronized long getMaxDurationMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxDuration);
+	}
+
+	public synchronized long getLastBytesWritten() {
+		return lastBytesWritten;
+	}
+
+	public synchronized long getTotalBytesWritten() {
+		return totalBytesWritten;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "saves: " + saveCount + ", failures: " + failureCount + ", last: " + getLastDurationMillis() + " ms / " + lastBytesWritten + " bytes, average: " + getAverageDurationMillis() + " ms, max: " + getMaxDurationMillis() + " ms, total: " + totalBytesWritten + " bytes";
+	}
+}
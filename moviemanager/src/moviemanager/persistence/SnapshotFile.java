@@ -0,0 +1,995 @@
+package moviemanager.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * Reads and writes the single-file binary snapshot of the movie and performer databases.
+ * </p>
+ * <p>
+ * A snapshot starts with a fixed-size header containing a magic number, the format version and an index of all sections. It is followed by the sections themselves: a string table holding every distinct string of the
+ * snapshot exactly once, the movie records and the performer records. Every string table entry and every record is length-prefixed. Records are encoded by {@link RecordCodec} and refer to strings by their
+ * index in the string table and to linked entities by their UUID. Fields that have been added in later versions of the format are appended to the end of a record, so records of older versions are read with
+ * default values for them.
+ * </p>
+ * <p>
+ * The header, every string table entry, every record and every delta segment is followed by its CRC32 checksum, so that damaged data is detected instead of being loaded. The checksums of string table entries
+ * are verified when the strings are decoded, so the long texts of a mapped snapshot are not read until they are accessed. A snapshot is always written into a
+ * temporary file first, which replaces the snapshot file in a single atomic rename once it is complete.
+ * </p>
+ * <p>
+ * Changes made after the snapshot has been written can be appended as delta segments, so saving a few modified entities does not require rewriting the whole file. Each segment has its own string table and
+ * contains the records of added or modified entities as well as the UUIDs of removed entities. When reading, the segments are applied to the base sections in the order they were appended. A truncated or
+ * damaged segment at the end of the file, e.g. caused by a crash during an append, is ignored.
+ * </p>
+ *
+ */
+public class SnapshotFile {
+
+	/** Magic number at the start of each snapshot file ("MMLS"). **/
+	public static final int MAGIC = 0x4D4D4C53;
+	/** Current version of the snapshot format. **/
+	public static final int VERSION = 4;
+	/** First version of the snapshot format whose records refer to their image by its hash in the image store. **/
+	public static final int VERSION_IMAGE_HASHES = 2;
+	/** First version of the snapshot format that stores a checksum after the header, each record and each delta segment. **/
+	public static final int VERSION_CHECKSUMS = 3;
+	/** First version of the snapshot format whose records are encoded by {@link RecordCodec}, i.e. with variable-length integers and a layout version per record. **/
+	public static final int VERSION_RECORD_CODEC = 4;
+
+	/** Section type of the string table. **/
+	public static final int SECTION_STRINGS = 1;
+	/** Section type of the movie records. **/
+	public static final int SECTION_MOVIES = 2;
+	/** Section type of the performer records. **/
+	public static final int SECTION_PERFORMERS = 3;
+
+	/** Number of sections in a snapshot. **/
+	private static final int SECTION_COUNT = 3;
+	/** Size of a section index entry in bytes: type, offset, length and element count. **/
+	private static final int SECTION_ENTRY_SIZE = 4 + 8 + 8 + 4;
+	/** Size of the header in bytes, including its checksum. **/
+	public static final int HEADER_SIZE = 4 + 4 + 4 + SECTION_COUNT * SECTION_ENTRY_SIZE + 4;
+
+	/** Magic number at the start of each delta segment ("MMDS"). **/
+	private static final int SEGMENT_MAGIC = 0x4D4D4453;
+	/** Size of the header of a delta segment in bytes: magic number, payload length and checksum of the payload. **/
+	private static final int SEGMENT_HEADER_SIZE = 4 + 4 + 4;
+	/** Size of the header of a delta segment in versions without checksums. **/
+	private static final int SEGMENT_HEADER_SIZE_V2 = 4 + 4;
+
+	/** String table reference used for null strings. **/
+	private static final int NULL_STRING = -1;
+
+	/** Number of records that are decoded as one chunk when decoding in parallel. **/
+	private static final int DECODE_CHUNK_SIZE = 1024;
+
+	/** Size of the buffer used for writing snapshots. **/
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The contents of a snapshot file.
+	 *
+	 */
+	public static class Contents {
+		private final List<MovieRecord> movies;
+		private final List<PerformerRecord> performers;
+		private final int version;
+		private final long baseLength;
+		private final long length;
+		/** The mapped base sections or null if the file has been read onto the heap. **/
+		private final ByteBuffer mapping;
+
+		public Contents(List<MovieRecord> movies, List<PerformerRecord> performers, int version, long baseLength, long length) {
+			this(movies, performers, version, baseLength, length, null);
+		}
+
+		private Contents(List<MovieRecord> movies, List<PerformerRecord> performers, int version, long baseLength, long length, ByteBuffer mapping) {
+			this.movies = movies;
+			this.performers = performers;
+			this.version = version;
+			this.baseLength = baseLength;
+			this.length = length;
+			this.mapping = mapping;
+		}
+
+		public List<MovieRecord> getMovies() {
+			return movies;
+		}
+
+		public List<PerformerRecord> getPerformers() {
+			return performers;
+		}
+
+		/**
+		 * Gets the version of the format the snapshot has been written in.
+		 * 
+		 * @return the version
+		 */
+		public int getVersion() {
+			return version;
+		}
+
+		/**
+		 * Gets the length of the base sections, i.e. the length of the file without any delta segments.
+		 * 
+		 * @return the length in bytes
+		 */
+		public long getBaseLength() {
+			return baseLength;
+		}
+
+		/**
+		 * Gets the length of the valid part of the file, including all complete delta segments. New delta segments have to be appended at this position.
+		 * 
+		 * @return the length in bytes
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Gets the mapped base sections of the file. The loaders of the texts refer to this buffer, so the file stays mapped until neither the buffer nor any of the loaders is referenced anymore.
+		 * 
+		 * @return the mapped buffer or null if the file has been read onto the heap
+		 */
+		public ByteBuffer getMapping() {
+			return mapping;
+		}
+	}
+
+	/**
+	 * Maps strings to their index in the string table while the snapshot is being written.
+	 *
+	 */
+	private static class StringTable {
+		private final Map<String, Integer> indices = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+
+		private void add(String s) {
+			if(s != null && !indices.containsKey(s)) {
+				indices.put(s, strings.size());
+				strings.add(s);
+			}
+		}
+
+		private void addAll(List<String> list) {
+			for(String s : list) {
+				add(s);
+			}
+		}
+
+		private void addMovies(List<MovieRecord> movies) {
+			for(MovieRecord m : movies) {
+				add(m.getImdbID());
+				add(m.getTitle());
+				add(m.getDescription());
+				add(m.getCountry());
+				add(m.getLanguage());
+				addAll(m.getAlternativeTitles());
+				addAll(m.getFilmingLocations());
+				add(m.getImageHash());
+			}
+		}
+
+		private void addPerformers(List<PerformerRecord> performers) {
+			for(PerformerRecord p : performers) {
+				add(p.getImdbID());
+				add(p.getFirstName());
+				add(p.getLastName());
+				add(p.getBiography());
+				add(p.getCountry());
+				addAll(p.getAlternateNames());
+				add(p.getImageHash());
+			}
+		}
+
+		private int indexOf(String s) {
+			return s == null ? NULL_STRING : indices.get(s);
+		}
+
+		private void writeTo(DataOutputStream out) throws IOException {
+			for(String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				writeRecord(out, bytes, bytes.length);
+			}
+		}
+	}
+
+	/**
+	 * Encodes the strings of records as references into the string table of the snapshot or of a delta segment. A reference is written as the index of the string plus one, so that null takes up a single byte.
+	 *
+	 */
+	private static class TableCodec extends RecordCodec {
+		/** The string table while writing or null while reading. **/
+		private final StringTable table;
+		/** The string table while reading or null while writing. **/
+		private final Strings strings;
+
+		private TableCodec(StringTable table) {
+			this.table = table;
+			this.strings = null;
+		}
+
+		private TableCodec(Strings strings) {
+			this.table = null;
+			this.strings = strings;
+		}
+
+		@Override
+		protected void writeString(DataOutputStream out, String s) throws IOException {
+			writeVarInt(out, table.indexOf(s) + 1);
+		}
+
+		@Override
+		protected String readString(ByteBuffer in) throws IOException {
+			return strings.get(readVarInt(in) - 1);
+		}
+
+		@Override
+		protected Supplier<String> readTextLoader(ByteBuffer in) throws IOException {
+			int position = in.position();
+			Supplier<String> loader = strings.getLazily(readVarInt(in) - 1);
+			if(loader == null) {
+				// The text is read again by readString
+				in.position(position);
+			}
+			return loader;
+		}
+	}
+
+	/**
+	 * Writes the given records into the given file, replacing its previous contents including all delta segments. The records are written into a temporary file in the same folder first, which is flushed to
+	 * the disk and then renamed to the given file. So the file either keeps its previous contents or contains the complete new snapshot, even if the application crashes or the disk runs full while writing.
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @param movies
+	 *            the movie records
+	 * @param performers
+	 *            the performer records
+	 * @return the length of the written file in bytes
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static long write(File file, List<MovieRecord> movies, List<PerformerRecord> performers) throws IOException {
+		// Collect all distinct strings first, so records can refer to them by index
+		StringTable strings = new StringTable();
+		strings.addMovies(movies);
+		strings.addPerformers(performers);
+
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			long length = writeContents(tempFile, movies, performers, strings);
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return length;
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	private static long writeContents(File file, List<MovieRecord> movies, List<PerformerRecord> performers, StringTable strings) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long[] offsets = new long[SECTION_COUNT];
+			long[] lengths = new long[SECTION_COUNT];
+
+			// The header is written last, once the offsets of all sections are known
+			channel.position(HEADER_SIZE);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+
+			offsets[0] = HEADER_SIZE + out.size();
+			strings.writeTo(out);
+			lengths[0] = HEADER_SIZE + out.size() - offsets[0];
+
+			RecordBuffer record = new RecordBuffer();
+			TableCodec codec = new TableCodec(strings);
+			offsets[1] = HEADER_SIZE + out.size();
+			writeMovies(out, record, movies, codec);
+			lengths[1] = HEADER_SIZE + out.size() - offsets[1];
+
+			offsets[2] = HEADER_SIZE + out.size();
+			writePerformers(out, record, performers, codec);
+			lengths[2] = HEADER_SIZE + out.size() - offsets[2];
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(SECTION_COUNT);
+			int[] types = { SECTION_STRINGS, SECTION_MOVIES, SECTION_PERFORMERS };
+			int[] counts = { strings.strings.size(), movies.size(), performers.size() };
+			for(int i = 0; i < SECTION_COUNT; i++) {
+				header.putInt(types[i]);
+				header.putLong(offsets[i]);
+				header.putLong(lengths[i]);
+				header.putInt(counts[i]);
+			}
+			header.putInt(checksum(header.array(), HEADER_SIZE - 4));
+			header.flip();
+			while(header.hasRemaining()) {
+				channel.write(header, HEADER_SIZE - header.remaining());
+			}
+			channel.force(true);
+
+			return HEADER_SIZE + out.size();
+		}
+	}
+
+	/**
+	 * Appends a delta segment to the given snapshot file. Anything after the given position, e.g. the remains of an incomplete segment, is discarded.
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @param position
+	 *            the length of the valid part of the file, as returned by {@link Contents#getLength()} or by a previous call to {@link #write(File, List, List)} or this method
+	 * @param movies
+	 *            the records of added or modified movies
+	 * @param performers
+	 *            the records of added or modified performers
+	 * @param removedMovies
+	 *            the UUIDs of removed movies
+	 * @param removedPerformers
+	 *            the UUIDs of removed performers
+	 * @return the new length of the valid part of the file in bytes
+	 * @throws IOException
+	 *             if the segment cannot be written
+	 */
+	public static long append(File file, long position, List<MovieRecord> movies, List<PerformerRecord> performers, Collection<UUID> removedMovies, Collection<UUID> removedPerformers) throws IOException {
+		StringTable strings = new StringTable();
+		strings.addMovies(movies);
+		strings.addPerformers(performers);
+
+		// The segment is assembled in memory first, since its header contains the length of its payload
+		RecordBuffer segment = new RecordBuffer();
+		DataOutputStream out = segment.data;
+		out.writeInt(SEGMENT_MAGIC);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeInt(strings.strings.size());
+		strings.writeTo(out);
+		RecordBuffer record = new RecordBuffer();
+		TableCodec codec = new TableCodec(strings);
+		out.writeInt(movies.size());
+		writeMovies(out, record, movies, codec);
+		out.writeInt(performers.size());
+		writePerformers(out, record, performers, codec);
+		out.writeInt(removedMovies.size());
+		for(UUID id : removedMovies) {
+			RecordCodec.writeUUID(out, id);
+		}
+		out.writeInt(removedPerformers.size());
+		for(UUID id : removedPerformers) {
+			RecordCodec.writeUUID(out, id);
+		}
+		out.flush();
+
+		byte[] bytes = segment.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes, SEGMENT_HEADER_SIZE, bytes.length - SEGMENT_HEADER_SIZE);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.putInt(4, bytes.length - SEGMENT_HEADER_SIZE);
+		buffer.putInt(8, (int) crc.getValue());
+
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			channel.truncate(position);
+			long end = position + buffer.remaining();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer, end - buffer.remaining());
+			}
+			// The segment has to be on the disk before the journals it supersedes are deleted
+			channel.force(true);
+			return end;
+		}
+	}
+
+	/**
+	 * Reads the records from the given snapshot file and applies all delta segments.
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @return the contents of the snapshot
+	 * @throws IOException
+	 *             if the file cannot be read, is not a valid snapshot or is damaged
+	 */
+	public static Contents read(File file) throws IOException {
+		return read(file, null);
+	}
+
+	/**
+	 * Reads the records from the given snapshot file and applies all delta segments. The base sections are read onto the heap in one sequential pass and their records are decoded in chunks on the given executor.
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @param executor
+	 *            the executor decoding the records or null if they should be decoded on the calling thread
+	 * @return the contents of the snapshot
+	 * @throws IOException
+	 *             if the file cannot be read, is not a valid snapshot or is damaged
+	 */
+	public static Contents read(File file, ExecutorService executor) throws IOException {
+		return read(file, executor, false);
+	}
+
+	/**
+	 * <p>
+	 * Reads the records from the given snapshot file like {@link #read(File, ExecutorService)}, but maps the base sections into memory instead of copying them onto the heap. The records are decoded straight
+	 * from the mapped file, and the descriptions of movies and the biographies of performers are not decoded until they are accessed, so that only the texts that are actually displayed take up heap space.
+	 * </p>
+	 * <p>
+	 * The checksums of the records and of the strings they refer to directly are still verified while reading, so a damaged record is detected before it is used. The checksum of a long text is verified when
+	 * the text is accessed, and accessing a damaged text throws an {@link UncheckedIOException}, so it is neither replaced nor written into another snapshot. The mapped part of the file is never modified, since delta segments are appended behind it and
+	 * {@link #write(File, List, List)} replaces the file instead of overwriting it.
+	 * </p>
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @param executor
+	 *            the executor decoding the records or null if they should be decoded on the calling thread
+	 * @return the contents of the snapshot
+	 * @throws IOException
+	 *             if the file cannot be mapped, is not a valid snapshot or is damaged
+	 */
+	public static Contents map(File file, ExecutorService executor) throws IOException {
+		return read(file, executor, true);
+	}
+
+	private static Contents read(File file, ExecutorService executor, boolean mapped) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long fileLength = channel.size();
+
+			// The header is read as a whole, so that its checksum can be verified before the section index is used
+			ByteBuffer start = readFully(channel, 0, 4 + 4 + 4);
+			if(start.getInt() != MAGIC) {
+				throw new IOException("Not a Movie Manager snapshot: " + file);
+			}
+			int version = start.getInt();
+			if(version > VERSION) {
+				throw new IOException("Unsupported snapshot version " + version + ": " + file);
+			}
+			boolean checksummed = version >= VERSION_CHECKSUMS;
+			int sectionCount = start.getInt();
+			if(sectionCount < 0 || (long) sectionCount * SECTION_ENTRY_SIZE > fileLength) {
+				throw new IOException("Corrupt snapshot section index: " + file);
+			}
+			ByteBuffer index = readFully(channel, start.capacity(), sectionCount * SECTION_ENTRY_SIZE + (checksummed ? 4 : 0));
+			if(checksummed) {
+				CRC32 crc = new CRC32();
+				crc.update(start.array());
+				crc.update(index.array(), 0, index.capacity() - 4);
+				if(index.getInt(index.capacity() - 4) != (int) crc.getValue()) {
+					throw new IOException("Checksum mismatch in snapshot header: " + file);
+				}
+			}
+			int[] types = new int[sectionCount];
+			long[] offsets = new long[sectionCount];
+			long[] lengths = new long[sectionCount];
+			int[] counts = new int[sectionCount];
+			// Sections are stored in the order of the index
+			long position = start.capacity() + index.capacity();
+			for(int i = 0; i < sectionCount; i++) {
+				types[i] = index.getInt();
+				offsets[i] = index.getLong();
+				lengths[i] = index.getLong();
+				counts[i] = index.getInt();
+				if(offsets[i] < position || lengths[i] < 0) {
+					throw new IOException("Corrupt snapshot section index: " + file);
+				}
+				position = offsets[i] + lengths[i];
+			}
+			long baseLength = position;
+			if(baseLength > fileLength) {
+				throw new EOFException("Truncated snapshot: " + file);
+			}
+			if(baseLength > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large: " + file);
+			}
+
+			// Delta segments are appended behind the base sections, so the mapped part of the file never changes
+			ByteBuffer base = mapped ? channel.map(FileChannel.MapMode.READ_ONLY, 0, baseLength) : readFully(channel, 0, (int) baseLength);
+			Strings strings = new Strings(new ByteBuffer[0], null, false);
+			List<ByteBuffer> movieRecords = Collections.emptyList();
+			List<ByteBuffer> performerRecords = Collections.emptyList();
+			try {
+				for(int i = 0; i < sectionCount; i++) {
+					ByteBuffer section = slice(base, (int) offsets[i], (int) lengths[i]);
+					switch(types[i]) {
+					case SECTION_STRINGS:
+						strings = readStringTable(section, counts[i], checksummed, mapped);
+						break;
+					case SECTION_MOVIES:
+						movieRecords = readRecords(section, counts[i], checksummed);
+						break;
+					case SECTION_PERFORMERS:
+						performerRecords = readRecords(section, counts[i], checksummed);
+						break;
+					default:
+						// Sections unknown to this version are skipped
+						break;
+					}
+				}
+			} catch(BufferUnderflowException e) {
+				throw new IOException("Truncated snapshot section: " + file, e);
+			}
+
+			// The records are decoded once the string table is known
+			RecordDecoder<MovieRecord> movieDecoder = version >= VERSION_RECORD_CODEC ? MOVIE_DECODER : LEGACY_MOVIE_DECODER;
+			RecordDecoder<PerformerRecord> performerDecoder = version >= VERSION_RECORD_CODEC ? PERFORMER_DECODER : LEGACY_PERFORMER_DECODER;
+			List<MovieRecord> movies = decode(movieRecords, new TableCodec(strings), movieDecoder, executor);
+			List<PerformerRecord> performers = decode(performerRecords, new TableCodec(strings), performerDecoder, executor);
+
+			// Apply the delta segments in the order they were appended
+			Map<UUID, MovieRecord> moviesById = null;
+			Map<UUID, PerformerRecord> performersById = null;
+			int segmentHeaderSize = checksummed ? SEGMENT_HEADER_SIZE : SEGMENT_HEADER_SIZE_V2;
+			while(fileLength - position >= segmentHeaderSize) {
+				ByteBuffer header = readFully(channel, position, segmentHeaderSize);
+				if(header.getInt() != SEGMENT_MAGIC) {
+					break;
+				}
+				int length = header.getInt();
+				int segmentChecksum = checksummed ? header.getInt() : 0;
+				if(length < 0 || length > fileLength - position - segmentHeaderSize) {
+					// Incomplete segment
+					break;
+				}
+				ByteBuffer segment = readFully(channel, position + segmentHeaderSize, length);
+				if(checksummed && segmentChecksum != checksum(segment.duplicate())) {
+					// Damaged segment, e.g. because its end has not been written to the disk before a crash
+					break;
+				}
+				position += segmentHeaderSize + length;
+
+				if(moviesById == null) {
+					moviesById = new LinkedHashMap<UUID, MovieRecord>();
+					for(MovieRecord m : movies) {
+						moviesById.put(m.getId(), m);
+					}
+					performersById = new LinkedHashMap<UUID, PerformerRecord>();
+					for(PerformerRecord p : performers) {
+						performersById.put(p.getId(), p);
+					}
+				}
+				try {
+					TableCodec segmentCodec = new TableCodec(readStringTable(segment, segment.getInt(), checksummed, false));
+					for(MovieRecord m : decodeAll(readRecords(segment, segment.getInt(), checksummed), segmentCodec, movieDecoder)) {
+						moviesById.put(m.getId(), m);
+					}
+					for(PerformerRecord p : decodeAll(readRecords(segment, segment.getInt(), checksummed), segmentCodec, performerDecoder)) {
+						performersById.put(p.getId(), p);
+					}
+					int removedMovies = segment.getInt();
+					for(int i = 0; i < removedMovies; i++) {
+						moviesById.remove(RecordCodec.readUUID(segment));
+					}
+					int removedPerformers = segment.getInt();
+					for(int i = 0; i < removedPerformers; i++) {
+						performersById.remove(RecordCodec.readUUID(segment));
+					}
+				} catch(BufferUnderflowException e) {
+					throw new IOException("Corrupt snapshot segment: " + file, e);
+				}
+			}
+			if(moviesById != null) {
+				movies = new ArrayList<MovieRecord>(moviesById.values());
+				performers = new ArrayList<PerformerRecord>(performersById.values());
+			}
+
+			return new Contents(movies, performers, version, baseLength, position, mapped ? base : null);
+		}
+	}
+
+	/**
+	 * The string table of a snapshot while it is being read. Each string is decoded when it is requested for the first time.
+	 *
+	 */
+	private static class Strings {
+		/** The encoded strings. **/
+		private final ByteBuffer[] entries;
+		/** The checksums of the strings, which are verified when a string is decoded, or null if they have been verified while reading. **/
+		private final int[] checksums;
+		/** The strings that have been decoded already. **/
+		private final String[] decoded;
+		/** Flag to indicate whether long texts are decoded when they are accessed instead of while the records are decoded. **/
+		private final boolean lazyTexts;
+
+		private Strings(ByteBuffer[] entries, int[] checksums, boolean lazyTexts) {
+			this.entries = entries;
+			this.checksums = checksums;
+			this.decoded = new String[entries.length];
+			this.lazyTexts = lazyTexts;
+		}
+
+		private void checkIndex(int index) throws IOException {
+			if(index < 0 || index >= entries.length) {
+				throw new IOException("Invalid string table reference " + index);
+			}
+		}
+
+		private String get(int index) throws IOException {
+			if(index == NULL_STRING) {
+				return null;
+			}
+			checkIndex(index);
+			// Records may be decoded concurrently. Decoding a string twice is harmless, since strings are immutable
+			String s = decoded[index];
+			if(s == null) {
+				if(checksums != null && checksums[index] != checksum(entries[index].duplicate())) {
+					throw new IOException("Checksum mismatch in snapshot string");
+				}
+				s = decode(entries[index]);
+				decoded[index] = s;
+			}
+			return s;
+		}
+
+		/**
+		 * Gets a loader that decodes the long text with the given index, e.g. a description, once it is accessed.
+		 * 
+		 * @param index
+		 *            the index of the text
+		 * @return the loader or null if the text should be decoded right away, because texts are not decoded lazily or the text has been decoded already
+		 * @throws IOException
+		 *             if the index is invalid
+		 */
+		private Supplier<String> getLazily(int index) throws IOException {
+			if(!lazyTexts || index == NULL_STRING) {
+				return null;
+			}
+			checkIndex(index);
+			if(decoded[index] != null) {
+				return null;
+			}
+			return checksums == null ? new MappedText(entries[index]) : new MappedText(entries[index], checksums[index]);
+		}
+	}
+
+	/**
+	 * Decodes a text from the mapped snapshot file when it is accessed. Keeps the file mapped as long as it is referenced.
+	 *
+	 */
+	private static class MappedText implements Supplier<String> {
+		private final ByteBuffer entry;
+		/** Flag to indicate whether the checksum of the text has to be verified before it is decoded. **/
+		private final boolean verify;
+		private final int checksum;
+
+		private MappedText(ByteBuffer entry) {
+			this.entry = entry;
+			this.verify = false;
+			this.checksum = 0;
+		}
+
+		private MappedText(ByteBuffer entry, int checksum) {
+			this.entry = entry;
+			this.verify = true;
+			this.checksum = checksum;
+		}
+
+		@Override
+		public String get() {
+			// Reading the page of the text for the checksum costs nothing extra, since decoding reads it anyway
+			if(verify && checksum != checksum(entry.duplicate())) {
+				throw new UncheckedIOException(new IOException("Checksum mismatch in snapshot text"));
+			}
+			return decode(entry);
+		}
+	}
+
+	private static String decode(ByteBuffer entry) {
+		ByteBuffer in = entry.duplicate();
+		byte[] bytes = new byte[in.remaining()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes a single record.
+	 *
+	 * @param <T>
+	 *            the type of the record
+	 */
+	private interface RecordDecoder<T> {
+		T decode(ByteBuffer in, TableCodec codec) throws IOException;
+	}
+
+	private static final RecordDecoder<MovieRecord> MOVIE_DECODER = new RecordDecoder<MovieRecord>() {
+		@Override
+		public MovieRecord decode(ByteBuffer in, TableCodec codec) throws IOException {
+			return codec.readMovie(in);
+		}
+	};
+
+	private static final RecordDecoder<PerformerRecord> PERFORMER_DECODER = new RecordDecoder<PerformerRecord>() {
+		@Override
+		public PerformerRecord decode(ByteBuffer in, TableCodec codec) throws IOException {
+			return codec.readPerformer(in);
+		}
+	};
+
+	/** Decodes the fixed-width movie records of snapshots written before {@link #VERSION_RECORD_CODEC}. **/
+	private static final RecordDecoder<MovieRecord> LEGACY_MOVIE_DECODER = new RecordDecoder<MovieRecord>() {
+		@Override
+		public MovieRecord decode(ByteBuffer in, TableCodec codec) throws IOException {
+			return readLegacyMovie(in, codec.strings);
+		}
+	};
+
+	/** Decodes the fixed-width performer records of snapshots written before {@link #VERSION_RECORD_CODEC}. **/
+	private static final RecordDecoder<PerformerRecord> LEGACY_PERFORMER_DECODER = new RecordDecoder<PerformerRecord>() {
+		@Override
+		public PerformerRecord decode(ByteBuffer in, TableCodec codec) throws IOException {
+			return readLegacyPerformer(in, codec.strings);
+		}
+	};
+
+	private static List<ByteBuffer> readRecords(ByteBuffer in, int count, boolean checksummed) throws IOException {
+		checkCount(in, count);
+		List<ByteBuffer> records = new ArrayList<ByteBuffer>(count);
+		for(int i = 0; i < count; i++) {
+			records.add(readRecord(in, checksummed));
+		}
+		return records;
+	}
+
+	private static <T> List<T> decodeAll(List<ByteBuffer> records, TableCodec codec, RecordDecoder<T> decoder) throws IOException {
+		List<T> result = new ArrayList<T>(records.size());
+		try {
+			for(ByteBuffer record : records) {
+				result.add(decoder.decode(record.duplicate(), codec));
+			}
+		} catch(BufferUnderflowException e) {
+			throw new IOException("Corrupt snapshot record", e);
+		}
+		return result;
+	}
+
+	private static <T> List<T> decode(List<ByteBuffer> records, final TableCodec codec, final RecordDecoder<T> decoder, ExecutorService executor) throws IOException {
+		if(executor == null || records.size() <= DECODE_CHUNK_SIZE) {
+			return decodeAll(records, codec, decoder);
+		}
+		List<Future<List<T>>> chunks = new ArrayList<Future<List<T>>>();
+		for(int start = 0; start < records.size(); start += DECODE_CHUNK_SIZE) {
+			final List<ByteBuffer> chunk = records.subList(start, Math.min(start + DECODE_CHUNK_SIZE, records.size()));
+			chunks.add(executor.submit(new Callable<List<T>>() {
+				@Override
+				public List<T> call() throws IOException {
+					return decodeAll(chunk, codec, decoder);
+				}
+			}));
+		}
+		List<T> result = new ArrayList<T>(records.size());
+		try {
+			for(Future<List<T>> chunk : chunks) {
+				result.addAll(chunk.get());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while decoding the snapshot");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Corrupt snapshot record", e.getCause());
+		}
+		return result;
+	}
+
+	private static Strings readStringTable(ByteBuffer in, int count, boolean checksummed, boolean lazyTexts) throws IOException {
+		checkCount(in, count);
+		ByteBuffer[] entries = new ByteBuffer[count];
+		// Verifying the texts of a mapped file right away would read every page of the string table
+		int[] checksums = checksummed && lazyTexts ? new int[count] : null;
+		for(int i = 0; i < count; i++) {
+			if(checksums != null) {
+				entries[i] = readRecord(in, false);
+				checksums[i] = in.getInt();
+			} else {
+				entries[i] = readRecord(in, checksummed);
+			}
+		}
+		return new Strings(entries, checksums, lazyTexts);
+	}
+
+	private static void writeMovies(DataOutputStream out, RecordBuffer record, List<MovieRecord> movies, TableCodec codec) throws IOException {
+		for(MovieRecord m : movies) {
+			record.reset();
+			codec.writeMovie(record.data, m);
+			record.writeTo(out);
+		}
+	}
+
+	private static void writePerformers(DataOutputStream out, RecordBuffer record, List<PerformerRecord> performers, TableCodec codec) throws IOException {
+		for(PerformerRecord p : performers) {
+			record.reset();
+			codec.writePerformer(record.data, p);
+			record.writeTo(out);
+		}
+	}
+
+	/**
+	 * Growable buffer for a single record, so that the record can be written with its length prefix and checksum.
+	 *
+	 */
+	private static class RecordBuffer extends java.io.ByteArrayOutputStream {
+		private final DataOutputStream data = new DataOutputStream(this);
+
+		private void writeTo(DataOutputStream out) throws IOException {
+			writeRecord(out, buf, count);
+		}
+	}
+
+	/**
+	 * Writes the first bytes of the given array as a record, i.e. preceded by their length and followed by their checksum.
+	 * 
+	 * @param out
+	 *            the output stream
+	 * @param bytes
+	 *            the bytes
+	 * @param length
+	 *            the number of bytes
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	private static void writeRecord(DataOutputStream out, byte[] bytes, int length) throws IOException {
+		out.writeInt(length);
+		out.write(bytes, 0, length);
+		out.writeInt(checksum(bytes, length));
+	}
+
+	private static int checksum(byte[] bytes, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, length);
+		return (int) crc.getValue();
+	}
+
+	private static int checksum(ByteBuffer bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+
+	private static MovieRecord readLegacyMovie(ByteBuffer in, Strings strings) throws IOException {
+		UUID id = RecordCodec.readUUID(in);
+		String imdbID = readLegacyString(in, strings);
+		String title = readLegacyString(in, strings);
+		// Descriptions are the largest strings, so they are only decoded once they are accessed if the snapshot is mapped
+		int descriptionIndex = in.getInt();
+		Supplier<String> descriptionLoader = strings.getLazily(descriptionIndex);
+		String description = descriptionLoader == null ? strings.get(descriptionIndex) : null;
+		String country = readLegacyString(in, strings);
+		String language = readLegacyString(in, strings);
+		long releaseDate = in.getLong();
+		long watchDate = in.getLong();
+		long returnDate = in.getLong();
+		int runtime = in.getInt();
+		int rating = in.getInt();
+		int overallRating = in.getInt();
+		List<String> alternativeTitles = readLegacyStrings(in, strings);
+		List<String> filmingLocations = readLegacyStrings(in, strings);
+		List<UUID> performerIds = readLegacyUUIDs(in);
+		String imageHash = in.hasRemaining() ? readLegacyString(in, strings) : null;
+		return new MovieRecord(id, imdbID, title, description, descriptionLoader, country, language, releaseDate, watchDate, returnDate, runtime, rating, overallRating, alternativeTitles, filmingLocations, performerIds, imageHash);
+	}
+
+	private static PerformerRecord readLegacyPerformer(ByteBuffer in, Strings strings) throws IOException {
+		UUID id = RecordCodec.readUUID(in);
+		String imdbID = readLegacyString(in, strings);
+		String firstName = readLegacyString(in, strings);
+		String lastName = readLegacyString(in, strings);
+		int biographyIndex = in.getInt();
+		Supplier<String> biographyLoader = strings.getLazily(biographyIndex);
+		String biography = biographyLoader == null ? strings.get(biographyIndex) : null;
+		String country = readLegacyString(in, strings);
+		long dateOfBirth = in.getLong();
+		int rating = in.getInt();
+		List<String> alternateNames = readLegacyStrings(in, strings);
+		List<UUID> movieIds = readLegacyUUIDs(in);
+		String imageHash = in.hasRemaining() ? readLegacyString(in, strings) : null;
+		return new PerformerRecord(id, imdbID, firstName, lastName, biography, biographyLoader, country, dateOfBirth, rating, alternateNames, movieIds, imageHash);
+	}
+
+	private static List<UUID> readLegacyUUIDs(ByteBuffer in) {
+		int size = in.getInt();
+		List<UUID> ids = new ArrayList<UUID>(size);
+		for(int i = 0; i < size; i++) {
+			ids.add(RecordCodec.readUUID(in));
+		}
+		return ids;
+	}
+
+	private static List<String> readLegacyStrings(ByteBuffer in, Strings strings) throws IOException {
+		int size = in.getInt();
+		List<String> list = new ArrayList<String>(size);
+		for(int i = 0; i < size; i++) {
+			list.add(readLegacyString(in, strings));
+		}
+		return list;
+	}
+
+	private static String readLegacyString(ByteBuffer in, Strings strings) throws IOException {
+		return strings.get(in.getInt());
+	}
+
+	/**
+	 * Reads a record, i.e. its length, its bytes and its checksum, from the given buffer without copying it.
+	 * 
+	 * @param in
+	 *            the buffer
+	 * @param checksummed
+	 *            whether the record is followed by its checksum
+	 * @return a buffer containing the bytes of the record
+	 * @throws IOException
+	 *             if the record is damaged
+	 */
+	private static ByteBuffer readRecord(ByteBuffer in, boolean checksummed) throws IOException {
+		int length = in.getInt();
+		if(length < 0 || length > in.remaining()) {
+			throw new IOException("Invalid record length " + length);
+		}
+		ByteBuffer record = in.slice();
+		record.limit(length);
+		in.position(in.position() + length);
+		if(checksummed && in.getInt() != checksum(record.duplicate())) {
+			throw new IOException("Checksum mismatch in snapshot record");
+		}
+		return record;
+	}
+
+	private static void checkCount(ByteBuffer in, int count) throws IOException {
+		// Each element takes at least four bytes, so a damaged count must not cause a huge allocation
+		if(count < 0 || count > in.remaining() / 4) {
+			throw new IOException("Invalid element count " + count);
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.limit(offset + length);
+		return slice.slice();
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
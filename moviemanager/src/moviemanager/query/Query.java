@@ -0,0 +1,288 @@
+package moviemanager.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import moviemanager.index.FieldIndex;
+
+/**
+ * <p>
+ * Node of the predicate tree of a parsed query. Besides testing single objects, a node can tell whether the objects it matches can be found through the field indices, and estimate how many candidates this would
+ * yield, so that a conjunction can start with its most selective part.
+ * </p>
+ * <p>
+ * Queries are created by {@link QueryLanguage#parse(String)} and executed by {@link QueryLanguage#execute(Query, Collection)}.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the objects the query matches
+ */
+public abstract class Query<T> implements Predicate<T> {
+
+	/**
+	 * Estimates the number of candidates the field indices yield for this query, but stops counting once the given limit has been reached.
+	 *
+	 * @param limit
+	 *            the maximum count
+	 * @return the number of candidates or the limit, whichever is smaller, or -1 if the query cannot be answered through the field indices
+	 */
+	abstract int estimate(int limit);
+
+	/**
+	 * Gets the candidates from the field indices, which are a superset of the matching objects. May only be called if {@link #estimate(int)} does not return -1.
+	 *
+	 * @return the candidates, without duplicates
+	 */
+	abstract Collection<T> getCandidates();
+
+	/**
+	 * Query that matches objects which all of its parts match.
+	 */
+	static class And<T> extends Query<T> {
+		private final List<Query<T>> parts;
+
+		And(List<Query<T>> parts) {
+			this.parts = parts;
+		}
+
+		@Override
+		public boolean test(T o) {
+			for(Query<T> part : parts) {
+				if(!part.test(o)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		int estimate(int limit) {
+			Query<T> part = getMostSelectivePart(limit);
+			return part == null ? -1 : part.estimate(limit);
+		}
+
+		@Override
+		Collection<T> getCandidates() {
+			return getMostSelectivePart(Integer.MAX_VALUE).getCandidates();
+		}
+
+		/**
+		 * Gets the part that yields the fewest candidates. Each estimate is bounded by the best one so far, so the parts are not counted further than necessary.
+		 */
+		private Query<T> getMostSelectivePart(int limit) {
+			Query<T> best = null;
+			int bestCount = limit;
+			for(Query<T> part : parts) {
+				int count = part.estimate(bestCount);
+				if(count != -1 && (best == null || count < bestCount)) {
+					best = part;
+					bestCount = count;
+				}
+			}
+			return best;
+		}
+
+		@Override
+		public String toString() {
+			return join(parts, " AND ");
+		}
+	}
+
+	/**
+	 * Query that matches objects which any of its parts match.
+	 */
+	static class Or<T> extends Query<T> {
+		private final List<Query<T>> parts;
+
+		Or(List<Query<T>> parts) {
+			this.parts = parts;
+		}
+
+		@Override
+		public boolean test(T o) {
+			for(Query<T> part : parts) {
+				if(part.test(o)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		int estimate(int limit) {
+			int count = 0;
+			for(Query<T> part : parts) {
+				int partCount = part.estimate(limit - count);
+				if(partCount == -1) {
+					return -1;
+				}
+				count += partCount;
+				if(count >= limit) {
+					return limit;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		Collection<T> getCandidates() {
+			Set<T> candidates = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+			List<T> result = new ArrayList<T>();
+			for(Query<T> part : parts) {
+				for(T o : part.getCandidates()) {
+					if(candidates.add(o)) {
+						result.add(o);
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + join(parts, " OR ") + ")";
+		}
+	}
+
+	/**
+	 * Query that matches objects which its part does not match.
+	 */
+	static class Not<T> extends Query<T> {
+		private final Query<T> part;
+
+		Not(Query<T> part) {
+			this.part = part;
+		}
+
+		@Override
+		public boolean test(T o) {
+			return !part.test(o);
+		}
+
+		@Override
+		int estimate(int limit) {
+			return -1;
+		}
+
+		@Override
+		Collection<T> getCandidates() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + part;
+		}
+	}
+
+	/**
+	 * Query that matches objects whose key of a number, date or keyword field lies in a range, or, if negated, does not lie in it. Objects without a value never lie in the range.
+	 */
+	static class Range<T> extends Query<T> {
+		private final QueryField<T> field;
+		private final Comparable<Object> from;
+		private final boolean fromInclusive;
+		private final Comparable<Object> to;
+		private final boolean toInclusive;
+		private final boolean negated;
+
+		Range(QueryField<T> field, Comparable<Object> from, boolean fromInclusive, Comparable<Object> to, boolean toInclusive, boolean negated) {
+			this.field = field;
+			this.from = from;
+			this.fromInclusive = fromInclusive;
+			this.to = to;
+			this.toInclusive = toInclusive;
+			this.negated = negated;
+		}
+
+		@Override
+		public boolean test(T o) {
+			Comparable<Object> key = field.getKey(o);
+			boolean inRange = key != null;
+			if(inRange && from != null) {
+				int c = key.compareTo(from);
+				inRange = fromInclusive ? c >= 0 : c > 0;
+			}
+			if(inRange && to != null) {
+				int c = key.compareTo(to);
+				inRange = toInclusive ? c <= 0 : c < 0;
+			}
+			return inRange != negated;
+		}
+
+		@Override
+		int estimate(int limit) {
+			FieldIndex<T, Comparable<Object>> index = field.getIndex();
+			if(index == null || negated) {
+				return -1;
+			}
+			return index.count(from, fromInclusive, to, toInclusive, limit);
+		}
+
+		@Override
+		Collection<T> getCandidates() {
+			return field.getIndex().getRange(from, fromInclusive, to, toInclusive);
+		}
+
+		@Override
+		public String toString() {
+			return (negated ? "NOT " : "") + field.getName() + " in " + (from == null ? "(*" : (fromInclusive ? "[" : "(") + from) + ", " + (to == null ? "*)" : to + (toInclusive ? "]" : ")"));
+		}
+	}
+
+	/**
+	 * Query that matches objects with a text of a text field that contains a given text or, if the whole text has to match, equals it.
+	 */
+	static class Text<T> extends Query<T> {
+		private final QueryField<T> field;
+		private final String text;
+		private final boolean whole;
+
+		Text(QueryField<T> field, String text, boolean whole) {
+			this.field = field;
+			this.text = text;
+			this.whole = whole;
+		}
+
+		@Override
+		public boolean test(T o) {
+			for(String s : field.getTexts(o)) {
+				if(whole ? s.equals(text) : s.contains(text)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		int estimate(int limit) {
+			return -1;
+		}
+
+		@Override
+		Collection<T> getCandidates() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String toString() {
+			return field.getName() + (whole ? "=" : ":") + "\"" + text + "\"";
+		}
+	}
+
+	private static String join(List<?> parts, String separator) {
+		StringBuilder sb = new StringBuilder();
+		for(Object part : parts) {
+			if(sb.length() > 0) {
+				sb.append(separator);
+			}
+			sb.append(part);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,213 @@
+package moviemanager.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import moviemanager.index.FieldIndex;
+import moviemanager.index.NameIndex;
+
+/**
+ * A field of movies or performers that can be used in a query, e.g. <code>rating</code> in <code>rating&gt;=70</code>. Each field has a type, which determines how its values are compared, and optionally a sorted
+ * index, which is used to find the matching objects without looking at all of them.
+ *
+ * @param <T>
+ *            the type of the objects the field belongs to
+ */
+public class QueryField<T> {
+
+	/**
+	 * Type of a field.
+	 *
+	 */
+	public enum Type {
+		/** Whole numbers, which can be compared with all operators. **/
+		NUMBER,
+		/** Dates, which are compared by day. <code>:yes</code> and <code>:no</code> match objects with and without a date. **/
+		DATE,
+		/** Short texts such as countries, which are compared as a whole, ignoring case and accents. **/
+		KEYWORD,
+		/** Longer texts or lists of texts such as titles, which <code>:</code> searches for a part of. **/
+		TEXT
+	}
+
+	/** Name of the field, as used in queries. **/
+	private final String name;
+	/** Alternative names of the field. **/
+	private final List<String> aliases;
+	/** Type of the field. **/
+	private final Type type;
+	/** Gets the value of the field of an object: an Integer, a Date, a String, or a collection of Strings for text fields. **/
+	private final Function<? super T, ?> accessor;
+	/** Index of the objects by the key of the field or null if the field is not indexed. **/
+	private final FieldIndex<T, Comparable<Object>> index;
+
+	/**
+	 * Creates a new field without an index.
+	 *
+	 * @param name
+	 *            the name of the field, which is also the name of the property it reflects
+	 * @param type
+	 *            the type of the field
+	 * @param accessor
+	 *            gets the value of the field: an Integer for numbers, a Date for dates, a String for keywords and a String or a collection of Strings for texts
+	 * @param aliases
+	 *            alternative names of the field
+	 */
+	public QueryField(String name, Type type, Function<? super T, ?> accessor, String... aliases) {
+		this(name, type, accessor, false, aliases);
+	}
+
+	/**
+	 * Creates a new field.
+	 *
+	 * @param name
+	 *            the name of the field, which is also the name of the property it reflects
+	 * @param type
+	 *            the type of the field
+	 * @param accessor
+	 *            gets the value of the field: an Integer for numbers, a Date for dates, a String for keywords and a String or a collection of Strings for texts
+	 * @param indexed
+	 *            whether the field is indexed. Text fields cannot be indexed
+	 * @param aliases
+	 *            alternative names of the field
+	 */
+	public QueryField(String name, Type type, Function<? super T, ?> accessor, boolean indexed, String... aliases) {
+		if(name == null || type == null || accessor == null) {
+			throw new IllegalArgumentException("The name, type and accessor must not be null");
+		}
+		if(indexed && type == Type.TEXT) {
+			throw new IllegalArgumentException("Text fields cannot be indexed");
+		}
+		this.name = name;
+		this.type = type;
+		this.accessor = accessor;
+		this.aliases = Collections.unmodifiableList(Arrays.asList(aliases.clone()));
+		this.index = indexed ? new FieldIndex<T, Comparable<Object>>() : null;
+	}
+
+	/**
+	 * Gets the key of the given object, which the field is compared and indexed by: an Integer for numbers, the time in milliseconds as a Long for dates and the normalized text for keywords.
+	 *
+	 * @param o
+	 *            the object
+	 * @return the key or null if the object has no value
+	 */
+	@SuppressWarnings("unchecked")
+	Comparable<Object> getKey(T o) {
+		Object value = accessor.apply(o);
+		if(value == null) {
+			return null;
+		}
+		switch(type) {
+			case DATE:
+				return (Comparable<Object>) (Comparable<?>) ((Date) value).getTime();
+			case KEYWORD:
+				return (Comparable<Object>) (Comparable<?>) normalize((String) value);
+			case TEXT:
+				throw new IllegalStateException("Text fields have no key");
+			default:
+				return (Comparable<Object>) value;
+		}
+	}
+
+	/**
+	 * Gets the normalized texts of the given object.
+	 *
+	 * @param o
+	 *            the object
+	 * @return the texts, which are empty if the object has no value
+	 */
+	List<String> getTexts(T o) {
+		Object value = accessor.apply(o);
+		List<String> texts = new ArrayList<String>();
+		if(value instanceof Collection) {
+			for(Object text : (Collection<?>) value) {
+				if(text != null) {
+					texts.add(NameIndex.normalize(text.toString()));
+				}
+			}
+		} else if(value != null) {
+			texts.add(NameIndex.normalize(value.toString()));
+		}
+		return texts;
+	}
+
+	/**
+	 * Normalizes a keyword, so that empty keywords are treated like missing ones.
+	 */
+	private static String normalize(String keyword) {
+		String s = NameIndex.normalize(keyword);
+		return s.isEmpty() ? null : s;
+	}
+
+	/**
+	 * Updates the index with the current value of the given object. Has to be called whenever the value changes and when the object is added. Does nothing if the field is not indexed.
+	 *
+	 * @param o
+	 *            the object
+	 */
+	public void updateIndex(T o) {
+		if(index != null) {
+			index.put(o, getKey(o));
+		}
+	}
+
+	/**
+	 * Removes the given object from the index. Does nothing if the field is not indexed.
+	 *
+	 * @param o
+	 *            the object
+	 */
+	public void removeFromIndex(T o) {
+		if(index != null) {
+			index.remove(o);
+		}
+	}
+
+	/**
+	 * Checks whether the given name refers to this field, ignoring case.
+	 *
+	 * @param fieldName
+	 *            the name
+	 * @return true if the name is the name of the field or one of its aliases, false otherwise
+	 */
+	public boolean hasName(String fieldName) {
+		String n = fieldName.toLowerCase(Locale.ROOT);
+		if(name.toLowerCase(Locale.ROOT).equals(n)) {
+			return true;
+		}
+		for(String alias : aliases) {
+			if(alias.toLowerCase(Locale.ROOT).equals(n)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getAliases() {
+		return aliases;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the index of the field.
+	 *
+	 * @return the index or null if the field is not indexed
+	 */
+	public FieldIndex<T, Comparable<Object>> getIndex() {
+		return index;
+	}
+}
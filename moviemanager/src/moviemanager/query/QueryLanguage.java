@@ -0,0 +1,348 @@
+package moviemanager.query;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import moviemanager.index.NameIndex;
+
+/**
+ * <p>
+ * Small query language for filtering movies or performers by their fields. A query consists of terms, which are combined with <code>AND</code> (or simply by juxtaposition), <code>OR</code>, <code>NOT</code> (or a
+ * leading <code>-</code>) and parentheses. A term is either a text, which is searched for in the default text field, or a comparison of a field with a value:
+ * </p>
+ *
+ * <pre>
+ * rating&gt;=70 lent:yes country:"USA" performer:"Hanks" watched&lt;2020-01-01
+ * </pre>
+ * <p>
+ * The operators are <code>:</code>, <code>=</code>, <code>!=</code>, <code>&lt;</code>, <code>&lt;=</code>, <code>&gt;</code> and <code>&gt;=</code>. Dates are written as <code>yyyy-mm-dd</code> and compared
+ * by day; <code>:yes</code> and <code>:no</code> match objects with and without a date. Keywords are compared as a whole and texts are searched for with <code>:</code>, both ignoring case and accents. Values
+ * that contain whitespace or operators are enclosed in double quotes.
+ * </p>
+ * <p>
+ * A query is executed by starting with the most selective comparison of an indexed field, so that only the objects it yields have to be tested against the whole query. Queries without such a comparison test
+ * all objects.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the objects
+ */
+public class QueryLanguage<T> {
+
+	/** Matches a comparison with a field, to tell queries from plain search strings such as <code>Mission: Impossible</code>. **/
+	private static final Pattern FIELD_TERM = Pattern.compile("(?:^|[\\s(])-?\\p{L}+(?::|!=|<|>|=)\\S");
+	/** Characters that end a word. **/
+	private static final String DELIMITERS = "()\":<>=!";
+
+	/**
+	 * Token of a query.
+	 */
+	private static class Token {
+		private enum Kind {
+			WORD, QUOTED, OPERATOR, OPEN, CLOSE, MINUS, END
+		}
+
+		private final Kind kind;
+		private final String text;
+		private final int position;
+
+		private Token(Kind kind, String text, int position) {
+			this.kind = kind;
+			this.text = text;
+			this.position = position;
+		}
+
+		private boolean isKeyword(String keyword) {
+			return kind == Kind.WORD && text.equals(keyword);
+		}
+	}
+
+	/** Fields that can be used in queries. **/
+	private final List<QueryField<T>> fields;
+	/** Field that plain texts are searched for in. **/
+	private final QueryField<T> textField;
+
+	/** Tokens of the query that is currently parsed. **/
+	private List<Token> tokens;
+	/** Index of the next token. **/
+	private int next;
+
+	/**
+	 * Creates a new query language.
+	 *
+	 * @param textField
+	 *            the field that plain texts are searched for in. Has to be a text field
+	 * @param fields
+	 *            the other fields that can be used in queries
+	 */
+	public QueryLanguage(QueryField<T> textField, List<QueryField<T>> fields) {
+		if(textField == null || textField.getType() != QueryField.Type.TEXT) {
+			throw new IllegalArgumentException("The text field must be a field of type text");
+		}
+		if(fields == null) {
+			throw new IllegalArgumentException("The fields must not be null");
+		}
+		List<QueryField<T>> all = new ArrayList<QueryField<T>>();
+		all.add(textField);
+		all.addAll(fields);
+		this.textField = textField;
+		this.fields = Collections.unmodifiableList(all);
+	}
+
+	/**
+	 * Checks whether the given string contains a comparison with a field, i.e. whether it is meant as a query rather than as a plain search string.
+	 *
+	 * @param s
+	 *            the string
+	 * @return true if the string contains a comparison, false otherwise
+	 */
+	public static boolean isQuery(String s) {
+		return FIELD_TERM.matcher(s).find();
+	}
+
+	/**
+	 * Parses the given query. An empty query matches all objects.
+	 *
+	 * @param query
+	 *            the query
+	 * @return the predicate tree of the query
+	 * @throws QuerySyntaxException
+	 *             if the query is malformed or uses an unknown field
+	 */
+	public synchronized Query<T> parse(String query) {
+		if(query == null) {
+			throw new IllegalArgumentException("The query must not be null");
+		}
+		tokens = tokenize(query);
+		next = 0;
+		try {
+			Query<T> result = parseOr();
+			Token t = tokens.get(next);
+			if(t.kind != Token.Kind.END) {
+				throw new QuerySyntaxException("Unexpected '" + t.text + "'", t.position);
+			}
+			return result;
+		} finally {
+			tokens = null;
+		}
+	}
+
+	/**
+	 * Gets the objects that match the given query. If the query contains a comparison with an indexed field, only the candidates of its most selective comparison are tested.
+	 *
+	 * @param query
+	 *            the query
+	 * @param objects
+	 *            all objects, i.e. the objects that are indexed
+	 * @return the matching objects. In the order of the given objects, unless they have been found through an index, in which case they are ordered by the key of the index
+	 */
+	public List<T> execute(Query<T> query, Collection<? extends T> objects) {
+		Collection<? extends T> candidates = objects;
+		int estimate = query.estimate(objects.size());
+		if(estimate != -1 && estimate < objects.size()) {
+			candidates = query.getCandidates();
+		}
+		List<T> result = new ArrayList<T>();
+		for(T o : candidates) {
+			if(query.test(o)) {
+				result.add(o);
+			}
+		}
+		return result;
+	}
+
+	public List<QueryField<T>> getFields() {
+		return fields;
+	}
+
+	private static List<Token> tokenize(String query) {
+		List<Token> tokens = new ArrayList<Token>();
+		int i = 0;
+		while(i < query.length()) {
+			char c = query.charAt(i);
+			if(Character.isWhitespace(c)) {
+				i++;
+			} else if(c == '(') {
+				tokens.add(new Token(Token.Kind.OPEN, "(", i++));
+			} else if(c == ')') {
+				tokens.add(new Token(Token.Kind.CLOSE, ")", i++));
+			} else if(c == '"') {
+				int end = query.indexOf('"', i + 1);
+				if(end == -1) {
+					throw new QuerySyntaxException("Unterminated quote", i);
+				}
+				tokens.add(new Token(Token.Kind.QUOTED, query.substring(i + 1, end), i));
+				i = end + 1;
+			} else if(c == '-' && (tokens.isEmpty() || tokens.get(tokens.size() - 1).kind != Token.Kind.OPERATOR)) {
+				tokens.add(new Token(Token.Kind.MINUS, "-", i++));
+			} else if(c == ':' || c == '=' || c == '<' || c == '>' || c == '!') {
+				int start = i++;
+				if(i < query.length() && query.charAt(i) == '=' && c != ':' && c != '=') {
+					i++;
+				}
+				String operator = query.substring(start, i);
+				if(operator.equals("!")) {
+					throw new QuerySyntaxException("Unexpected '!'", start);
+				}
+				tokens.add(new Token(Token.Kind.OPERATOR, operator, start));
+			} else {
+				int start = i;
+				while(i < query.length() && !Character.isWhitespace(query.charAt(i)) && DELIMITERS.indexOf(query.charAt(i)) == -1) {
+					i++;
+				}
+				tokens.add(new Token(Token.Kind.WORD, query.substring(start, i), start));
+			}
+		}
+		tokens.add(new Token(Token.Kind.END, "end of query", query.length()));
+		return tokens;
+	}
+
+	private Query<T> parseOr() {
+		List<Query<T>> parts = new ArrayList<Query<T>>();
+		parts.add(parseAnd());
+		while(tokens.get(next).isKeyword("OR")) {
+			next++;
+			parts.add(parseAnd());
+		}
+		return parts.size() == 1 ? parts.get(0) : new Query.Or<T>(parts);
+	}
+
+	private Query<T> parseAnd() {
+		List<Query<T>> parts = new ArrayList<Query<T>>();
+		while(true) {
+			Token t = tokens.get(next);
+			if(t.kind == Token.Kind.END || t.kind == Token.Kind.CLOSE || t.isKeyword("OR")) {
+				break;
+			}
+			if(t.isKeyword("AND")) {
+				next++;
+				continue;
+			}
+			parts.add(parseUnary());
+		}
+		return parts.size() == 1 ? parts.get(0) : new Query.And<T>(parts);
+	}
+
+	private Query<T> parseUnary() {
+		Token t = tokens.get(next++);
+		if(t.kind == Token.Kind.MINUS || t.isKeyword("NOT")) {
+			return new Query.Not<T>(parseUnary());
+		}
+		if(t.kind == Token.Kind.OPEN) {
+			Query<T> q = parseOr();
+			Token close = tokens.get(next++);
+			if(close.kind != Token.Kind.CLOSE) {
+				throw new QuerySyntaxException("')' expected", close.position);
+			}
+			return q;
+		}
+		if(t.kind == Token.Kind.WORD && tokens.get(next).kind == Token.Kind.OPERATOR) {
+			QueryField<T> field = getField(t);
+			Token operator = tokens.get(next++);
+			Token value = tokens.get(next++);
+			if(value.kind != Token.Kind.WORD && value.kind != Token.Kind.QUOTED) {
+				throw new QuerySyntaxException("Value expected", value.position);
+			}
+			return createComparison(field, operator, value);
+		}
+		if(t.kind == Token.Kind.WORD || t.kind == Token.Kind.QUOTED) {
+			return new Query.Text<T>(textField, NameIndex.normalize(t.text), false);
+		}
+		throw new QuerySyntaxException("Unexpected '" + t.text + "'", t.position);
+	}
+
+	private QueryField<T> getField(Token name) {
+		for(QueryField<T> field : fields) {
+			if(field.hasName(name.text)) {
+				return field;
+			}
+		}
+		throw new QuerySyntaxException("Unknown field '" + name.text + "'", name.position);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Query<T> createComparison(QueryField<T> field, Token operator, Token value) {
+		String op = operator.text;
+		boolean equality = op.equals(":") || op.equals("=");
+		switch(field.getType()) {
+			case NUMBER: {
+				Comparable<Object> number;
+				try {
+					number = (Comparable<Object>) (Comparable<?>) Integer.valueOf(value.text);
+				} catch(NumberFormatException e) {
+					throw new QuerySyntaxException("Number expected", value.position);
+				}
+				return createRange(field, op, number, number, value);
+			}
+			case DATE: {
+				String v = value.text.toLowerCase(Locale.ROOT);
+				if(v.equals("yes") || v.equals("no")) {
+					if(!equality && !op.equals("!=")) {
+						throw new QuerySyntaxException("'" + op + "' cannot be used with '" + value.text + "'", operator.position);
+					}
+					return new Query.Range<T>(field, null, false, null, false, op.equals("!=") == v.equals("yes"));
+				}
+				SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+				format.setLenient(false);
+				ParsePosition position = new ParsePosition(0);
+				Date day = format.parse(value.text, position);
+				if(day == null || position.getIndex() != value.text.length()) {
+					throw new QuerySyntaxException("Date (yyyy-mm-dd), 'yes' or 'no' expected", value.position);
+				}
+				Calendar c = Calendar.getInstance();
+				c.setTime(day);
+				c.add(Calendar.DAY_OF_MONTH, 1);
+				return createRange(field, op, (Comparable<Object>) (Comparable<?>) day.getTime(), (Comparable<Object>) (Comparable<?>) c.getTimeInMillis(), value);
+			}
+			case KEYWORD: {
+				if(!equality && !op.equals("!=")) {
+					throw new QuerySyntaxException("'" + op + "' cannot be used with field '" + field.getName() + "'", operator.position);
+				}
+				String keyword = NameIndex.normalize(value.text);
+				if(keyword.isEmpty()) {
+					// Matches objects without a value
+					return new Query.Range<T>(field, null, false, null, false, equality);
+				}
+				Comparable<Object> key = (Comparable<Object>) (Comparable<?>) keyword;
+				return new Query.Range<T>(field, key, true, key, true, !equality);
+			}
+			default: {
+				Query<T> text = new Query.Text<T>(field, NameIndex.normalize(value.text), !op.equals(":"));
+				if(equality) {
+					return text;
+				} else if(op.equals("!=")) {
+					return new Query.Not<T>(text);
+				}
+				throw new QuerySyntaxException("'" + op + "' cannot be used with field '" + field.getName() + "'", operator.position);
+			}
+		}
+	}
+
+	/**
+	 * Creates the range of a comparison with a number or a day, which is given by its first key and the first key after it.
+	 */
+	private Query<T> createRange(QueryField<T> field, String op, Comparable<Object> first, Comparable<Object> last, Token value) {
+		// Numbers are single keys, while days span from their first key to the first key of the next day
+		boolean lastInclusive = first == last;
+		switch(op) {
+			case "<":
+				return new Query.Range<T>(field, null, false, first, false, false);
+			case "<=":
+				return new Query.Range<T>(field, null, false, last, lastInclusive, false);
+			case ">":
+				return new Query.Range<T>(field, last, !lastInclusive, null, false, false);
+			case ">=":
+				return new Query.Range<T>(field, first, true, null, false, false);
+			default:
+				return new Query.Range<T>(field, first, true, last, lastInclusive, op.equals("!="));
+		}
+	}
+}
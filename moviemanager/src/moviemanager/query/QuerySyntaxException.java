@@ -0,0 +1,30 @@
+package moviemanager.query;
+
+/**
+ * Thrown if a query cannot be parsed.
+ *
+ */
+public class QuerySyntaxException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Position in the query at which the error has been detected. **/
+	private final int position;
+
+	/**
+	 * Creates a new exception.
+	 *
+	 * @param message
+	 *            the description of the error
+	 * @param position
+	 *            the position in the query at which the error has been detected
+	 */
+	public QuerySyntaxException(String message, int position) {
+		super(message + " at position " + (position + 1));
+		this.position = position;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+}
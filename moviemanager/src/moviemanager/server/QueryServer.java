@@ -0,0 +1,368 @@
+package moviemanager.server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import moviemanager.persistence.ExchangeFormat;
+import moviemanager.persistence.LibraryExporter;
+import moviemanager.persistence.LibraryView;
+import moviemanager.persistence.MovieRecord;
+import moviemanager.persistence.PerformerRecord;
+
+/**
+ * <p>
+ * Embedded HTTP server that answers read-only queries about the movies and performers on the loopback interface. Each request is answered from the most recently published {@link LibraryView}, so requests never
+ * access the databases or their realm and may run concurrently on the threads of a bounded pool. If all threads are busy and the queue is full, the thread accepting the connections handles the request itself,
+ * which throttles the clients.
+ * </p>
+ * <p>
+ * The server supports the following GET requests. Records are returned as JSON Lines in the format of {@link ExchangeFormat#JSON_LINES}, and the header <code>X-Total-Count</code> of a list contains the number of
+ * matches before paging. The matches are ordered by rating if <code>minRating</code> or <code>maxRating</code> is given and by title or name otherwise, and are paged from the sorted indexes of the view.
+ * </p>
+ * <ul>
+ * <li><code>/movies/&lt;id&gt;</code> and <code>/performers/&lt;id&gt;</code>: the movie or performer with the given UUID or IMDB ID</li>
+ * <li><code>/movies?title=&amp;minRating=&amp;maxRating=&amp;lent=&amp;watched=&amp;offset=&amp;limit=</code>: the movies whose title or alternative titles contain the given text, ignoring case, and that match
+ * the given filters</li>
+ * <li><code>/performers?name=&amp;minRating=&amp;maxRating=&amp;offset=&amp;limit=</code>: the performers whose name or alternate names contain the given text</li>
+ * </ul>
+ *
+ */
+public class QueryServer {
+
+	/** Default number of records of a page. **/
+	public static final int DEFAULT_LIMIT = 50;
+	/** Maximum number of records of a page. **/
+	public static final int MAX_LIMIT = 1000;
+	/** Number of requests that may wait for a thread of the pool. **/
+	private static final int QUEUE_CAPACITY = 256;
+	/** Content type of the responses. **/
+	private static final String CONTENT_TYPE = "application/x-ndjson; charset=utf-8";
+
+	/** Supplies the most recently published view. **/
+	private final Supplier<LibraryView> views;
+	/** The HTTP server. **/
+	private final HttpServer server;
+	/** Threads answering the requests. **/
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Creates a new query server bound to the given port of the loopback interface. The server does not accept requests until it has been started.
+	 *
+	 * @param views
+	 *            supplies the view the requests are answered from. Called once per request on the threads of the pool
+	 * @param port
+	 *            the port or 0 to choose a free port
+	 * @param threads
+	 *            the number of threads answering the requests
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public QueryServer(Supplier<LibraryView> views, int port, int threads) throws IOException {
+		if(views == null) {
+			throw new IllegalArgumentException("The view supplier must not be null");
+		}
+		if(threads <= 0) {
+			throw new IllegalArgumentException("The number of threads must be positive");
+		}
+		this.views = views;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Query server " + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+		server.setExecutor(executor);
+		server.createContext("/movies", new QueryHandler() {
+			@Override
+			protected void handle(LibraryView view, String id, Map<String, String> parameters, HttpExchange exchange) throws BadRequestException, IOException {
+				if(id != null) {
+					MovieRecord m = isUUID(id) ? view.getMovie(UUID.fromString(id)) : view.getMovieByImdbID(id);
+					sendMovies(exchange, m == null ? new ArrayList<MovieRecord>() : listOf(m), -1);
+				} else {
+					String title = parameters.get("title");
+					int minRating = getInt(parameters, "minRating", Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+					int maxRating = getInt(parameters, "maxRating", Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+					Predicate<MovieRecord> filter = getMovieFilter(parameters);
+					int offset = getInt(parameters, "offset", 0, 0, Integer.MAX_VALUE);
+					int limit = getInt(parameters, "limit", DEFAULT_LIMIT, 0, MAX_LIMIT);
+					List<MovieRecord> page = new ArrayList<MovieRecord>();
+					int total = view.selectMovies(title, minRating, maxRating, filter, offset, limit, page);
+					sendMovies(exchange, page, total);
+				}
+			}
+		});
+		server.createContext("/performers", new QueryHandler() {
+			@Override
+			protected void handle(LibraryView view, String id, Map<String, String> parameters, HttpExchange exchange) throws BadRequestException, IOException {
+				if(id != null) {
+					PerformerRecord p = isUUID(id) ? view.getPerformer(UUID.fromString(id)) : view.getPerformerByImdbID(id);
+					sendPerformers(exchange, p == null ? new ArrayList<PerformerRecord>() : listOf(p), -1);
+				} else {
+					String name = parameters.get("name");
+					int minRating = getInt(parameters, "minRating", Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+					int maxRating = getInt(parameters, "maxRating", Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+					int offset = getInt(parameters, "offset", 0, 0, Integer.MAX_VALUE);
+					int limit = getInt(parameters, "limit", DEFAULT_LIMIT, 0, MAX_LIMIT);
+					List<PerformerRecord> page = new ArrayList<PerformerRecord>();
+					int total = view.selectPerformers(name, minRating, maxRating, null, offset, limit, page);
+					sendPerformers(exchange, page, total);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests and waits up to the given delay for the requests being answered.
+	 *
+	 * @param delaySeconds
+	 *            the maximum delay in seconds
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		executor.shutdown();
+	}
+
+	/**
+	 * Gets the port the server is bound to.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Thrown if a request contains an invalid parameter.
+	 *
+	 */
+	private static class BadRequestException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		private BadRequestException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Parses a request and answers it from the current view.
+	 *
+	 */
+	private abstract class QueryHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if(!"GET".equals(exchange.getRequestMethod())) {
+					exchange.getResponseHeaders().set("Allow", "GET");
+					sendError(exchange, 405, "Only GET is supported");
+					return;
+				}
+				// The path is either the context path or the context path followed by the id
+				String path = exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+				String id = null;
+				if(path.startsWith("/") && path.length() > 1 && path.indexOf('/', 1) < 0) {
+					id = path.substring(1);
+				} else if(!path.isEmpty() && !path.equals("/")) {
+					sendError(exchange, 404, "Unknown resource");
+					return;
+				}
+				try {
+					handle(views.get(), id, parseQuery(exchange.getRequestURI().getRawQuery()), exchange);
+				} catch(BadRequestException e) {
+					sendError(exchange, 400, e.getMessage());
+				}
+			} finally {
+				exchange.close();
+			}
+		}
+
+		/**
+		 * Answers a request.
+		 *
+		 * @param view
+		 *            the view to answer the request from
+		 * @param id
+		 *            the UUID or IMDB ID of the requested record or null if records are searched
+		 * @param parameters
+		 *            the decoded query parameters
+		 * @param exchange
+		 *            the exchange the response is sent to
+		 * @throws BadRequestException
+		 *             if a parameter is invalid
+		 * @throws IOException
+		 *             if the response cannot be sent
+		 */
+		protected abstract void handle(LibraryView view, String id, Map<String, String> parameters, HttpExchange exchange) throws BadRequestException, IOException;
+	}
+
+	/**
+	 * Gets the filter of the parameters that are not answered by the indexes of the view.
+	 *
+	 * @return the filter or null if the movies are not filtered
+	 */
+	private static Predicate<MovieRecord> getMovieFilter(Map<String, String> parameters) throws BadRequestException {
+		final Boolean lent = getBoolean(parameters, "lent");
+		final Boolean watched = getBoolean(parameters, "watched");
+		if(lent == null && watched == null) {
+			return null;
+		}
+		return new Predicate<MovieRecord>() {
+			@Override
+			public boolean test(MovieRecord m) {
+				if(lent != null && lent != (m.getReturnDate() != MovieRecord.NO_DATE)) {
+					return false;
+				}
+				return watched == null || watched == (m.getWatchDate() != MovieRecord.NO_DATE);
+			}
+		};
+	}
+
+	private static <T> List<T> listOf(T record) {
+		List<T> list = new ArrayList<T>(1);
+		list.add(record);
+		return list;
+	}
+
+	private static boolean isUUID(String id) {
+		try {
+			return UUID.fromString(id).toString().equalsIgnoreCase(id);
+		} catch(IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static int getInt(Map<String, String> parameters, String name, int defaultValue, int min, int max) throws BadRequestException {
+		String value = parameters.get(name);
+		if(value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			int i = Integer.parseInt(value);
+			if(i < min || i > max) {
+				throw new BadRequestException("The parameter " + name + " must be between " + min + " and " + max);
+			}
+			return i;
+		} catch(NumberFormatException e) {
+			throw new BadRequestException("The parameter " + name + " must be a number");
+		}
+	}
+
+	private static Boolean getBoolean(Map<String, String> parameters, String name) throws BadRequestException {
+		String value = parameters.get(name);
+		if(value == null || value.isEmpty()) {
+			return null;
+		}
+		if(value.equals("true") || value.equals("false")) {
+			return Boolean.valueOf(value);
+		}
+		throw new BadRequestException("The parameter " + name + " must be true or false");
+	}
+
+	private static Map<String, String> parseQuery(String query) throws BadRequestException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if(query == null || query.isEmpty()) {
+			return parameters;
+		}
+		for(String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			try {
+				String name = URLDecoder.decode(separator < 0 ? parameter : parameter.substring(0, separator), "UTF-8");
+				String value = separator < 0 ? "" : URLDecoder.decode(parameter.substring(separator + 1), "UTF-8");
+				parameters.put(name, value);
+			} catch(UnsupportedEncodingException | IllegalArgumentException e) {
+				throw new BadRequestException("Invalid query parameter " + parameter);
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Sends the given movies. A single movie that does not exist is answered with 404.
+	 *
+	 * @param total
+	 *            the number of all matching movies or -1 if a single movie has been requested
+	 */
+	private static void sendMovies(HttpExchange exchange, List<MovieRecord> movies, int total) throws IOException {
+		if(total < 0 && movies.isEmpty()) {
+			sendError(exchange, 404, "Unknown movie");
+			return;
+		}
+		Writer out = startRecords(exchange, total);
+		LibraryExporter exporter = new LibraryExporter(out, ExchangeFormat.JSON_LINES);
+		for(MovieRecord m : movies) {
+			exporter.writeMovie(m);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Sends the given performers. A single performer that does not exist is answered with 404.
+	 *
+	 * @param total
+	 *            the number of all matching performers or -1 if a single performer has been requested
+	 */
+	private static void sendPerformers(HttpExchange exchange, List<PerformerRecord> performers, int total) throws IOException {
+		if(total < 0 && performers.isEmpty()) {
+			sendError(exchange, 404, "Unknown performer");
+			return;
+		}
+		Writer out = startRecords(exchange, total);
+		LibraryExporter exporter = new LibraryExporter(out, ExchangeFormat.JSON_LINES);
+		for(PerformerRecord p : performers) {
+			exporter.writePerformer(p);
+		}
+		out.flush();
+	}
+
+	private static Writer startRecords(HttpExchange exchange, int total) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+		if(total >= 0) {
+			exchange.getResponseHeaders().set("X-Total-Count", Integer.toString(total));
+		}
+		exchange.sendResponseHeaders(200, 0);
+		return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
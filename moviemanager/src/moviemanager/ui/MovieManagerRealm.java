@@ -1,25 +1,155 @@
 package moviemanager.ui;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.eclipse.core.databinding.observable.Realm;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
 
 /**
- * Minimal realm for the data binding context in the Movie Manager application.
+ * <p>
+ * Realm for the data binding context in the Movie Manager application, which is confined to the thread that has created it, usually the UI thread. The observables of the realm may only be accessed on this
+ * thread: modifications on any other thread fail, and reads are logged by the data binding framework.
+ * </p>
+ * <p>
+ * Runnables passed to {@link #asyncExec(Runnable)} are queued and run on the owning thread. If the owning thread is the thread of an SWT display, all runnables that have been queued by the time the display
+ * processes its asynchronous messages are run in a single batch. Otherwise, they are run once the owning thread calls {@link #runPending()}.
+ * </p>
+ * <p>
+ * If the system property <code>moviemanager.realmDebug</code> is set to true, each place in the code that accesses the realm on another thread is reported once, with the stack trace of the access.
+ * </p>
  *
  */
 // Taken from 'http://stackoverflow.com/questions/30070707/test-eclipse-4-rcp-application-provide-necessary-objects'
 public class MovieManagerRealm extends Realm {
+
+	/** Flag to indicate whether accesses on other threads than the owning thread should be reported. **/
+	private static final boolean DEBUG = Boolean.getBoolean("moviemanager.realmDebug");
+
 	private Realm previousRealm;
+	/** The thread the realm is confined to. **/
+	private final Thread owner;
+	/** Runnables waiting to be run on the owning thread. **/
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+	/** Flag to indicate whether running the pending runnables has been scheduled on the display. **/
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	/** Stack traces of the cross-thread accesses that have been reported. **/
+	private final Set<List<StackTraceElement>> reportedAccesses = ConcurrentHashMap.newKeySet();
+	/** Flag to indicate whether SWT could not be loaded, e.g. on a headless system. **/
+	private static volatile boolean swtUnavailable = false;
 
 	/**
-	 * Creates a new instance of this realm.
+	 * Creates a new instance of this realm, which is confined to the calling thread.
 	 */
 	public MovieManagerRealm() {
+		owner = Thread.currentThread();
 		previousRealm = super.setDefault(this);
 	}
 
 	@Override
 	public boolean isCurrent() {
-		return true;
+		if(Thread.currentThread() == owner) {
+			return true;
+		}
+		if(DEBUG) {
+			reportAccess();
+		}
+		return false;
+	}
+
+	/**
+	 * Reports an access on another thread than the owning thread, unless an access with the same stack trace has been reported before.
+	 */
+	private void reportAccess() {
+		IllegalStateException access = new IllegalStateException("Realm of thread " + owner.getName() + " accessed on thread " + Thread.currentThread().getName());
+		if(reportedAccesses.add(Arrays.asList(access.getStackTrace()))) {
+			access.printStackTrace();
+		}
+	}
+
+	/**
+	 * Runs the given runnable right away on the owning thread and queues it on any other thread. Unlike {@link #isCurrent()}, this is not reported as a cross-thread access.
+	 */
+	@Override
+	public void exec(Runnable runnable) {
+		if(Thread.currentThread() == owner) {
+			safeRun(runnable);
+		} else {
+			asyncExec(runnable);
+		}
+	}
+
+	/**
+	 * Queues the given runnable to be run on the owning thread. May be called on any thread.
+	 */
+	@Override
+	public void asyncExec(Runnable runnable) {
+		pending.add(runnable);
+		Display display = findDisplay();
+		if(display != null && !display.isDisposed() && scheduled.compareAndSet(false, true)) {
+			try {
+				display.asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						runPending();
+					}
+				});
+			} catch(SWTException e) {
+				// The display has been disposed meanwhile
+				scheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Finds the display of the owning thread.
+	 *
+	 * @return the display of the owning thread or <code>null</code> if there is none or SWT is not available
+	 */
+	private Display findDisplay() {
+		if(swtUnavailable) {
+			return null;
+		}
+		try {
+			return Display.findDisplay(owner);
+		} catch(LinkageError e) {
+			// The native libraries of SWT cannot be loaded, so there will never be a display
+			swtUnavailable = true;
+			return null;
+		}
+	}
+
+	/**
+	 * Runs the runnables that have been queued so far. Runnables queued while they are run are left for the next batch. Has to be called on the owning thread, which only needs to do so explicitly if it is not the
+	 * thread of a display.
+	 */
+	public void runPending() {
+		if(Thread.currentThread() != owner) {
+			throw new IllegalStateException("The pending runnables have to be run on the thread of the realm");
+		}
+		scheduled.set(false);
+		for(int count = pending.size(); count > 0; count--) {
+			Runnable runnable = pending.poll();
+			if(runnable == null) {
+				break;
+			}
+			safeRun(runnable);
+		}
+	}
+
+	/**
+	 * Gets the thread the realm is confined to.
+	 *
+	 * @return the owning thread
+	 */
+	public Thread getOwner() {
+		return owner;
 	}
 
 	/**
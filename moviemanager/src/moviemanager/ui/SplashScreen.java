@@ -0,0 +1,104 @@
+package moviemanager.ui;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.ProgressBar;
+import org.eclipse.swt.widgets.Shell;
+
+import moviemanager.persistence.LoadProgressListener;
+import moviemanager.util.MovieManagerUIUtil;
+
+/**
+ * Splash screen that shows the progress while the Movie Manager application loads its data.
+ *
+ */
+public class SplashScreen implements LoadProgressListener {
+
+	/** Width of the splash screen in pixels. **/
+	private static final int SPLASH_WIDTH = 360;
+
+	/** The display. **/
+	private final Display display;
+	/** The splash screen shell. **/
+	private Shell shell;
+	/** Label showing the current task. **/
+	private Label taskLabel;
+	/** Progress bar of the current task. **/
+	private ProgressBar progressBar;
+
+	/**
+	 * Creates a new splash screen on the given display.
+	 * 
+	 * @param display
+	 *            the display
+	 */
+	public SplashScreen(Display display) {
+		this.display = display;
+	}
+
+	/**
+	 * Opens the splash screen centered on the primary monitor.
+	 */
+	public void open() {
+		shell = new Shell(display, SWT.ON_TOP | SWT.BORDER);
+		GridLayout layout = new GridLayout(2, false);
+		layout.marginWidth = 10;
+		layout.marginHeight = 10;
+		layout.horizontalSpacing = 10;
+		shell.setLayout(layout);
+		shell.setImage(MovieManagerUIUtil.getMovieManagerImage());
+
+		Label imageLabel = new Label(shell, SWT.NONE);
+		imageLabel.setImage(MovieManagerUIUtil.getMovieManagerImage());
+		imageLabel.setLayoutData(new GridData(SWT.CENTER, SWT.CENTER, false, false, 1, 2));
+
+		taskLabel = new Label(shell, SWT.NONE);
+		taskLabel.setText("Starting Movie Manager...");
+		taskLabel.setLayoutData(new GridData(SWT.FILL, SWT.END, true, true));
+
+		progressBar = new ProgressBar(shell, SWT.HORIZONTAL | SWT.SMOOTH);
+		progressBar.setLayoutData(new GridData(SWT.FILL, SWT.BEGINNING, true, true));
+
+		shell.pack();
+		shell.setSize(SPLASH_WIDTH, shell.getSize().y);
+		Rectangle bounds = display.getPrimaryMonitor().getBounds();
+		shell.setLocation(bounds.x + (bounds.width - shell.getSize().x) / 2, bounds.y + (bounds.height - shell.getSize().y) / 2);
+		shell.open();
+		processEvents();
+	}
+
+	/**
+	 * Closes the splash screen.
+	 */
+	public void close() {
+		if(shell != null && !shell.isDisposed()) {
+			shell.dispose();
+		}
+	}
+
+	@Override
+	public void loadProgress(String task, int worked, int total) {
+		if(shell == null || shell.isDisposed()) {
+			return;
+		}
+		if(!task.equals(taskLabel.getText())) {
+			taskLabel.setText(task);
+		}
+		progressBar.setMaximum(Math.max(total, 1));
+		progressBar.setSelection(worked);
+		processEvents();
+	}
+
+	/**
+	 * Processes pending events, so the splash screen is repainted while the data is loaded on the UI thread.
+	 */
+	private void processEvents() {
+		while(display.readAndDispatch()) {
+			// Keep dispatching until the event queue is empty
+		}
+	}
+}
@@ -22,6 +22,7 @@ import moviemanager.MovieManager;
 import moviemanager.data.AbstractModelObject;
 import moviemanager.data.Movie;
 import moviemanager.data.Performer;
+import moviemanager.util.ImageHolder;
 
 /**
  * Dialog for selecting movies or performers from the database of the movie manager.
@@ -76,9 +77,17 @@ public class ElementSelectionDialog extends Dialog {
 
 		if(clazz == Movie.class) {
 			viewerColumn.setLabelProvider(new ColumnLabelProvider() {
+				private final ImageHolder thumbnails = new ImageHolder();
+
 				@Override
 				public Image getImage(Object element) {
-					return ((AbstractModelObject) element).getThumbnailImage();
+					return thumbnails.hold(((AbstractModelObject) element).getThumbnailImage());
+				}
+
+				@Override
+				public void dispose() {
+					thumbnails.release();
+					super.dispose();
 				}
 
 				@Override
@@ -98,9 +107,17 @@ public class ElementSelectionDialog extends Dialog {
 			}
 		} else if(clazz == Performer.class) {
 			viewerColumn.setLabelProvider(new ColumnLabelProvider() {
+				private final ImageHolder thumbnails = new ImageHolder();
+
 				@Override
 				public Image getImage(Object element) {
-					return ((AbstractModelObject) element).getThumbnailImage();
+					return thumbnails.hold(((AbstractModelObject) element).getThumbnailImage());
+				}
+
+				@Override
+				public void dispose() {
+					thumbnails.release();
+					super.dispose();
 				}
 
 				@Override
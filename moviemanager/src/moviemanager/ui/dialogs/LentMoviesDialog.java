@@ -24,6 +24,7 @@ import org.eclipse.swt.widgets.Shell;
 import moviemanager.MovieManager;
 import moviemanager.data.AbstractModelObject;
 import moviemanager.data.Movie;
+import moviemanager.util.ImageHolder;
  
 /**
  * Dialog for showing movies from the database of the movie
@@ -52,12 +53,8 @@ public class LentMoviesDialog extends Dialog {
     public LentMoviesDialog(Shell parentShell) {
         super(parentShell);
         this.thisDialog = this;
-        // find all movies with ReturnDate attribute set
-        for (Movie m : MovieManager.getInstance().getMovies()) {
-            if (m.getReturnDate() != null) {
-                lentMovies.add(m);
-            }
-        }
+        // find all movies with ReturnDate attribute set, the ones to be returned first at the top
+        lentMovies.addAll(MovieManager.getInstance().getMoviesSortedBy("returnDate", false, null, Integer.MAX_VALUE));
     }
  
     @Override
@@ -80,9 +77,17 @@ public class LentMoviesDialog extends Dialog {
         viewerColumn.getColumn().setText("Name");
  
         viewerColumn.setLabelProvider(new ColumnLabelProvider() {
+            private final ImageHolder thumbnails = new ImageHolder();
+
             @Override
             public Image getImage(Object element) {
-                return ((AbstractModelObject) element).getThumbnailImage();
+                return thumbnails.hold(((AbstractModelObject) element).getThumbnailImage());
+            }
+
+            @Override
+            public void dispose() {
+                thumbnails.release();
+                super.dispose();
             }
  
             @Override
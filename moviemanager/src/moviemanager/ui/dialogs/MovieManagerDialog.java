@@ -58,6 +58,7 @@ import moviemanager.data.Movie;
 import moviemanager.data.Performer;
 import moviemanager.ui.listeners.EditOverlayMouseTrackListener;
 import moviemanager.ui.widgets.SearchWidget;
+import moviemanager.util.ImageHolder;
 import moviemanager.util.MovieManagerUIUtil;
 
 /**
@@ -256,8 +257,10 @@ public class MovieManagerDialog extends Dialog {
 			tabItemContainer.setLayout(tabItemContainerLayout);
 			tabItemContainer.setLayoutData(tabItemContainerLayoutData);
 
-			// List of available movies
-			movieViewer = new TableViewer(tabItemContainer, SWT.SINGLE | SWT.H_SCROLL | SWT.V_SCROLL | SWT.FULL_SELECTION | SWT.BORDER);
+			// List of available movies. The table is virtual, so that the items and their images are only created for the rows that are actually shown
+			movieViewer = new TableViewer(tabItemContainer, SWT.SINGLE | SWT.H_SCROLL | SWT.V_SCROLL | SWT.FULL_SELECTION | SWT.BORDER | SWT.VIRTUAL);
+			// Find the item of a changed movie without searching the whole table
+			movieViewer.setUseHashlookup(true);
 			GridData movieViewerLayoutData = new GridData(SWT.FILL, SWT.FILL, true, true);
 			movieViewerLayoutData.minimumWidth = 300;
 			movieViewerLayoutData.widthHint = 10;
@@ -277,6 +280,15 @@ public class MovieManagerDialog extends Dialog {
 			movieViewer.setLabelProvider(new ObservableMapLabelProvider(observedProperties) {
 				private Map<Object, Image> movieImages = new HashMap<Object, Image>();
 
+				@Override
+				public void dispose() {
+					for(Image image : movieImages.values()) {
+						image.dispose();
+					}
+					movieImages.clear();
+					super.dispose();
+				}
+
 				@Override
 				public Image getColumnImage(Object o, int columnIndex) {
 					Movie m = (Movie) o;
@@ -360,7 +372,7 @@ public class MovieManagerDialog extends Dialog {
 							MovieManagerUIUtil.updateBinding(moviePropertyWidgets.get(p), v, attribute, movieContext, (Movie) s.getFirstElement());
 						}
 						// Update the detail image and the attached listeners
-						movieDetailsImage.setImage(((Movie) s.getFirstElement()).getImage());
+						movieDetailsImage.setImage(ImageHolder.of(movieDetailsImage).replace(((Movie) s.getFirstElement()).getImage()));
 						movieDetailsImageMouseTrackListener.setHandledObject((AbstractModelObject) s.getFirstElement());
 					} else {
 						if(!MovieManager.getInstance().getMovies().isEmpty()) {
@@ -563,8 +575,10 @@ public class MovieManagerDialog extends Dialog {
 			tabItemContainer.setLayout(tabItemContainerLayout);
 			tabItemContainer.setLayoutData(tabItemContainerLayoutData);
 
-			// List of available performers
-			performerViewer = new TableViewer(tabItemContainer, SWT.SINGLE | SWT.H_SCROLL | SWT.V_SCROLL | SWT.FULL_SELECTION | SWT.BORDER);
+			// List of available performers. The table is virtual, so that the items and their images are only created for the rows that are actually shown
+			performerViewer = new TableViewer(tabItemContainer, SWT.SINGLE | SWT.H_SCROLL | SWT.V_SCROLL | SWT.FULL_SELECTION | SWT.BORDER | SWT.VIRTUAL);
+			// Find the item of a changed performer without searching the whole table
+			performerViewer.setUseHashlookup(true);
 			GridData performerViewerLayoutData = new GridData(SWT.FILL, SWT.FILL, true, true);
 			performerViewerLayoutData.minimumWidth = 300;
 			performerViewerLayoutData.widthHint = 10;
@@ -583,6 +597,15 @@ public class MovieManagerDialog extends Dialog {
 			performerViewer.setLabelProvider(new ObservableMapLabelProvider(observerdProperties) {
 				private Map<Object, Image> performerImages = new HashMap<Object, Image>();
 
+				@Override
+				public void dispose() {
+					for(Image image : performerImages.values()) {
+						image.dispose();
+					}
+					performerImages.clear();
+					super.dispose();
+				}
+
 				@Override
 				public Image getColumnImage(Object o, int columnIndex) {
 					Performer p = (Performer) o;
@@ -661,7 +684,7 @@ public class MovieManagerDialog extends Dialog {
 							MovieManagerUIUtil.updateBinding(performerPropertyWidgets.get(p), v, attribute, performerContext, (Performer) s.getFirstElement());
 						}
 						// Update the detail image and the attached listeners
-						performerDetailsImage.setImage(((Performer) s.getFirstElement()).getImage());
+						performerDetailsImage.setImage(ImageHolder.of(performerDetailsImage).replace(((Performer) s.getFirstElement()).getImage()));
 						performerDetailsImageMouseTrackListener.setHandledObject((AbstractModelObject) s.getFirstElement());
 					} else {
 						if(!MovieManager.getInstance().getPerformers().isEmpty()) {
@@ -828,7 +851,7 @@ public class MovieManagerDialog extends Dialog {
 		GridData movieDetailsImageLayoutData = new GridData(SWT.BEGINNING, SWT.BEGINNING, false, false);
 		movieDetailsImageLayoutData.horizontalSpan = 2;
 		movieDetailsImage.setLayoutData(movieDetailsImageLayoutData);
-		movieDetailsImage.setImage(m.getImage());
+		movieDetailsImage.setImage(ImageHolder.of(movieDetailsImage).replace(m.getImage()));
 
 		movieDetailsImageMouseTrackListener = new EditOverlayMouseTrackListener(m, movieDetailsImage);
 		movieDetailsImage.addMouseTrackListener(movieDetailsImageMouseTrackListener);
@@ -875,7 +898,7 @@ public class MovieManagerDialog extends Dialog {
 		GridData performerDetailsImageLayoutData = new GridData(SWT.BEGINNING, SWT.BEGINNING, false, false);
 		performerDetailsImageLayoutData.horizontalSpan = 2;
 		performerDetailsImage.setLayoutData(performerDetailsImageLayoutData);
-		performerDetailsImage.setImage(p.getImage());
+		performerDetailsImage.setImage(ImageHolder.of(performerDetailsImage).replace(p.getImage()));
 
 		performerDetailsImageMouseTrackListener = new EditOverlayMouseTrackListener(p, performerDetailsImage);
 		performerDetailsImage.addMouseTrackListener(performerDetailsImageMouseTrackListener);
@@ -1117,10 +1140,14 @@ public class MovieManagerDialog extends Dialog {
 
 	@Override
 	public void handleShellCloseEvent() {
-		// Ask users if they want to save the changes if the movie manager's data has been modified
-		if(MovieManager.getInstance().isDirty()) {
+		// With autosaving, the remaining changes are saved right away. Otherwise, ask users if they want to save the changes if the movie manager's data has been modified
+		if(MovieManager.getInstance().isAutosaveEnabled()) {
+			MovieManager.getInstance().saveData();
+		} else if(MovieManager.getInstance().isDirty()) {
 			if(MessageDialog.openQuestion(Display.getDefault().getActiveShell(), "Save Changes?", "Some data has been modified. Do you want to save the changes?")) {
 				MovieManager.getInstance().saveData();
+			} else {
+				MovieManager.getInstance().discardChanges();
 			}
 		}
 
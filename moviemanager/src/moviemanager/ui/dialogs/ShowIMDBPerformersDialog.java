@@ -24,6 +24,7 @@ import org.eclipse.swt.widgets.Shell;
 import moviemanager.MovieManager;
 import moviemanager.data.AbstractModelObject;
 import moviemanager.data.Performer;
+import moviemanager.util.ImageHolder;
  
 /**
  * Dialog for showing performers from the database of the movie
@@ -53,11 +54,7 @@ public class ShowIMDBPerformersDialog extends Dialog {
         super(parentShell);
         this.thisDialog = this;
         // find all performers with imdbID attribute set
-        for (Performer p : MovieManager.getInstance().getPerformers()) {
-            if (p.getImdbID() != null & !p.getImdbID().isEmpty()) {
-                imdbPerformers.add(p);
-            }
-        }
+        imdbPerformers.addAll(MovieManager.getInstance().getPerformersWithImdbID());
     }
  
     @Override
@@ -80,9 +77,17 @@ public class ShowIMDBPerformersDialog extends Dialog {
         viewerColumn.getColumn().setText("Name");
  
         viewerColumn.setLabelProvider(new ColumnLabelProvider() {
+            private final ImageHolder thumbnails = new ImageHolder();
+
             @Override
             public Image getImage(Object element) {
-                return ((AbstractModelObject) element).getThumbnailImage();
+                return thumbnails.hold(((AbstractModelObject) element).getThumbnailImage());
+            }
+
+            @Override
+            public void dispose() {
+                thumbnails.release();
+                super.dispose();
             }
  
             @Override
@@ -24,6 +24,7 @@ import org.eclipse.swt.widgets.Shell;
 import moviemanager.MovieManager;
 import moviemanager.data.AbstractModelObject;
 import moviemanager.data.Movie;
+import moviemanager.util.ImageHolder;
  
 /**
  * Dialog for showing movies from the database of the movie
@@ -52,12 +53,8 @@ public class WatchedMoviesDialog extends Dialog {
     public WatchedMoviesDialog(Shell parentShell) {
         super(parentShell);
         this.thisDialog = this;
-        // find all movies with WatchDate attribute set
-        for (Movie m : MovieManager.getInstance().getMovies()) {
-            if (m.getWatchDate() != null) {
-                watchedMovies.add(m);
-            }
-        }
+        // find all movies with WatchDate attribute set, the most recently watched ones at the top
+        watchedMovies.addAll(MovieManager.getInstance().getMoviesSortedBy("watchDate", true, null, Integer.MAX_VALUE));
     }
  
     @Override
@@ -80,9 +77,17 @@ public class WatchedMoviesDialog extends Dialog {
         viewerColumn.getColumn().setText("Name");
  
         viewerColumn.setLabelProvider(new ColumnLabelProvider() {
+            private final ImageHolder thumbnails = new ImageHolder();
+
             @Override
             public Image getImage(Object element) {
-                return ((AbstractModelObject) element).getThumbnailImage();
+                return thumbnails.hold(((AbstractModelObject) element).getThumbnailImage());
+            }
+
+            @Override
+            public void dispose() {
+                thumbnails.release();
+                super.dispose();
             }
  
             @Override
@@ -18,6 +18,7 @@ import org.eclipse.swt.widgets.Menu;
 
 import moviemanager.MovieManager;
 import moviemanager.data.AbstractModelObject;
+import moviemanager.util.ImageHolder;
 import moviemanager.util.MovieManagerUIUtil;
 
 /**
@@ -131,7 +132,7 @@ public class EditOverlayMouseTrackListener implements MouseTrackListener {
 
 	@Override
 	public void mouseExit(MouseEvent e) {
-		imageLabel.setImage(handledObject.getImage());
+		imageLabel.setImage(ImageHolder.of(imageLabel).replace(handledObject.getImage()));
 	}
 
 	@Override
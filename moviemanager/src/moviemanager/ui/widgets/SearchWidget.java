@@ -2,13 +2,17 @@ package moviemanager.ui.widgets;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
-import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jface.resource.FontDescriptor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CLabel;
 import org.eclipse.swt.custom.ScrolledComposite;
 import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.MouseAdapter;
 import org.eclipse.swt.events.MouseEvent;
@@ -26,11 +30,39 @@ import org.eclipse.swt.widgets.Text;
 import moviemanager.MovieManager;
 import moviemanager.data.Movie;
 import moviemanager.data.Performer;
+import moviemanager.index.SearchScheduler;
+import moviemanager.query.QueryLanguage;
+import moviemanager.query.QuerySyntaxException;
+import moviemanager.util.ImageHolder;
 
 public class SearchWidget {
 
+	/**
+	 * Results of a single search, which are shown at once, or a query that is still to be run on the thread of the realm.
+	 *
+	 */
+	private static class SearchResults {
+		private final List<Movie> movies;
+		private final List<Performer> performers;
+		private final String query;
+
+		private SearchResults(List<Movie> movies, List<Performer> performers) {
+			this.movies = movies;
+			this.performers = performers;
+			this.query = null;
+		}
+
+		private SearchResults(String query) {
+			this.movies = null;
+			this.performers = null;
+			this.query = query;
+		}
+	}
+
 	private static final int offset_x = 10;
 	private static final int offset_y = 10;
+	/** Maximum number of movies and performers shown, so that large result sets do not create too many widgets. **/
+	private static final int max_results = 25;
 
 	private Shell shell;
 	// private Composite resultsContainer;
@@ -38,7 +70,11 @@ public class SearchWidget {
 	private List<Movie> movies;
 	private List<Performer> performers;
 	private String search;
+	/** Error of the current query or null if it is valid. **/
+	private String queryError;
 	private Text searchText;
+	/** Runs the searches in the background and hands their results to the UI thread. **/
+	private SearchScheduler<SearchResults> searchScheduler;
 
 	// Widgets
 	private Label testLabel;
@@ -61,6 +97,24 @@ public class SearchWidget {
 		this.movieLabels = new ArrayList<CLabel>();
 		this.performerLabels = new ArrayList<CLabel>();
 		shell.setBackground(Display.getDefault().getSystemColor(SWT.COLOR_LIST_BACKGROUND));
+
+		// Build the search index here, so that the searches can run in the background
+		MovieManager.getInstance().buildSearchIndices();
+		final Display shellDisplay = shell.getDisplay();
+		searchScheduler = new SearchScheduler<SearchResults>(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				if(!shellDisplay.isDisposed()) {
+					shellDisplay.asyncExec(command);
+				}
+			}
+		}, SearchScheduler.DEFAULT_DEBOUNCE_MILLIS);
+		shell.addDisposeListener(new DisposeListener() {
+			@Override
+			public void widgetDisposed(DisposeEvent e) {
+				searchScheduler.stop();
+			}
+		});
 		createWidgets();
 		updateWidget();
 		setLocation(origin);
@@ -79,25 +133,47 @@ public class SearchWidget {
 		searchLayoutData.minimumWidth = 200;
 		searchText.setLayoutData(searchLayoutData);
 
-		searchText.setToolTipText("Begin typing to search for movies and performers");
+		searchText.setToolTipText("Begin typing to search for movies and performers by title, filming location or name, or enter a query such as rating>=70 lent:no or description:heist");
 		searchText.addModifyListener(new ModifyListener() {
 			@Override
 			public void modifyText(ModifyEvent e) {
-				movies.clear();
-				performers.clear();
-				String input = searchText.getText();
-				for(Movie m : MovieManager.getInstance().getMovies()) {
-					if(StringUtils.containsIgnoreCase(m.getTitle(), input)) {
-						movies.add(m);
-					}
+				final String input = searchText.getText();
+				if(input.trim().isEmpty()) {
+					searchScheduler.cancel();
+					updateWidget();
+					return;
 				}
-				for(Performer p : MovieManager.getInstance().getPerformers()) {
-					String fullName = p.getFirstName() + " " + p.getLastName();
-					if(StringUtils.containsIgnoreCase(fullName, input)) {
-						performers.add(p);
+				// Search in the background, cancelling the search for the previous input
+				final MovieManager manager = MovieManager.getInstance();
+				final boolean query = QueryLanguage.isQuery(input);
+				searchScheduler.submit(new Callable<SearchResults>() {
+					@Override
+					public SearchResults call() {
+						if(query) {
+							// Queries read the movies and performers, so they only wait for the debounce delay here and run on the thread of the realm
+							return new SearchResults(input);
+						}
+						// Fetch one more result than shown to find out whether there are more
+						return new SearchResults(manager.searchMovies(input, max_results + 1), manager.searchPerformers(input, max_results + 1));
 					}
-				}
-				updateWidget();
+				}, new Consumer<SearchResults>() {
+					@Override
+					public void accept(SearchResults results) {
+						if(shell.isDisposed()) {
+							return;
+						}
+						if(results.query != null) {
+							runQuery(results.query);
+						} else {
+							movies.clear();
+							performers.clear();
+							queryError = null;
+							movies.addAll(results.movies);
+							performers.addAll(results.performers);
+						}
+						updateWidget();
+					}
+				});
 			}
 		});
 
@@ -154,9 +230,37 @@ public class SearchWidget {
 		shell.pack();
 	}
 
+	/**
+	 * Runs the given query against the movies and the performers. A query that uses fields of movies only does not match any performers and vice versa; it is only invalid if it is invalid for both.
+	 */
+	private void runQuery(String input) {
+		MovieManager manager = MovieManager.getInstance();
+		movies.clear();
+		performers.clear();
+		queryError = null;
+		String movieError = null;
+		try {
+			movies.addAll(limit(manager.queryMovies(input)));
+		} catch(QuerySyntaxException e) {
+			movieError = e.getMessage();
+		}
+		try {
+			performers.addAll(limit(manager.queryPerformers(input)));
+		} catch(QuerySyntaxException e) {
+			queryError = movieError;
+		}
+	}
+
+	/**
+	 * Limits the given results to one more than shown, so that it is known whether there are more.
+	 */
+	private static <T> List<T> limit(List<T> results) {
+		return results.size() > max_results + 1 ? results.subList(0, max_results + 1) : results;
+	}
+
 	public void updateWidget() {
 		String searchString = searchText.getText();
-		if(searchString.isEmpty()) {
+		if(searchString.trim().isEmpty()) {
 			movies.clear();
 			performers.clear();
 		}
@@ -170,13 +274,24 @@ public class SearchWidget {
 		movieLabels.clear();
 		performerLabels.clear();
 
+		boolean moreMovies = movies.size() > max_results;
+		boolean morePerformers = performers.size() > max_results;
+		if(moreMovies) {
+			movies.remove(max_results);
+		}
+		if(morePerformers) {
+			performers.remove(max_results);
+		}
+
 		if(movies.size() > 0) {
-			moviesLabel.setText("Movies (" + movies.size() + ")");
+			moviesLabel.setText("Movies (" + (moreMovies ? "best " + max_results : movies.size()) + ")");
+		} else if(queryError != null && !searchString.trim().isEmpty()) {
+			moviesLabel.setText("Invalid query: " + queryError);
 		} else {
 			moviesLabel.setText("No movies found");
 		}
 		if(performers.size() > 0) {
-			performersLabel.setText("Performers (" + performers.size() + ")");
+			performersLabel.setText("Performers (" + (morePerformers ? "best " + max_results : performers.size()) + ")");
 		} else {
 			performersLabel.setText("No performers found");
 		}
@@ -187,7 +302,7 @@ public class SearchWidget {
 		for(Movie m : movies) {
 			CLabel c = new CLabel(moviesContainer, SWT.NONE);
 			c.setText(m.getTitle());
-			c.setImage(m.getThumbnailImage());
+			c.setImage(ImageHolder.of(c).replace(m.getThumbnailImage()));
 			c.setBackground(shell.getBackground());
 			c.setLayoutData(new GridData(SWT.FILL, SWT.BEGINNING, true, false));
 			moviesContainer.layout();
@@ -229,7 +344,7 @@ public class SearchWidget {
 		for(Performer p : performers) {
 			CLabel c = new CLabel(performersContainer, SWT.NONE);
 			c.setText(p.getFirstName() + " " + p.getLastName());
-			c.setImage(p.getThumbnailImage());
+			c.setImage(ImageHolder.of(c).replace(p.getThumbnailImage()));
 			c.setBackground(shell.getBackground());
 			c.setLayoutData(new GridData(SWT.FILL, SWT.BEGINNING, true, false));
 			performersContainer.layout();
@@ -1,10 +1,6 @@
 package moviemanager.ui.widgets;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
@@ -17,6 +13,7 @@ import org.w3c.dom.NamedNodeMap;
 import moviemanager.MovieManager;
 import moviemanager.data.Movie;
 import moviemanager.data.Performer;
+import moviemanager.util.MovieManagerUtil;
 import moviemanager.util.MovieManagerUtil.BadConnectionException;
 import moviemanager.util.MovieManagerUtil.MovieManagerException;
 import moviemanager.util.OMDBAPIFetcher;
@@ -110,45 +107,15 @@ public class SyncWithIMDBWidget extends LabelActionWidget {
         }
 		
 		if (movieDetails == null) return;
-		if (movieDetails.getNamedItem("title") != null)
-			movie.setTitle(movieDetails.getNamedItem("title").getNodeValue());
-
-		if (movieDetails.getNamedItem("released") != null) {
-			String dateStr = movieDetails.getNamedItem("released").getNodeValue();
-			DateFormat format = new SimpleDateFormat("dd MMM yyyy", Locale.ENGLISH);
-			Date date;
-			try {
-				date = format.parse(dateStr);
-				movie.setReleaseDate(date);
-			} catch (ParseException e) {}
-		}
-		if (movieDetails.getNamedItem("runtime") != null) {
-			String runtimeStr = movieDetails.getNamedItem("runtime").getNodeValue();
-			int runtime = Integer.parseInt(runtimeStr.substring(0, runtimeStr.length() - 4));
-			movie.setRuntime(runtime);
-		}
-		if (movieDetails.getNamedItem("country") != null)
-			movie.setCountry(movieDetails.getNamedItem("country").getNodeValue());
-		if (movieDetails.getNamedItem("plot") != null)
-			movie.setDescription(movieDetails.getNamedItem("plot").getNodeValue());
-		if (movieDetails.getNamedItem("language") != null)
-			movie.setLanguage(movieDetails.getNamedItem("language").getNodeValue());
-		
-		//TODO add performers
-		if (movieDetails.getNamedItem("actors") != null)
-		{
-			String actors = movieDetails.getNamedItem("actors").getNodeValue();
-			String[] actorsSplit = actors.split(", ");
-			for (int i = 0; i < actorsSplit.length; i++) {
-				String firstName = actorsSplit[i].substring(0, actorsSplit[i].lastIndexOf(" "));
-				String lastName = actorsSplit[i].substring(actorsSplit[i].lastIndexOf(" ") + 1);
-				Performer p = MovieManager.getInstance().getPerformer(actorsSplit[i]); 
-				if (p == null)
-					MovieManager.getInstance().getDialog().addPerformer(movie, firstName, lastName);
-				else
-					p.linkMovie(movie);
-			}
-			
+		List<String> actors = MovieManagerUtil.applyOMDbData(movie, movieDetails);
+		for (String actor : actors) {
+			String firstName = actor.substring(0, actor.lastIndexOf(" ") + 1).trim();
+			String lastName = actor.substring(actor.lastIndexOf(" ") + 1);
+			Performer p = MovieManager.getInstance().getPerformer(actor); 
+			if (p == null)
+				MovieManager.getInstance().getDialog().addPerformer(movie, firstName, lastName);
+			else
+				p.linkMovie(movie);
 		}
 	}
 
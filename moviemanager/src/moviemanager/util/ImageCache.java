@@ -0,0 +1,260 @@
+package moviemanager.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.widgets.Display;
+
+import moviemanager.persistence.ImageStore;
+import moviemanager.persistence.RenditionStore;
+
+/**
+ * <p>
+ * Holds the images of movies and performers that are loaded on demand from the {@link ImageStore}. The full-sized images and the thumbnails are kept in two separate least recently used caches keyed by the UUID
+ * of the movie or performer, so that the number of native images stays bounded no matter how large the databases are. Evicted images are disposed.
+ * </p>
+ * <p>
+ * Widgets that keep displaying an image after it has been requested, e.g. labels and the items of tables, have to {@link #hold(Image) hold} it, usually through an {@link ImageHolder}, and release it once they
+ * no longer display it. An image that is evicted while it is held is disposed when it is released for the last time instead, so the number of native images is bounded by the capacity plus the number of
+ * images that are currently displayed.
+ * </p>
+ * <p>
+ * Images that have to be scaled are looked up in the {@link RenditionStore} first. If the rendition does not exist yet, the source image is scaled once and the result is stored for the next time. Images that
+ * cannot be loaded are remembered, so that they are not looked up again each time they are requested.
+ * </p>
+ * <p>
+ * Like all SWT resources, the cache must only be used on the UI thread.
+ * </p>
+ *
+ */
+public class ImageCache {
+
+	/** Maximum number of full-sized images. **/
+	public static final int IMAGE_CAPACITY = 64;
+	/** Maximum number of thumbnail images. These are small, and several dialogs show a thumbnail for every row. **/
+	public static final int THUMBNAIL_CAPACITY = 1024;
+
+	/** The image cache singleton instance. **/
+	private static ImageCache instance = null;
+
+	/** The full-sized images by UUID. **/
+	private final LruCache<UUID, Image> images = new DisposingCache(IMAGE_CAPACITY);
+	/** The thumbnail images by UUID. **/
+	private final LruCache<UUID, Image> thumbnails = new DisposingCache(THUMBNAIL_CAPACITY);
+	/** The images that are currently in one of the caches. **/
+	private final Set<Image> cached = Collections.newSetFromMap(new IdentityHashMap<Image, Boolean>());
+	/** Number of holds of each image loaded by the cache that is currently displayed by widgets. **/
+	private final Map<Image, Integer> holds = new IdentityHashMap<Image, Integer>();
+	/** The stored images. **/
+	private final ImageStore store = new ImageStore(new File(MovieManagerUtil.getPathToMovieManagerDirectory() + "images" + File.separator + ImageStore.DIRECTORY_NAME));
+	/** Hashes of the images that are missing from the image store or cannot be decoded. **/
+	private final Set<String> unavailable = new HashSet<String>();
+	/** Pre-rendered versions of the stored images. **/
+	private final RenditionStore renditions = new RenditionStore(new File(MovieManagerUtil.getPathToMovieManagerDirectory() + "images" + File.separator + RenditionStore.DIRECTORY_NAME));
+
+	/**
+	 * Disposes the images that are removed from the cache, unless they are held.
+	 *
+	 */
+	private class DisposingCache extends LruCache<UUID, Image> {
+		private DisposingCache(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		public void put(UUID key, Image value) {
+			cached.add(value);
+			super.put(key, value);
+		}
+
+		@Override
+		protected void evicted(UUID key, Image value) {
+			cached.remove(value);
+			// Held images are disposed once they are released
+			if(!holds.containsKey(value) && !value.isDisposed()) {
+				value.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Gets the instance of the image cache.
+	 * 
+	 * @return the instance
+	 */
+	public static ImageCache getInstance() {
+		if(instance == null) {
+			instance = new ImageCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Gets the full-sized image of the movie or performer with the given UUID, loading the image with the given hash from the image store if it is not cached.
+	 * 
+	 * @param id
+	 *            the UUID of the movie or performer
+	 * @param hash
+	 *            the hash of the image
+	 * @return the image or null if the image is missing from the image store or cannot be decoded
+	 */
+	public Image getImage(UUID id, String hash) {
+		Image image = images.get(id);
+		if(image == null) {
+			image = load(hash, MovieManagerUIUtil.FULL_IMAGE_WIDTH, MovieManagerUIUtil.FULL_IMAGE_HEIGHT);
+			if(image == null) {
+				return null;
+			}
+			images.put(id, image);
+		}
+		return image;
+	}
+
+	/**
+	 * Gets the thumbnail image of the movie or performer with the given UUID. If it is not cached, it is loaded from the rendition store or created from the image with the given hash.
+	 * 
+	 * @param id
+	 *            the UUID of the movie or performer
+	 * @param hash
+	 *            the hash of the image
+	 * @return the thumbnail image or null if the image is missing from the image store or cannot be decoded
+	 */
+	public Image getThumbnailImage(UUID id, String hash) {
+		Image thumbnail = thumbnails.get(id);
+		if(thumbnail == null) {
+			thumbnail = load(hash, MovieManagerUIUtil.THUMBNAIL_IMAGE_WIDTH, MovieManagerUIUtil.THUMBNAIL_IMAGE_HEIGHT);
+			if(thumbnail == null) {
+				return null;
+			}
+			thumbnails.put(id, thumbnail);
+		}
+		return thumbnail;
+	}
+
+	/**
+	 * Holds the given image, so that it is not disposed while it is displayed, even if it is evicted from the cache. Images that have not been loaded by the cache, e.g. images that have been set explicitly or
+	 * the default image, are not held.
+	 * 
+	 * @param image
+	 *            the image
+	 * @return true if the image has been held and has to be {@link #release(Image) released}, false if it has not been loaded by the cache
+	 */
+	public boolean hold(Image image) {
+		Integer count = holds.get(image);
+		if(count == null && !cached.contains(image)) {
+			return false;
+		}
+		holds.put(image, count == null ? 1 : count + 1);
+		return true;
+	}
+
+	/**
+	 * Releases an image that has been held. If it has been evicted from the cache and is not held anymore, it is disposed.
+	 * 
+	 * @param image
+	 *            the image
+	 */
+	public void release(Image image) {
+		Integer count = holds.get(image);
+		if(count == null) {
+			throw new IllegalStateException("The image is not held");
+		}
+		if(count > 1) {
+			holds.put(image, count - 1);
+			return;
+		}
+		holds.remove(image);
+		if(!cached.contains(image) && !image.isDisposed()) {
+			image.dispose();
+		}
+	}
+
+	/**
+	 * Removes and disposes the cached images of the movie or performer with the given UUID, e.g. because its image has been replaced. Images that are held are disposed once they are released.
+	 * 
+	 * @param id
+	 *            the UUID of the movie or performer
+	 */
+	public void remove(UUID id) {
+		images.remove(id);
+		thumbnails.remove(id);
+	}
+
+	/**
+	 * Removes and disposes all cached images and forgets which images could not be loaded, e.g. because the image store has been replaced. Images that are held are disposed once they are released.
+	 */
+	public void clear() {
+		images.clear();
+		thumbnails.clear();
+		unavailable.clear();
+	}
+
+	/**
+	 * Gets the number of native images that are currently held by the cache, not counting evicted images that are still displayed.
+	 * 
+	 * @return the number of cached images
+	 */
+	public int size() {
+		return images.size() + thumbnails.size();
+	}
+
+	/**
+	 * Loads the image with the given hash in the given size. If the image does not have this size already, the stored rendition is used. If there is no rendition yet, the image is scaled and the rendition is
+	 * stored.
+	 * 
+	 * @param hash
+	 *            the hash of the image
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @return the image or null if the image is missing from the image store or cannot be decoded
+	 */
+	private Image load(String hash, int width, int height) {
+		if(unavailable.contains(hash)) {
+			return null;
+		}
+		Image image = loadFromStore(hash, width, height);
+		if(image == null) {
+			unavailable.add(hash);
+		}
+		return image;
+	}
+
+	private Image loadFromStore(String hash, int width, int height) {
+		try {
+			ImageData data = renditions.load(hash, width, height);
+			if(data == null) {
+				ImageData source = store.load(hash);
+				if(source == null) {
+					return null;
+				}
+				if(source.width != width || source.height != height) {
+					Image original = new Image(Display.getDefault(), source);
+					Image scaled = MovieManagerUIUtil.resize(original, width, height);
+					original.dispose();
+					try {
+						renditions.store(hash, scaled.getImageData());
+					} catch(IOException e) {
+						e.printStackTrace();
+					}
+					return scaled;
+				}
+				data = source;
+			}
+			return new Image(Display.getDefault(), data);
+		} catch(SWTException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package moviemanager.util;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * <p>
+ * Holds the images of the {@link ImageCache} that a widget or a label provider displays, so that they are not disposed when they are evicted from the cache. Each image is held at most once per holder, and all
+ * images are released when the holder is released.
+ * </p>
+ * <p>
+ * A widget that displays a single image gets its holder from {@link #of(Widget)}, which releases the images when the widget is disposed. A label provider creates its own holder and releases it when it is
+ * disposed.
+ * </p>
+ *
+ */
+public class ImageHolder {
+
+	/** Key of the holder in the data of a widget. **/
+	private static final String DATA_KEY = ImageHolder.class.getName();
+
+	/** The images that are held. **/
+	private final Set<Image> images = Collections.newSetFromMap(new IdentityHashMap<Image, Boolean>());
+
+	/**
+	 * Gets the holder of the given widget, creating it if the widget does not have one yet. The holder releases its images when the widget is disposed.
+	 * 
+	 * @param widget
+	 *            the widget
+	 * @return the holder of the widget
+	 */
+	public static ImageHolder of(Widget widget) {
+		if(widget == null) {
+			throw new IllegalArgumentException("The widget must not be null");
+		}
+		ImageHolder holder = (ImageHolder) widget.getData(DATA_KEY);
+		if(holder == null) {
+			final ImageHolder newHolder = new ImageHolder();
+			widget.setData(DATA_KEY, newHolder);
+			widget.addDisposeListener(new DisposeListener() {
+				@Override
+				public void widgetDisposed(DisposeEvent e) {
+					newHolder.release();
+				}
+			});
+			holder = newHolder;
+		}
+		return holder;
+	}
+
+	/**
+	 * Holds the given image in addition to the images that are held already.
+	 * 
+	 * @param image
+	 *            the image or null
+	 * @return the image
+	 */
+	public Image hold(Image image) {
+		if(image != null && !images.contains(image) && ImageCache.getInstance().hold(image)) {
+			images.add(image);
+		}
+		return image;
+	}
+
+	/**
+	 * Holds the given image instead of the images that are held already, e.g. because a label displays it instead of its previous image.
+	 * 
+	 * @param image
+	 *            the image or null
+	 * @return the image
+	 */
+	public Image replace(Image image) {
+		boolean held = images.remove(image);
+		release();
+		if(held) {
+			images.add(image);
+		}
+		return hold(image);
+	}
+
+	/**
+	 * Releases all images that are held.
+	 */
+	public void release() {
+		for(Image image : images) {
+			ImageCache.getInstance().release(image);
+		}
+		images.clear();
+	}
+}
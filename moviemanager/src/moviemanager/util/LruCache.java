@@ -0,0 +1,123 @@
+package moviemanager.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Map with a maximum number of entries that evicts the least recently used entry whenever a new entry would exceed the capacity. Subclasses can override {@link #evicted(Object, Object)} to release the
+ * resources held by evicted values.
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ */
+public class LruCache<K, V> {
+
+	/** Maximum number of entries. **/
+	private final int capacity;
+	/** The entries in the order of their last access, starting with the least recently used one. **/
+	private final LinkedHashMap<K, V> entries;
+
+	/**
+	 * Creates a new cache with the given capacity.
+	 * 
+	 * @param capacity
+	 *            the maximum number of entries
+	 */
+	public LruCache(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if(size() > LruCache.this.capacity) {
+					evicted(eldest.getKey(), eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets the value of the given key and marks it as the most recently used entry.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the value or null if the cache does not contain the key
+	 */
+	public V get(K key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Adds the given value as the most recently used entry. Evicts the least recently used entry if the capacity is exceeded.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 */
+	public void put(K key, V value) {
+		V oldValue = entries.put(key, value);
+		if(oldValue != null && oldValue != value) {
+			evicted(key, oldValue);
+		}
+	}
+
+	/**
+	 * Removes the entry of the given key, if it exists.
+	 * 
+	 * @param key
+	 *            the key
+	 */
+	public void remove(K key) {
+		V value = entries.remove(key);
+		if(value != null) {
+			evicted(key, value);
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<K, V> entry = it.next();
+			it.remove();
+			evicted(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Gets the number of entries.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Called whenever a value is removed from the cache, either because it has been evicted, replaced or removed explicitly.
+	 * 
+	 * @param key
+	 *            the key of the value
+	 * @param value
+	 *            the removed value
+	 */
+	protected void evicted(K key, V value) {
+		// Nothing to release by default
+	}
+}
@@ -406,12 +406,14 @@ public class MovieManagerUIUtil {
 				IObservableMap observedAttributes[] = { firstName, lastName };
 
 				viewer.setLabelProvider(new ObservableMapLabelProvider(observedAttributes) {
+					private final ImageHolder thumbnails = new ImageHolder();
+
 					@Override
 					public Image getColumnImage(Object o, int columnIndex) {
 						Performer p = (Performer) o;
 						switch(columnIndex) {
 						case 0:
-							return p.getThumbnailImage();
+							return thumbnails.hold(p.getThumbnailImage());
 						default:
 							return null;
 						}
@@ -427,6 +429,12 @@ public class MovieManagerUIUtil {
 							return null;
 						}
 					}
+
+					@Override
+					public void dispose() {
+						thumbnails.release();
+						super.dispose();
+					}
 				});
 
 				viewer.getTable().setHeaderVisible(false);
@@ -467,13 +475,14 @@ public class MovieManagerUIUtil {
 				IObservableMap observedAttributes[] = { title };
 
 				viewer.setLabelProvider(new ObservableMapLabelProvider(observedAttributes) {
+					private final ImageHolder thumbnails = new ImageHolder();
 
 					@Override
 					public Image getColumnImage(Object o, int columnIndex) {
 						Movie m = (Movie) o;
 						switch(columnIndex) {
 						case 0:
-							return m.getThumbnailImage();
+							return thumbnails.hold(m.getThumbnailImage());
 						default:
 							return null;
 						}
@@ -490,6 +499,12 @@ public class MovieManagerUIUtil {
 						}
 					}
 
+					@Override
+					public void dispose() {
+						thumbnails.release();
+						super.dispose();
+					}
+
 				});
 
 				viewer.getTable().setHeaderVisible(false);
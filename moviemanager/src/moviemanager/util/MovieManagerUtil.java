@@ -7,11 +7,18 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -38,6 +45,8 @@ public class MovieManagerUtil {
 	public static final String MOVIEMANAGER_FILE_DIR = ".moviemanager";
 	/** File extension name for the files stored by the Movie Manager application. **/
 	public static final String MOVIEMANAGER_FILE_EXT = ".wtf";
+	/** Name of the snapshot file containing the movie and performer databases. **/
+	public static final String MOVIEMANAGER_LIBRARY_FILE = "library";
 
 	public static final String OMDB_ATTRIBUTE_NULL = "N/A";
 
@@ -96,6 +105,52 @@ public class MovieManagerUtil {
 		return response;
 	}
 
+	/**
+	 * Copies the details of a movie provided by the OMDb API into the given movie, i.e. its title, release date, runtime, country, plot and language. Details that are missing or cannot be parsed are left
+	 * unchanged. Performers are not linked, since they may have to be created first.
+	 * 
+	 * @param m
+	 *            the movie
+	 * @param details
+	 *            the details as returned by the OMDb API
+	 * @return the full names of the actors of the movie
+	 */
+	public static List<String> applyOMDbData(Movie m, NamedNodeMap details) {
+		if(details.getNamedItem("title") != null) {
+			m.setTitle(details.getNamedItem("title").getNodeValue());
+		}
+		if(details.getNamedItem("released") != null) {
+			DateFormat format = new SimpleDateFormat("dd MMM yyyy", Locale.ENGLISH);
+			try {
+				m.setReleaseDate(format.parse(details.getNamedItem("released").getNodeValue()));
+			} catch(ParseException e) {
+				// Unknown release date, e.g. "N/A"
+			}
+		}
+		if(details.getNamedItem("runtime") != null) {
+			String runtime = details.getNamedItem("runtime").getNodeValue();
+			try {
+				// The runtime is given in minutes, e.g. "142 min"
+				m.setRuntime(Integer.parseInt(runtime.substring(0, runtime.length() - 4)));
+			} catch(NumberFormatException | IndexOutOfBoundsException e) {
+				// Unknown runtime
+			}
+		}
+		if(details.getNamedItem("country") != null) {
+			m.setCountry(details.getNamedItem("country").getNodeValue());
+		}
+		if(details.getNamedItem("plot") != null) {
+			m.setDescription(details.getNamedItem("plot").getNodeValue());
+		}
+		if(details.getNamedItem("language") != null) {
+			m.setLanguage(details.getNamedItem("language").getNodeValue());
+		}
+		if(details.getNamedItem("actors") == null || details.getNamedItem("actors").getNodeValue().equals(OMDB_ATTRIBUTE_NULL)) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(details.getNamedItem("actors").getNodeValue().split(", "));
+	}
+
 	/**
 	 * Sets the attribute with the given name for the given movie to the given value.
 	 * 
@@ -162,37 +217,54 @@ public class MovieManagerUtil {
 	 * @param ignoreList
 	 *            optional list of movies that are to be ignored. May be null
 	 * @return List of movies sorted by their watch date
+	 * @see #getOldestWatchedMovies(boolean, boolean, int, List, int)
 	 */
 	public static IObservableList<Movie> getOldestWatchedMovies(boolean ignoreUnwatched, boolean ignoreLent, int minRating, List<Movie> ignoreList) {
-		List<Movie> movies_ = new ArrayList<Movie>();
-		IObservableList<Movie> movies = new WritableList<Movie>();
+		return getOldestWatchedMovies(ignoreUnwatched, ignoreLent, minRating, ignoreList, Integer.MAX_VALUE);
+	}
 
-		for(Movie m : MovieManager.getInstance().getMovies()) {
-			if(ignoreUnwatched && m.getWatchDate() == null || ignoreLent || m.getRating() < minRating || (ignoreList != null && ignoreList.contains(m))) {
-				continue;
-			}
-			movies_.add(m);
+	/**
+	 * Gets the first movies sorted by their watch date in ascending order, i.e. oldest first. Unwatched movies, unless ignored, come before all watched movies. The watched movies are read from the index of the
+	 * watch dates, so that getting the oldest few movies does not sort the whole movie database.
+	 * 
+	 * @param ignoreUnwatched
+	 *            flag to indicate whether unwatched movies are to be ignored
+	 * @param ignoreLent
+	 *            flag to indicate whether lent movies are to be ignored
+	 * @param minRating
+	 *            movies below the rating threshold are ignored
+	 * @param ignoreList
+	 *            optional list of movies that are to be ignored. May be null
+	 * @param limit
+	 *            the maximum number of movies
+	 * @return List of movies sorted by their watch date
+	 */
+	public static IObservableList<Movie> getOldestWatchedMovies(boolean ignoreUnwatched, final boolean ignoreLent, final int minRating, List<Movie> ignoreList, int limit) {
+		final Set<Movie> ignored = Collections.newSetFromMap(new IdentityHashMap<Movie, Boolean>());
+		if(ignoreList != null) {
+			ignored.addAll(ignoreList);
 		}
-
-		Collections.sort(movies_, new Comparator<Movie>() {
+		Predicate<Movie> filter = new Predicate<Movie>() {
 			@Override
-			public int compare(Movie m1, Movie m2) {
-				Date d1 = m1.getWatchDate();
-				Date d2 = m2.getWatchDate();
-				if(d1 == null && d2 == null) {
-					return 0;
-				} else if(d1 == null && d2 != null) {
-					return -1;
-				} else if(d1 != null && d2 == null) {
-					return 1;
-				} else {
-					return d1.compareTo(d2);
+			public boolean test(Movie m) {
+				return !(ignoreLent && m.getReturnDate() != null) && m.getRating() >= minRating && !ignored.contains(m);
+			}
+		};
+
+		MovieManager mm = MovieManager.getInstance();
+		List<Movie> movies_ = new ArrayList<Movie>();
+		if(!ignoreUnwatched) {
+			// Unwatched movies have no watch date and are therefore not in the index
+			for(Movie m : mm.queryMovies("watched:no")) {
+				if(movies_.size() < limit && filter.test(m)) {
+					movies_.add(m);
 				}
 			}
-		});
+		}
+		movies_.addAll(mm.getMoviesSortedBy("watchDate", false, filter, limit - movies_.size()));
 
+		IObservableList<Movie> movies = new WritableList<Movie>();
 		movies.addAll(movies_);
-
 		return movies;
 	}
 
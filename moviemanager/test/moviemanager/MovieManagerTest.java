@@ -3,10 +3,19 @@ package moviemanager;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.eclipse.core.databinding.observable.list.IListChangeListener;
+import org.eclipse.core.databinding.observable.list.IObservableList;
+import org.eclipse.core.databinding.observable.list.ListChangeEvent;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import moviemanager.data.Movie;
 import moviemanager.data.Performer;
@@ -14,8 +23,11 @@ import moviemanager.data.Performer;
 public class MovieManagerTest {
 	@Rule
 	public final ExpectedException exception = ExpectedException.none();
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
 
 	private MovieManager mm;
+	private String userHome;
 
 	private Movie m1;
 	private Movie m2;
@@ -36,8 +48,15 @@ public class MovieManagerTest {
 
 	@Before
 	public void setUp() {
+		// Journal the modifications into a temporary directory, so that they neither depend on nor end up in the data of earlier runs
+		userHome = System.getProperty("user.home");
+		System.setProperty("user.home", folder.getRoot().getAbsolutePath());
 		mm = MovieManager.getInstance();
 		assertNotNull(mm);
+		// Close a journal that is still open in the previous directory and start from empty databases, regardless of the data the movie manager has been loaded with or the movies of earlier tests
+		mm.discardChanges();
+		mm.getPerformers().clear();
+		mm.getMovies().clear();
 
 		m1 = new Movie();
 		mm.addMovie(m1);
@@ -88,6 +107,13 @@ public class MovieManagerTest {
 
 	}
 
+	@After
+	public void tearDown() {
+		// Close and delete the journal before the temporary directory is removed
+		mm.discardChanges();
+		System.setProperty("user.home", userHome);
+	}
+
 	// Movies - Add ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 	/**
@@ -302,4 +328,125 @@ public class MovieManagerTest {
 		assertTrue(!m1.getPerformers().contains(p6));
 		assertTrue(!m7.getPerformers().contains(p6));
 	}
+
+	// Batches ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Tests {@link MovieManager#addMovies(java.util.Collection)} with movies that are already in the list of movies or occur twice, making sure that the list of movies changes only once.
+	 */
+	@Test
+	public void testAddMoviesWithDuplicates() {
+		int numMovies = mm.getMovies().size();
+		final int[] changes = new int[1];
+		IListChangeListener<Movie> listener = new IListChangeListener<Movie>() {
+			@Override
+			public void handleListChange(ListChangeEvent<? extends Movie> event) {
+				changes[0]++;
+			}
+		};
+		((IObservableList<Movie>) mm.getMovies()).addListChangeListener(listener);
+		try {
+			mm.addMovies(Arrays.asList(m2, m1, m3, m2));
+		} finally {
+			((IObservableList<Movie>) mm.getMovies()).removeListChangeListener(listener);
+		}
+
+		assertTrue(changes[0] == 1);
+		assertTrue(mm.getMovies().size() == numMovies + 2);
+		assertTrue(mm.getMovies().get(numMovies) == m2);
+		assertTrue(mm.getMovies().get(numMovies + 1) == m3);
+	}
+
+	/**
+	 * Tests {@link MovieManager#removeMovies(java.util.Collection)} with movies whose performers are partly linked to other movies.
+	 */
+	@Test
+	public void testRemoveMoviesWithPerformers() {
+		int numMovies = mm.getMovies().size();
+		int numPerformers = mm.getPerformers().size();
+
+		mm.removeMovies(Arrays.asList(m4, m5, m2));
+
+		assertTrue(mm.getMovies().size() == numMovies - 2);
+		assertTrue(!mm.getMovies().contains(m4) && !mm.getMovies().contains(m5));
+		// p4 was only linked to m4, p5 is still linked to m1
+		assertTrue(mm.getPerformers().size() == numPerformers - 1);
+		assertTrue(!mm.getPerformers().contains(p4));
+		assertTrue(mm.getPerformers().contains(p5));
+		assertTrue(!p5.getMovies().contains(m5));
+	}
+
+	/**
+	 * Tests {@link MovieManager#addPerformers(java.util.Collection, boolean)} with a performer who is not linked to any movies.
+	 */
+	@Test
+	public void testAddPerformersWithPerformerThatHasNoMovies() {
+		int numPerformers = mm.getPerformers().size();
+
+		// This should throw an IAE before any performer is added
+		exception.expect(IllegalArgumentException.class);
+		try {
+			mm.addPerformers(Arrays.asList(p2, p3), false);
+		} finally {
+			assertTrue(mm.getPerformers().size() == numPerformers);
+		}
+	}
+
+	// Search ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Tests {@link MovieManager#searchMovies(String)} and {@link MovieManager#searchPerformers(String)} after movies and performers have been modified, added and removed.
+	 */
+	@Test
+	public void testSearchAfterModifications() {
+		m1.setTitle("Searchable Title");
+		mm.searchMovies("searchable");
+		m1.getFilmingLocations().add("Xylophone Island");
+		p1.setLastName("Searchable Name");
+		m2.setTitle("Another searchable title");
+		mm.addMovie(m2);
+
+		assertTrue(mm.searchMovies("SEARCHABLE TITLE").equals(Arrays.asList(m1, m2)));
+		assertTrue(mm.searchMovies("xylophone").equals(Arrays.asList(m1)));
+		assertTrue(mm.searchPerformers("searchable name").equals(Arrays.asList(p1)));
+
+		mm.removeMovie(m1);
+		assertTrue(mm.searchMovies("searchable title").equals(Arrays.asList(m2)));
+		assertTrue(mm.searchPerformers("searchable name").isEmpty());
+	}
+
+	/**
+	 * Tests that {@link MovieManager#searchMovies(String)} ranks movies whose description contains the search string higher, without loading the descriptions into the movies.
+	 */
+	@Test
+	public void testSearchRanksDescriptionWithoutLoadingIt() {
+		m1.setTitle("Boostable One");
+		m4.setTitle("Boostable Two");
+		m4.setDescriptionLoader(() -> "A boostable description");
+
+		assertTrue(mm.searchMovies("boostable").equals(Arrays.asList(m4, m1)));
+		assertNotNull(m4.getDescriptionLoader());
+	}
+
+	/**
+	 * Tests {@link MovieManager#queryMovies(String)} and {@link MovieManager#queryPerformers(String)} after movies and performers have been modified, added and removed.
+	 */
+	@Test
+	public void testQueryAfterModifications() {
+		m1.setCountry("Atlantis");
+		m1.setReturnDate(new GregorianCalendar(2099, Calendar.MARCH, 4).getTime());
+		m2.setCountry("ATLANTIS");
+		mm.addMovie(m2);
+		p1.setLastName("Queryable");
+
+		assertTrue(mm.queryMovies("country:atlantis").equals(Arrays.asList(m1, m2)));
+		assertTrue(mm.queryMovies("country:atlantis lent>=2099-03-04").equals(Arrays.asList(m1)));
+		assertTrue(mm.queryMovies("lent>2099-03-04").isEmpty());
+		assertTrue(mm.queryPerformers("queryable").equals(Arrays.asList(p1)));
+
+		m1.setReturnDate(null);
+		assertTrue(mm.queryMovies("lent>=2099-03-04").isEmpty());
+		mm.removeMovie(m2);
+		assertTrue(mm.queryMovies("country:atlantis").equals(Arrays.asList(m1)));
+	}
 }
@@ -16,6 +16,25 @@ import org.junit.runners.Suite;
 
 import moviemanager.data.MovieTest;
 import moviemanager.data.PerformerTest;
+import moviemanager.index.FieldIndexTest;
+import moviemanager.index.IdIndexTest;
+import moviemanager.index.NameIndexTest;
+import moviemanager.index.PersistentHashMapTest;
+import moviemanager.index.PersistentSortedSetTest;
+import moviemanager.index.SearchSchedulerTest;
+import moviemanager.index.TextIndexTest;
+import moviemanager.persistence.AutosaveSchedulerTest;
+import moviemanager.persistence.ImageStoreTest;
+import moviemanager.persistence.JournalTest;
+import moviemanager.persistence.LibraryExchangeTest;
+import moviemanager.persistence.LibraryViewTest;
+import moviemanager.persistence.RecordCodecTest;
+import moviemanager.persistence.RenditionStoreTest;
+import moviemanager.persistence.SnapshotFileTest;
+import moviemanager.query.QueryLanguageTest;
+import moviemanager.server.QueryServerTest;
+import moviemanager.ui.MovieManagerRealmTest;
+import moviemanager.util.LruCacheTest;
 import moviemanager.util.MovieManagerUtil;
 import moviemanager.util.MovieManagerUtilTest;
 
@@ -24,7 +43,7 @@ import moviemanager.util.MovieManagerUtilTest;
  *
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ MovieManagerLoadTestWithNonExistingData.class, MovieManagerSaveTest.class, MovieManagerLoadTestWithExistingData.class, MovieManagerTest.class, MovieTest.class, PerformerTest.class, MovieManagerUtilTest.class })
+@Suite.SuiteClasses({ MovieManagerLoadTestWithNonExistingData.class, MovieManagerSaveTest.class, MovieManagerLoadTestWithExistingData.class, MovieManagerTest.class, MovieTest.class, PerformerTest.class, MovieManagerUtilTest.class, SnapshotFileTest.class, JournalTest.class, IdIndexTest.class, NameIndexTest.class, TextIndexTest.class, SearchSchedulerTest.class, LruCacheTest.class, RenditionStoreTest.class, ImageStoreTest.class, AutosaveSchedulerTest.class, RecordCodecTest.class, LibraryExchangeTest.class, QueryServerTest.class, PersistentHashMapTest.class, PersistentSortedSetTest.class, LibraryViewTest.class, MovieManagerRealmTest.class, FieldIndexTest.class, QueryLanguageTest.class })
 public class MovieManagerTestSuite {
 	private static File mmDir;
 	private static File mmDirBack;
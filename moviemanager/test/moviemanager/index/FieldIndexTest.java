@@ -0,0 +1,114 @@
+package moviemanager.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class FieldIndexTest {
+
+	/**
+	 * Tests {@link FieldIndex#put(Object, Comparable)} and {@link FieldIndex#remove(Object)} when the values of objects change.
+	 */
+	@Test
+	public void testPutAndRemove() {
+		FieldIndex<String, Integer> index = new FieldIndex<String, Integer>();
+		index.put("a", 10);
+		index.put("b", 20);
+		index.put("a", 30);
+
+		assertEquals(Integer.valueOf(30), index.get("a"));
+		assertEquals(Arrays.asList("b", "a"), index.getRange(null, false, null, false));
+
+		// A null value removes the object
+		index.put("b", null);
+		assertNull(index.get("b"));
+		assertEquals(1, index.size());
+
+		index.remove("a");
+		index.remove("c");
+		assertEquals(Collections.emptyList(), index.getRange(null, false, null, false));
+		assertEquals(0, index.size());
+	}
+
+	/**
+	 * Tests {@link FieldIndex#getRange(Comparable, boolean, Comparable, boolean)} with inclusive, exclusive, missing and empty bounds and several objects with the same value.
+	 */
+	@Test
+	public void testGetRange() {
+		FieldIndex<String, Integer> index = new FieldIndex<String, Integer>();
+		index.put("a", 10);
+		index.put("b", 20);
+		index.put("c", 20);
+		index.put("d", 30);
+
+		assertEquals(Arrays.asList("b", "c", "d"), index.getRange(20, true, null, false));
+		assertEquals(Arrays.asList("d"), index.getRange(20, false, null, false));
+		assertEquals(Arrays.asList("a", "b", "c"), index.getRange(null, false, 20, true));
+		assertEquals(Arrays.asList("a"), index.getRange(null, false, 20, false));
+		assertEquals(Arrays.asList("b", "c"), index.getRange(20, true, 20, true));
+		assertEquals(Collections.emptyList(), index.getRange(20, false, 20, false));
+		assertEquals(Collections.emptyList(), index.getRange(30, true, 10, true));
+	}
+
+	/**
+	 * Tests {@link FieldIndex#getRange(Comparable, boolean, Comparable, boolean, boolean, java.util.function.Predicate, int)} in both directions with a filter and a limit.
+	 */
+	@Test
+	public void testGetRangeWithFilterAndLimit() {
+		FieldIndex<String, Integer> index = new FieldIndex<String, Integer>();
+		index.put("a", 10);
+		index.put("b", 20);
+		index.put("c", 20);
+		index.put("d", 30);
+		index.put("e", 40);
+
+		assertEquals(Arrays.asList("a", "b"), index.getRange(null, false, null, false, false, null, 2));
+		assertEquals(Arrays.asList("e", "d", "b"), index.getRange(null, false, null, false, true, null, 3));
+		assertEquals(Arrays.asList("d", "c"), index.getRange(null, false, 30, true, true, o -> !o.equals("b"), 2));
+		assertEquals(Arrays.asList("c", "e"), index.getRange(20, true, null, false, false, o -> !o.equals("b") && !o.equals("d"), 10));
+		assertEquals(Collections.emptyList(), index.getRange(null, false, null, false, false, null, 0));
+	}
+
+	/**
+	 * Tests {@link FieldIndex#getRange(Comparable, boolean, Comparable, boolean)} and {@link FieldIndex#count(Comparable, boolean, Comparable, boolean, int)} against a linear scan over random values.
+	 */
+	@Test
+	public void testGetRangeAgainstLinearScan() {
+		Random random = new Random(42);
+		FieldIndex<Integer, Integer> index = new FieldIndex<Integer, Integer>();
+		int[] values = new int[500];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(100);
+			index.put(i, values[i]);
+		}
+		for(int i = 0; i < 200; i++) {
+			Integer from = random.nextBoolean() ? random.nextInt(100) : null;
+			Integer to = random.nextBoolean() ? random.nextInt(100) : null;
+			boolean fromInclusive = random.nextBoolean();
+			boolean toInclusive = random.nextBoolean();
+			int limit = random.nextInt(600);
+
+			Set<Integer> expected = new HashSet<Integer>();
+			for(int o = 0; o < values.length; o++) {
+				if((from == null || (fromInclusive ? values[o] >= from : values[o] > from)) && (to == null || (toInclusive ? values[o] <= to : values[o] < to))) {
+					expected.add(o);
+				}
+			}
+			List<Integer> range = index.getRange(from, fromInclusive, to, toInclusive);
+			assertEquals(expected, new HashSet<Integer>(range));
+			for(int j = 1; j < range.size(); j++) {
+				assertTrue(values[range.get(j - 1)] <= values[range.get(j)]);
+			}
+			assertEquals(Math.min(expected.size(), limit), index.count(from, fromInclusive, to, toInclusive, limit));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package moviemanager.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import moviemanager.data.AbstractModelObject;
+
+public class IdIndexTest {
+
+	/**
+	 * Minimal model object, so the index can be tested without creating any images.
+	 */
+	private static class TestObject extends AbstractModelObject {
+		private static final long serialVersionUID = 1L;
+
+		private TestObject(String imdbID) {
+			this.id = UUID.randomUUID();
+			this.imdbID = imdbID;
+		}
+	}
+
+	/**
+	 * Tests {@link IdIndex#get(UUID)} and {@link IdIndex#getByImdbID(String)} after adding and removing objects.
+	 */
+	@Test
+	public void testLookupAfterAddAndRemove() {
+		IdIndex<TestObject> index = new IdIndex<TestObject>();
+		TestObject o1 = new TestObject("tt0000001");
+		TestObject o2 = new TestObject("");
+		index.add(o1);
+		index.add(o2);
+
+		assertSame(o1, index.get(o1.getId()));
+		assertSame(o2, index.get(o2.getId()));
+		assertSame(o1, index.getByImdbID("tt0000001"));
+		assertNull(index.getByImdbID(""));
+		assertEquals(1, index.getAllWithImdbID().size());
+
+		index.remove(o1);
+		assertFalse(index.contains(o1));
+		assertNull(index.get(o1.getId()));
+		assertNull(index.getByImdbID("tt0000001"));
+		assertTrue(index.contains(o2));
+	}
+
+	/**
+	 * Tests {@link IdIndex#idChanged(AbstractModelObject, UUID)} and {@link IdIndex#imdbIDChanged(AbstractModelObject, String)}.
+	 */
+	@Test
+	public void testLookupAfterIdentifierChanges() {
+		IdIndex<TestObject> index = new IdIndex<TestObject>();
+		TestObject o = new TestObject("tt0000001");
+		index.add(o);
+
+		UUID oldId = o.getId();
+		o.setId(UUID.randomUUID());
+		index.idChanged(o, oldId);
+		assertNull(index.get(oldId));
+		assertSame(o, index.get(o.getId()));
+
+		o.setImdbID("tt0000002");
+		index.imdbIDChanged(o, "tt0000001");
+		assertNull(index.getByImdbID("tt0000001"));
+		assertSame(o, index.getByImdbID("tt0000002"));
+	}
+
+	/**
+	 * Tests that {@link IdIndex#getAllWithImdbID()} returns the objects in the order they have been added, regardless of their IMDB IDs and of later changes to them.
+	 */
+	@Test
+	public void testGetAllWithImdbIDInOrderOfAddition() {
+		IdIndex<TestObject> index = new IdIndex<TestObject>();
+		List<TestObject> expected = new ArrayList<TestObject>();
+		for(int i = 0; i < 50; i++) {
+			TestObject o = new TestObject(i % 5 == 0 ? null : "tt" + UUID.randomUUID());
+			index.add(o);
+			if(o.getImdbID() != null) {
+				expected.add(o);
+			}
+		}
+		// Changing the IMDB ID does not move an object
+		TestObject first = expected.get(0);
+		String oldImdbID = first.getImdbID();
+		first.setImdbID("tt9999999");
+		index.imdbIDChanged(first, oldImdbID);
+		assertEquals(expected, index.getAllWithImdbID());
+
+		index.remove(expected.remove(3));
+		assertEquals(expected, index.getAllWithImdbID());
+	}
+}
@@ -0,0 +1,53 @@
+package moviemanager.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class NameIndexTest {
+
+	/**
+	 * Tests {@link NameIndex#normalize(String)} with differences in case, accents and whitespace.
+	 */
+	@Test
+	public void testNormalize() {
+		assertEquals("penelope cruz", NameIndex.normalize("  Pen\u00e9lope   CRUZ "));
+		assertEquals("bjork", NameIndex.normalize("Bj\u00f6rk"));
+	}
+
+	/**
+	 * Tests {@link NameIndex#get(String)} with full names and alternate names.
+	 */
+	@Test
+	public void testGetWithFullAndAlternateNames() {
+		NameIndex<String> index = new NameIndex<String>();
+		index.put("p1", Arrays.asList("Tom Hanks", "Thomas Jeffrey Hanks"));
+		index.put("p2", Arrays.asList("Tom Hanks"));
+
+		assertEquals("p1", index.get("tom  hanks"));
+		assertEquals(Arrays.asList("p1", "p2"), index.getAll("Tom Hanks"));
+		assertEquals("p1", index.get("Thomas Jeffrey Hanks"));
+		assertNull(index.get("Tom"));
+	}
+
+	/**
+	 * Tests {@link NameIndex#put(Object, java.util.Collection)} and {@link NameIndex#remove(Object)} when the names of an object change.
+	 */
+	@Test
+	public void testGetAfterNamesChanged() {
+		NameIndex<String> index = new NameIndex<String>();
+		index.put("p1", Arrays.asList("Tom Hanks", "Thomas Jeffrey Hanks"));
+		index.put("p1", Arrays.asList("Tom Hanks Jr."));
+
+		assertNull(index.get("Tom Hanks"));
+		assertNull(index.get("Thomas Jeffrey Hanks"));
+		assertEquals("p1", index.get("tom hanks jr."));
+
+		index.remove("p1");
+		assertEquals(Collections.emptyList(), index.getAll("Tom Hanks Jr."));
+	}
+}
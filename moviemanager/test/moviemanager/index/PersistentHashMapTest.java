@@ -0,0 +1,105 @@
+package moviemanager.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PersistentHashMapTest {
+
+	/**
+	 * Key whose hash is chosen by the test, so that keys with equal hashes can be created.
+	 */
+	private static class Key {
+		private final int id;
+		private final int hash;
+
+		private Key(int id, int hash) {
+			this.id = id;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).id == id;
+		}
+	}
+
+	/**
+	 * Tests {@link PersistentHashMap#plus(Object, Object)} and {@link PersistentHashMap#minus(Object)} against a {@link HashMap} with random keys, some of which share their hash.
+	 */
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(42);
+		Map<Key, Integer> expected = new HashMap<Key, Integer>();
+		PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+		for(int i = 0; i < 20000; i++) {
+			int id = random.nextInt(2000);
+			// Only 500 different hashes, so many keys collide
+			Key key = new Key(id, (id % 500) * 0x9E3779B9);
+			if(random.nextInt(3) == 0) {
+				expected.remove(key);
+				map = map.minus(key);
+			} else {
+				expected.put(key, i);
+				map = map.plus(key, i);
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for(int id = 0; id < 2000; id++) {
+			Key key = new Key(id, (id % 500) * 0x9E3779B9);
+			assertEquals(expected.get(key), map.get(key));
+		}
+		List<Integer> values = new ArrayList<Integer>(map.values());
+		List<Integer> expectedValues = new ArrayList<Integer>(expected.values());
+		Collections.sort(values);
+		Collections.sort(expectedValues);
+		assertEquals(expectedValues, values);
+	}
+
+	/**
+	 * Tests that deriving a map leaves the original map unchanged.
+	 */
+	@Test
+	public void testDerivedMapsAreIndependent() {
+		PersistentHashMap<String, String> map = PersistentHashMap.empty();
+		for(int i = 0; i < 1000; i++) {
+			map = map.plus("key" + i, "value" + i);
+		}
+		PersistentHashMap<String, String> changed = map.plus("key1", "changed").minus("key2").plus("new", "value");
+
+		assertEquals("value1", map.get("key1"));
+		assertEquals("value2", map.get("key2"));
+		assertNull(map.get("new"));
+		assertEquals(1000, map.size());
+		assertEquals("changed", changed.get("key1"));
+		assertNull(changed.get("key2"));
+		assertEquals("value", changed.get("new"));
+		assertEquals(1000, changed.size());
+	}
+
+	/**
+	 * Tests that operations that do not change the map return the map itself.
+	 */
+	@Test
+	public void testOperationsWithoutEffect() {
+		PersistentHashMap<String, String> map = PersistentHashMap.<String, String> empty().plus("key", "value");
+
+		assertSame(map, map.plus("key", map.get("key")));
+		assertSame(map, map.minus("other"));
+		assertEquals(0, map.minus("key").size());
+	}
+}
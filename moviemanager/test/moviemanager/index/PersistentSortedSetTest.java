@@ -0,0 +1,80 @@
+package moviemanager.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class PersistentSortedSetTest {
+
+	private static final Comparator<Integer> NATURAL = new Comparator<Integer>() {
+		@Override
+		public int compare(Integer i1, Integer i2) {
+			return i1.compareTo(i2);
+		}
+	};
+
+	/**
+	 * Tests {@link PersistentSortedSet#plus(Object)}, {@link PersistentSortedSet#minus(Object)}, the positions and the iteration against a {@link TreeSet} with random elements.
+	 */
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(42);
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		PersistentSortedSet<Integer> set = PersistentSortedSet.empty(NATURAL);
+		for(int i = 0; i < 20000; i++) {
+			Integer element = random.nextInt(2000);
+			if(random.nextInt(3) == 0) {
+				expected.remove(element);
+				set = set.minus(element);
+			} else {
+				expected.add(element);
+				set = set.plus(element);
+			}
+		}
+		List<Integer> elements = new ArrayList<Integer>(expected);
+		assertEquals(elements.size(), set.size());
+		for(int i = 0; i < elements.size(); i++) {
+			assertEquals(elements.get(i), set.get(i));
+			assertEquals(i, set.rank(elements.get(i)));
+		}
+		for(int element = -1; element <= 2000; element++) {
+			assertEquals(expected.headSet(element).size(), set.rank(element));
+		}
+		for(int start : new int[] { 0, 1, elements.size() / 2, elements.size() }) {
+			List<Integer> iterated = new ArrayList<Integer>();
+			for(Iterator<Integer> it = set.iterator(start); it.hasNext();) {
+				iterated.add(it.next());
+			}
+			assertEquals(elements.subList(start, elements.size()), iterated);
+		}
+	}
+
+	/**
+	 * Tests that deriving a set leaves the original set unchanged.
+	 */
+	@Test
+	public void testDerivedSetsAreIndependent() {
+		PersistentSortedSet<Integer> set = PersistentSortedSet.empty(NATURAL);
+		for(int i = 0; i < 1000; i++) {
+			set = set.plus(i);
+		}
+		PersistentSortedSet<Integer> derived = set.minus(500).plus(1000);
+
+		assertEquals(1000, set.size());
+		assertEquals(Integer.valueOf(500), set.get(500));
+		assertEquals(1000, derived.size());
+		assertEquals(Integer.valueOf(501), derived.get(500));
+		assertEquals(Integer.valueOf(1000), derived.get(999));
+		assertSame(set, set.minus(2000));
+		assertFalse(set.iterator(1000).hasNext());
+	}
+}
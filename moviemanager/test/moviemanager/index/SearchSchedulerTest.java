@@ -0,0 +1,106 @@
+package moviemanager.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+public class SearchSchedulerTest {
+
+	/** Runs the callbacks on the search thread. **/
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/**
+	 * Tests {@link SearchScheduler#submit(Callable, Consumer)} with a burst of searches, making sure that only the last one is run.
+	 */
+	@Test
+	public void testBurstIsDebounced() throws InterruptedException {
+		final List<String> searches = Collections.synchronizedList(new ArrayList<String>());
+		final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch delivered = new CountDownLatch(1);
+		SearchScheduler<String> scheduler = new SearchScheduler<String>(DIRECT_EXECUTOR, 200);
+		try {
+			for(String input : new String[] { "h", "he", "hea", "heat" }) {
+				scheduler.submit(createSearch(searches, input), new Consumer<String>() {
+					@Override
+					public void accept(String result) {
+						results.add(result);
+						delivered.countDown();
+					}
+				});
+			}
+			assertTrue(delivered.await(5, TimeUnit.SECONDS));
+			// Give a wrongly scheduled second search the chance to run
+			Thread.sleep(400);
+			assertEquals(Collections.singletonList("heat"), searches);
+			assertEquals(Collections.singletonList("heat"), results);
+		} finally {
+			scheduler.stop();
+		}
+	}
+
+	/**
+	 * Tests {@link SearchScheduler#submit(Callable, Consumer)} while a search is running, making sure that the running search is interrupted and its result is discarded.
+	 */
+	@Test
+	public void testRunningSearchIsCancelled() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final CountDownLatch delivered = new CountDownLatch(1);
+		final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+		Consumer<String> callback = new Consumer<String>() {
+			@Override
+			public void accept(String result) {
+				results.add(result);
+				delivered.countDown();
+			}
+		};
+		SearchScheduler<String> scheduler = new SearchScheduler<String>(DIRECT_EXECUTOR, 0);
+		try {
+			scheduler.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					started.countDown();
+					while(!Thread.currentThread().isInterrupted()) {
+						// Simulate a long search
+					}
+					interrupted.countDown();
+					throw new CancellationException();
+				}
+			}, callback);
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			scheduler.submit(createSearch(new ArrayList<String>(), "second"), callback);
+
+			assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+			assertTrue(delivered.await(5, TimeUnit.SECONDS));
+			assertEquals(Collections.singletonList("second"), results);
+		} finally {
+			scheduler.stop();
+		}
+	}
+
+	private static Callable<String> createSearch(final List<String> searches, final String input) {
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				searches.add(input);
+				return input;
+			}
+		};
+	}
+}
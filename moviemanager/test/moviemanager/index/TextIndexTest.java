@@ -0,0 +1,140 @@
+package moviemanager.index;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.Test;
+
+public class TextIndexTest {
+
+	/**
+	 * Tests {@link TextIndex#search(String)} with search strings shorter and longer than the indexed n-grams, differences in case and accents and texts of several fields.
+	 */
+	@Test
+	public void testSearch() {
+		TextIndex<String> index = new TextIndex<String>();
+		index.put("m1", Arrays.asList("The Lord of the Rings", "Filmed in New Zealand"));
+		index.put("m2", Arrays.asList("Am\u00e9lie", null, ""));
+		index.put("m3", Arrays.asList("Lord of War"));
+
+		assertEquals(Arrays.asList("m1", "m3"), index.search("LORD OF"));
+		assertEquals(Arrays.asList("m1"), index.search("new  zealand"));
+		assertEquals(Arrays.asList("m2"), index.search("amelie"));
+		assertEquals(Arrays.asList("m1", "m2"), index.search("e"));
+		// All trigrams occur, but not in this order
+		assertEquals(Collections.emptyList(), index.search("lord of the war"));
+		// Texts of different fields are not joined
+		assertEquals(Collections.emptyList(), index.search("rings filmed"));
+		assertEquals(Collections.emptyList(), index.search("  "));
+	}
+
+	/**
+	 * Tests {@link TextIndex#put(Object, java.util.Collection)} and {@link TextIndex#remove(Object)} when the texts of an object change.
+	 */
+	@Test
+	public void testSearchAfterTextsChanged() {
+		TextIndex<String> index = new TextIndex<String>();
+		index.put("m1", Arrays.asList("Heat"));
+		index.put("m1", Arrays.asList("Ronin"));
+
+		assertEquals(Collections.emptyList(), index.search("heat"));
+		assertEquals(Arrays.asList("m1"), index.search("oni"));
+
+		index.remove("m1");
+		assertEquals(Collections.emptyList(), index.search("oni"));
+		assertEquals(0, index.size());
+	}
+
+	/**
+	 * Tests {@link TextIndex#search(String)} against a linear scan over random texts.
+	 */
+	@Test
+	public void testSearchAgainstLinearScan() {
+		Random random = new Random(42);
+		TextIndex<Integer> index = new TextIndex<Integer>();
+		List<String> texts = new ArrayList<String>();
+		for(int i = 0; i < 500; i++) {
+			String text = randomText(random, 5 + random.nextInt(20));
+			texts.add(text);
+			index.put(i, Collections.singletonList(text));
+		}
+		for(int i = 0; i < 200; i++) {
+			String query = randomText(random, 1 + random.nextInt(5));
+			List<Integer> expected = new ArrayList<Integer>();
+			for(int j = 0; j < texts.size(); j++) {
+				if(texts.get(j).contains(query)) {
+					expected.add(j);
+				}
+			}
+			assertEquals(query, expected, index.search(query));
+		}
+	}
+
+	/**
+	 * Tests {@link TextIndex#search(String, int, ToDoubleFunction)} with misspelled words, which only match within the maximum edit distance.
+	 */
+	@Test
+	public void testRankedSearchWithTypos() {
+		TextIndex<String> index = new TextIndex<String>();
+		index.put("m1", Arrays.asList("The Shawshank Redemption"));
+		index.put("m2", Arrays.asList("Schindler's List"));
+		index.put("m3", Arrays.asList("The Godfather"));
+
+		assertEquals(Arrays.asList("m1"), index.search("shawshenk redemtion", 10, null));
+		assertEquals(Arrays.asList("m2"), index.search("shindlers", 10, null));
+		assertEquals(Arrays.asList("m3"), index.search("godfahter", 10, null));
+		// Short words have to match exactly, and words shorter than eight characters with at most one typo
+		assertEquals(Collections.emptyList(), index.search("tha godfather", 10, null));
+		assertEquals(Collections.emptyList(), index.search("shwshnk", 10, null));
+	}
+
+	/**
+	 * Tests {@link TextIndex#search(String, int, ToDoubleFunction)} with matches in fields of different weights, matches with typos, a boost and a limit.
+	 */
+	@Test
+	public void testRankedSearchOrder() {
+		TextIndex<String> index = new TextIndex<String>(4, 2, 1);
+		index.put("description", Arrays.asList(Collections.<String> emptyList(), Collections.<String> emptyList(), Arrays.asList("A heist movie")));
+		index.put("typo", Arrays.asList(Arrays.asList("Hiest"), Collections.<String> emptyList(), Collections.<String> emptyList()));
+		index.put("alternative", Arrays.asList(Arrays.asList("Ronin"), Arrays.asList("The Heist"), Collections.<String> emptyList()));
+		index.put("title", Arrays.asList(Arrays.asList("Heist"), Collections.<String> emptyList(), Collections.<String> emptyList()));
+
+		assertEquals(Arrays.asList("title", "alternative", "typo", "description"), index.search("heist", 10, null));
+		assertEquals(Arrays.asList("title", "alternative"), index.search("heist", 2, null));
+
+		ToDoubleFunction<String> boost = new ToDoubleFunction<String>() {
+			@Override
+			public double applyAsDouble(String o) {
+				return o.equals("description") ? 2 : 0;
+			}
+		};
+		assertEquals(Arrays.asList("title", "description"), index.search("heist", 2, boost));
+	}
+
+	/**
+	 * Tests {@link TextIndex#getDistance(String, String, int)} within and beyond the maximum distance.
+	 */
+	@Test
+	public void testGetDistance() {
+		assertEquals(0, TextIndex.getDistance("heat", "heat", 2));
+		assertEquals(1, TextIndex.getDistance("heat", "heart", 2));
+		assertEquals(2, TextIndex.getDistance("kitten", "sitting", 1));
+		assertEquals(3, TextIndex.getDistance("kitten", "sitting", 3));
+		assertEquals(1, TextIndex.getDistance("heist", "hiest", 1));
+		assertEquals(2, TextIndex.getDistance("heist", "hiets", 2));
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for(int i = 0; i < length; i++) {
+			sb.append((char) ('a' + random.nextInt(4)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,95 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class AutosaveSchedulerTest {
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	/** Runs the save task on the timer thread. **/
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/**
+	 * Tests {@link AutosaveScheduler#changed()} with a burst of modifications, making sure that they are coalesced into a single save.
+	 */
+	@Test
+	public void testBurstIsCoalesced() throws InterruptedException {
+		final AtomicInteger saves = new AtomicInteger();
+		final CountDownLatch saved = new CountDownLatch(1);
+		AutosaveScheduler scheduler = new AutosaveScheduler(new Runnable() {
+			@Override
+			public void run() {
+				saves.incrementAndGet();
+				saved.countDown();
+			}
+		}, DIRECT_EXECUTOR, 200, 10000);
+		try {
+			for(int i = 0; i < 10; i++) {
+				scheduler.changed();
+			}
+			assertTrue(scheduler.isPending());
+			assertTrue(saved.await(5, TimeUnit.SECONDS));
+			// Give a wrongly scheduled second save the chance to run
+			Thread.sleep(400);
+			assertEquals(1, saves.get());
+			assertFalse(scheduler.isPending());
+		} finally {
+			scheduler.stop();
+		}
+	}
+
+	/**
+	 * Tests {@link AutosaveScheduler#changed()} with modifications that continue for longer than the maximum latency, making sure that the data is saved nevertheless.
+	 */
+	@Test
+	public void testMaxLatencyIsRespected() throws InterruptedException {
+		final CountDownLatch saved = new CountDownLatch(1);
+		AutosaveScheduler scheduler = new AutosaveScheduler(new Runnable() {
+			@Override
+			public void run() {
+				saved.countDown();
+			}
+		}, DIRECT_EXECUTOR, 200, 500);
+		try {
+			// Each modification would postpone the save by the debounce delay, but not beyond the maximum latency
+			long end = System.currentTimeMillis() + 3000;
+			while(saved.getCount() > 0 && System.currentTimeMillis() < end) {
+				scheduler.changed();
+				Thread.sleep(50);
+			}
+			assertEquals(0, saved.getCount());
+		} finally {
+			scheduler.stop();
+		}
+	}
+
+	/**
+	 * Tests {@link AutosaveScheduler#AutosaveScheduler(Runnable, Executor, long, long)} with a maximum latency that is smaller than the debounce delay.
+	 */
+	@Test
+	public void testCreateWithInvalidMaxLatency() {
+		// This should throw an IAE
+		exception.expect(IllegalArgumentException.class);
+		new AutosaveScheduler(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, DIRECT_EXECUTOR, 1000, 500);
+	}
+}
@@ -0,0 +1,96 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImageStoreTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests {@link ImageStore#hash(ImageData)} with identical and different images.
+	 */
+	@Test
+	public void testHash() {
+		String hash = ImageStore.hash(RenditionStoreTest.createImage(150, 225, 0x336699));
+		assertEquals(40, hash.length());
+		assertEquals(hash, ImageStore.hash(RenditionStoreTest.createImage(150, 225, 0x336699)));
+
+		ImageData modified = RenditionStoreTest.createImage(150, 225, 0x336699);
+		modified.setPixel(75, 100, 0x336698);
+		assertFalse(hash.equals(ImageStore.hash(modified)));
+		assertFalse(hash.equals(ImageStore.hash(RenditionStoreTest.createImage(225, 150, 0x336699))));
+	}
+
+	/**
+	 * Tests {@link ImageStore#store(String, ImageData)} and {@link ImageStore#load(String)} with the same image stored twice, making sure that it is only written once.
+	 */
+	@Test
+	public void testStoreAndLoad() throws IOException {
+		ImageData image = RenditionStoreTest.createImage(150, 225, 0x336699);
+		String hash = ImageStore.hash(image);
+
+		ImageStore store = new ImageStore(new File(folder.getRoot(), ImageStore.DIRECTORY_NAME));
+		assertFalse(store.contains(hash));
+		assertNull(store.load(hash));
+		assertTrue(store.store(hash, image));
+		long lastModified = store.getFile(hash).lastModified();
+		assertFalse(store.store(hash, RenditionStoreTest.createImage(150, 225, 0x336699)));
+		assertEquals(lastModified, store.getFile(hash).lastModified());
+
+		ImageData loaded = store.load(hash);
+		assertNotNull(loaded);
+		assertEquals(150, loaded.width);
+		assertEquals(225, loaded.height);
+		// The hash covers the pixels only, so it does not change when the image is encoded and decoded again
+		assertEquals(hash, ImageStore.hash(loaded));
+	}
+
+	/**
+	 * Tests {@link ImageStore#importFile(File)} with an image file, making sure that it is copied without being encoded again.
+	 */
+	@Test
+	public void testImportFile() throws IOException {
+		File imageFile = folder.newFile("movie.png");
+		Files.write(imageFile.toPath(), RenditionStore.encode(RenditionStoreTest.createImage(150, 225, 0x336699)));
+
+		ImageStore store = new ImageStore(new File(folder.getRoot(), ImageStore.DIRECTORY_NAME));
+		String hash = store.importFile(imageFile);
+
+		assertEquals(ImageStore.hash(new ImageData(imageFile.getPath())), hash);
+		assertTrue(store.contains(hash));
+		assertTrue(Files.readAllBytes(imageFile.toPath()).length == store.getFile(hash).length());
+	}
+
+	/**
+	 * Tests {@link ImageStore#retainAll(java.util.Set)} with a referenced and an unreferenced image.
+	 */
+	@Test
+	public void testRetainAll() throws IOException {
+		ImageData referencedImage = RenditionStoreTest.createImage(150, 225, 0x336699);
+		ImageData unreferencedImage = RenditionStoreTest.createImage(150, 225, 0x996633);
+		String referenced = ImageStore.hash(referencedImage);
+		String unreferenced = ImageStore.hash(unreferencedImage);
+
+		ImageStore store = new ImageStore(new File(folder.getRoot(), ImageStore.DIRECTORY_NAME));
+		store.store(referenced, referencedImage);
+		store.store(unreferenced, unreferencedImage);
+
+		assertEquals(1, store.retainAll(Collections.singleton(referenced)));
+		assertTrue(store.contains(referenced));
+		assertFalse(store.contains(unreferenced));
+	}
+}
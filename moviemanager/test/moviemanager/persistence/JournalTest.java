@@ -0,0 +1,150 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Records the replayed modifications as strings.
+	 */
+	private static class RecordingHandler implements Journal.Handler {
+		private final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void movieAdded(MovieRecord m) {
+			events.add("addMovie " + m.getTitle() + " " + m.getPerformerIds());
+		}
+
+		@Override
+		public void movieRemoved(UUID id) {
+			events.add("removeMovie " + id);
+		}
+
+		@Override
+		public void performerAdded(PerformerRecord p) {
+			events.add("addPerformer " + p.getLastName());
+		}
+
+		@Override
+		public void performerRemoved(UUID id) {
+			events.add("removePerformer " + id);
+		}
+
+		@Override
+		public void propertyChanged(UUID id, String property, Object value) {
+			events.add(property + "=" + value);
+		}
+
+		@Override
+		public void listChanged(UUID id, String property, List<String> values) {
+			events.add(property + "=" + values);
+		}
+
+		@Override
+		public void linkChanged(UUID movieId, UUID performerId, boolean linked) {
+			events.add((linked ? "link " : "unlink ") + movieId + " " + performerId);
+		}
+	}
+
+	/**
+	 * Tests {@link Journal#replay(File, Journal.Handler)} with records of all types.
+	 */
+	@Test
+	public void testReplayWithAllRecordTypes() throws IOException {
+		UUID movieId = UUID.randomUUID();
+		UUID performerId = UUID.randomUUID();
+		File file = new File(folder.getRoot(), "journal_0.wtf");
+
+		Journal journal = new Journal(file, 0);
+		journal.movieAdded(new MovieRecord(movieId, "", "Heat", "", "", "", MovieRecord.NO_DATE, MovieRecord.NO_DATE, MovieRecord.NO_DATE, 0, 0, 0, Collections.<String> emptyList(), Collections.<String> emptyList(), Arrays.asList(performerId)));
+		journal.performerAdded(new PerformerRecord(performerId, "", "Al", "Pacino", "", "", MovieRecord.NO_DATE, 0, Collections.<String> emptyList(), Arrays.asList(movieId)));
+		journal.propertyChanged(movieId, "title", "Heat (1995)");
+		journal.propertyChanged(movieId, "rating", 85);
+		journal.propertyChanged(movieId, "watchDate", new Date(0));
+		journal.propertyChanged(movieId, "returnDate", null);
+		journal.listChanged(movieId, "alternativeTitles", Arrays.asList("Heat - Showdown"));
+		journal.linkChanged(movieId, performerId, false);
+		journal.performerRemoved(performerId);
+		journal.movieRemoved(movieId);
+		long size = journal.size();
+		journal.close();
+
+		RecordingHandler handler = new RecordingHandler();
+		assertEquals(size, Journal.replay(file, handler));
+		assertEquals(Arrays.asList("addMovie Heat [" + performerId + "]", "addPerformer Pacino", "title=Heat (1995)", "rating=85", "watchDate=" + new Date(0), "returnDate=null", "alternativeTitles=[Heat - Showdown]", "unlink " + movieId + " " + performerId, "removePerformer " + performerId, "removeMovie " + movieId), handler.events);
+	}
+
+	/**
+	 * Tests {@link Journal#replay(File, Journal.Handler)} with a journal whose last record is incomplete, and appending to it afterwards.
+	 */
+	@Test
+	public void testReplayWithIncompleteRecord() throws IOException {
+		UUID movieId = UUID.randomUUID();
+		File file = new File(folder.getRoot(), "journal_0.wtf");
+
+		Journal journal = new Journal(file, 0);
+		journal.propertyChanged(movieId, "rating", 10);
+		long size = journal.size();
+		journal.propertyChanged(movieId, "title", "Incomplete");
+		journal.close();
+
+		// Cut off the end of the last record
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+
+		RecordingHandler handler = new RecordingHandler();
+		assertEquals(size, Journal.replay(file, handler));
+		assertEquals(Arrays.asList("rating=10"), handler.events);
+
+		// Appending discards the incomplete record
+		journal = new Journal(file, size);
+		journal.propertyChanged(movieId, "rating", 20);
+		journal.close();
+
+		handler = new RecordingHandler();
+		Journal.replay(file, handler);
+		assertEquals(Arrays.asList("rating=10", "rating=20"), handler.events);
+	}
+
+	/**
+	 * Tests {@link Journal#replay(File, Journal.Handler)} with a journal whose last record has been damaged.
+	 */
+	@Test
+	public void testReplayWithDamagedRecord() throws IOException {
+		UUID movieId = UUID.randomUUID();
+		File file = new File(folder.getRoot(), "journal_0.wtf");
+
+		Journal journal = new Journal(file, 0);
+		journal.propertyChanged(movieId, "rating", 10);
+		long size = journal.size();
+		journal.propertyChanged(movieId, "rating", 20);
+		journal.close();
+
+		// Change the value of the last record without updating its checksum
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(raf.length() - 5);
+		raf.write(99);
+		raf.close();
+
+		RecordingHandler handler = new RecordingHandler();
+		assertEquals(size, Journal.replay(file, handler));
+		assertEquals(Arrays.asList("rating=10"), handler.events);
+	}
+}
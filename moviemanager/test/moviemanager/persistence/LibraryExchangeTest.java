@@ -0,0 +1,160 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class LibraryExchangeTest {
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	/** Runs the batches on the calling thread. **/
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/**
+	 * Collects the imported records and the sizes of the batches.
+	 *
+	 */
+	private static class CollectingHandler implements LibraryImporter.Handler {
+		private final List<MovieRecord> movies = new ArrayList<MovieRecord>();
+		private final List<PerformerRecord> performers = new ArrayList<PerformerRecord>();
+		private final List<Integer> batchSizes = new ArrayList<Integer>();
+		private boolean started;
+		private boolean finished;
+
+		@Override
+		public void importStarted() {
+			started = true;
+		}
+
+		@Override
+		public int importBatch(List<MovieRecord> movies, List<PerformerRecord> performers) {
+			assertTrue(started && !finished);
+			this.movies.addAll(movies);
+			this.performers.addAll(performers);
+			batchSizes.add(movies.size() + performers.size());
+			return 0;
+		}
+
+		@Override
+		public void importFinished() {
+			finished = true;
+		}
+	}
+
+	/**
+	 * Tests {@link LibraryExporter} and {@link LibraryImporter} with the JSON Lines format and strings containing characters that have to be escaped.
+	 */
+	@Test
+	public void testExportAndImportWithJsonLines() throws IOException {
+		testExportAndImport(ExchangeFormat.JSON_LINES);
+	}
+
+	/**
+	 * Tests {@link LibraryExporter} and {@link LibraryImporter} with the CSV format and strings containing separators, quotes and line breaks.
+	 */
+	@Test
+	public void testExportAndImportWithCsv() throws IOException {
+		testExportAndImport(ExchangeFormat.CSV);
+	}
+
+	/**
+	 * Tests {@link LibraryImporter#importFrom(java.io.Reader, ExchangeFormat)} with more records than fit into a single batch.
+	 */
+	@Test
+	public void testImportInBatches() throws IOException {
+		StringWriter out = new StringWriter();
+		LibraryExporter exporter = new LibraryExporter(out, ExchangeFormat.CSV);
+		for(int i = 0; i < 5; i++) {
+			exporter.writeMovie(createMovie(UUID.randomUUID(), "Movie " + i));
+		}
+
+		CollectingHandler handler = new CollectingHandler();
+		LibraryImporter.Result result = new LibraryImporter(handler, DIRECT_EXECUTOR, 2).importFrom(new StringReader(out.toString()), ExchangeFormat.CSV);
+
+		assertEquals(5, result.getMovieCount());
+		assertEquals(Arrays.asList(2, 2, 1), handler.batchSizes);
+		assertEquals("Movie 4", handler.movies.get(4).getTitle());
+		assertTrue(handler.finished);
+	}
+
+	/**
+	 * Tests {@link LibraryImporter#importFrom(java.io.Reader, ExchangeFormat)} with a record of an unknown type.
+	 */
+	@Test
+	public void testImportWithUnknownRecordType() throws IOException {
+		String input = "{\"type\":\"movie\",\"title\":\"Movie\"}\n\n{\"type\":\"series\",\"title\":\"Series\"}\n";
+
+		// This should throw an IOException
+		exception.expect(IOException.class);
+		exception.expectMessage("line 3");
+		new LibraryImporter(new CollectingHandler(), DIRECT_EXECUTOR, LibraryImporter.DEFAULT_BATCH_SIZE).importFrom(new StringReader(input), ExchangeFormat.JSON_LINES);
+	}
+
+	private void testExportAndImport(ExchangeFormat format) throws IOException {
+		UUID movieId = UUID.randomUUID();
+		UUID performerId = UUID.randomUUID();
+		MovieRecord m = new MovieRecord(movieId, "tt0211915", "Am\u00e9lie, \"the\" movie", "First line\nsecond line\r\n\ttabbed \\ backslash", "France", "", 987631200000L, MovieRecord.NO_DATE,
+				1420070400000L, 122, 80, 85, Arrays.asList("Le Fabuleux Destin d'Am\u00e9lie Poulain", "A|B"), Collections.<String> emptyList(), Arrays.asList(performerId));
+		PerformerRecord p = new PerformerRecord(performerId, "nm0000158", "Audrey", "Tautou", "", "France", MovieRecord.NO_DATE, 90, Arrays.asList("Audrey \\ Tautou"), Arrays.asList(movieId));
+
+		StringWriter out = new StringWriter();
+		LibraryExporter exporter = new LibraryExporter(out, format);
+		exporter.writeMovie(m);
+		exporter.writePerformer(p);
+
+		CollectingHandler handler = new CollectingHandler();
+		LibraryImporter.Result result = new LibraryImporter(handler, DIRECT_EXECUTOR, LibraryImporter.DEFAULT_BATCH_SIZE).importFrom(new StringReader(out.toString()), format);
+
+		assertEquals(1, result.getMovieCount());
+		assertEquals(1, result.getPerformerCount());
+		MovieRecord m2 = handler.movies.get(0);
+		assertEquals(movieId, m2.getId());
+		assertEquals("tt0211915", m2.getImdbID());
+		assertEquals("Am\u00e9lie, \"the\" movie", m2.getTitle());
+		assertEquals("First line\nsecond line\r\n\ttabbed \\ backslash", m2.getDescription());
+		assertEquals("France", m2.getCountry());
+		assertEquals("", m2.getLanguage());
+		assertEquals(987631200000L, m2.getReleaseDate());
+		assertEquals(MovieRecord.NO_DATE, m2.getWatchDate());
+		assertEquals(1420070400000L, m2.getReturnDate());
+		assertEquals(122, m2.getRuntime());
+		assertEquals(80, m2.getRating());
+		assertEquals(85, m2.getOverallRating());
+		assertEquals(Arrays.asList("Le Fabuleux Destin d'Am\u00e9lie Poulain", "A|B"), m2.getAlternativeTitles());
+		assertEquals(Collections.<String> emptyList(), m2.getFilmingLocations());
+		assertEquals(Arrays.asList(performerId), m2.getPerformerIds());
+
+		PerformerRecord p2 = handler.performers.get(0);
+		assertEquals(performerId, p2.getId());
+		assertEquals("Audrey", p2.getFirstName());
+		assertEquals("Tautou", p2.getLastName());
+		assertEquals("", p2.getBiography());
+		assertEquals(MovieRecord.NO_DATE, p2.getDateOfBirth());
+		assertEquals(90, p2.getRating());
+		assertEquals(Arrays.asList("Audrey \\ Tautou"), p2.getAlternateNames());
+		assertEquals(Arrays.asList(movieId), p2.getMovieIds());
+	}
+
+	private static MovieRecord createMovie(UUID id, String title) {
+		return new MovieRecord(id, "", title, "", "", "", MovieRecord.NO_DATE, MovieRecord.NO_DATE, MovieRecord.NO_DATE, 0, 0, 0, Collections.<String> emptyList(), Collections.<String> emptyList(), Collections.<UUID> emptyList());
+	}
+}
@@ -0,0 +1,95 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class LibraryViewTest {
+
+	/**
+	 * Tests deriving views by replacing and removing records, including the lookup by IMDB ID.
+	 */
+	@Test
+	public void testDerivedViews() {
+		MovieRecord heat = createMovie(UUID.randomUUID(), "tt0113277", "Heat");
+		MovieRecord ronin = createMovie(UUID.randomUUID(), "", "Ronin");
+		PerformerRecord pacino = new PerformerRecord(UUID.randomUUID(), "nm0000199", "Al", "Pacino", "", "", MovieRecord.NO_DATE, 0, Collections.<String> emptyList(), Arrays.asList(heat.getId()));
+		LibraryView view = LibraryView.of(Arrays.asList(heat, ronin), Arrays.asList(pacino));
+
+		MovieRecord renamed = createMovie(heat.getId(), "tt0113278", "Heat (1995)");
+		LibraryView changed = view.withMovie(renamed).withoutMovie(ronin.getId()).withoutPerformer(pacino.getId());
+
+		// The original view is unchanged
+		assertSame(heat, view.getMovieByImdbID("tt0113277"));
+		assertSame(ronin, view.getMovie(ronin.getId()));
+		assertSame(pacino, view.getPerformerByImdbID("nm0000199"));
+		assertEquals(2, view.getMovies().size());
+
+		assertSame(renamed, changed.getMovie(heat.getId()));
+		assertSame(renamed, changed.getMovieByImdbID("tt0113278"));
+		assertNull(changed.getMovieByImdbID("tt0113277"));
+		assertNull(changed.getMovie(ronin.getId()));
+		assertNull(changed.getPerformerByImdbID("nm0000199"));
+		assertEquals(1, changed.getMovies().size());
+		assertEquals(0, changed.getPerformers().size());
+	}
+
+	/**
+	 * Tests {@link LibraryView#getMovieByImdbID(String)} with several movies that share an IMDB ID.
+	 */
+	@Test
+	public void testSharedImdbID() {
+		MovieRecord m1 = createMovie(UUID.randomUUID(), "tt0113277", "Heat");
+		MovieRecord m2 = createMovie(UUID.randomUUID(), "tt0113277", "Heat (copy)");
+		LibraryView view = LibraryView.of(Arrays.asList(m1, m2), Collections.<PerformerRecord> emptyList());
+
+		assertSame(m1, view.getMovieByImdbID("tt0113277"));
+		assertSame(m2, view.withoutMovie(m1.getId()).getMovieByImdbID("tt0113277"));
+	}
+
+	/**
+	 * Tests that {@link LibraryView#selectMovies(String, int, int, java.util.function.Predicate, int, int, List)} pages the matches in the order of the titles or of the ratings, also in derived views.
+	 */
+	@Test
+	public void testSelectMovies() {
+		MovieRecord heat = createMovie(UUID.randomUUID(), "", "Heat", 80);
+		MovieRecord ronin = createMovie(UUID.randomUUID(), "", "Ronin", 60);
+		MovieRecord alien = createMovie(UUID.randomUUID(), "", "Alien", 70);
+		LibraryView view = LibraryView.of(Arrays.asList(heat, ronin, alien), Collections.<PerformerRecord> emptyList());
+
+		List<MovieRecord> page = new ArrayList<MovieRecord>();
+		assertEquals(3, view.selectMovies(null, Integer.MIN_VALUE, Integer.MAX_VALUE, null, 1, 5, page));
+		assertEquals(Arrays.asList(heat, ronin), page);
+
+		page.clear();
+		assertEquals(2, view.selectMovies(null, 65, Integer.MAX_VALUE, null, 0, 5, page));
+		assertEquals(Arrays.asList(alien, heat), page);
+
+		page.clear();
+		assertEquals(2, view.selectMovies("N", Integer.MIN_VALUE, 75, null, 0, 1, page));
+		assertEquals(Arrays.asList(ronin), page);
+
+		MovieRecord rerated = createMovie(heat.getId(), "", "Heat", 50);
+		page.clear();
+		assertEquals(2, view.withMovie(rerated).withoutMovie(alien.getId()).selectMovies(null, 0, 100, null, 0, 5, page));
+		assertEquals(Arrays.asList(rerated, ronin), page);
+		page.clear();
+		assertEquals(0, view.selectMovies(null, 90, 80, null, 0, 5, page));
+	}
+
+	private static MovieRecord createMovie(UUID id, String imdbID, String title) {
+		return createMovie(id, imdbID, title, 0);
+	}
+
+	private static MovieRecord createMovie(UUID id, String imdbID, String title, int rating) {
+		return new MovieRecord(id, imdbID, title, "", "", "", MovieRecord.NO_DATE, MovieRecord.NO_DATE, MovieRecord.NO_DATE, 0, rating, 0, Collections.<String> emptyList(), Collections.<String> emptyList(), Collections.<UUID> emptyList());
+	}
+}
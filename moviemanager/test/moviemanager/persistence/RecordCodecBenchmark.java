@@ -0,0 +1,148 @@
+package moviemanager.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import moviemanager.data.Movie;
+
+/**
+ * <p>
+ * Microbenchmark comparing {@link RecordCodec} with the Java serialization used by the legacy format, which wrote every movie with its own object stream. Run it with the SWT libraries on the class path; it is
+ * not part of the test suite.
+ * </p>
+ * <p>
+ * Both variants encode and decode the same movies, including their lists of alternative titles and filming locations, and report the time per movie and the number of bytes written.
+ * </p>
+ *
+ */
+public class RecordCodecBenchmark {
+
+	/** Number of movies encoded and decoded in each round. **/
+	private static final int MOVIE_COUNT = 10000;
+	/** Number of rounds that are run before measuring, so that the code has been compiled. **/
+	private static final int WARMUP_ROUNDS = 5;
+	/** Number of measured rounds. **/
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws Exception {
+		List<Movie> movies = new ArrayList<Movie>(MOVIE_COUNT);
+		for(int i = 0; i < MOVIE_COUNT; i++) {
+			Movie m = new Movie();
+			m.setTitle("Movie " + i);
+			m.setDescription("Description of movie " + i + ", which is a bit longer than the other strings of a movie.");
+			m.setCountry("USA");
+			m.setLanguage("English");
+			m.setReleaseDate(new Date(773708400000L + i * 86400000L));
+			m.setRuntime(90 + i % 60);
+			m.setRating(i % 101);
+			m.getAlternativeTitles().addAll(Arrays.asList("Alternative title " + i));
+			m.getFilmingLocations().addAll(Arrays.asList("Savannah", "USA"));
+			movies.add(m);
+		}
+		List<MovieRecord> records = new ArrayList<MovieRecord>(MOVIE_COUNT);
+		for(Movie m : movies) {
+			records.add(MovieRecord.of(m));
+		}
+
+		for(int i = 0; i < WARMUP_ROUNDS; i++) {
+			decodeRecords(encodeRecords(records));
+			deserializeMovies(serializeMovies(movies));
+		}
+
+		long encodeTime = 0;
+		long decodeTime = 0;
+		long serializeTime = 0;
+		long deserializeTime = 0;
+		long codecBytes = 0;
+		long serializedBytes = 0;
+		for(int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			List<byte[]> encoded = encodeRecords(records);
+			encodeTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			decodeRecords(encoded);
+			decodeTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			List<byte[]> serialized = serializeMovies(movies);
+			serializeTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			deserializeMovies(serialized);
+			deserializeTime += System.nanoTime() - start;
+
+			codecBytes = size(encoded);
+			serializedBytes = size(serialized);
+		}
+
+		long operations = (long) ROUNDS * MOVIE_COUNT;
+		System.out.println(String.format("RecordCodec:        encode %6d ns/movie, decode %6d ns/movie, %4d bytes/movie", encodeTime / operations, decodeTime / operations, codecBytes / MOVIE_COUNT));
+		System.out.println(String.format("Java serialization: encode %6d ns/movie, decode %6d ns/movie, %4d bytes/movie", serializeTime / operations, deserializeTime / operations, serializedBytes / MOVIE_COUNT));
+	}
+
+	private static List<byte[]> encodeRecords(List<MovieRecord> records) throws IOException {
+		RecordCodec codec = new RecordCodec();
+		List<byte[]> encoded = new ArrayList<byte[]>(records.size());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for(MovieRecord m : records) {
+			bytes.reset();
+			codec.writeMovie(out, m);
+			encoded.add(bytes.toByteArray());
+		}
+		return encoded;
+	}
+
+	private static int decodeRecords(List<byte[]> encoded) throws IOException {
+		RecordCodec codec = new RecordCodec();
+		int runtime = 0;
+		for(byte[] bytes : encoded) {
+			runtime += codec.readMovie(ByteBuffer.wrap(bytes)).getRuntime();
+		}
+		return runtime;
+	}
+
+	private static List<byte[]> serializeMovies(List<Movie> movies) throws IOException {
+		List<byte[]> serialized = new ArrayList<byte[]>(movies.size());
+		for(Movie m : movies) {
+			// The legacy format wrote the lists separately, since they are transient
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(m);
+			out.writeObject(new ArrayList<String>(m.getAlternativeTitles()));
+			out.writeObject(new ArrayList<String>(m.getFilmingLocations()));
+			out.close();
+			serialized.add(bytes.toByteArray());
+		}
+		return serialized;
+	}
+
+	private static int deserializeMovies(List<byte[]> serialized) throws IOException, ClassNotFoundException {
+		int runtime = 0;
+		for(byte[] bytes : serialized) {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			Movie m = (Movie) in.readObject();
+			in.readObject();
+			in.readObject();
+			in.close();
+			runtime += m.getRuntime();
+		}
+		return runtime;
+	}
+
+	private static long size(List<byte[]> list) {
+		long size = 0;
+		for(byte[] bytes : list) {
+			size += bytes.length;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,120 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class RecordCodecTest {
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	private final RecordCodec codec = new RecordCodec();
+
+	/**
+	 * Tests {@link RecordCodec#writeVarInt(DataOutputStream, int)} and {@link RecordCodec#writeSignedVarInt(DataOutputStream, int)} with small, large and negative values.
+	 */
+	@Test
+	public void testVarInts() throws IOException {
+		int[] values = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE };
+		for(int value : values) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			RecordCodec.writeVarInt(new DataOutputStream(bytes), value);
+			assertEquals(value, RecordCodec.readVarInt(ByteBuffer.wrap(bytes.toByteArray())));
+		}
+
+		int[] signedValues = { 0, -1, 1, -64, 64, Integer.MIN_VALUE, Integer.MAX_VALUE };
+		for(int value : signedValues) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			RecordCodec.writeSignedVarInt(new DataOutputStream(bytes), value);
+			assertEquals(value, RecordCodec.readSignedVarInt(ByteBuffer.wrap(bytes.toByteArray())));
+		}
+
+		// Small values take up a single byte
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RecordCodec.writeSignedVarInt(new DataOutputStream(bytes), -64);
+		assertEquals(1, bytes.size());
+	}
+
+	/**
+	 * Tests {@link RecordCodec#writeMovie(DataOutputStream, MovieRecord)} and {@link RecordCodec#readMovie(ByteBuffer)} with null and non-ASCII strings.
+	 */
+	@Test
+	public void testWriteAndReadMovie() throws IOException {
+		UUID movieId = UUID.randomUUID();
+		UUID performerId = UUID.randomUUID();
+		MovieRecord m = new MovieRecord(movieId, "tt0211915", "Die fabelhafte Welt der Am\u00e9lie", null, "France", "French", 987631200000L, MovieRecord.NO_DATE, 1420070400000L, 122, -1, 85, Arrays.asList("Le Fabuleux Destin d'Am\u00e9lie Poulain"), Collections.<String> emptyList(), Arrays.asList(performerId), null);
+
+		MovieRecord m2 = codec.readMovie(ByteBuffer.wrap(encode(m)));
+
+		assertEquals(movieId, m2.getId());
+		assertEquals("tt0211915", m2.getImdbID());
+		assertEquals("Die fabelhafte Welt der Am\u00e9lie", m2.getTitle());
+		assertNull(m2.getDescription());
+		assertEquals("France", m2.getCountry());
+		assertEquals("French", m2.getLanguage());
+		assertEquals(987631200000L, m2.getReleaseDate());
+		assertEquals(MovieRecord.NO_DATE, m2.getWatchDate());
+		assertEquals(1420070400000L, m2.getReturnDate());
+		assertEquals(122, m2.getRuntime());
+		assertEquals(-1, m2.getRating());
+		assertEquals(85, m2.getOverallRating());
+		assertEquals(Arrays.asList("Le Fabuleux Destin d'Am\u00e9lie Poulain"), m2.getAlternativeTitles());
+		assertEquals(Collections.<String> emptyList(), m2.getFilmingLocations());
+		assertEquals(Arrays.asList(performerId), m2.getPerformerIds());
+		assertNull(m2.getImageHash());
+	}
+
+	/**
+	 * Tests {@link RecordCodec#readPerformer(ByteBuffer)} with a record of a later version, which has a field appended that is unknown to this version.
+	 */
+	@Test
+	public void testReadPerformerWithAppendedField() throws IOException {
+		UUID performerId = UUID.randomUUID();
+		PerformerRecord p = new PerformerRecord(performerId, "nm0000158", "Tom", "Hanks", "", "USA", -425260800000L, 90, Arrays.asList("Thomas Jeffrey Hanks"), Collections.<UUID> emptyList(), "0123456789abcdef0123456789abcdef01234567");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		codec.writePerformer(out, p);
+		out.writeLong(42);
+		PerformerRecord p2 = codec.readPerformer(ByteBuffer.wrap(bytes.toByteArray()));
+
+		assertEquals(performerId, p2.getId());
+		assertEquals("Tom", p2.getFirstName());
+		assertEquals("Hanks", p2.getLastName());
+		assertEquals("", p2.getBiography());
+		assertEquals(-425260800000L, p2.getDateOfBirth());
+		assertEquals(90, p2.getRating());
+		assertEquals(Arrays.asList("Thomas Jeffrey Hanks"), p2.getAlternateNames());
+		assertEquals("0123456789abcdef0123456789abcdef01234567", p2.getImageHash());
+	}
+
+	/**
+	 * Tests {@link RecordCodec#readMovie(ByteBuffer)} with a truncated record.
+	 */
+	@Test
+	public void testReadMovieWithTruncatedRecord() throws IOException {
+		MovieRecord m = new MovieRecord(UUID.randomUUID(), "", "Movie", "", "", "", MovieRecord.NO_DATE, MovieRecord.NO_DATE, MovieRecord.NO_DATE, 0, 0, 0, Collections.<String> emptyList(), Collections.<String> emptyList(), Collections.<UUID> emptyList());
+		byte[] bytes = encode(m);
+
+		// This should throw an IOException
+		exception.expect(IOException.class);
+		codec.readMovie(ByteBuffer.wrap(bytes, 0, bytes.length / 2));
+	}
+
+	private byte[] encode(MovieRecord m) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		codec.writeMovie(new DataOutputStream(bytes), m);
+		return bytes.toByteArray();
+	}
+}
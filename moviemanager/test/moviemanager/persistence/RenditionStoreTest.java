@@ -0,0 +1,70 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RenditionStoreTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests {@link RenditionStore#store(String, ImageData)} and {@link RenditionStore#load(String, int, int)} with a thumbnail-sized image.
+	 */
+	@Test
+	public void testStoreAndLoad() throws IOException {
+		ImageData thumbnail = createImage(30, 45, 0x336699);
+		String hash = ImageStore.hash(createImage(150, 225, 0x336699));
+
+		RenditionStore store = new RenditionStore(folder.getRoot());
+		assertNull(store.load(hash, 30, 45));
+		store.store(hash, thumbnail);
+		assertTrue(store.getFile(hash, 30, 45).isFile());
+
+		ImageData loaded = store.load(hash, 30, 45);
+		assertNotNull(loaded);
+		assertEquals(30, loaded.width);
+		assertEquals(45, loaded.height);
+		assertEquals(thumbnail.palette.getRGB(thumbnail.getPixel(10, 10)), loaded.palette.getRGB(loaded.getPixel(10, 10)));
+		// Other sizes of the same source image are separate renditions
+		assertNull(store.load(hash, 150, 225));
+	}
+
+	/**
+	 * Tests {@link RenditionStore#retainAll(java.util.Set)} with a referenced and an unreferenced source image.
+	 */
+	@Test
+	public void testRetainAll() throws IOException {
+		String referenced = ImageStore.hash(createImage(150, 225, 0x336699));
+		String unreferenced = ImageStore.hash(createImage(150, 225, 0x996633));
+
+		RenditionStore store = new RenditionStore(folder.getRoot());
+		store.store(referenced, createImage(30, 45, 0x336699));
+		store.store(unreferenced, createImage(30, 45, 0x996633));
+
+		assertEquals(1, store.retainAll(Collections.singleton(referenced)));
+		assertTrue(store.getFile(referenced, 30, 45).isFile());
+		assertFalse(store.getFile(unreferenced, 30, 45).isFile());
+	}
+
+	static ImageData createImage(int width, int height, int rgb) {
+		ImageData data = new ImageData(width, height, 24, new PaletteData(0xFF0000, 0xFF00, 0xFF));
+		for(int x = 0; x < width; x++) {
+			for(int y = 0; y < height; y++) {
+				data.setPixel(x, y, rgb);
+			}
+		}
+		return data;
+	}
+}
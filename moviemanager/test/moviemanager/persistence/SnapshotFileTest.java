@@ -0,0 +1,318 @@
+package moviemanager.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotFileTest {
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests {@link SnapshotFile#write(File, List, List)} and {@link SnapshotFile#read(File)} with a movie and a performer that are linked to each other.
+	 */
+	@Test
+	public void testWriteAndReadWithLinkedMovieAndPerformer() throws IOException {
+		UUID movieId = UUID.randomUUID();
+		UUID performerId = UUID.randomUUID();
+		MovieRecord m = new MovieRecord(movieId, "tt0109830", "Forrest Gump", null, "USA", "English", 773708400000L, MovieRecord.NO_DATE, 1420070400000L, 142, 80, 85, Arrays.asList("Forrest Gump - Der Film"), Arrays.asList("Savannah", "USA"), Arrays.asList(performerId), "0123456789abcdef0123456789abcdef01234567");
+		PerformerRecord p = new PerformerRecord(performerId, "nm0000158", "Tom", "Hanks", "", "USA", -425260800000L, 90, Arrays.asList("Thomas Jeffrey Hanks"), Arrays.asList(movieId));
+
+		File file = folder.newFile("library.wtf");
+		SnapshotFile.write(file, Arrays.asList(m), Arrays.asList(p));
+		SnapshotFile.Contents contents = SnapshotFile.read(file);
+
+		assertEquals(1, contents.getMovies().size());
+		MovieRecord m2 = contents.getMovies().get(0);
+		assertEquals(movieId, m2.getId());
+		assertEquals("tt0109830", m2.getImdbID());
+		assertEquals("Forrest Gump", m2.getTitle());
+		assertNull(m2.getDescription());
+		assertEquals("USA", m2.getCountry());
+		assertEquals(773708400000L, m2.getReleaseDate());
+		assertEquals(MovieRecord.NO_DATE, m2.getWatchDate());
+		assertEquals(1420070400000L, m2.getReturnDate());
+		assertEquals(142, m2.getRuntime());
+		assertEquals(80, m2.getRating());
+		assertEquals(85, m2.getOverallRating());
+		assertEquals(Arrays.asList("Forrest Gump - Der Film"), m2.getAlternativeTitles());
+		assertEquals(Arrays.asList("Savannah", "USA"), m2.getFilmingLocations());
+		assertEquals(Arrays.asList(performerId), m2.getPerformerIds());
+		assertEquals("0123456789abcdef0123456789abcdef01234567", m2.getImageHash());
+
+		assertEquals(1, contents.getPerformers().size());
+		PerformerRecord p2 = contents.getPerformers().get(0);
+		assertEquals(performerId, p2.getId());
+		assertEquals("Tom", p2.getFirstName());
+		assertEquals("Hanks", p2.getLastName());
+		assertEquals("", p2.getBiography());
+		assertEquals(-425260800000L, p2.getDateOfBirth());
+		assertEquals(90, p2.getRating());
+		assertEquals(Arrays.asList("Thomas Jeffrey Hanks"), p2.getAlternateNames());
+		assertEquals(Arrays.asList(movieId), p2.getMovieIds());
+		assertNull(p2.getImageHash());
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#write(File, List, List)} and {@link SnapshotFile#read(File)} with many movies, making sure that their order is preserved.
+	 */
+	@Test
+	public void testWriteAndReadWithManyMovies() throws IOException {
+		List<MovieRecord> movies = new ArrayList<MovieRecord>();
+		for(int i = 0; i < 1000; i++) {
+			movies.add(new MovieRecord(UUID.randomUUID(), "", "Movie " + i, "", "", "", i, i, MovieRecord.NO_DATE, i, i % 100, i % 100, Collections.<String> emptyList(), Collections.<String> emptyList(), Collections.<UUID> emptyList()));
+		}
+
+		File file = folder.newFile("library.wtf");
+		SnapshotFile.write(file, movies, Collections.<PerformerRecord> emptyList());
+		SnapshotFile.Contents contents = SnapshotFile.read(file);
+
+		assertEquals(movies.size(), contents.getMovies().size());
+		for(int i = 0; i < movies.size(); i++) {
+			assertEquals(movies.get(i).getId(), contents.getMovies().get(i).getId());
+			assertEquals("Movie " + i, contents.getMovies().get(i).getTitle());
+		}
+		assertTrue(contents.getPerformers().isEmpty());
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#read(File, ExecutorService)} with enough movies to be decoded in several chunks, making sure that their order is preserved.
+	 */
+	@Test
+	public void testReadWithExecutor() throws IOException {
+		List<MovieRecord> movies = new ArrayList<MovieRecord>();
+		for(int i = 0; i < 5000; i++) {
+			movies.add(createMovie(UUID.randomUUID(), "Movie " + i, i % 100));
+		}
+
+		File file = folder.newFile("library.wtf");
+		SnapshotFile.write(file, movies, Collections.<PerformerRecord> emptyList());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		SnapshotFile.Contents contents;
+		try {
+			contents = SnapshotFile.read(file, executor);
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(movies.size(), contents.getMovies().size());
+		for(int i = 0; i < movies.size(); i++) {
+			assertEquals(movies.get(i).getId(), contents.getMovies().get(i).getId());
+			assertEquals("Movie " + i, contents.getMovies().get(i).getTitle());
+		}
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#map(File, ExecutorService)} with a movie and a performer whose texts are decoded on demand, and with a delta segment.
+	 */
+	@Test
+	public void testMapWithDescriptionsAndDeltaSegment() throws IOException {
+		UUID movieId = UUID.randomUUID();
+		UUID performerId = UUID.randomUUID();
+		MovieRecord m = new MovieRecord(movieId, "tt0109830", "Forrest Gump", "Life is like a box of chocolates", "USA", "English", 773708400000L, MovieRecord.NO_DATE, MovieRecord.NO_DATE, 142, 80, 85, Arrays.asList("Forrest Gump - Der Film"), Collections.<String> emptyList(), Arrays.asList(performerId));
+		PerformerRecord p = new PerformerRecord(performerId, "nm0000158", "Tom", "Hanks", "Thomas Jeffrey Hanks is an American actor", "USA", -425260800000L, 90, Collections.<String> emptyList(), Arrays.asList(movieId));
+		MovieRecord m2 = createMovie(UUID.randomUUID(), "Movie 2", 20);
+
+		File file = folder.newFile("library.wtf");
+		long length = SnapshotFile.write(file, Arrays.asList(m, m2), Arrays.asList(p));
+		SnapshotFile.append(file, length, Arrays.asList(createMovie(m2.getId(), "Movie 2", 50)), Collections.<PerformerRecord> emptyList(), Collections.<UUID> emptyList(), Collections.<UUID> emptyList());
+		SnapshotFile.Contents contents = SnapshotFile.map(file, null);
+
+		assertEquals(length, contents.getBaseLength());
+		assertEquals(2, contents.getMovies().size());
+		assertEquals("Forrest Gump", contents.getMovies().get(0).getTitle());
+		assertEquals("Life is like a box of chocolates", contents.getMovies().get(0).getDescription());
+		assertEquals(Arrays.asList(performerId), contents.getMovies().get(0).getPerformerIds());
+		assertEquals(50, contents.getMovies().get(1).getRating());
+		assertEquals("Thomas Jeffrey Hanks is an American actor", contents.getPerformers().get(0).getBiography());
+
+		// Records captured from mapped records keep their descriptions when they are written again
+		File copy = folder.newFile("copy.wtf");
+		SnapshotFile.write(copy, contents.getMovies(), contents.getPerformers());
+		assertEquals("Life is like a box of chocolates", SnapshotFile.read(copy).getMovies().get(0).getDescription());
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#append(File, long, List, List, java.util.Collection, java.util.Collection)} with a modified, an added and a removed movie.
+	 */
+	@Test
+	public void testAppendWithModifiedAddedAndRemovedMovies() throws IOException {
+		MovieRecord m1 = createMovie(UUID.randomUUID(), "Movie 1", 10);
+		MovieRecord m2 = createMovie(UUID.randomUUID(), "Movie 2", 20);
+		MovieRecord m3 = createMovie(UUID.randomUUID(), "Movie 3", 30);
+
+		File file = folder.newFile("library.wtf");
+		long length = SnapshotFile.write(file, Arrays.asList(m1, m2, m3), Collections.<PerformerRecord> emptyList());
+		assertEquals(file.length(), length);
+
+		MovieRecord m1Modified = createMovie(m1.getId(), "Movie 1", 90);
+		MovieRecord m4 = createMovie(UUID.randomUUID(), "Movie 4", 40);
+		long newLength = SnapshotFile.append(file, length, Arrays.asList(m1Modified, m4), Collections.<PerformerRecord> emptyList(), Arrays.asList(m2.getId()), Collections.<UUID> emptyList());
+		assertEquals(file.length(), newLength);
+
+		SnapshotFile.Contents contents = SnapshotFile.read(file);
+		assertEquals(length, contents.getBaseLength());
+		assertEquals(newLength, contents.getLength());
+		assertEquals(3, contents.getMovies().size());
+		assertEquals(m1.getId(), contents.getMovies().get(0).getId());
+		assertEquals(90, contents.getMovies().get(0).getRating());
+		assertEquals(m3.getId(), contents.getMovies().get(1).getId());
+		assertEquals(m4.getId(), contents.getMovies().get(2).getId());
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#read(File)} with a file whose last delta segment is incomplete.
+	 */
+	@Test
+	public void testReadWithIncompleteSegment() throws IOException {
+		MovieRecord m1 = createMovie(UUID.randomUUID(), "Movie 1", 10);
+
+		File file = folder.newFile("library.wtf");
+		long length = SnapshotFile.write(file, Arrays.asList(m1), Collections.<PerformerRecord> emptyList());
+		long newLength = SnapshotFile.append(file, length, Arrays.asList(createMovie(m1.getId(), "Movie 1", 50)), Collections.<PerformerRecord> emptyList(), Collections.<UUID> emptyList(), Collections.<UUID> emptyList());
+		SnapshotFile.append(file, newLength, Arrays.asList(createMovie(m1.getId(), "Movie 1", 70)), Collections.<PerformerRecord> emptyList(), Collections.<UUID> emptyList(), Collections.<UUID> emptyList());
+
+		// Cut off the end of the last segment
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 10);
+		raf.close();
+
+		SnapshotFile.Contents contents = SnapshotFile.read(file);
+		assertEquals(newLength, contents.getLength());
+		assertEquals(1, contents.getMovies().size());
+		assertEquals(50, contents.getMovies().get(0).getRating());
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#read(File)} with a file whose last delta segment has been damaged. The segment is ignored, and appending discards it.
+	 */
+	@Test
+	public void testReadWithDamagedSegment() throws IOException {
+		MovieRecord m1 = createMovie(UUID.randomUUID(), "Movie 1", 10);
+
+		File file = folder.newFile("library.wtf");
+		long length = SnapshotFile.write(file, Arrays.asList(m1), Collections.<PerformerRecord> emptyList());
+		SnapshotFile.append(file, length, Arrays.asList(createMovie(m1.getId(), "Movie 1", 50)), Collections.<PerformerRecord> emptyList(), Collections.<UUID> emptyList(), Collections.<UUID> emptyList());
+		flipLastByte(file);
+
+		SnapshotFile.Contents contents = SnapshotFile.read(file);
+		assertEquals(length, contents.getLength());
+		assertEquals(10, contents.getMovies().get(0).getRating());
+
+		SnapshotFile.append(file, contents.getLength(), Arrays.asList(createMovie(m1.getId(), "Movie 1", 70)), Collections.<PerformerRecord> emptyList(), Collections.<UUID> emptyList(), Collections.<UUID> emptyList());
+		assertEquals(70, SnapshotFile.read(file).getMovies().get(0).getRating());
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#read(File)} with a file whose base sections have been damaged.
+	 */
+	@Test
+	public void testReadWithDamagedRecord() throws IOException {
+		File file = folder.newFile("library.wtf");
+		SnapshotFile.write(file, Arrays.asList(createMovie(UUID.randomUUID(), "Movie 1", 10)), Collections.<PerformerRecord> emptyList());
+		flipLastByte(file);
+
+		// This should throw an IOException
+		exception.expect(IOException.class);
+		SnapshotFile.read(file);
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#map(File, ExecutorService)} with a file whose description has been damaged. The damage is detected when the description is accessed rather than when the file is mapped.
+	 */
+	@Test
+	public void testMapWithDamagedDescription() throws IOException {
+		File file = folder.newFile("library.wtf");
+		MovieRecord m = new MovieRecord(UUID.randomUUID(), "", "Heat", "A group of professional bank robbers", "", "", MovieRecord.NO_DATE, MovieRecord.NO_DATE, MovieRecord.NO_DATE, 0, 0, 0, Collections.<String> emptyList(), Collections.<String> emptyList(), Collections.<UUID> emptyList());
+		SnapshotFile.write(file, Arrays.asList(m), Collections.<PerformerRecord> emptyList());
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		int position = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("bank robbers");
+		assertTrue(position > 0);
+		bytes[position] ^= 0xFF;
+		Files.write(file.toPath(), bytes);
+
+		SnapshotFile.Contents contents = SnapshotFile.map(file, null);
+		assertEquals("Heat", contents.getMovies().get(0).getTitle());
+		try {
+			contents.getMovies().get(0).getDescription();
+			fail("Expected a checksum mismatch in the description");
+		} catch(UncheckedIOException e) {
+			// The damaged description must not be replaced
+		}
+		// Nor must it be written into another snapshot
+		try {
+			SnapshotFile.write(folder.newFile("copy.wtf"), contents.getMovies(), Collections.<PerformerRecord> emptyList());
+			fail("Expected a checksum mismatch in the description");
+		} catch(UncheckedIOException e) {
+			assertEquals(0, folder.getRoot().listFiles((dir, name) -> name.endsWith(".tmp")).length);
+		}
+
+		// This should throw an IOException, since reading decodes all texts
+		exception.expect(IOException.class);
+		SnapshotFile.read(file);
+	}
+
+	/**
+	 * Tests that {@link SnapshotFile#write(File, List, List)} replaces an existing snapshot without leaving any temporary files behind.
+	 */
+	@Test
+	public void testWriteReplacesExistingSnapshot() throws IOException {
+		File file = folder.newFile("library.wtf");
+		SnapshotFile.write(file, Arrays.asList(createMovie(UUID.randomUUID(), "Movie 1", 10)), Collections.<PerformerRecord> emptyList());
+		SnapshotFile.write(file, Arrays.asList(createMovie(UUID.randomUUID(), "Movie 2", 20)), Collections.<PerformerRecord> emptyList());
+
+		assertEquals(Arrays.asList(file), Arrays.asList(folder.getRoot().listFiles()));
+		assertEquals("Movie 2", SnapshotFile.read(file).getMovies().get(0).getTitle());
+	}
+
+	/**
+	 * Tests {@link SnapshotFile#read(File)} with a file that is not a snapshot.
+	 */
+	@Test
+	public void testReadWithInvalidFile() throws IOException {
+		File file = folder.newFile("library.wtf");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		out.close();
+
+		// This should throw an IOException
+		exception.expect(IOException.class);
+		SnapshotFile.read(file);
+	}
+
+	private static void flipLastByte(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(raf.length() - 1);
+		int b = raf.read();
+		raf.seek(raf.length() - 1);
+		raf.write(b ^ 0xFF);
+		raf.close();
+	}
+
+	private static MovieRecord createMovie(UUID id, String title, int rating) {
+		return new MovieRecord(id, "", title, "", "", "", MovieRecord.NO_DATE, MovieRecord.NO_DATE, MovieRecord.NO_DATE, 0, rating, rating, Collections.<String> emptyList(), Collections.<String> emptyList(), Collections.<UUID> emptyList());
+	}
+}
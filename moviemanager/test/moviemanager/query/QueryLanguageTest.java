@@ -0,0 +1,217 @@
+package moviemanager.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryLanguageTest {
+
+	/**
+	 * Object with one field of each type.
+	 */
+	private static class Item {
+		private final String title;
+		private final int rating;
+		private final Date date;
+		private final String country;
+
+		private Item(String title, int rating, Date date, String country) {
+			this.title = title;
+			this.rating = rating;
+			this.date = date;
+			this.country = country;
+		}
+
+		@Override
+		public String toString() {
+			return title;
+		}
+	}
+
+	private static final String[] COUNTRIES = { "USA", "France", "Germany", null };
+
+	private QueryField<Item> title;
+	private QueryField<Item> rating;
+	private QueryField<Item> date;
+	private QueryField<Item> country;
+	private QueryLanguage<Item> language;
+	private List<Item> items;
+
+	@Before
+	public void setUp() {
+		title = new QueryField<Item>("title", QueryField.Type.TEXT, i -> i.title);
+		rating = new QueryField<Item>("rating", QueryField.Type.NUMBER, i -> i.rating, true);
+		date = new QueryField<Item>("date", QueryField.Type.DATE, i -> i.date, true, "watched");
+		country = new QueryField<Item>("country", QueryField.Type.KEYWORD, i -> i.country, true);
+		language = new QueryLanguage<Item>(title, Arrays.asList(rating, date, country));
+
+		items = new ArrayList<Item>();
+		Random random = new Random(42);
+		for(int i = 0; i < 300; i++) {
+			Date d = random.nextInt(4) == 0 ? null : day(2000 + random.nextInt(3), random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24));
+			add(new Item("Movie " + i, random.nextInt(101), d, COUNTRIES[random.nextInt(COUNTRIES.length)]));
+		}
+	}
+
+	private void add(Item item) {
+		items.add(item);
+		for(QueryField<Item> field : language.getFields()) {
+			field.updateIndex(item);
+		}
+	}
+
+	private static Date day(int year, int month, int day, int hour) {
+		Calendar c = Calendar.getInstance();
+		c.clear();
+		c.set(year, month, day, hour, 0);
+		return c.getTime();
+	}
+
+	/**
+	 * Tests {@link QueryLanguage#parse(String)} with the precedence of the operators, implicit conjunctions, negations, quotes and the ranges of the comparisons.
+	 */
+	@Test
+	public void testParse() {
+		assertEquals("title:\"heat\"", language.parse("Heat").toString());
+		assertEquals("title:\"heat\" AND title:\"ronin\"", language.parse("heat AND ronin").toString());
+		assertEquals("(title:\"a\" OR title:\"b\" AND title:\"c\")", language.parse("a OR b c").toString());
+		assertEquals("(title:\"a\" OR title:\"b\") AND title:\"c\"", language.parse("(a OR b) c").toString());
+		assertEquals("NOT title:\"a\" AND NOT title:\"b\"", language.parse("-a NOT b").toString());
+		assertEquals("title:\"lord of the rings\"", language.parse("\"Lord of the Rings\"").toString());
+		assertEquals("title=\"heat\"", language.parse("title=heat").toString());
+		assertEquals("NOT title=\"heat\"", language.parse("title!=heat").toString());
+		assertEquals("rating in [70, 70]", language.parse("RATING:70").toString());
+		assertEquals("rating in [70, *)", language.parse("rating>=70").toString());
+		assertEquals("rating in (70, *)", language.parse("rating>70").toString());
+		assertEquals("rating in (*, 70)", language.parse("rating<70").toString());
+		assertEquals("NOT rating in [-5, -5]", language.parse("rating!=-5").toString());
+		assertEquals("country in [usa, usa]", language.parse("country:\"USA\"").toString());
+		assertEquals("date in (*, *)", language.parse("watched:yes").toString());
+		assertEquals("NOT date in (*, *)", language.parse("watched:no").toString());
+		assertEquals("NOT country in (*, *)", language.parse("country:\"\"").toString());
+		assertEquals("", language.parse("  ").toString());
+	}
+
+	/**
+	 * Tests {@link QueryLanguage#parse(String)} with malformed queries.
+	 */
+	@Test
+	public void testParseErrors() {
+		assertSyntaxError("year>2000", 0);
+		assertSyntaxError("title:\"heat", 6);
+		assertSyntaxError("(heat OR ronin", 14);
+		assertSyntaxError("heat)", 4);
+		assertSyntaxError("rating>", 7);
+		assertSyntaxError("rating>=high", 8);
+		assertSyntaxError("date<2000-13-01", 5);
+		assertSyntaxError("date<yes", 4);
+		assertSyntaxError("country<usa", 7);
+		assertSyntaxError("title>heat", 5);
+		assertSyntaxError("heat !ronin", 5);
+	}
+
+	private void assertSyntaxError(String query, int position) {
+		try {
+			language.parse(query);
+			fail("Expected a syntax error in " + query);
+		} catch(QuerySyntaxException e) {
+			assertEquals(query, position, e.getPosition());
+		}
+	}
+
+	/**
+	 * Tests {@link QueryLanguage#execute(Query, java.util.Collection)} against predicates written by hand, for queries that are answered by the indices and queries that are not.
+	 */
+	@Test
+	public void testExecute() {
+		Date start = day(2001, 5, 10, 0);
+		Date end = day(2001, 5, 11, 0);
+		assertQuery("rating>=70", i -> i.rating >= 70);
+		assertQuery("rating<=20 OR rating>90", i -> i.rating <= 20 || i.rating > 90);
+		assertQuery("rating:50", i -> i.rating == 50);
+		assertQuery("-rating:50 rating<52", i -> i.rating != 50 && i.rating < 52);
+		assertQuery("country:usa rating>50", i -> "USA".equals(i.country) && i.rating > 50);
+		assertQuery("country!=usa", i -> !"USA".equals(i.country));
+		assertQuery("watched:no", i -> i.date == null);
+		assertQuery("watched!=no", i -> i.date != null);
+		assertQuery("date=2001-06-10", i -> i.date != null && !i.date.before(start) && i.date.before(end));
+		assertQuery("date!=2001-06-10", i -> i.date == null || i.date.before(start) || !i.date.before(end));
+		assertQuery("date<2001-06-10", i -> i.date != null && i.date.before(start));
+		assertQuery("date<=2001-06-10", i -> i.date != null && i.date.before(end));
+		assertQuery("date>2001-06-10", i -> i.date != null && !i.date.before(end));
+		assertQuery("date>=2001-06-10", i -> i.date != null && !i.date.before(start));
+		assertQuery("\"movie 1\" (country:france OR country:germany)", i -> i.title.contains("Movie 1") && ("France".equals(i.country) || "Germany".equals(i.country)));
+		assertQuery("title=\"movie 12\" OR title:\"movie 29\"", i -> i.title.equals("Movie 12") || i.title.startsWith("Movie 29"));
+	}
+
+	private void assertQuery(String query, Predicate<Item> expected) {
+		List<Item> expectedItems = new ArrayList<Item>();
+		for(Item i : items) {
+			if(expected.test(i)) {
+				expectedItems.add(i);
+			}
+		}
+		List<Item> result = language.execute(language.parse(query), items);
+		assertEquals(query, expectedItems.size(), result.size());
+		assertTrue(query, expectedItems.containsAll(result));
+	}
+
+	/**
+	 * Tests that {@link Query#estimate(int)} starts a conjunction with its most selective indexed part, and that negations and texts are not answered by the indices.
+	 */
+	@Test
+	public void testEstimate() {
+		int rated100 = language.execute(language.parse("rating:100"), items).size();
+		int fromUSA = language.execute(language.parse("country:usa"), items).size();
+		assertTrue(rated100 < fromUSA);
+
+		assertEquals(rated100, language.parse("country:usa rating:100 heat").estimate(items.size()));
+		assertEquals(rated100 + fromUSA, language.parse("rating:100 OR country:usa").estimate(items.size()));
+		assertEquals(10, language.parse("rating:100 OR country:usa").estimate(10));
+		assertEquals(-1, language.parse("rating:100 OR heat").estimate(items.size()));
+		assertEquals(-1, language.parse("-country:usa").estimate(items.size()));
+		assertEquals(-1, language.parse("country!=usa").estimate(items.size()));
+		assertEquals(-1, language.parse("heat").estimate(items.size()));
+	}
+
+	/**
+	 * Tests that {@link QueryField#updateIndex(Object)} and {@link QueryField#removeFromIndex(Object)} keep the results of indexed queries up to date.
+	 */
+	@Test
+	public void testExecuteAfterIndexChanged() {
+		Item item = new Item("Heat", 101, null, "USA");
+		add(item);
+		assertEquals(Arrays.asList(item), language.execute(language.parse("rating>100"), items));
+
+		items.remove(item);
+		for(QueryField<Item> field : language.getFields()) {
+			field.removeFromIndex(item);
+		}
+		assertEquals(0, language.execute(language.parse("rating>100"), items).size());
+	}
+
+	/**
+	 * Tests {@link QueryLanguage#isQuery(String)}.
+	 */
+	@Test
+	public void testIsQuery() {
+		assertTrue(QueryLanguage.isQuery("rating>=70"));
+		assertTrue(QueryLanguage.isQuery("heat lent:yes"));
+		assertTrue(QueryLanguage.isQuery("(-country:usa)"));
+		assertFalse(QueryLanguage.isQuery("heat"));
+		assertFalse(QueryLanguage.isQuery("mission: impossible"));
+		assertFalse(QueryLanguage.isQuery("2:22"));
+	}
+}
@@ -0,0 +1,133 @@
+package moviemanager.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import moviemanager.persistence.LibraryView;
+import moviemanager.persistence.MovieRecord;
+import moviemanager.persistence.PerformerRecord;
+
+public class QueryServerTest {
+
+	private static final UUID HEAT_ID = UUID.randomUUID();
+	private static final UUID PACINO_ID = UUID.randomUUID();
+
+	private QueryServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		List<MovieRecord> movies = new ArrayList<MovieRecord>();
+		movies.add(createMovie(HEAT_ID, "tt0113277", "Heat", 80, 1420070400000L));
+		movies.add(createMovie(UUID.randomUUID(), "", "Ronin", 60, MovieRecord.NO_DATE));
+		for(int i = 0; i < 10; i++) {
+			movies.add(createMovie(UUID.randomUUID(), "", "Movie " + i, i, MovieRecord.NO_DATE));
+		}
+		PerformerRecord pacino = new PerformerRecord(PACINO_ID, "nm0000199", "Al", "Pacino", "", "USA", MovieRecord.NO_DATE, 90, Collections.<String> emptyList(), Arrays.asList(HEAT_ID));
+		final LibraryView view = LibraryView.of(movies, Arrays.asList(pacino));
+		server = new QueryServer(() -> view, 0, 2);
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	/**
+	 * Tests looking up a movie by its UUID and by its IMDB ID.
+	 */
+	@Test
+	public void testLookup() throws IOException {
+		List<String> lines = get("/movies/" + HEAT_ID, 200);
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).contains("\"title\":\"Heat\""));
+		assertEquals(lines, get("/movies/tt0113277", 200));
+		assertTrue(get("/performers/nm0000199", 200).get(0).contains("\"lastName\":\"Pacino\""));
+		get("/movies/" + UUID.randomUUID(), 404);
+	}
+
+	/**
+	 * Tests searching movies by title with filters.
+	 */
+	@Test
+	public void testSearch() throws IOException {
+		assertEquals(1, get("/movies?title=RONIN", 200).size());
+		assertEquals(1, get("/movies?lent=true", 200).size());
+		assertEquals(11, get("/movies?lent=false", 200).size());
+		assertEquals(2, get("/movies?minRating=60", 200).size());
+		assertEquals(1, get("/performers?name=al+pac", 200).size());
+	}
+
+	/**
+	 * Tests paging through the movies.
+	 */
+	@Test
+	public void testPaging() throws IOException {
+		HttpURLConnection connection = open("/movies?title=movie&offset=8&limit=5");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("10", connection.getHeaderField("X-Total-Count"));
+		assertEquals(2, read(connection.getInputStream()).size());
+
+		// The pages are disjoint, since the movies are iterated in the same order for each request
+		Set<String> lines = new HashSet<String>(get("/movies?title=movie&limit=5", 200));
+		lines.addAll(get("/movies?title=movie&offset=5&limit=5", 200));
+		assertEquals(10, lines.size());
+	}
+
+	/**
+	 * Tests requests with invalid parameters and methods.
+	 */
+	@Test
+	public void testInvalidRequests() throws IOException {
+		get("/movies?limit=-1", 400);
+		get("/movies?lent=maybe", 400);
+		get("/movies/a/b", 404);
+		HttpURLConnection connection = open("/movies");
+		connection.setRequestMethod("DELETE");
+		assertEquals(405, connection.getResponseCode());
+	}
+
+	private List<String> get(String path, int expectedStatus) throws IOException {
+		HttpURLConnection connection = open(path);
+		assertEquals(expectedStatus, connection.getResponseCode());
+		return read(expectedStatus == 200 ? connection.getInputStream() : connection.getErrorStream());
+	}
+
+	private HttpURLConnection open(String path) throws IOException {
+		return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+	}
+
+	private static List<String> read(InputStream in) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private static MovieRecord createMovie(UUID id, String imdbID, String title, int rating, long returnDate) {
+		return new MovieRecord(id, imdbID, title, "", "", "", MovieRecord.NO_DATE, MovieRecord.NO_DATE, returnDate, 0, rating, 0, Collections.<String> emptyList(), Collections.<String> emptyList(), Collections.<UUID> emptyList());
+	}
+}
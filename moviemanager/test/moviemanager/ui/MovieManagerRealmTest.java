@@ -0,0 +1,108 @@
+package moviemanager.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.core.databinding.observable.list.WritableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MovieManagerRealmTest {
+
+	private MovieManagerRealm realm;
+
+	@Before
+	public void setUp() {
+		realm = new MovieManagerRealm();
+	}
+
+	@After
+	public void tearDown() {
+		realm.dispose();
+	}
+
+	/**
+	 * Tests {@link MovieManagerRealm#isCurrent()} on the owning thread and on another thread.
+	 */
+	@Test
+	public void testIsCurrentOnlyOnOwningThread() throws InterruptedException {
+		final AtomicBoolean current = new AtomicBoolean(true);
+		runOnOtherThread(new Runnable() {
+			@Override
+			public void run() {
+				current.set(realm.isCurrent());
+			}
+		});
+
+		assertTrue(realm.isCurrent());
+		assertFalse(current.get());
+	}
+
+	/**
+	 * Tests that modifying an observable of the realm on another thread fails.
+	 */
+	@Test
+	public void testModificationOnOtherThreadFails() throws InterruptedException {
+		final WritableList<String> list = new WritableList<String>(realm);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		runOnOtherThread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					list.add("other thread");
+				} catch(Throwable t) {
+					failure.set(t);
+				}
+			}
+		});
+		list.add("owning thread");
+
+		assertTrue(failure.get() != null);
+		assertEquals(Collections.singletonList("owning thread"), list);
+	}
+
+	/**
+	 * Tests {@link MovieManagerRealm#asyncExec(Runnable)} without a display, making sure that the runnables are run in order once the owning thread runs the pending runnables.
+	 */
+	@Test
+	public void testAsyncExecWithoutDisplay() throws InterruptedException {
+		final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+		runOnOtherThread(new Runnable() {
+			@Override
+			public void run() {
+				realm.asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						runs.add("first");
+					}
+				});
+				realm.exec(new Runnable() {
+					@Override
+					public void run() {
+						runs.add("second");
+					}
+				});
+			}
+		});
+		assertTrue(runs.isEmpty());
+
+		realm.runPending();
+		assertEquals(2, runs.size());
+		assertEquals("first", runs.get(0));
+		assertEquals("second", runs.get(1));
+	}
+
+	private static void runOnOtherThread(Runnable runnable) throws InterruptedException {
+		Thread t = new Thread(runnable);
+		t.start();
+		t.join();
+	}
+}
@@ -0,0 +1,79 @@
+package moviemanager.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class LruCacheTest {
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	/**
+	 * Cache that records the evicted values.
+	 */
+	private static class RecordingCache extends LruCache<String, Integer> {
+		private final List<Integer> evicted = new ArrayList<Integer>();
+
+		private RecordingCache(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		protected void evicted(String key, Integer value) {
+			evicted.add(value);
+		}
+	}
+
+	/**
+	 * Tests {@link LruCache#put(Object, Object)} with more entries than the capacity, making sure that the least recently used entry is evicted.
+	 */
+	@Test
+	public void testPutEvictsLeastRecentlyUsedEntry() {
+		RecordingCache cache = new RecordingCache(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		// Accessing "a" makes "b" the least recently used entry
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		cache.put("c", 3);
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		assertEquals(Integer.valueOf(3), cache.get("c"));
+		assertEquals(Arrays.asList(2), cache.evicted);
+	}
+
+	/**
+	 * Tests {@link LruCache#put(Object, Object)}, {@link LruCache#remove(Object)} and {@link LruCache#clear()}, making sure that replaced and removed values are released.
+	 */
+	@Test
+	public void testReplacedAndRemovedValuesAreEvicted() {
+		RecordingCache cache = new RecordingCache(4);
+		cache.put("a", 1);
+		cache.put("a", 2);
+		cache.put("b", 3);
+		cache.put("c", 4);
+		cache.remove("b");
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertEquals(Arrays.asList(1, 3, 2, 4), cache.evicted);
+	}
+
+	/**
+	 * Tests {@link LruCache#LruCache(int)} with a capacity of 0.
+	 */
+	@Test
+	public void testCreateWithInvalidCapacity() {
+		// This should throw an IAE
+		exception.expect(IllegalArgumentException.class);
+		new LruCache<String, Integer>(0);
+	}
+}
@@ -1,11 +1,22 @@
 package moviemanager.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.w3c.dom.Element;
 
+import moviemanager.MovieManager;
 import moviemanager.data.Movie;
 import moviemanager.data.Performer;
 
@@ -38,6 +49,33 @@ public class MovieManagerUtilTest {
 		MovieManagerUtil.calculateOverallRatingOfMovie(null);
 	}
 
+	/**
+	 * Tests {@link MovieManagerUtil#getOldestWatchedMovies(boolean, boolean, int, java.util.List, int)} with lent, ignored and low rated movies.
+	 */
+	@Test
+	public void testGetOldestWatchedMovies() {
+		MovieManager mm = MovieManager.getInstance();
+		Movie m1 = new Movie();
+		m1.setWatchDate(new GregorianCalendar(1901, Calendar.JANUARY, 1).getTime());
+		m1.setReturnDate(new GregorianCalendar(2099, Calendar.JANUARY, 1).getTime());
+		m1.setRating(50);
+		Movie m2 = new Movie();
+		m2.setWatchDate(new GregorianCalendar(1902, Calendar.JANUARY, 1).getTime());
+		m2.setRating(50);
+		Movie m3 = new Movie();
+		m3.setWatchDate(new GregorianCalendar(1903, Calendar.JANUARY, 1).getTime());
+		m3.setRating(10);
+		mm.addMovies(Arrays.asList(m3, m2, m1));
+		try {
+			assertEquals(Arrays.asList(m1, m2), new ArrayList<Movie>(MovieManagerUtil.getOldestWatchedMovies(true, false, 0, null, 2)));
+			assertEquals(Arrays.asList(m2, m3), new ArrayList<Movie>(MovieManagerUtil.getOldestWatchedMovies(true, true, 0, null, 2)));
+			assertEquals(Arrays.asList(m2), new ArrayList<Movie>(MovieManagerUtil.getOldestWatchedMovies(true, false, 0, Arrays.asList(m1), 1)));
+			assertEquals(m2, MovieManagerUtil.getOldestWatchedMovies(true, true, 20, null, 2).get(0));
+		} finally {
+			mm.removeMovies(Arrays.asList(m1, m2, m3));
+		}
+	}
+
 	/**
 	 * Tests {@link MovieManagerUtil#fileExists(String)} with an existing path.
 	 */
@@ -53,4 +91,25 @@ public class MovieManagerUtilTest {
 	public void testFileExistsWithNonExistingPath() {
 		assertTrue(!MovieManagerUtil.fileExists(System.getProperty("user.home") + "blaaah"));
 	}
+
+	/**
+	 * Tests {@link MovieManagerUtil#applyOMDbData(Movie, org.w3c.dom.NamedNodeMap)} with details of which some are unknown.
+	 */
+	@Test
+	public void testApplyOMDbData() throws ParserConfigurationException {
+		Element details = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument().createElement("movie");
+		details.setAttribute("title", "Heat");
+		details.setAttribute("released", "N/A");
+		details.setAttribute("runtime", "170 min");
+		details.setAttribute("country", "USA");
+		details.setAttribute("actors", "Al Pacino, Robert De Niro");
+
+		Movie m = new Movie();
+		m.setLanguage("English");
+		assertEquals(Arrays.asList("Al Pacino", "Robert De Niro"), MovieManagerUtil.applyOMDbData(m, details.getAttributes()));
+		assertEquals("Heat", m.getTitle());
+		assertEquals(170, m.getRuntime());
+		assertEquals("USA", m.getCountry());
+		assertEquals("English", m.getLanguage());
+	}
 }